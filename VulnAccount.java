@@ -6,19 +6,32 @@
 package org.elasticsearch.watcher.actions.email.service;
 
 import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.support.clock.Clock;
 import org.elasticsearch.watcher.support.secret.SecretService;
 
 import javax.activation.CommandMap;
 import javax.activation.MailcapCommandMap;
 import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -42,12 +55,21 @@ public class Account {
     private final SecretService secretService;
     private final ESLogger logger;
     private final Session session;
+    private final SmtpTransportPool transportPool;
 
-    Account(Config config, SecretService secretService, ESLogger logger) {
+    private final Queue<PendingMessage> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private final MeanMetric sendTime = new MeanMetric();
+    private final MeanMetric batchSize = new MeanMetric();
+
+    Account(Config config, SecretService secretService, Clock clock, ThreadPool threadPool, ESLogger logger) {
         this.config = config;
         this.secretService = secretService;
         this.logger = logger;
         session = config.createSession();
+        transportPool = new SmtpTransportPool(config.name, session, config.smtp.host, config.smtp.port, config.pool.maxIdle,
+                config.pool.keepAlive.millis(), config.pool.validateAfter.millis(), clock, threadPool, logger);
     }
 
     public String name() {
@@ -63,8 +85,6 @@ public class Account {
             throw new EmailException("email must have [to] recipient");
         }
 
-        Transport transport = session.getTransport(SMTP_PROTOCOL);
-
         String user = auth != null ? auth.user() : null;
         if (user == null) {
             user = config.smtp.user;
@@ -84,26 +104,171 @@ public class Account {
             profile = config.profile;
         }
 
-        transport.connect(config.smtp.host, config.smtp.port, user, password);
-        try {
+        MimeMessage message = profile.toMimeMessage(email, session);
+        String mid = message.getMessageID();
+        message.saveChanges();
+        if (mid != null) {
+            // saveChanges may rewrite/remove the message id, so
+            // we need to add it back
+            message.setHeader(Profile.MESSAGE_ID_HEADER, mid);
+        }
+
+        PendingMessage pending = new PendingMessage(message, user, password);
+        if (config.pool.batchWindow.millis() > 0) {
+            sendBatched(pending);
+        } else {
+            sendBatch(Collections.singletonList(pending));
+        }
+        pending.rethrow();
+        return email;
+    }
 
-            MimeMessage message = profile.toMimeMessage(email, session);
-            String mid = message.getMessageID();
-            message.saveChanges();
-            if (mid != null) {
-                // saveChanges may rewrite/remove the message id, so
-                // we need to add it back
-                message.setHeader(Profile.MESSAGE_ID_HEADER, mid);
+    /**
+     * Queues the message and waits for it to be sent. The first thread that finds no batch in flight becomes the sender: it waits
+     * for the batch window so that concurrent sends can join, and then sends all the queued messages. The other threads wait for
+     * their message to be sent, and take over when the sender finished without picking it up.
+     */
+    private void sendBatched(PendingMessage pending) throws MessagingException {
+        queue.add(pending);
+        queueSize.incrementAndGet();
+        long batchWindow = config.pool.batchWindow.millis();
+        while (pending.isDone() == false) {
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    try {
+                        Thread.sleep(batchWindow);
+                    } catch (InterruptedException ie) {
+                        // the messages of the other threads are queued already, send them without waiting for more
+                        Thread.currentThread().interrupt();
+                    }
+                    List<PendingMessage> batch = new ArrayList<>();
+                    for (PendingMessage next = queue.poll(); next != null; next = queue.poll()) {
+                        queueSize.decrementAndGet();
+                        batch.add(next);
+                    }
+                    sendBatch(batch);
+                } finally {
+                    sending.set(false);
+                }
+            } else {
+                try {
+                    pending.await(batchWindow);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new MessagingException("interrupted while waiting for email to be sent by account [" + config.name + "]", ie);
+                }
             }
-            transport.sendMessage(message, message.getAllRecipients());
-        } finally {
+        }
+    }
+
+    /**
+     * Sends the given messages in order. Consecutive messages with the same credentials share a transport, a transport is only
+     * dropped when sending failed on the connection level, rejected recipients leave the connection usable.
+     */
+    private void sendBatch(List<PendingMessage> batch) {
+        batchSize.inc(batch.size());
+        SmtpTransportPool.PooledTransport transport = null;
+        for (PendingMessage pending : batch) {
             try {
-                transport.close();
-            } catch (MessagingException me) {
-                logger.error("failed to close email transport for account [" + config.name + "]");
+                if (transport != null && transport.matches(pending.user, pending.password) == false) {
+                    transportPool.release(transport, true);
+                    transport = null;
+                }
+                if (transport == null) {
+                    transport = transportPool.borrow(pending.user, pending.password);
+                }
+                transport.send(pending.message);
+                pending.done(null);
+            } catch (SendFailedException sfe) {
+                pending.done(sfe);
+            } catch (MessagingException | RuntimeException e) {
+                pending.done(e);
+                if (transport != null) {
+                    transportPool.release(transport, false);
+                    transport = null;
+                }
+            } finally {
+                sendTime.inc(System.nanoTime() - pending.queuedNanos);
+            }
+        }
+        if (transport != null) {
+            transportPool.release(transport, true);
+        }
+    }
+
+    /**
+     * Closes the idle transports of this account. Idle transports are also closed once their keep alive expired, so an account
+     * that is dropped without being closed doesn't keep its connections open.
+     */
+    public void close() {
+        transportPool.close();
+    }
+
+    /**
+     * @return the time messages took from being queued to being sent, in nanoseconds
+     */
+    public MeanMetric sendTime() {
+        return sendTime;
+    }
+
+    /**
+     * @return the number of messages that were sent together, per batch
+     */
+    public MeanMetric batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the number of messages waiting for a batch to be sent
+     */
+    public int queueSize() {
+        return queueSize.get();
+    }
+
+    public long connectionsOpened() {
+        return transportPool.connectionsOpened();
+    }
+
+    public long connectionsReused() {
+        return transportPool.connectionsReused();
+    }
+
+    private static class PendingMessage {
+
+        private final MimeMessage message;
+        private final String user;
+        private final String password;
+        private final long queuedNanos = System.nanoTime();
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Exception failure;
+
+        private PendingMessage(MimeMessage message, String user, String password) {
+            this.message = message;
+            this.user = user;
+            this.password = password;
+        }
+
+        private void done(Exception failure) {
+            this.failure = failure;
+            latch.countDown();
+        }
+
+        private boolean isDone() {
+            return latch.getCount() == 0;
+        }
+
+        private void await(long timeoutMillis) throws InterruptedException {
+            latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void rethrow() throws MessagingException {
+            if (failure instanceof MessagingException) {
+                throw (MessagingException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
             }
         }
-        return email;
     }
 
     static class Config {
@@ -114,12 +279,14 @@ public class Account {
         final Profile profile;
         final Smtp smtp;
         final EmailDefaults defaults;
+        final Pool pool;
 
         public Config(String name, Settings settings) {
             this.name = name;
             profile = Profile.resolve(settings.get("profile"), Profile.STANDARD);
             defaults = new EmailDefaults(settings.getAsSettings("email_defaults"));
             smtp = new Smtp(settings.getAsSettings(SMTP_PROTOCOL));
+            pool = new Pool(settings.getAsSettings("pool"));
             if (smtp.host == null) {
                 throw new EmailSettingsException("missing required email account setting for account [" + name + "]. 'smtp.host' must be configured");
             }
@@ -184,6 +351,26 @@ public class Account {
 
         }
 
+        /**
+         * holds the settings of the smtp connection reuse. These are kept out of the {@code smtp} settings as all of those are
+         * passed on to Java Mail.
+         */
+        static class Pool {
+
+            final int maxIdle;
+            final TimeValue keepAlive;
+            final TimeValue validateAfter;
+            final TimeValue batchWindow;
+
+            public Pool(Settings settings) {
+                maxIdle = settings.getAsInt("max_idle", 2);
+                keepAlive = settings.getAsTime("keep_alive", TimeValue.timeValueSeconds(30));
+                // connections that were idle for less are reused without checking that the server didn't drop them
+                validateAfter = settings.getAsTime("validate_after", TimeValue.timeValueSeconds(2));
+                batchWindow = settings.getAsTime("batch_window", TimeValue.timeValueMillis(0));
+            }
+        }
+
         /**
          * holds email fields that can be configured on the account. These fields
          * will hold the default values for missing fields in email messages. Having
@@ -0,0 +1,291 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.watcher.actions.email.service;
+
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.support.clock.ClockMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ */
+public class AccountTests extends ElasticsearchTestCase {
+
+    private SmtpStub smtp;
+    private ClockMock clock;
+    private ThreadPool threadPool;
+
+    @Before
+    public void startSmtp() throws Exception {
+        smtp = new SmtpStub();
+        clock = new ClockMock();
+        threadPool = new ThreadPool("test");
+    }
+
+    @After
+    public void stopSmtp() throws Exception {
+        smtp.close();
+        terminate(threadPool);
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        Account account = account(ImmutableSettings.EMPTY);
+        try {
+            int numMessages = randomIntBetween(2, 10);
+            for (int i = 0; i < numMessages; i++) {
+                account.send(email("_subject_" + i), null, null);
+            }
+            assertThat(smtp.messages.size(), equalTo(numMessages));
+            assertThat(smtp.connections.get(), equalTo(1));
+            assertThat(account.connectionsOpened(), equalTo(1L));
+            assertThat(account.connectionsReused(), equalTo((long) numMessages - 1));
+            assertThat(account.sendTime().count(), equalTo((long) numMessages));
+        } finally {
+            account.close();
+        }
+    }
+
+    @Test
+    public void testNoReuseWithoutIdleConnections() throws Exception {
+        Account account = account(ImmutableSettings.builder().put("pool.max_idle", 0).build());
+        try {
+            account.send(email("_subject_1"), null, null);
+            account.send(email("_subject_2"), null, null);
+            assertThat(smtp.messages.size(), equalTo(2));
+            assertThat(smtp.connections.get(), equalTo(2));
+        } finally {
+            account.close();
+        }
+    }
+
+    @Test
+    public void testExpiredConnectionsAreNotReused() throws Exception {
+        Account account = account(ImmutableSettings.builder().put("pool.keep_alive", "1s").build());
+        try {
+            account.send(email("_subject_1"), null, null);
+            clock.fastForwardSeconds(2);
+            account.send(email("_subject_2"), null, null);
+            assertThat(smtp.messages.size(), equalTo(2));
+            assertThat(smtp.connections.get(), equalTo(2));
+        } finally {
+            account.close();
+        }
+    }
+
+    @Test
+    public void testIdleConnectionsAreClosedAfterKeepAlive() throws Exception {
+        final Account account = account(ImmutableSettings.builder().put("pool.keep_alive", "100ms").build());
+        try {
+            account.send(email("_subject_1"), null, null);
+            clock.fastForwardSeconds(1);
+            // nothing borrows from the pool anymore, the connection is closed by the reaper
+            assertBusy(new Runnable() {
+                @Override
+                public void run() {
+                    assertThat(smtp.closedConnections.get(), equalTo(1));
+                }
+            });
+            account.send(email("_subject_2"), null, null);
+            assertThat(smtp.connections.get(), equalTo(2));
+            assertThat(account.connectionsReused(), equalTo(0L));
+        } finally {
+            account.close();
+        }
+    }
+
+    @Test
+    public void testOnlyLongIdleConnectionsAreValidated() throws Exception {
+        Account account = account(ImmutableSettings.builder().put("pool.validate_after", "10s").build());
+        try {
+            account.send(email("_subject_1"), null, null);
+            account.send(email("_subject_2"), null, null);
+            assertThat(smtp.noops.get(), equalTo(0));
+
+            clock.fastForwardSeconds(11);
+            account.send(email("_subject_3"), null, null);
+            assertThat(smtp.noops.get(), equalTo(1));
+            assertThat(smtp.connections.get(), equalTo(1));
+            assertThat(account.connectionsReused(), equalTo(2L));
+        } finally {
+            account.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentSendsAreBatched() throws Exception {
+        final Account account = account(ImmutableSettings.builder().put("pool.batch_window", "200ms").build());
+        try {
+            final int numThreads = randomIntBetween(2, 10);
+            final CountDownLatch start = new CountDownLatch(1);
+            final CopyOnWriteArrayList<Throwable> failures = new CopyOnWriteArrayList<>();
+            Thread[] threads = new Thread[numThreads];
+            for (int i = 0; i < numThreads; i++) {
+                final int id = i;
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            account.send(email("_subject_" + id), null, null);
+                        } catch (Throwable t) {
+                            failures.add(t);
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertThat(failures.size(), equalTo(0));
+            assertThat(smtp.messages.size(), equalTo(numThreads));
+            // only one thread sends at a time, late comers reuse the connection of the previous batch
+            assertThat(smtp.connections.get(), equalTo(1));
+            assertThat(account.queueSize(), equalTo(0));
+            // the messages of the threads that queued during the batch window were sent together
+            assertThat(account.batchSize().sum(), equalTo((long) numThreads));
+            assertThat(account.batchSize().count(), lessThan((long) numThreads));
+        } finally {
+            account.close();
+        }
+    }
+
+    private Account account(Settings poolSettings) {
+        Settings settings = ImmutableSettings.builder()
+                .put("smtp.host", "localhost")
+                .put("smtp.port", smtp.port())
+                .put("smtp.user", "_user")
+                .put(poolSettings)
+                .build();
+        return new Account(new Account.Config("_account", settings), null, clock, threadPool, Loggers.getLogger(AccountTests.class));
+    }
+
+    private static Email email(String subject) throws Exception {
+        return Email.builder()
+                .id("_id")
+                .from("from@example.com")
+                .to("to@example.com")
+                .subject(subject)
+                .textBody("_body")
+                .build();
+    }
+
+    /**
+     * A minimal smtp server that accepts all the messages and counts the connections
+     */
+    private static class SmtpStub extends Thread {
+
+        private final ServerSocket serverSocket;
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicInteger closedConnections = new AtomicInteger();
+        private final AtomicInteger noops = new AtomicInteger();
+        private final CopyOnWriteArrayList<String> messages = new CopyOnWriteArrayList<>();
+
+        SmtpStub() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+            setDaemon(true);
+            start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    return;
+                }
+                connections.incrementAndGet();
+                Thread handler = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            handle(socket);
+                        } catch (IOException e) {
+                            // the client went away
+                        } finally {
+                            closedConnections.incrementAndGet();
+                        }
+                    }
+                };
+                handler.setDaemon(true);
+                handler.start();
+            }
+        }
+
+        private void handle(Socket socket) throws IOException {
+            try (Socket s = socket) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+                OutputStream out = s.getOutputStream();
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII));
+                reply(writer, "220 localhost ESMTP stub");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.toUpperCase(Locale.ROOT);
+                    if (command.startsWith("EHLO")) {
+                        reply(writer, "250-localhost\r\n250 OK");
+                    } else if (command.startsWith("DATA")) {
+                        reply(writer, "354 end data with <CR><LF>.<CR><LF>");
+                        StringBuilder message = new StringBuilder();
+                        while ((line = in.readLine()) != null && line.equals(".") == false) {
+                            message.append(line).append('\n');
+                        }
+                        messages.add(message.toString());
+                        reply(writer, "250 OK");
+                    } else if (command.startsWith("NOOP")) {
+                        noops.incrementAndGet();
+                        reply(writer, "250 OK");
+                    } else if (command.startsWith("QUIT")) {
+                        reply(writer, "221 bye");
+                        return;
+                    } else {
+                        // HELO, MAIL, RCPT and RSET are all accepted
+                        reply(writer, "250 OK");
+                    }
+                }
+            }
+        }
+
+        private static void reply(PrintWriter writer, String reply) {
+            writer.print(reply + "\r\n");
+            writer.flush();
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.security.audit;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.metrics.MeanMetric;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+
+/**
+ * Hands audit events over to a background thread, so that auditing granted requests doesn't add to the latency of the requests.
+ * An event is the write of one audit trail, whatever it audits has been read on the request thread already. Events are queued in
+ * a bounded queue together with the thread context they were raised in, which is restored while the event is written. The
+ * dispatcher thread drains the queue in batches; the index audit trail already bulk indexes what it receives and the logfile audit
+ * trail writes through the configured (rolling) appender.
+ *
+ * When the queue is full the {@link #OVERFLOW_POLICY_SETTING} decides what happens to new events: {@code block}, the default,
+ * makes the request thread wait for room in the queue, {@code drop} drops them and {@code sample} only queues every
+ * {@link #SAMPLE_INTERVAL_SETTING}th event once the queue is half full (and drops the event if it is full nevertheless).
+ * Dropped events are counted and a warning is logged at most once per minute while events are dropped.
+ * Until the dispatcher is started and once it is closed, events are written on the calling thread.
+ */
+final class AsyncAuditDispatcher implements Closeable {
+
+    enum OverflowPolicy {
+        DROP, BLOCK, SAMPLE;
+
+        static OverflowPolicy parse(String value) {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    static final Setting<Boolean> ENABLED_SETTING = Setting.boolSetting("xpack.security.audit.async.enabled", false,
+            Property.NodeScope);
+    static final Setting<Integer> QUEUE_SIZE_SETTING = Setting.intSetting("xpack.security.audit.async.queue_size", 10000, 1,
+            Property.NodeScope);
+    static final Setting<Integer> BATCH_SIZE_SETTING = Setting.intSetting("xpack.security.audit.async.batch_size", 500, 1,
+            Property.NodeScope);
+    static final Setting<OverflowPolicy> OVERFLOW_POLICY_SETTING = new Setting<>("xpack.security.audit.async.overflow_policy",
+            OverflowPolicy.BLOCK.toString(), OverflowPolicy::parse, Property.NodeScope);
+    static final Setting<Integer> SAMPLE_INTERVAL_SETTING = Setting.intSetting("xpack.security.audit.async.sample_interval", 10, 1,
+            Property.NodeScope);
+
+    private static final TimeValue POLL_INTERVAL = TimeValue.timeValueMillis(100);
+    private static final TimeValue DROPPED_WARNING_INTERVAL = TimeValue.timeValueMinutes(1);
+
+    private final Logger logger;
+    private final ThreadContext threadContext;
+    private final BlockingQueue<QueuedEvent> queue;
+    private final int queueSize;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final int sampleInterval;
+    private final ThreadFactory threadFactory;
+    // guarded by this
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final CounterMetric dropped = new CounterMetric();
+    private final AtomicLong lastDroppedWarningNanos = new AtomicLong(System.nanoTime() - DROPPED_WARNING_INTERVAL.nanos());
+    private final CounterMetric sampledOut = new CounterMetric();
+    private final MeanMetric lag = new MeanMetric();
+
+    AsyncAuditDispatcher(Settings settings, Logger logger, ThreadContext threadContext) {
+        this.logger = logger;
+        this.threadContext = threadContext;
+        this.queueSize = QUEUE_SIZE_SETTING.get(settings);
+        this.batchSize = BATCH_SIZE_SETTING.get(settings);
+        this.overflowPolicy = OVERFLOW_POLICY_SETTING.get(settings);
+        this.sampleInterval = SAMPLE_INTERVAL_SETTING.get(settings);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.threadFactory = EsExecutors.daemonThreadFactory(settings, "audit_dispatcher");
+    }
+
+    /**
+     * Starts the dispatcher thread, events that are submitted from then on are queued
+     */
+    synchronized void start() {
+        if (dispatcher != null) {
+            throw new IllegalStateException("audit dispatcher is started already");
+        }
+        running = true;
+        dispatcher = threadFactory.newThread(this::run);
+        dispatcher.start();
+    }
+
+    /**
+     * Queues the write of an audit trail according to the overflow policy, or runs it right away if the dispatcher is closed
+     *
+     * @param auditTrail the name of the audit trail that writes the event
+     * @param event      the write, that must not read from the request anymore
+     */
+    void submit(String auditTrail, Runnable event) {
+        QueuedEvent queued = new QueuedEvent(threadContext.newStoredContext(false), auditTrail, event);
+        if (running == false) {
+            dispatch(queued);
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    while (queue.offer(queued, POLL_INTERVAL.millis(), TimeUnit.MILLISECONDS) == false) {
+                        if (running == false) {
+                            // nothing drains the queue anymore
+                            dispatch(queued);
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    // rather audit on the request thread than losing the event
+                    dispatch(queued);
+                    return;
+                }
+                break;
+            case SAMPLE:
+                if (queue.size() > queueSize / 2 && sampleCounter.incrementAndGet() % sampleInterval != 0) {
+                    sampledOut.inc();
+                    return;
+                }
+                // fall through
+            case DROP:
+                if (queue.offer(queued) == false) {
+                    onDropped();
+                    return;
+                }
+                break;
+            default:
+                throw new IllegalStateException("unknown overflow policy [" + overflowPolicy + "]");
+        }
+        if (running == false) {
+            // closed while the event was queued, close may have drained the queue already
+            drainAndDispatch();
+        }
+    }
+
+    private void onDropped() {
+        dropped.inc();
+        final long last = lastDroppedWarningNanos.get();
+        final long now = System.nanoTime();
+        if (now - last >= DROPPED_WARNING_INTERVAL.nanos() && lastDroppedWarningNanos.compareAndSet(last, now)) {
+            logger.warn("the audit event queue is full, dropping audit events [{}] dropped so far, set [{}] to [{}] to not drop events",
+                    dropped.count(), OVERFLOW_POLICY_SETTING.getKey(), OverflowPolicy.BLOCK);
+        }
+    }
+
+    private void run() {
+        List<QueuedEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                QueuedEvent first = queue.poll(POLL_INTERVAL.millis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                // closed, the remaining events are dispatched by close
+                break;
+            }
+            dispatchAll(batch);
+        }
+    }
+
+    private void dispatchAll(List<QueuedEvent> batch) {
+        for (QueuedEvent event : batch) {
+            dispatch(event);
+        }
+        batch.clear();
+    }
+
+    private void dispatch(QueuedEvent event) {
+        lag.inc(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - event.queuedNanos));
+        try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+            event.context.restore();
+            event.event.run();
+        } catch (Exception e) {
+            logger.warn(new ParameterizedMessage("failed to dispatch audit event to audit trail [{}]", event.auditTrail), e);
+        }
+    }
+
+    private void drainAndDispatch() {
+        List<QueuedEvent> remaining = new ArrayList<>(queue.size());
+        queue.drainTo(remaining);
+        dispatchAll(remaining);
+    }
+
+    /**
+     * Stops the dispatcher thread and dispatches the events that are still queued on the calling thread. Events that are submitted
+     * afterwards are dispatched on the thread that submits them.
+     */
+    @Override
+    public void close() {
+        final Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = dispatcher;
+            dispatcher = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        drainAndDispatch();
+    }
+
+    long getDropped() {
+        return dropped.count();
+    }
+
+    long getSampledOut() {
+        return sampledOut.count();
+    }
+
+    int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * @return the time events spent in the queue, in milliseconds
+     */
+    MeanMetric getLag() {
+        return lag;
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("overflow_policy", overflowPolicy.toString());
+        stats.put("queue_size", queueSize);
+        stats.put("queued", getQueued());
+        stats.put("dropped", getDropped());
+        stats.put("sampled_out", getSampledOut());
+        stats.put("avg_lag_in_millis", lag.mean());
+        return stats;
+    }
+
+    private static final class QueuedEvent {
+        private final ThreadContext.StoredContext context;
+        private final String auditTrail;
+        private final Runnable event;
+        private final long queuedNanos = System.nanoTime();
+
+        private QueuedEvent(ThreadContext.StoredContext context, String auditTrail, Runnable event) {
+            this.context = context;
+            this.auditTrail = auditTrail;
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.security.audit;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.test.ESTestCase;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class AsyncAuditDispatcherTests extends ESTestCase {
+
+    private final Logger logger = Loggers.getLogger(AsyncAuditDispatcherTests.class);
+    private final ThreadContext threadContext = new ThreadContext(Settings.EMPTY);
+
+    public void testEventsAreDispatchedInTheirThreadContext() throws Exception {
+        final List<String> dispatched = new CopyOnWriteArrayList<>();
+        try (AsyncAuditDispatcher dispatcher = startedDispatcher(Settings.EMPTY)) {
+            for (int i = 0; i < 10; i++) {
+                try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+                    threadContext.putHeader("_event", "_event_" + i);
+                    dispatcher.submit("_trail", () -> dispatched.add(threadContext.getHeader("_event")));
+                }
+            }
+            assertBusy(() -> assertThat(dispatched.size(), equalTo(10)));
+            for (int i = 0; i < 10; i++) {
+                assertThat(dispatched.get(i), equalTo("_event_" + i));
+            }
+            assertThat(dispatcher.getLag().count(), equalTo(10L));
+            assertThat(dispatcher.getDropped(), equalTo(0L));
+        }
+    }
+
+    public void testEventsAreDroppedWhenTheQueueIsFull() throws Exception {
+        Settings settings = Settings.builder()
+                .put(AsyncAuditDispatcher.QUEUE_SIZE_SETTING.getKey(), 1)
+                .put(AsyncAuditDispatcher.OVERFLOW_POLICY_SETTING.getKey(), "drop")
+                .build();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> dispatched = new CopyOnWriteArrayList<>();
+        try (AsyncAuditDispatcher dispatcher = startedDispatcher(settings)) {
+            dispatcher.submit("_trail", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                dispatched.add("_blocking");
+            });
+            started.await();
+            dispatcher.submit("_trail", () -> dispatched.add("_queued"));
+            dispatcher.submit("_trail", () -> dispatched.add("_dropped"));
+            dispatcher.submit("_trail", () -> dispatched.add("_dropped"));
+            assertThat(dispatcher.getQueued(), equalTo(1));
+            assertThat(dispatcher.getDropped(), equalTo(2L));
+            release.countDown();
+            assertBusy(() -> assertThat(dispatched, contains("_blocking", "_queued")));
+        }
+    }
+
+    public void testRemainingEventsAreDispatchedOnClose() throws Exception {
+        Settings settings = Settings.builder()
+                .put(AsyncAuditDispatcher.OVERFLOW_POLICY_SETTING.getKey(), randomFrom("drop", "block", "sample"))
+                .build();
+        final List<String> dispatched = new CopyOnWriteArrayList<>();
+        AsyncAuditDispatcher dispatcher = startedDispatcher(settings);
+        int numEvents = randomIntBetween(1, 100);
+        for (int i = 0; i < numEvents; i++) {
+            dispatcher.submit("_trail", () -> dispatched.add("_event"));
+        }
+        dispatcher.close();
+        assertThat(dispatched.size(), equalTo(numEvents));
+        assertThat(dispatcher.getQueued(), is(0));
+    }
+
+    public void testSubmitBlocksUntilThereIsRoomInTheQueue() throws Exception {
+        Settings settings = Settings.builder()
+                .put(AsyncAuditDispatcher.QUEUE_SIZE_SETTING.getKey(), 1)
+                .put(AsyncAuditDispatcher.OVERFLOW_POLICY_SETTING.getKey(), "block")
+                .build();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> dispatched = new CopyOnWriteArrayList<>();
+        try (AsyncAuditDispatcher dispatcher = startedDispatcher(settings)) {
+            dispatcher.submit("_trail", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                dispatched.add("_blocking");
+            });
+            started.await();
+            dispatcher.submit("_trail", () -> dispatched.add("_queued"));
+            Thread submitter = new Thread(() -> dispatcher.submit("_trail", () -> dispatched.add("_blocked")));
+            submitter.start();
+            assertBusy(() -> assertThat(submitter.getState(), equalTo(Thread.State.TIMED_WAITING)));
+            assertThat(dispatcher.getQueued(), equalTo(1));
+            release.countDown();
+            submitter.join();
+            assertBusy(() -> assertThat(dispatched, contains("_blocking", "_queued", "_blocked")));
+            assertThat(dispatcher.getDropped(), equalTo(0L));
+        }
+    }
+
+    public void testEventsAreSampledOnceTheQueueIsHalfFull() throws Exception {
+        Settings settings = Settings.builder()
+                .put(AsyncAuditDispatcher.QUEUE_SIZE_SETTING.getKey(), 4)
+                .put(AsyncAuditDispatcher.OVERFLOW_POLICY_SETTING.getKey(), "sample")
+                .put(AsyncAuditDispatcher.SAMPLE_INTERVAL_SETTING.getKey(), 2)
+                .build();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> dispatched = new CopyOnWriteArrayList<>();
+        try (AsyncAuditDispatcher dispatcher = startedDispatcher(settings)) {
+            dispatcher.submit("_trail", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                dispatched.add("_blocking");
+            });
+            started.await();
+            for (int i = 1; i <= 7; i++) {
+                final String event = "_event_" + i;
+                dispatcher.submit("_trail", () -> dispatched.add(event));
+            }
+            // up to half of the queue every event is queued, then every second one until the queue is full
+            assertThat(dispatcher.getQueued(), equalTo(4));
+            assertThat(dispatcher.getSampledOut(), equalTo(2L));
+            assertThat(dispatcher.getDropped(), equalTo(1L));
+            release.countDown();
+            assertBusy(() -> assertThat(dispatched, contains("_blocking", "_event_1", "_event_2", "_event_3", "_event_5")));
+        }
+    }
+
+    public void testEventsAreDispatchedOnTheCallingThreadOnceClosed() throws Exception {
+        Settings settings = Settings.builder()
+                .put(AsyncAuditDispatcher.QUEUE_SIZE_SETTING.getKey(), 1)
+                .put(AsyncAuditDispatcher.OVERFLOW_POLICY_SETTING.getKey(), randomFrom("drop", "block", "sample"))
+                .build();
+        AsyncAuditDispatcher dispatcher = startedDispatcher(settings);
+        dispatcher.close();
+        final AtomicReference<Thread> dispatchedOn = new AtomicReference<>();
+        for (int i = 0; i < 3; i++) {
+            dispatcher.submit("_trail", () -> dispatchedOn.set(Thread.currentThread()));
+            assertThat(dispatchedOn.getAndSet(null), sameInstance(Thread.currentThread()));
+        }
+        assertThat(dispatcher.getQueued(), is(0));
+        assertThat(dispatcher.getDropped(), equalTo(0L));
+    }
+
+    public void testEventsAreDispatchedOnTheCallingThreadUntilStarted() throws Exception {
+        try (AsyncAuditDispatcher dispatcher = new AsyncAuditDispatcher(Settings.EMPTY, logger, threadContext)) {
+            final AtomicReference<Thread> dispatchedOn = new AtomicReference<>();
+            dispatcher.submit("_trail", () -> dispatchedOn.set(Thread.currentThread()));
+            assertThat(dispatchedOn.getAndSet(null), sameInstance(Thread.currentThread()));
+            dispatcher.start();
+            dispatcher.submit("_trail", () -> dispatchedOn.set(Thread.currentThread()));
+            assertBusy(() -> assertThat(dispatchedOn.get(), not(sameInstance(Thread.currentThread()))));
+        }
+    }
+
+    public void testDispatcherCanBeRestarted() throws Exception {
+        final List<String> dispatched = new CopyOnWriteArrayList<>();
+        AsyncAuditDispatcher dispatcher = startedDispatcher(Settings.EMPTY);
+        dispatcher.close();
+        dispatcher.start();
+        expectThrows(IllegalStateException.class, dispatcher::start);
+        dispatcher.submit("_trail", () -> dispatched.add("_event"));
+        assertBusy(() -> assertThat(dispatched, contains("_event")));
+        dispatcher.close();
+    }
+
+    public void testEventsAreNotDroppedByDefault() {
+        assertThat(AsyncAuditDispatcher.OVERFLOW_POLICY_SETTING.get(Settings.EMPTY), equalTo(AsyncAuditDispatcher.OverflowPolicy.BLOCK));
+    }
+
+    public void testFailingEventDoesNotStopTheDispatcher() throws Exception {
+        final List<String> dispatched = new CopyOnWriteArrayList<>();
+        final AtomicReference<Thread> dispatchedOn = new AtomicReference<>();
+        try (AsyncAuditDispatcher dispatcher = startedDispatcher(Settings.EMPTY)) {
+            dispatcher.submit("_trail", () -> {
+                throw new IllegalStateException("_failure");
+            });
+            dispatcher.submit("_trail", () -> {
+                dispatchedOn.set(Thread.currentThread());
+                dispatched.add("_event");
+            });
+            assertBusy(() -> assertThat(dispatched, contains("_event")));
+            assertThat(dispatchedOn.get(), not(sameInstance(Thread.currentThread())));
+        }
+    }
+
+    private AsyncAuditDispatcher startedDispatcher(Settings settings) {
+        AsyncAuditDispatcher dispatcher = new AsyncAuditDispatcher(settings, logger, threadContext);
+        dispatcher.start();
+        return dispatcher;
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.security.audit;
+
+import org.elasticsearch.transport.TransportMessage;
+import org.elasticsearch.xpack.security.user.User;
+
+/**
+ * An audit trail that can audit the granted events of transport messages off the request thread. The {@code prepare} methods are
+ * called on the request thread and must read everything they audit from the message and the thread context right away, as the
+ * message may be modified once the request proceeds. The returned write is run later by the audit dispatcher.
+ */
+public interface AsyncAuditTrail extends AuditTrail {
+
+    Runnable prepareAuthenticationSuccess(String realm, User user, String action, TransportMessage message);
+
+    Runnable prepareAccessGranted(User user, String action, TransportMessage message);
+
+    Runnable prepareRunAsGranted(User user, String action, TransportMessage message);
+}
@@ -6,13 +6,16 @@
 package org.elasticsearch.xpack.security.audit;
 
 import java.net.InetAddress;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.license.XPackLicenseState;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.transport.TransportMessage;
@@ -22,12 +25,17 @@ import org.elasticsearch.xpack.security.authc.AuthenticationToken;
 import org.elasticsearch.xpack.security.transport.filter.SecurityIpFilterRule;
 import org.elasticsearch.xpack.security.user.User;
 
-public class AuditTrailService extends AbstractComponent implements AuditTrail {
+public class AuditTrailService extends AbstractLifecycleComponent implements AuditTrail {
 
     public static final Map<String, Object> DISABLED_USAGE_STATS = Collections.singletonMap("enabled", false);
 
     private final XPackLicenseState licenseState;
     final List<AuditTrail> auditTrails;
+    // only the granted events are audited asynchronously, denials and failures are always audited before the request proceeds.
+    // The granted events of transport messages are only audited asynchronously by the audit trails that read the message up front,
+    // none of the audit trails of this module do so, they only have their granted connections audited asynchronously.
+    // The dispatcher is started and stopped with the service, events are audited on the calling thread when it is not started.
+    private final AsyncAuditDispatcher asyncDispatcher;
 
     @Override
     public String name() {
@@ -35,9 +43,32 @@ public class AuditTrailService extends AbstractComponent implements AuditTrail {
     }
 
     public AuditTrailService(Settings settings, List<AuditTrail> auditTrails, XPackLicenseState licenseState) {
+        this(settings, auditTrails, licenseState, null);
+    }
+
+    /**
+     * @param threadContext the thread context the audit events are raised in, required to audit asynchronously
+     */
+    public AuditTrailService(Settings settings, List<AuditTrail> auditTrails, XPackLicenseState licenseState,
+                             ThreadContext threadContext) {
         super(settings);
         this.auditTrails = Collections.unmodifiableList(auditTrails);
         this.licenseState = licenseState;
+        if (AsyncAuditDispatcher.ENABLED_SETTING.get(settings) && threadContext != null && auditTrails.isEmpty() == false) {
+            this.asyncDispatcher = new AsyncAuditDispatcher(settings, logger, threadContext);
+            if (auditTrails.stream().noneMatch(auditTrail -> auditTrail instanceof AsyncAuditTrail)) {
+                logger.info("asynchronous auditing is enabled but none of the audit outputs {} prepares its events up front, only the "
+                        + "granted connections are audited asynchronously", Security.AUDIT_OUTPUTS_SETTING.get(settings));
+            }
+        } else {
+            this.asyncDispatcher = null;
+        }
+    }
+
+    public static List<Setting<?>> getSettings() {
+        return Arrays.asList(AsyncAuditDispatcher.ENABLED_SETTING, AsyncAuditDispatcher.QUEUE_SIZE_SETTING,
+                AsyncAuditDispatcher.BATCH_SIZE_SETTING, AsyncAuditDispatcher.OVERFLOW_POLICY_SETTING,
+                AsyncAuditDispatcher.SAMPLE_INTERVAL_SETTING);
     }
 
     /** Returns the audit trail implementations that this service delegates to. */
@@ -58,7 +89,12 @@ public class AuditTrailService extends AbstractComponent implements AuditTrail {
     public void authenticationSuccess(String realm, User user, String action, TransportMessage message) {
         if (licenseState.isAuditingAllowed()) {
             for (AuditTrail auditTrail : auditTrails) {
-                auditTrail.authenticationSuccess(realm, user, action, message);
+                if (asyncDispatcher != null && auditTrail instanceof AsyncAuditTrail) {
+                    asyncDispatcher.submit(auditTrail.name(),
+                            ((AsyncAuditTrail) auditTrail).prepareAuthenticationSuccess(realm, user, action, message));
+                } else {
+                    auditTrail.authenticationSuccess(realm, user, action, message);
+                }
             }
         }
     }
@@ -139,7 +175,11 @@ public class AuditTrailService extends AbstractComponent implements AuditTrail {
     public void accessGranted(User user, String action, TransportMessage message) {
         if (licenseState.isAuditingAllowed()) {
             for (AuditTrail auditTrail : auditTrails) {
-                auditTrail.accessGranted(user, action, message);
+                if (asyncDispatcher != null && auditTrail instanceof AsyncAuditTrail) {
+                    asyncDispatcher.submit(auditTrail.name(), ((AsyncAuditTrail) auditTrail).prepareAccessGranted(user, action, message));
+                } else {
+                    auditTrail.accessGranted(user, action, message);
+                }
             }
         }
     }
@@ -182,7 +222,12 @@ public class AuditTrailService extends AbstractComponent implements AuditTrail {
     public void connectionGranted(InetAddress inetAddress, String profile, SecurityIpFilterRule rule) {
         if (licenseState.isAuditingAllowed()) {
             for (AuditTrail auditTrail : auditTrails) {
-                auditTrail.connectionGranted(inetAddress, profile, rule);
+                if (asyncDispatcher != null) {
+                    // the address, the profile and the rule don't change, any audit trail can read them later
+                    asyncDispatcher.submit(auditTrail.name(), () -> auditTrail.connectionGranted(inetAddress, profile, rule));
+                } else {
+                    auditTrail.connectionGranted(inetAddress, profile, rule);
+                }
             }
         }
     }
@@ -200,7 +245,11 @@ public class AuditTrailService extends AbstractComponent implements AuditTrail {
     public void runAsGranted(User user, String action, TransportMessage message) {
         if (licenseState.isAuditingAllowed()) {
             for (AuditTrail auditTrail : auditTrails) {
-                auditTrail.runAsGranted(user, action, message);
+                if (asyncDispatcher != null && auditTrail instanceof AsyncAuditTrail) {
+                    asyncDispatcher.submit(auditTrail.name(), ((AsyncAuditTrail) auditTrail).prepareRunAsGranted(user, action, message));
+                } else {
+                    auditTrail.runAsGranted(user, action, message);
+                }
             }
         }
     }
@@ -224,9 +273,30 @@ public class AuditTrailService extends AbstractComponent implements AuditTrail {
     }
 
     public Map<String, Object> usageStats() {
-        Map<String, Object> map = new HashMap<>(2);
+        Map<String, Object> map = new HashMap<>(3);
         map.put("enabled", XPackSettings.AUDIT_ENABLED.get(settings));
         map.put("outputs", Security.AUDIT_OUTPUTS_SETTING.get(settings));
+        if (asyncDispatcher != null) {
+            map.put("async", asyncDispatcher.stats());
+        }
         return map;
     }
+
+    @Override
+    protected void doStart() {
+        if (asyncDispatcher != null) {
+            asyncDispatcher.start();
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        if (asyncDispatcher != null) {
+            asyncDispatcher.close();
+        }
+    }
+
+    @Override
+    protected void doClose() {
+    }
 }
\ No newline at end of file
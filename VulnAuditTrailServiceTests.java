@@ -0,0 +1,136 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.security.audit;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.license.XPackLicenseState;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.transport.TransportMessage;
+import org.elasticsearch.xpack.security.authc.AuthenticationToken;
+import org.elasticsearch.xpack.security.user.User;
+import org.junit.After;
+import org.junit.Before;
+
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public class AuditTrailServiceTests extends ESTestCase {
+
+    private final ThreadContext threadContext = new ThreadContext(Settings.EMPTY);
+    private AsyncAuditTrail asyncTrail;
+    private AuditTrail syncTrail;
+    private AuditTrailService service;
+
+    @Before
+    public void init() throws Exception {
+        asyncTrail = mock(AsyncAuditTrail.class);
+        when(asyncTrail.name()).thenReturn("_async");
+        syncTrail = mock(AuditTrail.class);
+        when(syncTrail.name()).thenReturn("_sync");
+        XPackLicenseState licenseState = mock(XPackLicenseState.class);
+        when(licenseState.isAuditingAllowed()).thenReturn(true);
+        Settings settings = Settings.builder().put(AsyncAuditDispatcher.ENABLED_SETTING.getKey(), true).build();
+        service = new AuditTrailService(settings, Arrays.asList(asyncTrail, syncTrail), licenseState, threadContext);
+        service.start();
+    }
+
+    @After
+    public void closeService() throws Exception {
+        service.close();
+    }
+
+    public void testGrantedEventsAreAuditedAsynchronously() throws Exception {
+        User user = new User("_user", "r1");
+        TransportMessage message = mock(TransportMessage.class);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicReference<Thread> writtenOn = new AtomicReference<>();
+        when(asyncTrail.prepareAccessGranted(user, "_action", message)).thenReturn(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            writtenOn.set(Thread.currentThread());
+        });
+
+        service.accessGranted(user, "_action", message);
+
+        // the message is read on the request thread, only the write is deferred
+        verify(asyncTrail).prepareAccessGranted(user, "_action", message);
+        verify(asyncTrail, never()).accessGranted(user, "_action", message);
+        // audit trails that can't read the message up front are audited before the request proceeds
+        verify(syncTrail).accessGranted(user, "_action", message);
+        assertThat(writtenOn.get(), nullValue());
+        release.countDown();
+        assertBusy(() -> assertThat(writtenOn.get(), notNullValue()));
+        assertThat(writtenOn.get(), not(sameInstance(Thread.currentThread())));
+    }
+
+    public void testConnectionGrantedIsAuditedAsynchronouslyByAllAuditTrails() throws Exception {
+        final AtomicReference<Thread> asyncWrittenOn = new AtomicReference<>();
+        final AtomicReference<Thread> syncWrittenOn = new AtomicReference<>();
+        doAnswer(invocation -> {
+            asyncWrittenOn.set(Thread.currentThread());
+            return null;
+        }).when(asyncTrail).connectionGranted(any(InetAddress.class), anyString(), any());
+        doAnswer(invocation -> {
+            syncWrittenOn.set(Thread.currentThread());
+            return null;
+        }).when(syncTrail).connectionGranted(any(InetAddress.class), anyString(), any());
+
+        service.connectionGranted(InetAddress.getLoopbackAddress(), "_profile", null);
+
+        assertBusy(() -> {
+            assertThat(asyncWrittenOn.get(), notNullValue());
+            assertThat(syncWrittenOn.get(), notNullValue());
+        });
+        assertThat(asyncWrittenOn.get(), not(sameInstance(Thread.currentThread())));
+        assertThat(syncWrittenOn.get(), not(sameInstance(Thread.currentThread())));
+    }
+
+    public void testDenialsAndFailuresAreAuditedSynchronously() throws Exception {
+        User user = new User("_user", "r1");
+        TransportMessage message = mock(TransportMessage.class);
+        AuthenticationToken token = mock(AuthenticationToken.class);
+        final AtomicReference<Thread> writtenOn = new AtomicReference<>();
+        doAnswer(invocation -> {
+            writtenOn.set(Thread.currentThread());
+            return null;
+        }).when(asyncTrail).accessDenied(user, "_action", message);
+
+        service.accessDenied(user, "_action", message);
+        service.authenticationFailed(token, "_action", message);
+        service.runAsDenied(user, "_action", message);
+        service.tamperedRequest(user, "_action", message);
+        service.connectionDenied(InetAddress.getLoopbackAddress(), "_profile", null);
+
+        assertThat(writtenOn.get(), sameInstance(Thread.currentThread()));
+        for (AuditTrail auditTrail : Arrays.asList(asyncTrail, syncTrail)) {
+            verify(auditTrail).accessDenied(user, "_action", message);
+            verify(auditTrail).authenticationFailed(token, "_action", message);
+            verify(auditTrail).runAsDenied(user, "_action", message);
+            verify(auditTrail).tamperedRequest(user, "_action", message);
+            verify(auditTrail).connectionDenied(InetAddress.getLoopbackAddress(), "_profile", null);
+            verifyNoMoreInteractions(auditTrail);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.security.authz;
+
+import org.elasticsearch.common.regex.Regex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The names of the indices and aliases a user is authorized for, sorted so that membership checks are a binary search and wildcard
+ * expressions only have to be matched against the names that share the literal prefix of the expression. Instances are compared by
+ * identity: only the instances interned per role set by {@link IndicesAndAliasesResolver#authorizedIndexNames} are used as cache keys,
+ * so that looking up a resolution never compares the names one by one.
+ */
+final class AuthorizedIndexNames {
+
+    private final List<String> authorizedIndices;
+    private final String[] sorted;
+    private final boolean interned;
+
+    AuthorizedIndexNames(List<String> authorizedIndices) {
+        this(authorizedIndices, false);
+    }
+
+    AuthorizedIndexNames(List<String> authorizedIndices, boolean interned) {
+        this.authorizedIndices = authorizedIndices;
+        this.interned = interned;
+        this.sorted = authorizedIndices.toArray(new String[authorizedIndices.size()]);
+        // the authorized indices are usually collected from the sorted alias and index lookup so check before sorting
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i - 1].compareTo(sorted[i]) > 0) {
+                Arrays.sort(sorted);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Whether these names were interned for a role set, and can therefore be used as a cache key
+     */
+    boolean isInterned() {
+        return interned;
+    }
+
+    /**
+     * The authorized names in the order they were provided
+     */
+    List<String> asList() {
+        return authorizedIndices;
+    }
+
+    /**
+     * The number of authorized names
+     */
+    int size() {
+        return sorted.length;
+    }
+
+    boolean contains(String name) {
+        return Arrays.binarySearch(sorted, name) >= 0;
+    }
+
+    /**
+     * Passes every authorized name that matches the given simple match expression to the consumer, in sorted order
+     */
+    void forEachMatch(String expression, Consumer<String> consumer) {
+        final int firstWildcard = expression.indexOf('*');
+        if (firstWildcard < 0) {
+            if (contains(expression)) {
+                consumer.accept(expression);
+            }
+            return;
+        }
+        final String prefix = expression.substring(0, firstWildcard);
+        // a trailing wildcard matches everything that starts with the prefix, no need to run the matcher
+        final boolean prefixOnly = firstWildcard == expression.length() - 1;
+        int from = Arrays.binarySearch(sorted, prefix);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        for (int i = from; i < sorted.length && sorted[i].startsWith(prefix); i++) {
+            if (i > from && sorted[i].equals(sorted[i - 1])) {
+                continue;
+            }
+            if (prefixOnly || Regex.simpleMatch(expression, sorted[i])) {
+                consumer.accept(sorted[i]);
+            }
+        }
+    }
+}
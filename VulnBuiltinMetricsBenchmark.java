@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.metrics.impl;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.spi.metrics.HttpServerMetrics;
+import io.vertx.core.spi.metrics.PoolMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the metrics of a request and of a pool task as the server and the worker pool do.
+ * <p>
+ * Run with the allocation profiler ({@code -prof gc}), the {@code gc.alloc.rate.norm} of each benchmark is expected to be
+ * {@code 0} bytes per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Threads(4)
+@Fork(1)
+public class BuiltinMetricsBenchmark {
+
+  private NioEventLoopGroup eventLoopGroup;
+  private BuiltinVertxMetrics metrics;
+  private HttpServerMetrics<BuiltinVertxMetrics.Timing, Void, Void> serverMetrics;
+  private PoolMetrics<Object> poolMetrics;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    eventLoopGroup = new NioEventLoopGroup(1);
+    metrics = new BuiltinVertxMetrics(eventLoopGroup);
+    serverMetrics = metrics.createMetrics((HttpServer) null, null, null);
+    poolMetrics = (PoolMetrics<Object>) metrics.createMetrics(this, "benchmark-pool", 4);
+  }
+
+  @TearDown
+  public void tearDown() {
+    metrics.close();
+    eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  public void request() {
+    BuiltinVertxMetrics.Timing request = serverMetrics.requestBegin(null, null);
+    serverMetrics.bytesRead(null, null, 512);
+    serverMetrics.bytesWritten(null, null, 1024);
+    serverMetrics.responseEnd(request, null);
+  }
+
+  @Benchmark
+  public void poolTask() {
+    Object task = poolMetrics.taskSubmitted();
+    poolMetrics.taskBegin(task);
+    poolMetrics.taskEnd(task, true);
+  }
+}
@@ -0,0 +1,543 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.metrics.impl;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.Recycler;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.vertx.core.Handler;
+import io.vertx.core.datagram.DatagramSocket;
+import io.vertx.core.datagram.DatagramSocketOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetServerOptions;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.core.spi.metrics.DatagramSocketMetrics;
+import io.vertx.core.spi.metrics.HttpClientMetrics;
+import io.vertx.core.spi.metrics.HttpServerMetrics;
+import io.vertx.core.spi.metrics.PoolMetrics;
+import io.vertx.core.spi.metrics.TCPMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * The metrics used when the metrics are enabled and no {@link io.vertx.core.spi.VertxMetricsFactory} is found on the
+ * classpath.
+ * <p>
+ * It records the latency of the HTTP server and client requests, the wait and usage times of the pools, the lag of the
+ * event loops and the bytes read and written, and exposes them in the Prometheus text format with {@link #scrape()} or
+ * {@link #scrapeHandler()}.
+ * <p>
+ * The latencies are recorded in striped {@link LatencyHistogram} and the counts in {@link LongAdder}, they are only merged
+ * when the metrics are scraped. The request and task metrics are recycled, so recording does not allocate.
+ */
+public class BuiltinVertxMetrics extends DummyVertxMetrics {
+
+  public static final String EVENT_LOOP_LAG_INTERVAL_PROP_NAME = "vertx.eventLoopLagInterval";
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final long DEFAULT_EVENT_LOOP_LAG_INTERVAL = 100;
+  private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+  private static final Recycler<Timing> TIMINGS = new Recycler<Timing>() {
+    @Override
+    protected Timing newObject(Handle<Timing> handle) {
+      return new Timing(handle);
+    }
+  };
+
+  private final LatencyHistogram eventLoopLag = new LatencyHistogram();
+  private final List<ScheduledFuture<?>> lagProbes = new ArrayList<>();
+  private final HttpServerMetricsImpl httpServerMetrics = new HttpServerMetricsImpl();
+  private final HttpClientMetricsImpl httpClientMetrics = new HttpClientMetricsImpl();
+  private final TCPMetricsImpl netServerMetrics = new TCPMetricsImpl();
+  private final TCPMetricsImpl netClientMetrics = new TCPMetricsImpl();
+  private final DatagramMetricsImpl datagramMetrics = new DatagramMetricsImpl();
+  private final Map<String, PoolMetricsImpl> poolMetrics = new ConcurrentHashMap<>();
+
+  public BuiltinVertxMetrics(EventLoopGroup eventLoopGroup) {
+    this(eventLoopGroup, Long.getLong(EVENT_LOOP_LAG_INTERVAL_PROP_NAME, DEFAULT_EVENT_LOOP_LAG_INTERVAL));
+  }
+
+  /**
+   * @param eventLoopGroup the event loops which lag is measured
+   * @param lagInterval the interval in milliseconds between the measures of the lag of each event loop, {@code 0} to not
+   *                    measure the lag
+   */
+  public BuiltinVertxMetrics(EventLoopGroup eventLoopGroup, long lagInterval) {
+    if (lagInterval > 0) {
+      long intervalNanos = TimeUnit.MILLISECONDS.toNanos(lagInterval);
+      for (EventExecutor executor : eventLoopGroup) {
+        LagProbe probe = new LagProbe(intervalNanos);
+        lagProbes.add(executor.scheduleWithFixedDelay(probe, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS));
+      }
+    }
+  }
+
+  @Override
+  public HttpServerMetrics createMetrics(HttpServer server, SocketAddress localAddress, HttpServerOptions options) {
+    return httpServerMetrics;
+  }
+
+  @Override
+  public HttpClientMetrics createMetrics(HttpClient client, HttpClientOptions options) {
+    return httpClientMetrics;
+  }
+
+  @Override
+  public TCPMetrics createMetrics(NetServer server, SocketAddress localAddress, NetServerOptions options) {
+    return netServerMetrics;
+  }
+
+  @Override
+  public TCPMetrics createMetrics(NetClient client, NetClientOptions options) {
+    return netClientMetrics;
+  }
+
+  @Override
+  public DatagramSocketMetrics createMetrics(DatagramSocket socket, DatagramSocketOptions options) {
+    return datagramMetrics;
+  }
+
+  @Override
+  public <P> PoolMetrics<?> createMetrics(P pool, String poolName, int maxPoolSize) {
+    // Pools sharing a name, such as the client pools of a host, share the metrics until the last of them is closed
+    PoolMetricsImpl metrics = poolMetrics.compute(poolName, (name, existing) -> {
+      PoolMetricsImpl m = existing != null ? existing : new PoolMetricsImpl(name);
+      m.refCount++;
+      return m;
+    });
+    metrics.maxSize = maxPoolSize;
+    return metrics;
+  }
+
+  @Override
+  public void close() {
+    for (ScheduledFuture<?> probe : lagProbes) {
+      probe.cancel(false);
+    }
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  @Override
+  public boolean isMetricsEnabled() {
+    return true;
+  }
+
+  /**
+   * @return a request handler that responds with the {@link #scrape() scraped} metrics
+   */
+  public Handler<HttpServerRequest> scrapeHandler() {
+    return request -> request.response().putHeader("Content-Type", CONTENT_TYPE).end(scrape());
+  }
+
+  /**
+   * @return the current metrics in the Prometheus text format
+   */
+  public String scrape() {
+    StringBuilder sb = new StringBuilder(4096);
+    httpServerMetrics.writeTo(sb, "vertx_http_server");
+    httpClientMetrics.writeTo(sb, "vertx_http_client");
+    netServerMetrics.writeTo(sb, "vertx_net_server");
+    netClientMetrics.writeTo(sb, "vertx_net_client");
+    datagramMetrics.writeTo(sb, "vertx_datagram");
+    writeSummary(sb, "vertx_eventloop_lag_seconds", null, eventLoopLag.snapshot(), true);
+    List<PoolMetricsImpl> pools = new ArrayList<>(poolMetrics.values());
+    if (!pools.isEmpty()) {
+      // The samples of a metric are grouped together
+      writePoolSummary(sb, "vertx_pool_wait_seconds", pools, pool -> pool.waitTime);
+      writePoolSummary(sb, "vertx_pool_usage_seconds", pools, pool -> pool.usageTime);
+      writePoolValue(sb, "vertx_pool_queued", "gauge", pools, pool -> pool.queued.sum());
+      writePoolValue(sb, "vertx_pool_in_use", "gauge", pools, pool -> pool.inUse.sum());
+      writePoolValue(sb, "vertx_pool_max_size", "gauge", pools, pool -> pool.maxSize);
+      writePoolValue(sb, "vertx_pool_rejected_total", "counter", pools, pool -> pool.rejected.sum());
+      writePoolValue(sb, "vertx_pool_failed_total", "counter", pools, pool -> pool.failed.sum());
+    }
+    return sb.toString();
+  }
+
+  private static void writePoolSummary(StringBuilder sb, String name, List<PoolMetricsImpl> pools,
+                                       Function<PoolMetricsImpl, LatencyHistogram> histogram) {
+    writeType(sb, name, "summary");
+    for (PoolMetricsImpl pool : pools) {
+      writeSummary(sb, name, pool.labels, histogram.apply(pool).snapshot(), false);
+    }
+  }
+
+  private static void writePoolValue(StringBuilder sb, String name, String type, List<PoolMetricsImpl> pools,
+                                     ToLongFunction<PoolMetricsImpl> value) {
+    writeType(sb, name, type);
+    for (PoolMetricsImpl pool : pools) {
+      writeValue(sb, name, pool.labels, value.applyAsLong(pool), false, null);
+    }
+  }
+
+  private static void writeType(StringBuilder sb, String name, String type) {
+    sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void writeValue(StringBuilder sb, String name, String labels, double value, boolean withType, String type) {
+    if (withType) {
+      writeType(sb, name, type);
+    }
+    sb.append(name);
+    if (labels != null) {
+      sb.append('{').append(labels).append('}');
+    }
+    sb.append(' ').append(value).append('\n');
+  }
+
+  private static void writeSummary(StringBuilder sb, String name, String labels, LatencyHistogram.Snapshot snapshot, boolean withType) {
+    if (withType) {
+      writeType(sb, name, "summary");
+    }
+    for (double quantile : QUANTILES) {
+      sb.append(name).append('{');
+      if (labels != null) {
+        sb.append(labels).append(',');
+      }
+      sb.append("quantile=\"").append(quantile).append("\"} ").append(toSeconds(snapshot.valueAtQuantile(quantile))).append('\n');
+    }
+    writeValue(sb, name + "_sum", labels, toSeconds(snapshot.sum()), false, null);
+    writeValue(sb, name + "_count", labels, snapshot.count(), false, null);
+  }
+
+  private static double toSeconds(long nanos) {
+    return nanos / 1e9;
+  }
+
+  /**
+   * The start time of a request or a task, recycled once it has been recorded.
+   */
+  static final class Timing {
+
+    private final Recycler.Handle<Timing> handle;
+    private long submitted;
+    private long begin;
+
+    private Timing(Recycler.Handle<Timing> handle) {
+      this.handle = handle;
+    }
+
+    static Timing start() {
+      Timing timing = TIMINGS.get();
+      timing.begin = System.nanoTime();
+      return timing;
+    }
+
+    void recycle() {
+      handle.recycle(this);
+    }
+  }
+
+  /**
+   * Measures how late a task scheduled on an event loop runs, the event loop was busy during that time.
+   */
+  private class LagProbe implements Runnable {
+
+    private final long intervalNanos;
+    private long expected;
+
+    LagProbe(long intervalNanos) {
+      this.intervalNanos = intervalNanos;
+      this.expected = System.nanoTime() + intervalNanos;
+    }
+
+    @Override
+    public void run() {
+      eventLoopLag.record(System.nanoTime() - expected);
+      expected = System.nanoTime() + intervalNanos;
+    }
+  }
+
+  private static class TCPMetricsImpl implements TCPMetrics<Void> {
+
+    final LongAdder connections = new LongAdder();
+    final LongAdder bytesRead = new LongAdder();
+    final LongAdder bytesWritten = new LongAdder();
+    final LongAdder errors = new LongAdder();
+
+    @Override
+    public Void connected(SocketAddress remoteAddress, String remoteName) {
+      connections.increment();
+      return null;
+    }
+
+    @Override
+    public void disconnected(Void socketMetric, SocketAddress remoteAddress) {
+      connections.decrement();
+    }
+
+    @Override
+    public void bytesRead(Void socketMetric, SocketAddress remoteAddress, long numberOfBytes) {
+      bytesRead.add(numberOfBytes);
+    }
+
+    @Override
+    public void bytesWritten(Void socketMetric, SocketAddress remoteAddress, long numberOfBytes) {
+      bytesWritten.add(numberOfBytes);
+    }
+
+    @Override
+    public void exceptionOccurred(Void socketMetric, SocketAddress remoteAddress, Throwable t) {
+      errors.increment();
+    }
+
+    @Override
+    public void close() {
+      // Shared by the servers and clients of the same kind
+    }
+
+    @Override
+    public boolean isEnabled() {
+      return true;
+    }
+
+    void writeTo(StringBuilder sb, String prefix) {
+      writeValue(sb, prefix + "_connections", null, connections.sum(), true, "gauge");
+      writeValue(sb, prefix + "_bytes_read_total", null, bytesRead.sum(), true, "counter");
+      writeValue(sb, prefix + "_bytes_written_total", null, bytesWritten.sum(), true, "counter");
+      writeValue(sb, prefix + "_errors_total", null, errors.sum(), true, "counter");
+    }
+  }
+
+  private static class HttpServerMetricsImpl extends TCPMetricsImpl implements HttpServerMetrics<Timing, Void, Void> {
+
+    final LatencyHistogram requests = new LatencyHistogram();
+    final LongAdder resets = new LongAdder();
+
+    @Override
+    public Timing requestBegin(Void socketMetric, HttpServerRequest request) {
+      return Timing.start();
+    }
+
+    @Override
+    public void requestReset(Timing requestMetric) {
+      resets.increment();
+      requestMetric.recycle();
+    }
+
+    @Override
+    public Timing responsePushed(Void socketMetric, HttpMethod method, String uri, HttpServerResponse response) {
+      return Timing.start();
+    }
+
+    @Override
+    public void responseEnd(Timing requestMetric, HttpServerResponse response) {
+      requests.record(System.nanoTime() - requestMetric.begin);
+      requestMetric.recycle();
+    }
+
+    @Override
+    public Void upgrade(Timing requestMetric, ServerWebSocket serverWebSocket) {
+      // The request does not end with a response
+      requestMetric.recycle();
+      return null;
+    }
+
+    @Override
+    public Void connected(Void socketMetric, ServerWebSocket serverWebSocket) {
+      return null;
+    }
+
+    @Override
+    public void disconnected(Void serverWebSocketMetric) {
+    }
+
+    @Override
+    void writeTo(StringBuilder sb, String prefix) {
+      writeSummary(sb, prefix + "_requests_seconds", null, requests.snapshot(), true);
+      writeValue(sb, prefix + "_request_resets_total", null, resets.sum(), true, "counter");
+      super.writeTo(sb, prefix);
+    }
+  }
+
+  private static class HttpClientMetricsImpl extends TCPMetricsImpl implements HttpClientMetrics<Timing, Void, Void> {
+
+    final LatencyHistogram requests = new LatencyHistogram();
+    final LongAdder resets = new LongAdder();
+
+    @Override
+    public Timing requestBegin(Void socketMetric, SocketAddress localAddress, SocketAddress remoteAddress, HttpClientRequest request) {
+      return Timing.start();
+    }
+
+    @Override
+    public Timing responsePushed(Void socketMetric, SocketAddress localAddress, SocketAddress remoteAddress, HttpClientRequest request) {
+      return Timing.start();
+    }
+
+    @Override
+    public void requestReset(Timing requestMetric) {
+      resets.increment();
+      requestMetric.recycle();
+    }
+
+    @Override
+    public void responseEnd(Timing requestMetric, HttpClientResponse response) {
+      requests.record(System.nanoTime() - requestMetric.begin);
+      requestMetric.recycle();
+    }
+
+    @Override
+    public Void connected(Void socketMetric, WebSocket webSocket) {
+      return null;
+    }
+
+    @Override
+    public void disconnected(Void webSocketMetric) {
+    }
+
+    @Override
+    void writeTo(StringBuilder sb, String prefix) {
+      writeSummary(sb, prefix + "_requests_seconds", null, requests.snapshot(), true);
+      writeValue(sb, prefix + "_request_resets_total", null, resets.sum(), true, "counter");
+      super.writeTo(sb, prefix);
+    }
+  }
+
+  private static class DatagramMetricsImpl implements DatagramSocketMetrics {
+
+    final LongAdder bytesRead = new LongAdder();
+    final LongAdder bytesWritten = new LongAdder();
+    final LongAdder errors = new LongAdder();
+
+    @Override
+    public void listening(String localName, SocketAddress localAddress) {
+    }
+
+    @Override
+    public void bytesRead(Void socketMetric, SocketAddress remoteAddress, long numberOfBytes) {
+      bytesRead.add(numberOfBytes);
+    }
+
+    @Override
+    public void bytesWritten(Void socketMetric, SocketAddress remoteAddress, long numberOfBytes) {
+      bytesWritten.add(numberOfBytes);
+    }
+
+    @Override
+    public void exceptionOccurred(Void socketMetric, SocketAddress remoteAddress, Throwable t) {
+      errors.increment();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+      return true;
+    }
+
+    void writeTo(StringBuilder sb, String prefix) {
+      writeValue(sb, prefix + "_bytes_read_total", null, bytesRead.sum(), true, "counter");
+      writeValue(sb, prefix + "_bytes_written_total", null, bytesWritten.sum(), true, "counter");
+      writeValue(sb, prefix + "_errors_total", null, errors.sum(), true, "counter");
+    }
+  }
+
+  /**
+   * The wait time is measured from {@link #taskSubmitted()} to {@link #taskBegin}, so the {@link #taskWaited} notifications
+   * are not recorded again.
+   */
+  private class PoolMetricsImpl implements PoolMetrics<Timing> {
+
+    final String name;
+    final String labels;
+    final LatencyHistogram waitTime = new LatencyHistogram();
+    final LatencyHistogram usageTime = new LatencyHistogram();
+    final LongAdder queued = new LongAdder();
+    final LongAdder inUse = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    volatile int maxSize;
+    int refCount; // Guarded by the compute of the pool metrics map
+
+    PoolMetricsImpl(String name) {
+      this.name = name;
+      this.labels = "pool=\"" + name.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    @Override
+    public Timing taskSubmitted() {
+      Timing task = Timing.start();
+      task.submitted = task.begin;
+      queued.increment();
+      return task;
+    }
+
+    @Override
+    public void taskRejected(Timing task) {
+      queued.decrement();
+      rejected.increment();
+      task.recycle();
+    }
+
+    @Override
+    public void taskBegin(Timing task) {
+      queued.decrement();
+      inUse.increment();
+      task.begin = System.nanoTime();
+      waitTime.record(task.begin - task.submitted);
+    }
+
+    @Override
+    public void taskEnd(Timing task, boolean succeeded) {
+      inUse.decrement();
+      usageTime.record(System.nanoTime() - task.begin);
+      if (!succeeded) {
+        failed.increment();
+      }
+      task.recycle();
+    }
+
+    @Override
+    public boolean isEnabled() {
+      return true;
+    }
+
+    @Override
+    public void close() {
+      poolMetrics.computeIfPresent(name, (n, m) -> m != this || --m.refCount > 0 ? m : null);
+    }
+  }
+}
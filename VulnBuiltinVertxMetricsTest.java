@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.metrics.impl;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.core.spi.metrics.HttpServerMetrics;
+import io.vertx.core.spi.metrics.PoolMetrics;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BuiltinVertxMetricsTest {
+
+  private final NioEventLoopGroup eventLoopGroup = new NioEventLoopGroup(1);
+
+  @After
+  public void tearDown() {
+    eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testHistogramBuckets() {
+    for (long value = 0; value < 1_000_000; value += 7) {
+      int index = LatencyHistogram.bucketIndex(value);
+      long highest = LatencyHistogram.highestEquivalentValue(index);
+      assertTrue(highest >= value);
+      assertTrue(highest - value <= value / 16);
+      assertEquals(index, LatencyHistogram.bucketIndex(highest));
+    }
+    int last = LatencyHistogram.bucketIndex(LatencyHistogram.MAX_VALUE);
+    assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.highestEquivalentValue(last));
+  }
+
+  @Test
+  public void testHistogramQuantiles() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Thread other = new Thread(() -> {
+      for (int i = 1; i <= 500; i++) {
+        histogram.record(i * 1000);
+      }
+    });
+    other.start();
+    for (int i = 501; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+    other.join();
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(1002, snapshot.count());
+    assertEquals(500_500_000L + LatencyHistogram.MAX_VALUE, snapshot.sum());
+    assertEquals(500_000, snapshot.valueAtQuantile(0.5), 500_000 / 16);
+    assertEquals(990_000, snapshot.valueAtQuantile(0.99), 990_000 / 16);
+    assertEquals(0, snapshot.valueAtQuantile(0));
+    assertEquals(LatencyHistogram.MAX_VALUE, snapshot.max());
+  }
+
+  @Test
+  public void testHistogramSharedStripes() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    // More threads than stripes, so several threads record in the same buckets
+    Thread[] threads = new Thread[Runtime.getRuntime().availableProcessors() * 4 + 1];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 10_000; j++) {
+          histogram.record(1000);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(threads.length * 10_000L, snapshot.count());
+    assertEquals(threads.length * 10_000_000L, snapshot.sum());
+  }
+
+  @Test
+  public void testScrape() {
+    BuiltinVertxMetrics metrics = new BuiltinVertxMetrics(eventLoopGroup, 0);
+    @SuppressWarnings("unchecked")
+    HttpServerMetrics<BuiltinVertxMetrics.Timing, Void, Void> server = metrics.createMetrics((HttpServer) null, null, null);
+    server.connected((SocketAddress) null, null);
+    for (int i = 0; i < 10; i++) {
+      BuiltinVertxMetrics.Timing request = server.requestBegin(null, null);
+      server.bytesRead(null, null, 100);
+      server.responseEnd(request, null);
+      server.bytesWritten(null, null, 50);
+    }
+    server.requestReset(server.requestBegin(null, null));
+    @SuppressWarnings("unchecked")
+    PoolMetrics<Object> pool = (PoolMetrics<Object>) metrics.createMetrics(new Object(), "my-\"pool\"", 4);
+    Object task = pool.taskSubmitted();
+    pool.taskBegin(task);
+    pool.taskEnd(task, false);
+    pool.taskRejected(pool.taskSubmitted());
+    pool.taskSubmitted();
+    String text = metrics.scrape();
+    assertTrue(text, text.contains("# TYPE vertx_http_server_requests_seconds summary\n"));
+    assertTrue(text, text.contains("vertx_http_server_requests_seconds_count 10.0\n"));
+    assertTrue(text, text.contains("vertx_http_server_request_resets_total 1.0\n"));
+    assertTrue(text, text.contains("vertx_http_server_connections 1.0\n"));
+    assertTrue(text, text.contains("vertx_http_server_bytes_read_total 1000.0\n"));
+    assertTrue(text, text.contains("vertx_http_server_bytes_written_total 500.0\n"));
+    assertTrue(text, text.contains("vertx_pool_wait_seconds_count{pool=\"my-\\\"pool\\\"\"} 1.0\n"));
+    assertTrue(text, text.contains("vertx_pool_queued{pool=\"my-\\\"pool\\\"\"} 1.0\n"));
+    assertTrue(text, text.contains("vertx_pool_in_use{pool=\"my-\\\"pool\\\"\"} 0.0\n"));
+    assertTrue(text, text.contains("vertx_pool_max_size{pool=\"my-\\\"pool\\\"\"} 4.0\n"));
+    assertTrue(text, text.contains("vertx_pool_rejected_total{pool=\"my-\\\"pool\\\"\"} 1.0\n"));
+    assertTrue(text, text.contains("vertx_pool_failed_total{pool=\"my-\\\"pool\\\"\"} 1.0\n"));
+    assertSame(pool, metrics.createMetrics(new Object(), "my-\"pool\"", 4));
+    metrics.close();
+  }
+
+  @Test
+  public void testPoolMetricsAreRemovedOnClose() {
+    BuiltinVertxMetrics metrics = new BuiltinVertxMetrics(eventLoopGroup, 0);
+    String maxSize = "vertx_pool_max_size{pool=\"my-pool\"}";
+    PoolMetrics<?> first = metrics.createMetrics(new Object(), "my-pool", 4);
+    PoolMetrics<?> second = metrics.createMetrics(new Object(), "my-pool", 4);
+    assertSame(first, second);
+    first.close();
+    assertTrue(metrics.scrape().contains(maxSize));
+    second.close();
+    assertFalse(metrics.scrape().contains(maxSize));
+    PoolMetrics<?> third = metrics.createMetrics(new Object(), "my-pool", 4);
+    assertNotSame(first, third);
+    assertTrue(metrics.scrape().contains(maxSize));
+    // Closing stale metrics does not remove the metrics of a new pool
+    first.close();
+    assertTrue(metrics.scrape().contains(maxSize));
+    third.close();
+    assertFalse(metrics.scrape().contains(maxSize));
+    metrics.close();
+  }
+
+  @Test
+  public void testEventLoopLag() throws Exception {
+    BuiltinVertxMetrics metrics = new BuiltinVertxMetrics(eventLoopGroup, 10);
+    eventLoopGroup.execute(() -> {
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException ignore) {
+      }
+    });
+    long deadline = System.currentTimeMillis() + 10000;
+    while (true) {
+      String text = metrics.scrape();
+      String max = "vertx_eventloop_lag_seconds{quantile=\"0.999\"} ";
+      int index = text.indexOf(max) + max.length();
+      double lag = Double.parseDouble(text.substring(index, text.indexOf('\n', index)));
+      if (lag >= 0.1) {
+        break;
+      }
+      assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+    metrics.close();
+  }
+
+  @Test
+  public void testRequestDoesNotAllocate() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+    BuiltinVertxMetrics metrics = new BuiltinVertxMetrics(eventLoopGroup, 0);
+    @SuppressWarnings("unchecked")
+    HttpServerMetrics<BuiltinVertxMetrics.Timing, Void, Void> server = metrics.createMetrics((HttpServer) null, null, null);
+    for (int i = 0; i < 20_000; i++) {
+      request(server);
+    }
+    long id = Thread.currentThread().getId();
+    long before = threadBean.getThreadAllocatedBytes(id);
+    for (int i = 0; i < 100_000; i++) {
+      request(server);
+    }
+    long allocated = threadBean.getThreadAllocatedBytes(id) - before;
+    // Allow for the allocations of the JIT compilation and of the allocated bytes accounting
+    assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    metrics.close();
+  }
+
+  private static void request(HttpServerMetrics<BuiltinVertxMetrics.Timing, Void, Void> server) {
+    BuiltinVertxMetrics.Timing request = server.requestBegin(null, null);
+    server.bytesRead(null, null, 512);
+    server.bytesWritten(null, null, 1024);
+    server.responseEnd(request, null);
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.security.transport.filter;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.network.InetAddresses;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The ip filter rules of a single profile, compiled for fast matching. Rules that are plain addresses or CIDR blocks are indexed in a
+ * binary prefix trie per address family, every other rule (host name patterns, dotted subnet masks, bound addresses) is kept in a
+ * list that is scanned linearly. Matching returns the first rule, in declaration order, that matches the address which is exactly
+ * what a linear scan over all the rules would return.
+ *
+ * Instances are immutable apart from the verdict cache and are replaced as a whole when the rules change.
+ */
+final class CompiledIpFilterRules {
+
+    static final int VERDICT_CACHE_SIZE = 1024;
+
+    private static final String ALL = "_all";
+    private static final SecurityIpFilterRule NO_MATCH = new SecurityIpFilterRule(true, ALL);
+
+    private final SecurityIpFilterRule[] rules;
+    private final Node ipv4Root;
+    private final Node ipv6Root;
+    private final int[] linearRules;
+    @Nullable
+    private final AtomicReferenceArray<Verdict> verdicts;
+
+    private CompiledIpFilterRules(SecurityIpFilterRule[] rules, Node ipv4Root, Node ipv6Root, int[] linearRules, boolean cacheable) {
+        this.rules = rules;
+        this.ipv4Root = ipv4Root;
+        this.ipv6Root = ipv6Root;
+        this.linearRules = linearRules;
+        this.verdicts = cacheable ? new AtomicReferenceArray<>(VERDICT_CACHE_SIZE) : null;
+    }
+
+    /**
+     * Returns the first rule that matches the given address or {@code null} if no rule matches
+     */
+    @Nullable
+    SecurityIpFilterRule match(InetSocketAddress peerAddress) {
+        final InetAddress address = peerAddress.getAddress();
+        if (verdicts != null && address != null) {
+            final int slot = address.hashCode() & (VERDICT_CACHE_SIZE - 1);
+            final Verdict cached = verdicts.get(slot);
+            if (cached != null && cached.address.equals(address)) {
+                return cached.rule == NO_MATCH ? null : cached.rule;
+            }
+            final SecurityIpFilterRule rule = doMatch(peerAddress, address);
+            verdicts.set(slot, new Verdict(address, rule == null ? NO_MATCH : rule));
+            return rule;
+        }
+        return doMatch(peerAddress, address);
+    }
+
+    private SecurityIpFilterRule doMatch(InetSocketAddress peerAddress, @Nullable InetAddress address) {
+        if (address == null) {
+            // an unresolved address is not in the tries, but rules such as _all still match it
+            for (SecurityIpFilterRule rule : rules) {
+                if (rule.matches(peerAddress)) {
+                    return rule;
+                }
+            }
+            return null;
+        }
+        final int first = lookup(address instanceof Inet4Address ? ipv4Root : ipv6Root, address.getAddress());
+        for (int index : linearRules) {
+            if (index > first) {
+                break;
+            }
+            if (rules[index].matches(peerAddress)) {
+                return rules[index];
+            }
+        }
+        return first == Integer.MAX_VALUE ? null : rules[first];
+    }
+
+    /**
+     * Walks the trie along the bits of the address and returns the lowest rule index found on the way, i.e. the first declared rule
+     * whose prefix contains the address
+     */
+    private static int lookup(Node node, byte[] address) {
+        int first = Integer.MAX_VALUE;
+        final int bits = address.length * 8;
+        for (int depth = 0; node != null; depth++) {
+            first = Math.min(first, node.rule);
+            if (depth == bits) {
+                break;
+            }
+            node = bit(address, depth) == 0 ? node.zero : node.one;
+        }
+        return first;
+    }
+
+    private static int bit(byte[] address, int index) {
+        return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+
+    private static final class Node {
+        private Node zero;
+        private Node one;
+        private int rule = Integer.MAX_VALUE;
+    }
+
+    private static final class Verdict {
+        private final InetAddress address;
+        private final SecurityIpFilterRule rule;
+
+        private Verdict(InetAddress address, SecurityIpFilterRule rule) {
+            this.address = address;
+            this.rule = rule;
+        }
+    }
+
+    static final class Builder {
+
+        private final List<SecurityIpFilterRule> rules = new ArrayList<>();
+        private final List<Integer> linearRules = new ArrayList<>();
+        private final Node ipv4Root = new Node();
+        private final Node ipv6Root = new Node();
+        private boolean cacheable = true;
+
+        /**
+         * Adds a rule that only matches exact addresses, and therefore always gives the same verdict for the same address
+         */
+        Builder addAddressRule(SecurityIpFilterRule rule) {
+            linearRules.add(rules.size());
+            rules.add(rule);
+            return this;
+        }
+
+        /**
+         * Adds a rule parsed from the given value. Addresses and CIDR blocks go to the trie, anything else is matched linearly
+         */
+        Builder addRule(SecurityIpFilterRule rule, String value) {
+            final int index = rules.size();
+            rules.add(rule);
+            if (ALL.equals(value)) {
+                insert(ipv4Root, new byte[4], 0, index);
+                insert(ipv6Root, new byte[16], 0, index);
+                return this;
+            }
+            final Tuple<InetAddress, Integer> cidr = parseCidr(value);
+            if (cidr != null) {
+                final byte[] address = cidr.v1().getAddress();
+                insert(cidr.v1() instanceof Inet4Address ? ipv4Root : ipv6Root, address, cidr.v2(), index);
+            } else {
+                // host name patterns depend on name resolution so their verdicts must not be cached
+                linearRules.add(index);
+                cacheable = false;
+            }
+            return this;
+        }
+
+        CompiledIpFilterRules build() {
+            final int[] linear = new int[linearRules.size()];
+            for (int i = 0; i < linear.length; i++) {
+                linear[i] = linearRules.get(i);
+            }
+            return new CompiledIpFilterRules(rules.toArray(new SecurityIpFilterRule[rules.size()]), ipv4Root, ipv6Root, linear,
+                    cacheable);
+        }
+
+        private static void insert(Node node, byte[] address, int prefixLength, int index) {
+            for (int depth = 0; depth < prefixLength; depth++) {
+                if (bit(address, depth) == 0) {
+                    if (node.zero == null) {
+                        node.zero = new Node();
+                    }
+                    node = node.zero;
+                } else {
+                    if (node.one == null) {
+                        node.one = new Node();
+                    }
+                    node = node.one;
+                }
+            }
+            node.rule = Math.min(node.rule, index);
+        }
+
+        @Nullable
+        private static Tuple<InetAddress, Integer> parseCidr(String value) {
+            try {
+                if (value.indexOf('/') >= 0) {
+                    return InetAddresses.parseCidr(value);
+                } else if (InetAddresses.isInetAddress(value)) {
+                    final InetAddress address = InetAddresses.forString(value);
+                    return new Tuple<>(address, address.getAddress().length * 8);
+                }
+            } catch (IllegalArgumentException e) {
+                // not in CIDR notation, e.g. a dotted subnet mask, leave it to the rule itself
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.security.transport.filter;
+
+import org.elasticsearch.common.network.InetAddresses;
+import org.elasticsearch.common.network.NetworkAddress;
+import org.elasticsearch.test.ESTestCase;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class CompiledIpFilterRulesTests extends ESTestCase {
+
+    public void testFirstMatchingRuleWins() throws Exception {
+        CompiledIpFilterRules rules = new CompiledIpFilterRules.Builder()
+                .addRule(new SecurityIpFilterRule(true, "10.1.2.3"), "10.1.2.3")
+                .addRule(new SecurityIpFilterRule(true, "10.1.0.0/16"), "10.1.0.0/16")
+                .addRule(new SecurityIpFilterRule(false, "10.0.0.0/8"), "10.0.0.0/8")
+                .addRule(new SecurityIpFilterRule(false, "10.1.2.0/24"), "10.1.2.0/24")
+                .addRule(new SecurityIpFilterRule(false, "_all"), "_all")
+                .build();
+
+        assertThat(rules.match(address("10.1.2.3")).toString(), containsString("10.1.2.3"));
+        assertThat(rules.match(address("10.1.2.4")).toString(), containsString("10.1.0.0/16"));
+        assertThat(rules.match(address("10.2.2.4")).toString(), containsString("10.0.0.0/8"));
+        assertThat(rules.match(address("192.168.0.1")).toString(), containsString("_all"));
+        assertThat(rules.match(address("::1")).toString(), containsString("_all"));
+    }
+
+    public void testNoMatch() throws Exception {
+        CompiledIpFilterRules rules = new CompiledIpFilterRules.Builder()
+                .addRule(new SecurityIpFilterRule(false, "10.0.0.0/8"), "10.0.0.0/8")
+                .addRule(new SecurityIpFilterRule(false, "fe80::/10"), "fe80::/10")
+                .build();
+        for (int i = 0; i < 2; i++) {
+            // the second round is served by the verdict cache
+            assertThat(rules.match(address("11.0.0.1")), nullValue());
+            assertThat(rules.match(address("fe00::1")), nullValue());
+        }
+    }
+
+    public void testUnresolvedAddressMatchesAll() throws Exception {
+        CompiledIpFilterRules rules = new CompiledIpFilterRules.Builder()
+                .addRule(new SecurityIpFilterRule(true, "10.0.0.0/8"), "10.0.0.0/8")
+                .addRule(new SecurityIpFilterRule(false, "_all"), "_all")
+                .build();
+        assertThat(rules.match(InetSocketAddress.createUnresolved("localhost", 9300)).toString(), containsString("_all"));
+    }
+
+    public void testMatchesLinearScan() throws Exception {
+        final List<SecurityIpFilterRule> linear = new ArrayList<>();
+        final CompiledIpFilterRules.Builder builder = new CompiledIpFilterRules.Builder();
+        final int numRules = randomIntBetween(1, 200);
+        for (int i = 0; i < numRules; i++) {
+            final String value;
+            if (rarely()) {
+                value = "_all";
+            } else if (randomBoolean()) {
+                value = NetworkAddress.format(randomIpv4()) + "/" + randomIntBetween(8, 32);
+            } else {
+                value = NetworkAddress.format(randomIpv6()) + "/" + randomIntBetween(16, 128);
+            }
+            final SecurityIpFilterRule rule = new SecurityIpFilterRule(randomBoolean(), value);
+            linear.add(rule);
+            builder.addRule(rule, value);
+        }
+        final CompiledIpFilterRules compiled = builder.build();
+
+        for (int i = 0; i < 1000; i++) {
+            final InetSocketAddress peer;
+            if (rarely()) {
+                peer = InetSocketAddress.createUnresolved("localhost", 9300);
+            } else {
+                peer = new InetSocketAddress(randomBoolean() ? randomIpv4() : randomIpv6(), 9300);
+            }
+            SecurityIpFilterRule expected = null;
+            for (SecurityIpFilterRule rule : linear) {
+                if (rule.matches(peer)) {
+                    expected = rule;
+                    break;
+                }
+            }
+            assertThat(compiled.match(peer), sameInstance(expected));
+        }
+    }
+
+    private InetAddress randomIpv4() {
+        // a small address space so that the random rules actually overlap
+        return InetAddresses.forString("10." + randomIntBetween(0, 3) + "." + randomIntBetween(0, 255) + "." + randomIntBetween(0, 255));
+    }
+
+    private InetAddress randomIpv6() {
+        return InetAddresses.forString("fd00::" + Integer.toHexString(randomIntBetween(0, 3)) + ":" +
+                Integer.toHexString(randomIntBetween(0, 0xffff)));
+    }
+
+    private static InetSocketAddress address(String address) {
+        return new InetSocketAddress(InetAddresses.forString(address), 9300);
+    }
+}
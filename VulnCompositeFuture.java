@@ -132,6 +132,11 @@ public interface CompositeFuture extends Future<CompositeFuture> {
   @Override
   CompositeFuture setHandler(Handler<AsyncResult<CompositeFuture>> handler);
 
+  @Override
+  default CompositeFuture addHandler(Handler<AsyncResult<CompositeFuture>> handler) {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support several handlers");
+  }
+
   /**
    * Returns a cause of a wrapped future
    *
@@ -245,6 +245,20 @@ public abstract class ConnectionBase {
     return writeFuture;
   }
 
+  /**
+   * Sends a file of the {@link FileCache}, the written region or chunks hold a reference on the entry while they are sent.
+   */
+  public ChannelFuture sendFile(FileCache.Entry file, long offset, long length) throws IOException {
+    // Write the content.
+    if (!supportsFileRegion()) {
+      // Cannot use zero-copy
+      return writeToChannel(file.chunked(offset, length, 8192));
+    } else {
+      // No encryption - use zero-copy.
+      return writeToChannel(file.region(offset, length));
+    }
+  }
+
   public X509Certificate[] getPeerCertificateChain() throws SSLPeerUnverifiedException {
     if (isSSL()) {
       ChannelHandlerContext sslHandlerContext = channel.pipeline().context("ssl");
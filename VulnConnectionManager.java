@@ -50,12 +50,14 @@ import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.net.impl.AsyncResolveBindConnectHelper;
 import io.vertx.core.net.impl.PartialPooledByteBufAllocator;
 import io.vertx.core.net.impl.SSLHelper;
+import io.vertx.core.spi.metrics.PoolMetrics;
 
 import javax.net.ssl.SSLHandshakeException;
-import java.util.ArrayDeque;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -102,6 +104,7 @@ public class ConnectionManager {
         connQueue = new ConnQueue(version, this, address);
         ConnQueue prev = queueMap.putIfAbsent(address, connQueue);
         if (prev != null) {
+          connQueue.closeMetrics();
           connQueue = prev;
         }
       }
@@ -185,10 +188,13 @@ public class ConnectionManager {
 
     private final QueueManager mgr;
     private final TargetAddress address;
-    private final Queue<Waiter> waiters = new ArrayDeque<>();
-    private Pool<? extends HttpClientConnection> pool;
-    private int connCount;
+    private final Queue<PendingWaiter> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waiterCount = new AtomicInteger();
+    private final AtomicInteger connCount = new AtomicInteger();
+    final PoolMetrics<Object> metrics;
+    private volatile Pool<? extends HttpClientConnection> pool;
 
+    @SuppressWarnings("unchecked")
     ConnQueue(HttpVersion version, QueueManager mgr, TargetAddress address) {
       this.address = address;
       this.mgr = mgr;
@@ -197,55 +203,122 @@ public class ConnectionManager {
       } else {
         pool = new Http1xPool(client, options, this, mgr.connectionMap, version);
       }
+      this.metrics = vertx.isMetricsEnabled() ?
+          (PoolMetrics<Object>) vertx.metricsSPI().createMetrics(this, "vert.x-http-client-pool-" + address.host + ":" + address.port, pool.maxSockets) : null;
     }
 
-    public synchronized void getConnection(Waiter waiter) {
-      boolean served = pool.getConnection(waiter);
-      if (!served) {
-        if (connCount == pool.maxSockets) {
-          // Wait in queue
-          if (maxWaitQueueSize < 0 || waiters.size() < maxWaitQueueSize) {
-            waiters.add(waiter);
-          } else {
-            waiter.handleFailure(new ConnectionPoolTooBusyException("Connection pool reached max wait queue size of " + maxWaitQueueSize));
-          }
-        } else {
+    /**
+     * Serves the waiter with a pooled connection, a new connection or queues it. None of these take a lock: the connection count
+     * is reserved with a CAS and after a waiter is queued the queue is checked again for connections that were recycled or
+     * closed in the meantime, so that a waiter can't miss them.
+     */
+    public void getConnection(Waiter waiter) {
+      if (pool.getConnection(waiter)) {
+        return;
+      }
+      while (true) {
+        int count = connCount.get();
+        if (count >= pool.maxSockets) {
+          break;
+        }
+        if (connCount.compareAndSet(count, count + 1)) {
           // Create a new connection
           createNewConnection(waiter);
+          return;
         }
       }
+      // Wait in queue
+      int waiting = waiterCount.incrementAndGet();
+      if (maxWaitQueueSize >= 0 && waiting > maxWaitQueueSize) {
+        waiterCount.decrementAndGet();
+        waiter.handleFailure(new ConnectionPoolTooBusyException("Connection pool reached max wait queue size of " + maxWaitQueueSize));
+        return;
+      }
+      waiters.add(new PendingWaiter(waiter, metrics != null ? metrics.taskSubmitted() : null));
+      pool.checkPending();
+      checkCapacity();
     }
 
     void closeAllConnections() {
       pool.closeAllConnections();
+      closeMetrics();
+    }
+
+    void closeMetrics() {
+      if (metrics != null) {
+        metrics.close();
+      }
     }
 
     private void createNewConnection(Waiter waiter) {
-      connCount++;
       internalConnect(pool.version(), address.host, address.port, waiter);
     }
 
+    /**
+     * Creates connections for the waiters as long as the pool is not full
+     */
+    private void checkCapacity() {
+      while (!waiters.isEmpty()) {
+        int count = connCount.get();
+        if (count >= pool.maxSockets) {
+          return;
+        }
+        if (connCount.compareAndSet(count, count + 1)) {
+          Waiter waiter = getNextWaiter();
+          if (waiter == null) {
+            // the waiters were served concurrently, check again as a waiter may have been queued before the slot is released
+            connCount.decrementAndGet();
+          } else {
+            createNewConnection(waiter);
+          }
+        }
+      }
+    }
+
+    /**
+     * @return the number of connections, including the ones being connected
+     */
+    int connectionCount() {
+      return connCount.get();
+    }
+
+    boolean hasWaiters() {
+      return !waiters.isEmpty();
+    }
+
     /**
      * @return the next non-canceled waiters in the queue
      */
     Waiter getNextWaiter() {
-      Waiter waiter = waiters.poll();
-      while (waiter != null && waiter.isCancelled()) {
-        waiter = waiters.poll();
+      PendingWaiter pending;
+      while ((pending = waiters.poll()) != null) {
+        waiterCount.decrementAndGet();
+        if (pending.waiter.isCancelled()) {
+          if (metrics != null) {
+            metrics.taskRejected(pending.task);
+          }
+        } else {
+          if (metrics != null) {
+            metrics.taskWaited(pending.task, System.nanoTime() - pending.queuedNanos);
+            metrics.taskBegin(pending.task);
+            metrics.taskEnd(pending.task, true);
+          }
+          return pending.waiter;
+        }
       }
-      return waiter;
+      return null;
     }
 
     // Called if the connection is actually closed OR the connection attempt failed
-    public synchronized void connectionClosed() {
-      connCount--;
-      Waiter waiter = getNextWaiter();
-      if (waiter != null) {
-        // There's a waiter - so it can have a new connection
-        createNewConnection(waiter);
-      } else if (connCount == 0) {
+    public void connectionClosed() {
+      connCount.decrementAndGet();
+      // There may be waiters - so they can have a new connection
+      checkCapacity();
+      if (connCount.get() == 0 && waiters.isEmpty()) {
         // No waiters and no connections - remove the ConnQueue
-        mgr.queueMap.remove(address);
+        if (mgr.queueMap.remove(address, this)) {
+          closeMetrics();
+        }
       }
     }
 
@@ -410,9 +483,7 @@ public class ConnectionManager {
 
     private void fallbackToHttp1x(Channel ch, ContextImpl context, HttpVersion fallbackVersion, int port, String host, Waiter waiter) {
       // change the pool to Http1xPool
-      synchronized (this) {
-        pool = new Http1xPool(client, options, this, mgr.connectionMap, fallbackVersion);
-      }
+      pool = new Http1xPool(client, options, this, mgr.connectionMap, fallbackVersion);
       applyHttp1xConnectionOptions(ch.pipeline(), context);
       http1xConnected(fallbackVersion, context, port, host, ch, waiter);
     }
@@ -489,9 +560,24 @@ public class ConnectionManager {
     }
   }
 
+  /**
+   * A waiter in the connection queue
+   */
+  private static final class PendingWaiter {
+
+    final Waiter waiter;
+    final Object task;
+    final long queuedNanos = System.nanoTime();
+
+    PendingWaiter(Waiter waiter, Object task) {
+      this.waiter = waiter;
+      this.task = task;
+    }
+  }
+
   static abstract class Pool<C extends HttpClientConnection> {
 
-    // Pools must locks on the queue object to keep a single lock
+    // The queue does not lock, pools that need to lock must lock on the queue object to keep a single lock
     final ConnQueue queue;
     final int maxSockets;
 
@@ -506,6 +592,11 @@ public class ConnectionManager {
 
     abstract void closeAllConnections();
 
+    /**
+     * Serves the waiters of the queue with the connections that are available in the pool, called after a waiter was queued.
+     */
+    abstract void checkPending();
+
     abstract void recycle(C conn);
 
     abstract HttpClientStream createStream(C conn) throws Exception;
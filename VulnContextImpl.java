@@ -128,11 +128,16 @@ public abstract class ContextImpl implements ContextInternal {
   @Override
   public WorkerExecutor createWorkerExecutor() {
     Executor orderedExecutor = workerPool.createOrderedExecutor();
+    LaneExecutor lanes = new LaneExecutor(workerPool.executor());
     return new WorkerExecutor() {
       @Override
       public <T> void executeBlocking(Handler<Future<T>> blockingCodeHandler, boolean ordered, Handler<AsyncResult<T>> asyncResultHandler) {
         ContextImpl.this.executeBlocking(null, blockingCodeHandler, asyncResultHandler, ordered ? orderedExecutor :  workerPool.executor(), workerPool.metrics());
       }
+      @Override
+      public <T> void executeBlocking(String orderingKey, Handler<Future<T>> blockingCodeHandler, Handler<AsyncResult<T>> asyncResultHandler) {
+        ContextImpl.this.executeBlocking(null, blockingCodeHandler, asyncResultHandler, task -> lanes.execute(orderingKey, task), workerPool.metrics());
+      }
     };
   }
 
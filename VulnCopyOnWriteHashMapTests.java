@@ -0,0 +1,137 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.collect;
+
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class CopyOnWriteHashMapTests extends ElasticsearchTestCase {
+
+    private static class O {
+
+        private final int value, hashCode;
+
+        O(int value, int hashCode) {
+            super();
+            this.value = value;
+            this.hashCode = hashCode;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null || !(obj instanceof O)) {
+                return false;
+            }
+            return value == ((O) obj).value && hashCode == ((O) obj).hashCode;
+        }
+    }
+
+    @Test
+    public void testDuel() {
+        final int iters = scaledRandomIntBetween(2, 5);
+        for (int iter = 0; iter < iters; ++iter) {
+            final int valueBits = randomIntBetween(1, 30);
+            final int hashBits = randomInt(valueBits);
+            // we compute the total number of ops based on the bits of the hash
+            // since the test is much heavier when few bits are used for the hash
+            final int numOps = randomInt(10 + hashBits * 100);
+
+            Map<O, Integer> ref = new HashMap<>();
+            CopyOnWriteHashMap<O, Integer> map = new CopyOnWriteHashMap<>();
+            assertEquals(ref, map);
+            final int hashBase = randomInt();
+            for (int i = 0; i < numOps; ++i) {
+                final int v = randomInt(1 << valueBits);
+                final int h = (v & ((1 << hashBits) - 1)) ^ hashBase;
+                O key = new O(v, h);
+
+                Map<O, Integer> newRef = new HashMap<>(ref);
+                final CopyOnWriteHashMap<O, Integer> newMap;
+
+                if (randomBoolean()) {
+                    // ADD
+                    Integer value = v;
+                    newRef.put(key, value);
+                    newMap = map.copyAndPut(key, value);
+                } else {
+                    // REMOVE
+                    final Integer removed = newRef.remove(key);
+                    newMap = map.copyAndRemove(key);
+                    if (removed == null) {
+                        assertThat(newMap, sameInstance(map));
+                    }
+                }
+
+                assertEquals(ref, map); // make sure that the old copy has not been modified
+                assertEquals(newRef, newMap);
+                assertEquals(newMap, newRef);
+
+                ref = newRef;
+                map = newMap;
+            }
+            assertEquals(ref, CopyOnWriteHashMap.copyOf(ref));
+            assertEquals(ImmutableMap.of(), CopyOnWriteHashMap.copyOf(ref).copyAndRemoveAll(ref.keySet()));
+        }
+    }
+
+    @Test
+    public void testCollision() {
+        CopyOnWriteHashMap<O, Integer> map = new CopyOnWriteHashMap<>();
+        map = map.copyAndPut(new O(3, 0), 2);
+        assertThat(map.get(new O(3, 0)), equalTo(2));
+        assertThat(map.get(new O(5, 0)), nullValue());
+
+        map = map.copyAndPut(new O(5, 0), 5);
+        assertThat(map.get(new O(3, 0)), equalTo(2));
+        assertThat(map.get(new O(5, 0)), equalTo(5));
+
+        map = map.copyAndRemove(new O(3, 0));
+        assertThat(map.get(new O(3, 0)), nullValue());
+        assertThat(map.get(new O(5, 0)), equalTo(5));
+
+        map = map.copyAndRemove(new O(5, 0));
+        assertThat(map.get(new O(3, 0)), nullValue());
+        assertThat(map.get(new O(5, 0)), nullValue());
+        assertThat(map.size(), equalTo(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedNullKey() {
+        new CopyOnWriteHashMap<String, String>().copyAndPut(null, "b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedNullValue() {
+        new CopyOnWriteHashMap<String, String>().copyAndPut("a", null);
+    }
+}
@@ -16,7 +16,11 @@
 package io.vertx.core.datagram.impl;
 
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
 import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DatagramPacket;
@@ -42,14 +46,30 @@ import io.vertx.core.spi.metrics.MetricsProvider;
 import io.vertx.core.spi.metrics.NetworkMetrics;
 
 import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 /**
+ * The packets sent during an event loop iteration are written to the channel and flushed once at the end of the iteration,
+ * the packets sent from other threads are written on the event loop.
+ * <p>
+ * When a {@link #batchHandler(Handler) batch handler} is set, up to {@link #MAX_BATCH_SIZE} packets are read from the
+ * channel at once and delivered together to the batch handler.
+ *
  * @author <a href="mailto:nmaurer@redhat.com">Norman Maurer</a>
  */
 public class DatagramSocketImpl extends ConnectionBase implements DatagramSocket, MetricsProvider {
 
+  /**
+   * The max number of packets read at once and delivered to the batch handler
+   */
+  public static final int MAX_BATCH_SIZE = 32;
+
   private Handler<io.vertx.core.datagram.DatagramPacket> packetHandler;
+  private Handler<List<io.vertx.core.datagram.DatagramPacket>> batchHandler;
+  private List<io.vertx.core.datagram.DatagramPacket> batch;
+  private boolean flushScheduled; // Only accessed from the event loop
 
   public DatagramSocketImpl(VertxInternal vertx, DatagramSocketOptions options) {
     super(vertx, createChannel(options.isIpV6() ? io.vertx.core.datagram.impl.InternetProtocolFamily.IPv6 : io.vertx.core.datagram.impl.InternetProtocolFamily.IPv4,
@@ -60,6 +80,14 @@ public class DatagramSocketImpl extends ConnectionBase implements DatagramSocket
     }
     channel().config().setOption(ChannelOption.DATAGRAM_CHANNEL_ACTIVE_ON_REGISTRATION, true);
     context.nettyEventLoop().register(channel);
+    channel.pipeline().addLast("batch", new ChannelInboundHandlerAdapter() {
+      @Override
+      public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        // All the packets of the read are handled
+        ctx.fireChannelReadComplete();
+        handleBatch();
+      }
+    });
     channel.pipeline().addLast("handler", new DatagramServerHandler(this));
     channel().config().setMaxMessagesPerRead(1);
   }
@@ -166,6 +194,21 @@ public class DatagramSocketImpl extends ConnectionBase implements DatagramSocket
     return this;
   }
 
+  /**
+   * Set a handler receiving the packets in batches instead of the {@link #handler(Handler) packet handler}, a batch holds the
+   * packets that were read at once from the channel. Pausing the socket stops the reads, the packets of the batch being
+   * read are still delivered.
+   *
+   * @param handler the batch handler
+   * @return a reference to this, so the API can be used fluently
+   */
+  public synchronized DatagramSocketImpl batchHandler(Handler<List<io.vertx.core.datagram.DatagramPacket>> handler) {
+    this.batchHandler = handler;
+    // Reading a single packet at once lets pause take effect at the next packet
+    channel().config().setMaxMessagesPerRead(handler != null ? MAX_BATCH_SIZE : 1);
+    return this;
+  }
+
   @Override
   public synchronized DatagramSocket endHandler(Handler<Void> endHandler) {
     this.closeHandler = endHandler;
@@ -241,10 +284,40 @@ public class DatagramSocketImpl extends ConnectionBase implements DatagramSocket
   }
 
   private void doSend(Buffer packet, InetSocketAddress addr, Handler<AsyncResult<DatagramSocket>> handler) {
-    ChannelFuture future = channel().writeAndFlush(new DatagramPacket(packet.getByteBuf(), addr));
+    ChannelFuture future = write(new DatagramPacket(packet.getByteBuf(), addr));
     addListener(future, handler);
   }
 
+  private ChannelFuture write(DatagramPacket packet) {
+    EventLoop eventLoop = channel.eventLoop();
+    if (eventLoop.inEventLoop()) {
+      ChannelFuture future = channel.write(packet);
+      scheduleFlush();
+      return future;
+    }
+    // A packet written after the scheduled flush started must schedule another flush, so the write and the flush
+    // scheduling happen together on the event loop
+    ChannelPromise promise = channel.newPromise();
+    eventLoop.execute(() -> {
+      channel.write(packet, promise);
+      scheduleFlush();
+    });
+    return promise;
+  }
+
+  private void scheduleFlush() {
+    if (!flushScheduled) {
+      flushScheduled = true;
+      // Runs after the writes of the current event loop iteration
+      channel.eventLoop().execute(this::flushPackets);
+    }
+  }
+
+  private void flushPackets() {
+    flushScheduled = false;
+    channel.flush();
+  }
+
   @Override
   public PacketWritestream sender(int port, String host) {
     Arguments.requireInRange(port, 0, 65535, "port p must be in range 0 <= p <= 65535");
@@ -352,11 +425,37 @@ public class DatagramSocketImpl extends ConnectionBase implements DatagramSocket
     if (metrics.isEnabled()) {
       metrics.bytesRead(null, packet.sender(), packet.data().length());
     }
-    if (packetHandler != null) {
+    if (batchHandler != null) {
+      if (batch == null) {
+        batch = new ArrayList<>();
+      }
+      batch.add(packet);
+    } else if (packetHandler != null) {
       packetHandler.handle(packet);
     }
   }
 
+  private void handleBatch() {
+    Handler<List<io.vertx.core.datagram.DatagramPacket>> handler;
+    Handler<io.vertx.core.datagram.DatagramPacket> packetHandler;
+    List<io.vertx.core.datagram.DatagramPacket> packets;
+    synchronized (this) {
+      handler = batchHandler;
+      packetHandler = this.packetHandler;
+      packets = batch;
+      batch = null;
+    }
+    if (packets == null) {
+      return;
+    }
+    if (handler != null) {
+      context.executeFromIO(() -> handler.handle(packets));
+    } else if (packetHandler != null) {
+      // The batch handler was unset during the read
+      context.executeFromIO(() -> packets.forEach(packetHandler::handle));
+    }
+  }
+
   @Override
   protected void handleInterestedOpsChanged() {
   }
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.core.datagram.impl;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelPipeline;
+import io.vertx.core.Context;
+import io.vertx.core.datagram.DatagramPacket;
+import io.vertx.core.datagram.DatagramSocketOptions;
+import io.vertx.test.core.VertxTestBase;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class DatagramSocketImplTest extends VertxTestBase {
+
+  @Test
+  public void testSendFromEventLoopAndOtherThreads() throws Exception {
+    int num = 100;
+    Context context = vertx.getOrCreateContext();
+    DatagramSocketImpl peer1 = createSocket(context);
+    DatagramSocketImpl peer2 = createSocket(context);
+    List<String> fromEventLoop = Collections.synchronizedList(new ArrayList<>());
+    Set<String> fromThread = Collections.synchronizedSet(new HashSet<>());
+    peer1.handler(packet -> {
+      String data = packet.data().toString();
+      if (data.startsWith("loop-")) {
+        fromEventLoop.add(data);
+      } else {
+        fromThread.add(data);
+      }
+    });
+    listen(peer1);
+    context.runOnContext(v -> {
+      for (int i = 0; i < num; i++) {
+        peer2.send("loop-" + i, 1234, "127.0.0.1", null);
+      }
+    });
+    for (int i = 0; i < num; i++) {
+      peer2.send("thread-" + i, 1234, "127.0.0.1", null);
+    }
+    // A packet written while the previous flush runs is flushed as well
+    waitUntil(() -> fromEventLoop.size() == num && fromThread.size() == num);
+    // The sends from the event loop are not reordered by the deferred flush
+    for (int i = 0; i < num; i++) {
+      assertEquals("loop-" + i, fromEventLoop.get(i));
+    }
+    close(peer1);
+    close(peer2);
+  }
+
+  @Test
+  public void testBatchHandler() throws Exception {
+    int num = 2 * DatagramSocketImpl.MAX_BATCH_SIZE + 5;
+    Context context = vertx.getOrCreateContext();
+    DatagramSocketImpl peer1 = createSocket(context);
+    DatagramSocketImpl peer2 = createSocket(context);
+    List<String> received = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger maxBatchSize = new AtomicInteger();
+    peer1.batchHandler(batch -> {
+      assertTrue(batch.size() <= DatagramSocketImpl.MAX_BATCH_SIZE);
+      maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+      for (DatagramPacket packet : batch) {
+        received.add(packet.data().toString());
+      }
+    });
+    listen(peer1);
+    // Let the packets pile up in the socket so that a read returns a full batch
+    peer1.pause();
+    CountDownLatch sent = new CountDownLatch(num);
+    context.runOnContext(v -> {
+      for (int i = 0; i < num; i++) {
+        peer2.send("packet-" + i, 1234, "127.0.0.1", ar -> sent.countDown());
+      }
+    });
+    awaitLatch(sent);
+    Thread.sleep(100);
+    peer1.resume();
+    waitUntil(() -> received.size() == num);
+    for (int i = 0; i < num; i++) {
+      assertEquals("packet-" + i, received.get(i));
+    }
+    assertEquals(DatagramSocketImpl.MAX_BATCH_SIZE, maxBatchSize.get());
+    close(peer1);
+    close(peer2);
+  }
+
+  @Test
+  public void testSetBatchHandlerMidStream() throws Exception {
+    int num = 10;
+    Context context = vertx.getOrCreateContext();
+    DatagramSocketImpl peer1 = createSocket(context);
+    DatagramSocketImpl peer2 = createSocket(context);
+    List<String> received = Collections.synchronizedList(new ArrayList<>());
+    peer1.handler(packet -> received.add(packet.data().toString()));
+    listen(peer1);
+    context.runOnContext(v -> {
+      for (int i = 0; i < num; i++) {
+        peer2.send("packet-" + i, 1234, "127.0.0.1", null);
+      }
+    });
+    waitUntil(() -> received.size() == num);
+    peer1.batchHandler(batch -> batch.forEach(packet -> received.add(packet.data().toString())));
+    context.runOnContext(v -> {
+      for (int i = num; i < 2 * num; i++) {
+        peer2.send("packet-" + i, 1234, "127.0.0.1", null);
+      }
+    });
+    waitUntil(() -> received.size() == 2 * num);
+    for (int i = 0; i < 2 * num; i++) {
+      assertEquals("packet-" + i, received.get(i));
+    }
+    close(peer1);
+    close(peer2);
+  }
+
+  @Test
+  public void testUnsetBatchHandlerDuringRead() throws Exception {
+    Context context = vertx.getOrCreateContext();
+    DatagramSocketImpl socket = createSocket(context);
+    List<String> received = new ArrayList<>();
+    socket.handler(packet -> received.add(packet.data().toString()));
+    socket.batchHandler(batch -> fail());
+    context.runOnContext(v -> {
+      ChannelPipeline pipeline = socket.channel().pipeline();
+      InetSocketAddress address = new InetSocketAddress("127.0.0.1", 1234);
+      pipeline.fireChannelRead(new io.netty.channel.socket.DatagramPacket(Unpooled.copiedBuffer("hello", StandardCharsets.UTF_8), address, address));
+      // The packet of the read is buffered for the batch handler
+      assertEquals(Collections.emptyList(), received);
+      socket.batchHandler(null);
+      pipeline.fireChannelReadComplete();
+      assertEquals(Collections.singletonList("hello"), received);
+      testComplete();
+    });
+    await();
+    close(socket);
+  }
+
+  private DatagramSocketImpl createSocket(Context context) throws Exception {
+    AtomicReference<DatagramSocketImpl> socket = new AtomicReference<>();
+    CountDownLatch latch = new CountDownLatch(1);
+    context.runOnContext(v -> {
+      socket.set((DatagramSocketImpl) vertx.createDatagramSocket(new DatagramSocketOptions()));
+      latch.countDown();
+    });
+    awaitLatch(latch);
+    return socket.get();
+  }
+
+  private void listen(DatagramSocketImpl socket) throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    socket.listen(1234, "127.0.0.1", onSuccess(s -> latch.countDown()));
+    awaitLatch(latch);
+  }
+
+  private void close(DatagramSocketImpl socket) throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    socket.close(ar -> latch.countDown());
+    awaitLatch(latch);
+  }
+}
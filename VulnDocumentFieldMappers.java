@@ -33,7 +33,7 @@ import java.util.Set;
 public class DocumentFieldMappers implements Iterable<FieldMapper> {
 
     private final DocumentMapper docMapper;
-    private final FieldMappersLookup fieldMappers;
+    private volatile FieldMappersLookup fieldMappers;
 
     private volatile FieldNameAnalyzer indexAnalyzer;
     private volatile FieldNameAnalyzer searchAnalyzer;
@@ -48,7 +48,7 @@ public class DocumentFieldMappers implements Iterable<FieldMapper> {
     }
 
     public void addNewMappers(Iterable<FieldMapper> newMappers) {
-        fieldMappers.addNewMappers(newMappers);
+        this.fieldMappers = this.fieldMappers.copyAndAddAll(newMappers);
 
         final ImmutableOpenMap.Builder<String, Analyzer> indexAnalyzers = ImmutableOpenMap.builder(this.indexAnalyzer.analyzers());
         final ImmutableOpenMap.Builder<String, Analyzer> searchAnalyzers = ImmutableOpenMap.builder(this.searchAnalyzer.analyzers());
@@ -81,7 +81,7 @@ public class DocumentFieldMappers implements Iterable<FieldMapper> {
     }
 
     public boolean hasMapper(FieldMapper fieldMapper) {
-        return fieldMappers.mappers().contains(fieldMapper);
+        return fieldMappers.hasMapper(fieldMapper);
     }
 
     public FieldMappers name(String name) {
@@ -5,6 +5,7 @@
  */
 package org.elasticsearch.watcher.execution;
 
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
 import org.elasticsearch.ElasticsearchIllegalStateException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
@@ -12,7 +13,10 @@ import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.joda.time.DateTime;
+import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.watcher.WatcherException;
 import org.elasticsearch.watcher.actions.ActionWrapper;
@@ -35,6 +39,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.elasticsearch.common.joda.time.DateTimeZone.UTC;
@@ -50,6 +56,15 @@ public class ExecutionService extends AbstractComponent {
 
     private final AtomicBoolean started = new AtomicBoolean(false);
 
+    private final long tickMillis;
+    private final int batchSize;
+    // guards the pending events and the started flag when events are added, so that stop() saves all the events added before it
+    private final Object pendingEventsLock = new Object();
+    // the triggered watches that wait for the next tick, null if triggered watches are executed as they come in
+    private List<PendingEvent> pendingEvents;
+    private final MeanMetric tickLag = new MeanMetric();
+    private volatile Thread ticker;
+
     @Inject
     public ExecutionService(Settings settings, HistoryStore historyStore, WatchExecutor executor, WatchStore watchStore,
                             WatchLockService watchLockService, Clock clock) {
@@ -59,6 +74,13 @@ public class ExecutionService extends AbstractComponent {
         this.watchStore = watchStore;
         this.watchLockService = watchLockService;
         this.clock = clock;
+        // batching is opt-in, it delays the execution of the triggered watches by up to one tick
+        this.tickMillis = settings.getAsTime("watcher.execution.tick_interval", TimeValue.timeValueMillis(0)).millis();
+        this.batchSize = settings.getAsInt("watcher.execution.batch_size", 100);
+        if (batchSize <= 0) {
+            throw new ElasticsearchIllegalArgumentException("[watcher.execution.batch_size] must be greater than 0 but was [" + batchSize + "]");
+        }
+        this.pendingEvents = tickMillis > 0 ? new ArrayList<PendingEvent>() : null;
     }
 
     public void start(ClusterState state) {
@@ -71,6 +93,10 @@ public class ExecutionService extends AbstractComponent {
         if (started.compareAndSet(false, true)) {
             logger.debug("starting execution service");
             historyStore.start();
+            if (pendingEvents != null) {
+                ticker = EsExecutors.daemonThreadFactory(settings, "watcher_execution_ticker").newThread(new Ticker());
+                ticker.start();
+            }
             executeRecords(records);
             logger.debug("started execution service");
         }
@@ -81,8 +107,22 @@ public class ExecutionService extends AbstractComponent {
     }
 
     public void stop() {
-        if (started.compareAndSet(true, false)) {
+        boolean stopped;
+        synchronized (pendingEventsLock) {
+            stopped = started.compareAndSet(true, false);
+        }
+        if (stopped) {
             logger.debug("stopping execution service");
+            if (ticker != null) {
+                ticker.interrupt();
+                try {
+                    ticker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                ticker = null;
+                savePendingEvents();
+            }
             // We could also rely on the shutdown in #updateSettings call, but
             // this is a forceful shutdown that also interrupts the worker threads in the threadpool
             List<Runnable> cancelledTasks = new ArrayList<>();
@@ -105,10 +145,58 @@ public class ExecutionService extends AbstractComponent {
         return executor.largestPoolSize();
     }
 
+    /**
+     * The number of triggered watches that wait for the next tick to be saved and executed
+     */
+    public long pendingEventsCount() {
+        if (pendingEvents == null) {
+            return 0;
+        }
+        synchronized (pendingEventsLock) {
+            return pendingEvents.size();
+        }
+    }
+
+    /**
+     * The time, in milliseconds, the oldest triggered watch of every tick waited before its watch records were saved
+     */
+    public MeanMetric tickLag() {
+        return tickLag;
+    }
+
     void processEventsAsync(Iterable<TriggerEvent> events) throws WatcherException {
         if (!started.get()) {
             throw new ElasticsearchIllegalStateException("not started");
         }
+        if (pendingEvents == null) {
+            processEvents(events);
+            return;
+        }
+        // the events are saved and executed by the ticker, together with all the other events of the same tick
+        long now = clock.millis();
+        synchronized (pendingEventsLock) {
+            // checked again under the lock, once stop() has taken the lock no event is added that it would not save
+            if (!started.get()) {
+                throw new ElasticsearchIllegalStateException("not started");
+            }
+            for (TriggerEvent event : events) {
+                pendingEvents.add(new PendingEvent(event, now));
+            }
+        }
+    }
+
+    private List<PendingEvent> drainPendingEvents() {
+        synchronized (pendingEventsLock) {
+            if (pendingEvents.isEmpty()) {
+                return pendingEvents;
+            }
+            List<PendingEvent> drained = pendingEvents;
+            pendingEvents = new ArrayList<>();
+            return drained;
+        }
+    }
+
+    private void processEvents(Iterable<TriggerEvent> events) {
         final LinkedList<WatchRecord> records = new LinkedList<>();
         final LinkedList<TriggeredExecutionContext> contexts = new LinkedList<>();
 
@@ -170,6 +258,102 @@ public class ExecutionService extends AbstractComponent {
         }
     }
 
+    /**
+     * Saves and executes the events that were triggered since the previous tick. The watch records are saved in bulk requests of at
+     * most {@code batchSize} records, so that watches that share a schedule don't cost one request each. The saved watches of the tick
+     * are put in a shared queue and every saved batch submits a single task to the watcher thread pool that executes watches from that
+     * queue until it is empty. A tick with many triggered watches therefore only queues one task per batch, and a slow watch only holds
+     * back the task that executes it while the other tasks keep executing the rest of the tick.
+     */
+    void processDueEvents(long nowMillis) {
+        List<PendingEvent> due = drainPendingEvents();
+        if (due.isEmpty()) {
+            return;
+        }
+        long oldest = nowMillis;
+        for (PendingEvent pending : due) {
+            oldest = Math.min(oldest, pending.addedMillis);
+        }
+        tickLag.inc(nowMillis - oldest);
+
+        final Queue<WatchExecutionTask> tickTasks = new ConcurrentLinkedQueue<>();
+        DateTime now = clock.now(UTC);
+        for (int from = 0; from < due.size(); from += batchSize) {
+            final List<WatchRecord> records = new ArrayList<>();
+            final List<TriggeredExecutionContext> contexts = new ArrayList<>();
+            createRecords(due.subList(from, Math.min(from + batchSize, due.size())), now, records, contexts);
+            if (records.isEmpty()) {
+                continue;
+            }
+            logger.debug("saving batch of watch records [{}]", records.size());
+            historyStore.putAll(records, new ActionListener<List<Integer>>() {
+                @Override
+                public void onResponse(List<Integer> successFullSlots) {
+                    if (successFullSlots.isEmpty()) {
+                        return;
+                    }
+                    for (Integer slot : successFullSlots) {
+                        tickTasks.add(new WatchExecutionTask(contexts.get(slot), records.get(slot)));
+                    }
+                    try {
+                        executor.execute(new TickExecutionTask(tickTasks));
+                    } catch (EsRejectedExecutionException e) {
+                        // as many watches as this batch added are left without a task to execute them
+                        for (int i = 0; i < successFullSlots.size(); i++) {
+                            WatchExecutionTask task = tickTasks.poll();
+                            if (task == null) {
+                                break;
+                            }
+                            failRejected(task.watchRecord);
+                        }
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    Throwable cause = ExceptionsHelper.unwrapCause(e);
+                    if (cause instanceof EsRejectedExecutionException) {
+                        logger.debug("failed to store watch records due to overloaded threadpool [{}]", ExceptionsHelper.detailedMessage(e));
+                    } else {
+                        logger.warn("failed to store watch records", e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Saves the watch records of the events that wait for the next tick, so that the watches are executed when the service starts
+     * again, like the records of the queued executions that are cancelled on stop.
+     */
+    private void savePendingEvents() {
+        List<WatchRecord> records = new ArrayList<>();
+        createRecords(drainPendingEvents(), clock.now(UTC), records, new ArrayList<TriggeredExecutionContext>());
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            historyStore.putAll(records);
+            logger.debug("saved [{}] triggered watches that were waiting for the next tick", records.size());
+        } catch (Exception e) {
+            logger.warn("failed to save [{}] triggered watches that were waiting for the next tick", e, records.size());
+        }
+    }
+
+    private void createRecords(List<PendingEvent> events, DateTime now, List<WatchRecord> records,
+                               List<TriggeredExecutionContext> contexts) {
+        for (PendingEvent pending : events) {
+            Watch watch = watchStore.get(pending.event.jobName());
+            if (watch == null) {
+                logger.warn("unable to find watch [{}] in the watch store, perhaps it has been deleted", pending.event.jobName());
+                continue;
+            }
+            TriggeredExecutionContext ctx = new TriggeredExecutionContext(watch, now, pending.event);
+            contexts.add(ctx);
+            records.add(new WatchRecord(ctx.id(), watch, pending.event));
+        }
+    }
+
     void processEventsSync(Iterable<TriggerEvent> events) throws WatcherException {
         if (!started.get()) {
             throw new ElasticsearchIllegalStateException("not started");
@@ -238,12 +422,16 @@ public class ExecutionService extends AbstractComponent {
         try {
             executor.execute(new WatchExecutionTask(ctx, watchRecord));
         } catch (EsRejectedExecutionException e) {
-            logger.debug("failed to execute triggered watch [{}]", watchRecord.name());
-            watchRecord.update(WatchRecord.State.FAILED, "failed to run triggered watch [" + watchRecord.name() + "] due to thread pool capacity");
-            historyStore.update(watchRecord);
+            failRejected(watchRecord);
         }
     }
 
+    private void failRejected(WatchRecord watchRecord) {
+        logger.debug("failed to execute triggered watch [{}]", watchRecord.name());
+        watchRecord.update(WatchRecord.State.FAILED, "failed to run triggered watch [" + watchRecord.name() + "] due to thread pool capacity");
+        historyStore.update(watchRecord);
+    }
+
     WatchExecution executeInner(WatchExecutionContext ctx) throws IOException {
         Watch watch = ctx.watch();
 
@@ -349,4 +537,55 @@ public class ExecutionService extends AbstractComponent {
         }
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Executes the saved watches of a tick, one after the other, until there is none left
+     */
+    private final class TickExecutionTask implements Runnable {
+
+        private final Queue<WatchExecutionTask> tasks;
+
+        private TickExecutionTask(Queue<WatchExecutionTask> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        public void run() {
+            WatchExecutionTask task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private final class Ticker implements Runnable {
+
+        @Override
+        public void run() {
+            while (started.get()) {
+                try {
+                    // wake up at the start of the next tick
+                    Thread.sleep(tickMillis - (clock.millis() % tickMillis));
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    processDueEvents(clock.millis());
+                } catch (Exception e) {
+                    logger.warn("failed to process triggered watches", e);
+                }
+            }
+        }
+    }
+
+    private static final class PendingEvent {
+
+        private final TriggerEvent event;
+        private final long addedMillis;
+
+        private PendingEvent(TriggerEvent event, long addedMillis) {
+            this.event = event;
+            this.addedMillis = addedMillis;
+        }
+    }
+}
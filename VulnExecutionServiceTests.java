@@ -5,8 +5,13 @@
  */
 package org.elasticsearch.watcher.execution;
 
+import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.common.joda.time.DateTime;
 import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.test.ElasticsearchTestCase;
 import org.elasticsearch.watcher.actions.Action;
 import org.elasticsearch.watcher.actions.ActionWrapper;
@@ -16,6 +21,7 @@ import org.elasticsearch.watcher.condition.ExecutableCondition;
 import org.elasticsearch.watcher.condition.always.AlwaysCondition;
 import org.elasticsearch.watcher.condition.never.NeverCondition;
 import org.elasticsearch.watcher.history.HistoryStore;
+import org.elasticsearch.watcher.history.WatchRecord;
 import org.elasticsearch.watcher.input.ExecutableInput;
 import org.elasticsearch.watcher.input.Input;
 import org.elasticsearch.watcher.support.clock.Clock;
@@ -23,16 +29,26 @@ import org.elasticsearch.watcher.support.clock.ClockMock;
 import org.elasticsearch.watcher.throttle.Throttler;
 import org.elasticsearch.watcher.transform.ExecutableTransform;
 import org.elasticsearch.watcher.transform.Transform;
+import org.elasticsearch.watcher.trigger.TriggerEvent;
 import org.elasticsearch.watcher.trigger.schedule.ScheduleTriggerEvent;
 import org.elasticsearch.watcher.watch.*;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 
 import static org.elasticsearch.common.joda.time.DateTimeZone.UTC;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.*;
 
@@ -44,6 +60,11 @@ public class ExecutionServiceTests extends ElasticsearchTestCase {
     private ExecutableInput input;
     private Input.Result inputResult;
 
+    private HistoryStore historyStore;
+    private WatchExecutor executor;
+    private WatchStore watchStore;
+    private WatchLockService watchLockService;
+    private Clock clock;
     private ExecutionService executionService;
 
     @Before
@@ -54,11 +75,12 @@ public class ExecutionServiceTests extends ElasticsearchTestCase {
         when(inputResult.payload()).thenReturn(payload);
         when(input.execute(any(WatchExecutionContext.class))).thenReturn(inputResult);
 
-        HistoryStore historyStore = mock(HistoryStore.class);
-        WatchExecutor executor = mock(WatchExecutor.class);
-        WatchStore watchStore = mock(WatchStore.class);
-        WatchLockService watchLockService = mock(WatchLockService.class);
-        Clock clock = new ClockMock();
+        historyStore = mock(HistoryStore.class);
+        executor = mock(WatchExecutor.class);
+        when(executor.queue()).thenReturn(new ArrayBlockingQueue<Runnable>(1));
+        watchStore = mock(WatchStore.class);
+        watchLockService = mock(WatchLockService.class);
+        clock = new ClockMock();
         executionService = new ExecutionService(ImmutableSettings.EMPTY, historyStore, executor, watchStore, watchLockService, clock);
     }
 
@@ -200,4 +222,142 @@ public class ExecutionServiceTests extends ElasticsearchTestCase {
         verify(action, never()).execute(any(WatchExecutionContext.class));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testProcessDueEvents_savesAndExecutesInBatches() throws Exception {
+        ExecutionService service = startBatchingService(ImmutableSettings.builder()
+                .put("watcher.execution.tick_interval", "1h")
+                .put("watcher.execution.batch_size", 2)
+                .build());
+        saveAllRecords();
+
+        service.processEventsAsync(triggerEvents(5));
+        assertThat(service.pendingEventsCount(), is(5l));
+        verify(historyStore, never()).putAll(anyListOf(WatchRecord.class), any(ActionListener.class));
+
+        service.processDueEvents(clock.millis());
+        assertThat(service.pendingEventsCount(), is(0l));
+        assertThat(service.tickLag().count(), is(1l));
+        // the records are saved in bulk and every batch queues a single task
+        verify(historyStore, times(3)).putAll(anyListOf(WatchRecord.class), any(ActionListener.class));
+        verify(executor, times(3)).execute(any(Runnable.class));
+        service.stop();
+    }
+
+    @Test
+    public void testProcessDueEvents_tasksExecuteAllWatchesOfTheTick() throws Exception {
+        ExecutionService service = startBatchingService(ImmutableSettings.builder()
+                .put("watcher.execution.tick_interval", "1h")
+                .put("watcher.execution.batch_size", 2)
+                .build());
+        saveAllRecords();
+        when(watchLockService.acquire(anyString())).thenReturn(mock(WatchLockService.Lock.class));
+
+        service.processEventsAsync(triggerEvents(5));
+        service.processDueEvents(clock.millis());
+        ArgumentCaptor<Runnable> tasks = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor, times(3)).execute(tasks.capture());
+
+        // the first task executes all the watches of the tick, the others find nothing left to execute
+        tasks.getAllValues().get(0).run();
+        verify(watchLockService, times(5)).acquire(anyString());
+        tasks.getAllValues().get(1).run();
+        tasks.getAllValues().get(2).run();
+        verify(watchLockService, times(5)).acquire(anyString());
+        service.stop();
+    }
+
+    @Test
+    public void testProcessDueEvents_rejectedExecutionFailsTheRecord() throws Exception {
+        ExecutionService service = startBatchingService(ImmutableSettings.builder()
+                .put("watcher.execution.tick_interval", "1h")
+                .build());
+        saveAllRecords();
+        doThrow(new EsRejectedExecutionException("rejected")).when(executor).execute(any(Runnable.class));
+
+        service.processEventsAsync(triggerEvents(3));
+        service.processDueEvents(clock.millis());
+        verify(executor, times(1)).execute(any(Runnable.class));
+        verify(historyStore, times(3)).update(any(WatchRecord.class));
+        service.stop();
+    }
+
+    @Test
+    public void testStop_savesPendingEvents() throws Exception {
+        ExecutionService service = startBatchingService(ImmutableSettings.builder()
+                .put("watcher.execution.tick_interval", "1h")
+                .build());
+
+        service.processEventsAsync(triggerEvents(3));
+        service.stop();
+
+        // the records are executed when the service starts again
+        ArgumentCaptor<List> records = ArgumentCaptor.forClass(List.class);
+        InOrder inOrder = inOrder(historyStore);
+        inOrder.verify(historyStore).putAll(records.capture());
+        inOrder.verify(historyStore).stop();
+        assertThat(records.getValue().size(), is(3));
+        assertThat(service.pendingEventsCount(), is(0l));
+        verify(executor, never()).execute(any(Runnable.class));
+
+        // events that come in after stop are rejected rather than left unsaved
+        try {
+            service.processEventsAsync(triggerEvents(1));
+            fail("expected the events to be rejected");
+        } catch (ElasticsearchIllegalStateException e) {
+            assertThat(e.getMessage(), equalTo("not started"));
+        }
+        assertThat(service.pendingEventsCount(), is(0l));
+    }
+
+    @Test
+    public void testTicker_processesEventsAfterStart() throws Exception {
+        ExecutionService service = startBatchingService(ImmutableSettings.builder()
+                .put("watcher.execution.tick_interval", "10ms")
+                .build());
+        saveAllRecords();
+
+        service.processEventsAsync(triggerEvents(3));
+        verify(executor, timeout(10000).times(1)).execute(any(Runnable.class));
+        assertThat(service.pendingEventsCount(), is(0l));
+        service.stop();
+        verify(historyStore, never()).putAll(anyListOf(WatchRecord.class));
+    }
+
+    private ExecutionService startBatchingService(Settings settings) {
+        ExecutionService service = new ExecutionService(settings, historyStore, executor, watchStore, watchLockService, clock);
+        service.start(mock(ClusterState.class));
+        return service;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void saveAllRecords() {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                List<WatchRecord> records = (List<WatchRecord>) invocation.getArguments()[0];
+                List<Integer> slots = new ArrayList<>();
+                for (int i = 0; i < records.size(); i++) {
+                    slots.add(i);
+                }
+                ((ActionListener<List<Integer>>) invocation.getArguments()[1]).onResponse(slots);
+                return null;
+            }
+        }).when(historyStore).putAll(anyListOf(WatchRecord.class), any(ActionListener.class));
+    }
+
+    private List<TriggerEvent> triggerEvents(int count) {
+        ExecutableCondition condition = mock(ExecutableCondition.class);
+        List<TriggerEvent> events = new ArrayList<>();
+        DateTime now = DateTime.now(UTC);
+        for (int i = 0; i < count; i++) {
+            Watch watch = mock(Watch.class);
+            when(watch.id()).thenReturn("_id" + i);
+            when(watch.input()).thenReturn(input);
+            when(watch.condition()).thenReturn(condition);
+            when(watchStore.get("_id" + i)).thenReturn(watch);
+            events.add(new ScheduleTriggerEvent("_id" + i, now, now));
+        }
+        return events;
+    }
+
+}
@@ -18,10 +18,12 @@ package io.vertx.test.fakemetrics;
 
 import io.vertx.core.spi.metrics.PoolMetrics;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A fake implementation of the {@link PoolMetrics} SPI.
@@ -38,6 +40,10 @@ public class FakeThreadPoolMetrics implements PoolMetrics<Void> {
   private final AtomicInteger idle = new AtomicInteger();
   private final AtomicInteger waiting = new AtomicInteger();
   private final AtomicInteger running = new AtomicInteger();
+  private final AtomicInteger waited = new AtomicInteger();
+  private final AtomicLong waitTime = new AtomicLong();
+  private final AtomicInteger stolen = new AtomicInteger();
+  private final Map<Object, Long> resourceUsage = new ConcurrentHashMap<>();
   private final String name;
   private final AtomicBoolean closed = new AtomicBoolean();
 
@@ -82,6 +88,27 @@ public class FakeThreadPoolMetrics implements PoolMetrics<Void> {
     completed.incrementAndGet();
   }
 
+  @Override
+  public void taskWaited(Void task, long waitTimeNanos) {
+    waited.incrementAndGet();
+    waitTime.addAndGet(waitTimeNanos);
+  }
+
+  @Override
+  public void resourceStolen() {
+    stolen.incrementAndGet();
+  }
+
+  @Override
+  public void resourceUsage(Object resource, long usage) {
+    resourceUsage.put(resource, usage);
+  }
+
+  @Override
+  public void resourceRemoved(Object resource) {
+    resourceUsage.remove(resource);
+  }
+
   @Override
   public boolean isEnabled() {
     return true;
@@ -117,6 +144,22 @@ public class FakeThreadPoolMetrics implements PoolMetrics<Void> {
     return running.get();
   }
 
+  public int numberOfWaitedTasks() {
+    return waited.get();
+  }
+
+  public long totalWaitTime() {
+    return waitTime.get();
+  }
+
+  public int numberOfStolenResources() {
+    return stolen.get();
+  }
+
+  public Map<Object, Long> resourceUsage() {
+    return new HashMap<>(resourceUsage);
+  }
+
   public static Map<String, PoolMetrics> getThreadPoolMetrics() {
     return METRICS;
   }
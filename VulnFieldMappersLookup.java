@@ -20,132 +20,126 @@
 package org.elasticsearch.index.mapper;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 import com.google.common.collect.UnmodifiableIterator;
 import org.elasticsearch.common.Nullable;
-import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.collect.CopyOnWriteHashMap;
+import org.elasticsearch.common.collect.CopyOnWriteHashSet;
 import org.elasticsearch.common.regex.Regex;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 
 /**
  * A class that holds a map of field mappers from name, index name, and full name.
+ *
+ * Instances are immutable: updates return a new copy that shares most of its
+ * structure with the current one, so that the cost of an update is proportional
+ * to the number of changed mappers and readers never need to lock.
  */
 public class FieldMappersLookup implements Iterable<FieldMapper> {
 
-    private volatile ImmutableList<FieldMapper> mappers;
-    private volatile ImmutableOpenMap<String, FieldMappers> name;
-    private volatile ImmutableOpenMap<String, FieldMappers> indexName;
-    private volatile ImmutableOpenMap<String, FieldMappers> fullName;
+    private static CopyOnWriteHashMap<String, FieldMappers> add(CopyOnWriteHashMap<String, FieldMappers> map,
+                                                                String key, FieldMapper mapper) {
+        FieldMappers mappers = map.get(key);
+        if (mappers == null) {
+            mappers = new FieldMappers(mapper);
+        } else {
+            mappers = mappers.concat(mapper);
+        }
+        return map.copyAndPut(key, mappers);
+    }
+
+    private static CopyOnWriteHashMap<String, FieldMappers> remove(CopyOnWriteHashMap<String, FieldMappers> map,
+                                                                   String key, FieldMapper mapper) {
+        FieldMappers mappers = map.get(key);
+        if (mappers == null) {
+            return map;
+        }
+        mappers = mappers.remove(mapper);
+        if (mappers.isEmpty()) {
+            return map.copyAndRemove(key);
+        } else {
+            return map.copyAndPut(key, mappers);
+        }
+    }
+
+    private final CopyOnWriteHashSet<FieldMapper> mappers;
+    private final CopyOnWriteHashMap<String, FieldMappers> name;
+    private final CopyOnWriteHashMap<String, FieldMappers> indexName;
+    private final CopyOnWriteHashMap<String, FieldMappers> fullName;
+    // built on first access, instances are immutable so it never needs to be invalidated
+    private volatile ImmutableList<FieldMapper> mappersList;
 
+    /** Create a new empty instance. */
     public FieldMappersLookup() {
-        this.mappers = ImmutableList.of();
-        this.fullName = ImmutableOpenMap.of();
-        this.name = ImmutableOpenMap.of();
-        this.indexName = ImmutableOpenMap.of();
+        this(new CopyOnWriteHashSet<FieldMapper>(),
+                new CopyOnWriteHashMap<String, FieldMappers>(),
+                new CopyOnWriteHashMap<String, FieldMappers>(),
+                new CopyOnWriteHashMap<String, FieldMappers>());
+    }
+
+    private FieldMappersLookup(CopyOnWriteHashSet<FieldMapper> mappers,
+                               CopyOnWriteHashMap<String, FieldMappers> name,
+                               CopyOnWriteHashMap<String, FieldMappers> indexName,
+                               CopyOnWriteHashMap<String, FieldMappers> fullName) {
+        this.mappers = mappers;
+        this.name = name;
+        this.indexName = indexName;
+        this.fullName = fullName;
     }
 
     /**
-     * Adds a new set of mappers.
+     * Return a new instance that contains the union of this instance and the provided mappers.
      */
-    public void addNewMappers(Iterable<FieldMapper> newMappers) {
-        final ImmutableOpenMap.Builder<String, FieldMappers> tempName = ImmutableOpenMap.builder(name);
-        final ImmutableOpenMap.Builder<String, FieldMappers> tempIndexName = ImmutableOpenMap.builder(indexName);
-        final ImmutableOpenMap.Builder<String, FieldMappers> tempFullName = ImmutableOpenMap.builder(fullName);
+    public FieldMappersLookup copyAndAddAll(Iterable<FieldMapper> newMappers) {
+        CopyOnWriteHashSet<FieldMapper> mappers = this.mappers;
+        CopyOnWriteHashMap<String, FieldMappers> name = this.name;
+        CopyOnWriteHashMap<String, FieldMappers> indexName = this.indexName;
+        CopyOnWriteHashMap<String, FieldMappers> fullName = this.fullName;
 
         for (FieldMapper fieldMapper : newMappers) {
-            FieldMappers mappers = tempName.get(fieldMapper.names().name());
-            if (mappers == null) {
-                mappers = new FieldMappers(fieldMapper);
-            } else {
-                mappers = mappers.concat(fieldMapper);
-            }
-            tempName.put(fieldMapper.names().name(), mappers);
-
-            mappers = tempIndexName.get(fieldMapper.names().indexName());
-            if (mappers == null) {
-                mappers = new FieldMappers(fieldMapper);
-            } else {
-                mappers = mappers.concat(fieldMapper);
-            }
-            tempIndexName.put(fieldMapper.names().indexName(), mappers);
-
-            mappers = tempFullName.get(fieldMapper.names().fullName());
-            if (mappers == null) {
-                mappers = new FieldMappers(fieldMapper);
-            } else {
-                mappers = mappers.concat(fieldMapper);
-            }
-            tempFullName.put(fieldMapper.names().fullName(), mappers);
+            name = add(name, fieldMapper.names().name(), fieldMapper);
+            indexName = add(indexName, fieldMapper.names().indexName(), fieldMapper);
+            fullName = add(fullName, fieldMapper.names().fullName(), fieldMapper);
+            mappers = mappers.copyAndAdd(fieldMapper);
         }
-        this.mappers = ImmutableList.<FieldMapper>builder().addAll(this.mappers).addAll(newMappers).build();
-        this.name = tempName.build();
-        this.indexName = tempIndexName.build();
-        this.fullName = tempFullName.build();
+        return new FieldMappersLookup(mappers, name, indexName, fullName);
     }
 
     /**
-     * Removes the set of mappers.
+     * Return a new instance that contains this instance minus the provided mappers.
      */
-    public void removeMappers(Iterable<FieldMapper> mappersToRemove) {
-        List<FieldMapper> tempMappers = new ArrayList<>(this.mappers);
-        ImmutableOpenMap.Builder<String, FieldMappers> tempName = ImmutableOpenMap.builder(this.name);
-        ImmutableOpenMap.Builder<String, FieldMappers> tempIndexName = ImmutableOpenMap.builder(this.indexName);
-        ImmutableOpenMap.Builder<String, FieldMappers> tempFullName = ImmutableOpenMap.builder(this.fullName);
+    public FieldMappersLookup copyAndRemoveAll(Iterable<FieldMapper> mappersToRemove) {
+        CopyOnWriteHashSet<FieldMapper> mappers = this.mappers;
+        CopyOnWriteHashMap<String, FieldMappers> name = this.name;
+        CopyOnWriteHashMap<String, FieldMappers> indexName = this.indexName;
+        CopyOnWriteHashMap<String, FieldMappers> fullName = this.fullName;
 
         for (FieldMapper mapper : mappersToRemove) {
-            FieldMappers mappers = tempName.get(mapper.names().name());
-            if (mappers != null) {
-                mappers = mappers.remove(mapper);
-                if (mappers.isEmpty()) {
-                    tempName.remove(mapper.names().name());
-                } else {
-                    tempName.put(mapper.names().name(), mappers);
-                }
-            }
-
-            mappers = tempIndexName.get(mapper.names().indexName());
-            if (mappers != null) {
-                mappers = mappers.remove(mapper);
-                if (mappers.isEmpty()) {
-                    tempIndexName.remove(mapper.names().indexName());
-                } else {
-                    tempIndexName.put(mapper.names().indexName(), mappers);
-                }
-            }
-
-            mappers = tempFullName.get(mapper.names().fullName());
-            if (mappers != null) {
-                mappers = mappers.remove(mapper);
-                if (mappers.isEmpty()) {
-                    tempFullName.remove(mapper.names().fullName());
-                } else {
-                    tempFullName.put(mapper.names().fullName(), mappers);
-                }
-            }
-
-            tempMappers.remove(mapper);
+            name = remove(name, mapper.names().name(), mapper);
+            indexName = remove(indexName, mapper.names().indexName(), mapper);
+            fullName = remove(fullName, mapper.names().fullName(), mapper);
+            mappers = mappers.copyAndRemove(mapper);
         }
-
-
-        this.mappers = ImmutableList.copyOf(tempMappers);
-        this.name = tempName.build();
-        this.indexName = tempIndexName.build();
-        this.fullName = tempFullName.build();
+        return new FieldMappersLookup(mappers, name, indexName, fullName);
     }
 
     @Override
     public UnmodifiableIterator<FieldMapper> iterator() {
-        return mappers.iterator();
+        return Iterators.unmodifiableIterator(mappers.iterator());
     }
 
     /**
-     * The list of all mappers.
+     * The list of all mappers, in hash order rather than in the order they were added.
      */
     public ImmutableList<FieldMapper> mappers() {
-        return this.mappers;
+        ImmutableList<FieldMapper> list = mappersList;
+        if (list == null) {
+            list = ImmutableList.copyOf(mappers);
+            mappersList = list;
+        }
+        return list;
     }
 
     /**
@@ -0,0 +1,102 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.mapping;
+
+import org.elasticsearch.common.collect.CopyOnWriteHashMap;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of dynamic mapping updates and lookups on the structures backing
+ * {@link org.elasticsearch.index.mapper.FieldMappersLookup}: a full copy of an
+ * {@link ImmutableOpenMap} on every update versus a {@link CopyOnWriteHashMap}.
+ *
+ * Fields are added one at a time, which is what happens when documents keep
+ * introducing new dynamic fields.
+ */
+public class FieldMappersLookupBenchmark {
+
+    private static final int[] NUM_FIELDS = new int[] {1000, 5000, 10000, 25000, 50000};
+    private static final int NUM_LOOKUPS = 1000000;
+
+    public static void main(String[] args) {
+        // warm up
+        for (int i = 0; i < 3; i++) {
+            runCopyOnWriteHashMap(10000, false);
+            runImmutableOpenMap(10000, false);
+        }
+        for (int numFields : NUM_FIELDS) {
+            runCopyOnWriteHashMap(numFields, true);
+            runImmutableOpenMap(numFields, true);
+        }
+    }
+
+    private static String fieldName(int i) {
+        return "obj" + (i % 100) + ".field_" + i;
+    }
+
+    private static void runCopyOnWriteHashMap(int numFields, boolean print) {
+        CopyOnWriteHashMap<String, Integer> map = new CopyOnWriteHashMap<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < numFields; i++) {
+            map = map.copyAndPut(fieldName(i), i);
+        }
+        long updateTime = System.nanoTime() - start;
+
+        long checksum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < NUM_LOOKUPS; i++) {
+            checksum += map.get(fieldName(i % numFields));
+        }
+        long lookupTime = System.nanoTime() - start;
+        if (print) {
+            report("cow_hash_map", numFields, updateTime, lookupTime, checksum);
+        }
+    }
+
+    private static void runImmutableOpenMap(int numFields, boolean print) {
+        ImmutableOpenMap<String, Integer> map = ImmutableOpenMap.of();
+        long start = System.nanoTime();
+        for (int i = 0; i < numFields; i++) {
+            map = ImmutableOpenMap.builder(map).fPut(fieldName(i), i).build();
+        }
+        long updateTime = System.nanoTime() - start;
+
+        long checksum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < NUM_LOOKUPS; i++) {
+            checksum += map.get(fieldName(i % numFields));
+        }
+        long lookupTime = System.nanoTime() - start;
+        if (print) {
+            report("immutable_open_map", numFields, updateTime, lookupTime, checksum);
+        }
+    }
+
+    private static void report(String name, int numFields, long updateTime, long lookupTime, long checksum) {
+        System.out.println("--> [" + name + "] fields [" + numFields + "]"
+                + " total update time [" + new TimeValue(updateTime, TimeUnit.NANOSECONDS) + "]"
+                + ", per update [" + (updateTime / numFields) + "ns]"
+                + ", per lookup [" + (lookupTime / NUM_LOOKUPS) + "ns]"
+                + " (checksum " + checksum + ")");
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.net.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the files sent by the connections, so that serving the same files over and over does not reopen and reread them.
+ * <p>
+ * Each entry holds a {@link FileChannel} that is shared by all the sends of the file (the reads are positional), the least
+ * recently used entries are evicted when more than {@link #MAX_OPEN_FILES_PROP} files are open. Files up to
+ * {@link #MAX_CACHED_FILE_SIZE_PROP} bytes are also read once in a direct buffer, up to {@link #MAX_CACHED_SIZE_PROP}
+ * bytes in total, and are sent as read-only slices of the buffer: this works over TLS, with compression and over HTTP/2
+ * where a {@link FileRegion} can't be used. The files are copied rather than memory-mapped, so a file truncated while it
+ * is sent can't crash the process.
+ * <p>
+ * Entries are reference counted, an evicted entry closes its file once the sends that use it are done. An entry is
+ * replaced when the last modified time or the length of the file changed.
+ * <p>
+ * Each Vert.x instance has its own cache, which is cleared when the instance is closed.
+ */
+public final class FileCache {
+
+  private static final Logger log = LoggerFactory.getLogger(FileCache.class);
+
+  public static final String MAX_OPEN_FILES_PROP = "vertx.fileCache.maxOpenFiles";
+  public static final String MAX_CACHED_FILE_SIZE_PROP = "vertx.fileCache.maxCachedFileSize";
+  public static final String MAX_CACHED_SIZE_PROP = "vertx.fileCache.maxCachedSize";
+
+  private final int maxOpenFiles;
+  private final long maxCachedFileSize;
+  private final long maxCachedSize;
+
+  // Access ordered, guarded by this
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long cachedSize;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @return a cache configured with the {@link #MAX_OPEN_FILES_PROP}, {@link #MAX_CACHED_FILE_SIZE_PROP} and
+   *         {@link #MAX_CACHED_SIZE_PROP} system properties
+   */
+  public static FileCache create() {
+    return new FileCache(
+        Integer.getInteger(MAX_OPEN_FILES_PROP, 256),
+        Long.getLong(MAX_CACHED_FILE_SIZE_PROP, 64 * 1024),
+        Long.getLong(MAX_CACHED_SIZE_PROP, 32 * 1024 * 1024));
+  }
+
+  FileCache(int maxOpenFiles, long maxCachedFileSize, long maxCachedSize) {
+    this.maxOpenFiles = maxOpenFiles;
+    this.maxCachedFileSize = Math.min(maxCachedFileSize, Integer.MAX_VALUE);
+    this.maxCachedSize = maxCachedSize;
+  }
+
+  /**
+   * Returns the entry of the file, opening it if it is not cached. The entry must be released once it is not used anymore,
+   * the file regions and the chunked inputs created from it hold their own reference.
+   */
+  public Entry acquire(File file) throws IOException {
+    String path = file.getAbsolutePath();
+    long lastModified = file.lastModified();
+    long length = file.length();
+    List<Entry> evicted = new ArrayList<>();
+    try {
+      synchronized (this) {
+        Entry entry = entries.get(path);
+        if (entry != null) {
+          if (entry.lastModified == lastModified && entry.length == length) {
+            hits.incrementAndGet();
+            entry.retain();
+            return entry;
+          }
+          // The file changed
+          remove(path, entry, evicted);
+        }
+      }
+      misses.incrementAndGet();
+
+      // Open the file outside of the lock
+      Entry created = open(path, file, lastModified, length);
+      synchronized (this) {
+        Entry entry = entries.get(path);
+        if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+          // Opened concurrently
+          evicted.add(created);
+          entry.retain();
+          return entry;
+        }
+        if (entry != null) {
+          remove(path, entry, evicted);
+        }
+        entries.put(path, created);
+        cachedSize += created.cachedSize();
+        created.retain();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext() && (entries.size() > maxOpenFiles || cachedSize > maxCachedSize)) {
+          // Least recently used first
+          Entry eldest = it.next().getValue();
+          if (eldest != created) {
+            it.remove();
+            cachedSize -= eldest.cachedSize();
+            evicted.add(eldest);
+          }
+        }
+        return created;
+      }
+    } finally {
+      // Release the references of the cache outside of the lock, the last one closes the file
+      for (Entry entry : evicted) {
+        entry.evict();
+      }
+    }
+  }
+
+  /**
+   * @return whether a file of the given length is small enough for its content to be cached
+   */
+  public boolean isCacheable(long length) {
+    return length <= maxCachedFileSize && length <= maxCachedSize;
+  }
+
+  private void remove(String path, Entry entry, List<Entry> evicted) {
+    entries.remove(path);
+    cachedSize -= entry.cachedSize();
+    evicted.add(entry);
+  }
+
+  private Entry open(String path, File file, long lastModified, long length) throws IOException {
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    ByteBuf content = null;
+    if (isCacheable(length)) {
+      try {
+        content = read(channel, (int) length);
+      } catch (IOException e) {
+        log.debug("Could not read file " + path, e);
+      }
+    }
+    return new Entry(path, channel, content, lastModified, length);
+  }
+
+  /**
+   * @return the content of the file, or {@code null} when the file is shorter than expected
+   */
+  private static ByteBuf read(FileChannel channel, int length) throws IOException {
+    // The memory is freed when the buffer is garbage collected
+    ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, buffer.position()) < 0) {
+        // Truncated while it was read, the file is sent from the channel
+        return null;
+      }
+    }
+    buffer.flip();
+    return Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(buffer.asReadOnlyBuffer()));
+  }
+
+  /**
+   * Closes all the entries that are not used, the others are closed when they are released.
+   */
+  public void clear() {
+    List<Entry> evicted;
+    synchronized (this) {
+      evicted = new ArrayList<>(entries.values());
+      entries.clear();
+      cachedSize = 0;
+    }
+    for (Entry entry : evicted) {
+      entry.evict();
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long cachedSize() {
+    return cachedSize;
+  }
+
+  public long hits() {
+    return hits.get();
+  }
+
+  public long misses() {
+    return misses.get();
+  }
+
+  public static final class Entry {
+
+    private final String path;
+    private final FileChannel channel;
+    private final ByteBuf content;
+    private final long lastModified;
+    private final long length;
+    // One reference is held by the cache until the entry is evicted
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+    private final AtomicBoolean evicted = new AtomicBoolean();
+
+    private Entry(String path, FileChannel channel, ByteBuf content, long lastModified, long length) {
+      this.path = path;
+      this.channel = channel;
+      this.content = content;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+
+    public long length() {
+      return length;
+    }
+
+    long cachedSize() {
+      return content != null ? length : 0;
+    }
+
+    /**
+     * @return a read-only slice of the cached file, or {@code null} when the file is not cached. Releasing the slice has no
+     *         effect, it does not hold a reference on the entry.
+     */
+    public ByteBuf content(long offset, long length) {
+      if (content == null) {
+        return null;
+      }
+      return content.slice((int) offset, (int) length);
+    }
+
+    /**
+     * @return a region of the file to send with zero-copy, the region holds a reference on the entry until it is deallocated
+     */
+    public FileRegion region(long offset, long length) {
+      retain();
+      return new DefaultFileRegion(channel, offset, length) {
+        @Override
+        protected void deallocate() {
+          // Do not close the shared channel
+          release();
+        }
+      };
+    }
+
+    /**
+     * @return the file as chunks, the chunked input holds a reference on the entry until it is closed
+     */
+    public ChunkedInput<ByteBuf> chunked(long offset, long length, int chunkSize) throws IOException {
+      retain();
+      try {
+        return new ChunkedNioFile(channel, offset, length, chunkSize) {
+          private final AtomicBoolean closed = new AtomicBoolean();
+          @Override
+          public void close() {
+            // Do not close the shared channel
+            if (closed.compareAndSet(false, true)) {
+              release();
+            }
+          }
+        };
+      } catch (IOException | RuntimeException e) {
+        release();
+        throw e;
+      }
+    }
+
+    void retain() {
+      refCnt.incrementAndGet();
+    }
+
+    public void release() {
+      if (refCnt.decrementAndGet() == 0) {
+        try {
+          channel.close();
+        } catch (IOException e) {
+          log.debug("Could not close file " + path, e);
+        }
+      }
+    }
+
+    private void evict() {
+      if (evicted.compareAndSet(false, true)) {
+        release();
+      }
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.net.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.FileRegion;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class FileCacheTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void testSmallFilesAreCached() throws Exception {
+    FileCache cache = new FileCache(10, 1024, 4096);
+    File file = createFile("small.txt", "hello world");
+    FileCache.Entry entry = cache.acquire(file);
+    ByteBuf content = entry.content(6, 5);
+    assertNotNull(content);
+    assertEquals("world", content.toString(StandardCharsets.UTF_8));
+    assertTrue(content.isReadOnly());
+    entry.release();
+    assertEquals(11, cache.cachedSize());
+  }
+
+  @Test
+  public void testLargeFilesAreNotCached() throws Exception {
+    FileCache cache = new FileCache(10, 4, 4096);
+    FileCache.Entry entry = cache.acquire(createFile("large.txt", "hello world"));
+    assertNull(entry.content(0, 11));
+    FileRegion region = entry.region(0, 11);
+    assertEquals(11, region.count());
+    region.release();
+    entry.release();
+    assertEquals(0, cache.cachedSize());
+  }
+
+  @Test
+  public void testEntriesAreShared() throws Exception {
+    FileCache cache = new FileCache(10, 1024, 4096);
+    File file = createFile("shared.txt", "hello world");
+    FileCache.Entry first = cache.acquire(file);
+    FileCache.Entry second = cache.acquire(file);
+    assertSame(first, second);
+    assertEquals(1, cache.misses());
+    assertEquals(1, cache.hits());
+    first.release();
+    second.release();
+  }
+
+  @Test
+  public void testChangedFilesAreReopened() throws Exception {
+    FileCache cache = new FileCache(10, 1024, 4096);
+    File file = createFile("changed.txt", "hello world");
+    FileCache.Entry first = cache.acquire(file);
+    first.release();
+    Files.write(file.toPath(), "hello vert.x".getBytes(StandardCharsets.UTF_8));
+    FileCache.Entry second = cache.acquire(file);
+    assertNotSame(first, second);
+    assertEquals("hello vert.x", second.content(0, 12).toString(StandardCharsets.UTF_8));
+    second.release();
+    assertEquals(1, cache.size());
+    assertEquals(12, cache.cachedSize());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+    FileCache cache = new FileCache(2, 1024, 4096);
+    File first = createFile("first.txt", "first");
+    File second = createFile("second.txt", "second");
+    File third = createFile("third.txt", "third");
+    FileCache.Entry inUse = cache.acquire(first);
+    cache.acquire(second).release();
+    cache.acquire(third).release();
+    assertEquals(2, cache.size());
+    // The evicted entry can still be used until it is released
+    FileRegion region = inUse.region(0, 5);
+    inUse.release();
+    assertEquals(5, region.count());
+    region.release();
+    FileCache.Entry reopened = cache.acquire(first);
+    assertNotSame(inUse, reopened);
+    reopened.release();
+    assertEquals(4, cache.misses());
+  }
+
+  @Test
+  public void testCachedContentIsNotAffectedByTruncation() throws Exception {
+    FileCache cache = new FileCache(10, 1024, 4096);
+    File file = createFile("truncated.txt", "hello world");
+    FileCache.Entry entry = cache.acquire(file);
+    ByteBuf content = entry.content(0, 11);
+    Files.write(file.toPath(), new byte[0]);
+    assertEquals("hello world", content.toString(StandardCharsets.UTF_8));
+    entry.release();
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    FileCache cache = new FileCache(10, 1024, 4096);
+    FileCache.Entry entry = cache.acquire(createFile("cleared.txt", "hello world"));
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.cachedSize());
+    // The entry can still be used until it is released
+    FileRegion region = entry.region(0, 11);
+    entry.release();
+    assertEquals(11, region.count());
+    region.release();
+  }
+
+  private File createFile(String name, String content) throws Exception {
+    File file = testFolder.newFile(name);
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+}
@@ -27,14 +27,18 @@ import org.elasticsearch.ingest.WrappingProcessor;
 import org.elasticsearch.script.ScriptService;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import static org.elasticsearch.ingest.ConfigurationUtils.newConfigurationException;
 import static org.elasticsearch.ingest.ConfigurationUtils.readBooleanProperty;
+import static org.elasticsearch.ingest.ConfigurationUtils.readIntProperty;
 import static org.elasticsearch.ingest.ConfigurationUtils.readMap;
 import static org.elasticsearch.ingest.ConfigurationUtils.readStringProperty;
 
@@ -44,21 +48,41 @@ import static org.elasticsearch.ingest.ConfigurationUtils.readStringProperty;
  * This can be useful in cases to do string operations on json array of strings,
  * or remove a field from objects inside a json array.
  *
+ * When parallel execution is enabled, the inner processor runs over the elements of arrays with at least
+ * {@code parallel_threshold} elements concurrently, on at most {@code max_concurrency} tasks per document.
+ * Each element is then processed against its own deep copy of the document. Only the changes the inner
+ * processor makes to {@code _ingest._value} are kept, changes to other fields are discarded.
+ *
  * Note that this processor is experimental.
  */
 public final class ForEachProcessor extends AbstractProcessor implements WrappingProcessor {
 
     public static final String TYPE = "foreach";
 
+    static final int DEFAULT_PARALLEL_THRESHOLD = 32;
+    static final int DEFAULT_MAX_CONCURRENCY = 4;
+
     private final String field;
     private final Processor processor;
     private final boolean ignoreMissing;
+    // null if the elements are always processed sequentially
+    private final Consumer<Runnable> executor;
+    private final int parallelThreshold;
+    private final int maxConcurrency;
 
     ForEachProcessor(String tag, String description, String field, Processor processor, boolean ignoreMissing) {
+        this(tag, description, field, processor, ignoreMissing, null, DEFAULT_PARALLEL_THRESHOLD, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    ForEachProcessor(String tag, String description, String field, Processor processor, boolean ignoreMissing,
+                     Consumer<Runnable> executor, int parallelThreshold, int maxConcurrency) {
         super(tag, description);
         this.field = field;
         this.processor = processor;
         this.ignoreMissing = ignoreMissing;
+        this.executor = executor;
+        this.parallelThreshold = parallelThreshold;
+        this.maxConcurrency = maxConcurrency;
     }
 
     boolean isIgnoreMissing() {
@@ -74,6 +98,8 @@ public final class ForEachProcessor extends AbstractProcessor implements Wrappin
             } else {
                 handler.accept(null, new IllegalArgumentException("field [" + field + "] is null, cannot loop over its elements."));
             }
+        } else if (executor != null && values.size() >= parallelThreshold) {
+            new ParallelExecution(values, ingestDocument, handler).start();
         } else {
             innerExecute(0, values, new ArrayList<>(values.size()), ingestDocument, handler);
         }
@@ -124,12 +150,114 @@ public final class ForEachProcessor extends AbstractProcessor implements Wrappin
         return processor;
     }
 
+    boolean isParallel() {
+        return executor != null;
+    }
+
+    int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Runs the inner processor over the elements of a single document, with at most {@code maxConcurrency} elements in flight.
+     * Every worker picks up the next unprocessed element as soon as its previous element is done, and the results are written
+     * back to the array in their original order once all elements are processed. Each element is processed against its own
+     * deep copy of the document, taken from a snapshot made before the workers start. The first failure, drop or rejected
+     * worker completes the document exactly once, the workers then stop picking up elements.
+     */
+    private final class ParallelExecution {
+
+        private final List<?> values;
+        private final IngestDocument document;
+        private final IngestDocument snapshot;
+        private final BiConsumer<IngestDocument, Exception> handler;
+        private final Object[] newValues;
+        private final AtomicInteger nextIndex = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private ParallelExecution(List<?> values, IngestDocument document, BiConsumer<IngestDocument, Exception> handler) {
+            this.values = values;
+            this.document = document;
+            // the document may be modified once it is completed, e.g. by on_failure processors, while workers still copy it
+            this.snapshot = new IngestDocument(document);
+            this.handler = handler;
+            this.newValues = new Object[values.size()];
+            this.remaining = new AtomicInteger(values.size());
+        }
+
+        private void start() {
+            int workers = Math.min(maxConcurrency, values.size());
+            for (int i = 0; i < workers && completed.get() == false; i++) {
+                submit();
+            }
+        }
+
+        private void submit() {
+            try {
+                executor.accept(this::processElements);
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Exception e) {
+            if (completed.compareAndSet(false, true)) {
+                handler.accept(null, e);
+            }
+        }
+
+        private void processElements() {
+            int index;
+            while (completed.get() == false && (index = nextIndex.getAndIncrement()) < values.size()) {
+                int elementIndex = index;
+                IngestDocument element = new IngestDocument(snapshot);
+                element.getIngestMetadata().put("_value", values.get(elementIndex));
+                AtomicBoolean shouldContinueHere = new AtomicBoolean();
+                processor.execute(element, (result, e) -> {
+                    if (e != null || result == null) {
+                        fail(e);
+                    } else {
+                        newValues[elementIndex] = element.getIngestMetadata().get("_value");
+                        if (remaining.decrementAndGet() == 0) {
+                            if (completed.compareAndSet(false, true)) {
+                                document.setFieldValue(field, new ArrayList<>(Arrays.asList(newValues)));
+                                handler.accept(document, null);
+                            }
+                        } else if (shouldContinueHere.getAndSet(true) && completed.get() == false) {
+                            // the inner processor completed on another thread, continue with the next element on the executor
+                            submit();
+                        }
+                    }
+                });
+
+                if (shouldContinueHere.getAndSet(true) == false) {
+                    return;
+                }
+            }
+        }
+    }
+
     public static final class Factory implements Processor.Factory {
 
         private final ScriptService scriptService;
+        private final Consumer<Runnable> executor;
 
         Factory(ScriptService scriptService) {
+            this(scriptService, null);
+        }
+
+        /**
+         * @param executor the executor to run the inner processor on when parallel execution is enabled, or {@code null} if
+         *                 parallel execution is not supported
+         */
+        Factory(ScriptService scriptService, Consumer<Runnable> executor) {
             this.scriptService = scriptService;
+            this.executor = executor;
         }
 
         @Override
@@ -137,6 +265,18 @@ public final class ForEachProcessor extends AbstractProcessor implements Wrappin
                                        String description, Map<String, Object> config) throws Exception {
             String field = readStringProperty(TYPE, tag, config, "field");
             boolean ignoreMissing = readBooleanProperty(TYPE, tag, config, "ignore_missing", false);
+            boolean parallel = readBooleanProperty(TYPE, tag, config, "parallel", false);
+            int parallelThreshold = readIntProperty(TYPE, tag, config, "parallel_threshold", DEFAULT_PARALLEL_THRESHOLD);
+            if (parallelThreshold < 1) {
+                throw newConfigurationException(TYPE, tag, "parallel_threshold", "must be greater than 0");
+            }
+            int maxConcurrency = readIntProperty(TYPE, tag, config, "max_concurrency", DEFAULT_MAX_CONCURRENCY);
+            if (maxConcurrency < 1) {
+                throw newConfigurationException(TYPE, tag, "max_concurrency", "must be greater than 0");
+            }
+            if (parallel && executor == null) {
+                throw newConfigurationException(TYPE, tag, "parallel", "parallel execution is not supported");
+            }
             Map<String, Map<String, Object>> processorConfig = readMap(TYPE, tag, config, "processor");
             Set<Map.Entry<String, Map<String, Object>>> entries = processorConfig.entrySet();
             if (entries.size() != 1) {
@@ -145,7 +285,8 @@ public final class ForEachProcessor extends AbstractProcessor implements Wrappin
             Map.Entry<String, Map<String, Object>> entry = entries.iterator().next();
             Processor processor =
                 ConfigurationUtils.readProcessor(factories, scriptService, entry.getKey(), entry.getValue());
-            return new ForEachProcessor(tag, description, field, processor, ignoreMissing);
+            return new ForEachProcessor(tag, description, field, processor, ignoreMissing, parallel ? executor : null,
+                parallelThreshold, maxConcurrency);
         }
     }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.ingest.common;
 
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.ingest.CompoundProcessor;
 import org.elasticsearch.ingest.IngestDocument;
 import org.elasticsearch.ingest.Processor;
@@ -26,6 +27,8 @@ import org.elasticsearch.ingest.TestProcessor;
 import org.elasticsearch.ingest.TestTemplateService;
 import org.elasticsearch.script.TemplateScript;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -34,12 +37,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.elasticsearch.ingest.IngestDocumentMatcher.assertIngestDocument;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 
 public class ForEachProcessorTests extends ESTestCase {
 
@@ -289,6 +294,126 @@ public class ForEachProcessorTests extends ESTestCase {
         assertThat(testProcessor.getInvokedCounter(), equalTo(0));
     }
 
+    public void testParallelExecution() throws Exception {
+        int numValues = randomIntBetween(ForEachProcessor.DEFAULT_PARALLEL_THRESHOLD, 500);
+        List<String> values = IntStream.range(0, numValues).mapToObj(i -> "value" + i).collect(Collectors.toList());
+        IngestDocument ingestDocument = new IngestDocument(
+            "_index", "_id", null, null, null, Collections.singletonMap("values", values)
+        );
+
+        Processor innerProcessor = randomBoolean() ? new AsyncUpperCaseProcessor("_ingest._value") :
+            new TestProcessor(doc -> doc.setFieldValue("_ingest._value",
+                doc.getFieldValue("_ingest._value", String.class).toUpperCase(Locale.ROOT)));
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            ForEachProcessor processor = new ForEachProcessor("_tag", null, "values", innerProcessor, false,
+                threadPool.generic()::execute, ForEachProcessor.DEFAULT_PARALLEL_THRESHOLD, randomIntBetween(1, 8));
+            CountDownLatch latch = new CountDownLatch(1);
+            Exception[] exceptions = new Exception[1];
+            processor.execute(ingestDocument, (result, e) -> {
+                exceptions[0] = e;
+                latch.countDown();
+            });
+            latch.await();
+            assertNull(exceptions[0]);
+        } finally {
+            terminate(threadPool);
+        }
+
+        List<?> result = ingestDocument.getFieldValue("values", List.class);
+        assertThat(result.size(), equalTo(numValues));
+        for (int i = 0; i < numValues; i++) {
+            assertThat(result.get(i), equalTo("VALUE" + i));
+        }
+        assertThat(ingestDocument.getIngestMetadata().containsKey("_value"), equalTo(false));
+    }
+
+    public void testParallelExecutionSkippedForSmallArrays() throws Exception {
+        IngestDocument ingestDocument = new IngestDocument(
+            "_index", "_id", null, null, null, Collections.singletonMap("values", Arrays.asList("a", "b", "c"))
+        );
+
+        TestProcessor testProcessor = new TestProcessor(doc -> doc.setFieldValue("_ingest._value",
+            doc.getFieldValue("_ingest._value", String.class).toUpperCase(Locale.ROOT)));
+        ForEachProcessor processor = new ForEachProcessor("_tag", null, "values", testProcessor, false,
+            runnable -> fail("small arrays should not be processed in parallel"), 4, 2);
+        processor.execute(ingestDocument, (result, e) -> {});
+
+        assertThat(ingestDocument.getFieldValue("values", List.class), equalTo(Arrays.asList("A", "B", "C")));
+    }
+
+    public void testParallelExecutionWithFailure() throws Exception {
+        IngestDocument ingestDocument = new IngestDocument(
+            "_index", "_id", null, null, null, Collections.singletonMap("values", Arrays.asList("a", "b", "c", "d"))
+        );
+
+        TestProcessor testProcessor = new TestProcessor(id -> {
+            if ("c".equals(id.getFieldValue("_ingest._value", String.class))) {
+                throw new RuntimeException("failure");
+            }
+        });
+        ForEachProcessor processor = new ForEachProcessor("_tag", null, "values", testProcessor, false, Runnable::run, 1, 2);
+        List<Exception> exceptions = new ArrayList<>();
+        processor.execute(ingestDocument, (result, e) -> exceptions.add(e));
+        assertThat(exceptions.size(), equalTo(1));
+        assertThat(exceptions.get(0).getMessage(), equalTo("failure"));
+        assertThat(ingestDocument.getFieldValue("values", List.class), equalTo(Arrays.asList("a", "b", "c", "d")));
+    }
+
+    public void testParallelExecutionDiscardsSourceChanges() throws Exception {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("field", "original");
+        Map<String, Object> source = new HashMap<>();
+        source.put("values", Arrays.asList("a", "b"));
+        source.put("nested", nested);
+        IngestDocument ingestDocument = new IngestDocument("_index", "_id", null, null, null, source);
+
+        TestProcessor testProcessor = new TestProcessor(doc -> {
+            doc.setFieldValue("other", "value");
+            doc.setFieldValue("nested.field", "changed");
+            doc.setFieldValue("_ingest._value", doc.getFieldValue("_ingest._value", String.class).toUpperCase(Locale.ROOT));
+        });
+        ForEachProcessor processor = new ForEachProcessor("_tag", null, "values", testProcessor, false, Runnable::run, 1, 2);
+        Exception[] exceptions = new Exception[1];
+        processor.execute(ingestDocument, (result, e) -> exceptions[0] = e);
+        assertNull(exceptions[0]);
+        assertThat(ingestDocument.getFieldValue("values", List.class), equalTo(Arrays.asList("A", "B")));
+        assertThat(ingestDocument.hasField("other"), equalTo(false));
+        assertThat(ingestDocument.getFieldValue("nested.field", String.class), equalTo("original"));
+    }
+
+    public void testParallelExecutionRejected() throws Exception {
+        IngestDocument ingestDocument = new IngestDocument(
+            "_index", "_id", null, null, null, Collections.singletonMap("values", Arrays.asList("a", "b", "c", "d"))
+        );
+
+        TestProcessor testProcessor = new TestProcessor(doc -> {});
+        ForEachProcessor processor = new ForEachProcessor("_tag", null, "values", testProcessor, false, runnable -> {
+            throw new EsRejectedExecutionException("rejected");
+        }, 1, 3);
+        List<Exception> exceptions = new ArrayList<>();
+        processor.execute(ingestDocument, (result, e) -> exceptions.add(e));
+        assertThat(exceptions.size(), equalTo(1));
+        assertThat(exceptions.get(0), instanceOf(EsRejectedExecutionException.class));
+        assertThat(testProcessor.getInvokedCounter(), equalTo(0));
+    }
+
+    public void testParallelExecutionStopsAfterFailure() throws Exception {
+        IngestDocument ingestDocument = new IngestDocument(
+            "_index", "_id", null, null, null, Collections.singletonMap("values", Arrays.asList("a", "b", "c", "d"))
+        );
+
+        TestProcessor testProcessor = new TestProcessor(doc -> {
+            throw new RuntimeException("failure");
+        });
+        ForEachProcessor processor = new ForEachProcessor("_tag", null, "values", testProcessor, false, Runnable::run, 1, 2);
+        List<Exception> exceptions = new ArrayList<>();
+        processor.execute(ingestDocument, (result, e) -> exceptions.add(e));
+        assertThat(exceptions.size(), equalTo(1));
+        // the first element fails the document, no other element is processed afterwards
+        assertThat(testProcessor.getInvokedCounter(), equalTo(1));
+    }
+
     private class AsyncUpperCaseProcessor implements Processor {
 
         private final String field;
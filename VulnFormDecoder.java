@@ -0,0 +1,479 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.http.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.multipart.Attribute;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.DiskAttribute;
+import io.netty.handler.codec.http.multipart.FileUpload;
+import io.netty.handler.codec.http.multipart.HttpDataFactory;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData;
+import io.netty.handler.codec.http.multipart.MemoryAttribute;
+import io.vertx.core.MultiMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes the body of a form request as it is received.
+ * <p>
+ * The parts are taken from the decoder after each chunk: the attributes are added to the form attributes and released
+ * right away, the file uploads are streamed to the upload handler by the {@link NettyFileUploadDataFactory}. An attribute
+ * larger than {@link #DISK_THRESHOLD_PROP_NAME} bytes is spilled to a temporary file while it is received, and the request
+ * fails once the form attributes, including the one being received, exceed {@link #MAX_ATTRIBUTES_SIZE_PROP_NAME} bytes,
+ * so a large form post does not have to be buffered in memory.
+ * <p>
+ * A complete attribute is still added to the form attributes as a {@code String}, so a spilled attribute is read back in
+ * memory: the limit is not set by default, it has to be set to bound the memory used by the form attributes.
+ */
+class FormDecoder {
+
+  static final String DISK_THRESHOLD_PROP_NAME = "vertx.formAttributeDiskThreshold";
+  static final String MAX_ATTRIBUTES_SIZE_PROP_NAME = "vertx.maxFormAttributesSize";
+
+  private final HttpPostRequestDecoder decoder;
+  private final MultiMap attributes;
+  private final long maxAttributesSize;
+  private long attributesSize;
+  private boolean destroyed;
+
+  FormDecoder(HttpRequest request, HttpDataFactory uploadFactory, MultiMap attributes) {
+    long diskThreshold = Long.getLong(DISK_THRESHOLD_PROP_NAME, DefaultHttpDataFactory.MINSIZE);
+    this.decoder = new HttpPostRequestDecoder(new FormDataFactory(diskThreshold, uploadFactory), request);
+    this.attributes = attributes;
+    this.maxAttributesSize = Long.getLong(MAX_ATTRIBUTES_SIZE_PROP_NAME, -1);
+  }
+
+  /**
+   * Decodes a chunk of the body.
+   *
+   * @throws HttpPostRequestDecoder.ErrorDataDecoderException when the body is malformed or the form attributes are too large,
+   *         the rest of the body is ignored after the form attributes exceeded the limit
+   */
+  void offer(ByteBuf chunk) {
+    if (!destroyed) {
+      decoder.offer(new DefaultHttpContent(chunk));
+      drain();
+    }
+  }
+
+  /**
+   * Decodes the end of the body and releases the decoder.
+   */
+  void end() {
+    if (!destroyed) {
+      try {
+        decoder.offer(LastHttpContent.EMPTY_LAST_CONTENT);
+        drain();
+      } finally {
+        destroy();
+      }
+    }
+  }
+
+  private void drain() {
+    try {
+      while (decoder.hasNext()) {
+        InterfaceHttpData data = decoder.next();
+        if (data instanceof Attribute) {
+          addAttribute((Attribute) data);
+        }
+      }
+    } catch (HttpPostRequestDecoder.EndOfDataDecoderException e) {
+      // ignore this as it is expected
+    }
+    InterfaceHttpData partial = decoder.currentPartialHttpData();
+    if (partial instanceof Attribute) {
+      // Do not wait for the attribute to be complete to enforce the limit
+      checkSize(attributesSize + ((Attribute) partial).length());
+    }
+  }
+
+  private void checkSize(long size) {
+    if (maxAttributesSize >= 0 && size > maxAttributesSize) {
+      destroy();
+      throw new HttpPostRequestDecoder.ErrorDataDecoderException("Size of form attributes exceeds " + maxAttributesSize + " bytes");
+    }
+  }
+
+  private void addAttribute(Attribute attr) {
+    try {
+      attributesSize += attr.length();
+      checkSize(attributesSize);
+      attributes.add(attr.getName(), attr.getValue());
+    } catch (IOException e) {
+      throw new HttpPostRequestDecoder.ErrorDataDecoderException(e);
+    } finally {
+      if (!destroyed) {
+        // Free the buffer or the temporary file of the attribute now rather than at the end of the request
+        decoder.removeHttpDataFromClean(attr);
+        attr.release();
+      }
+    }
+  }
+
+  private void destroy() {
+    destroyed = true;
+    decoder.destroy();
+  }
+
+  /**
+   * Creates attributes that move to disk above a threshold, and delegates the file uploads.
+   */
+  private static class FormDataFactory extends DefaultHttpDataFactory {
+
+    private final long diskThreshold;
+    private final HttpDataFactory uploadFactory;
+    // The attributes that are not released yet
+    private final List<FormAttribute> attributes = new ArrayList<>();
+
+    FormDataFactory(long diskThreshold, HttpDataFactory uploadFactory) {
+      super(diskThreshold);
+      this.diskThreshold = diskThreshold;
+      this.uploadFactory = uploadFactory;
+    }
+
+    @Override
+    public Attribute createAttribute(HttpRequest request, String name) {
+      return createAttribute(request, name, 0L);
+    }
+
+    @Override
+    public Attribute createAttribute(HttpRequest request, String name, long definedSize) {
+      FormAttribute attribute = new FormAttribute(name, definedSize, diskThreshold);
+      attributes.add(attribute);
+      return attribute;
+    }
+
+    @Override
+    public Attribute createAttribute(HttpRequest request, String name, String value) {
+      FormAttribute attribute = new FormAttribute(name, 0L, diskThreshold);
+      try {
+        attribute.setValue(value);
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      }
+      attributes.add(attribute);
+      return attribute;
+    }
+
+    @Override
+    public FileUpload createFileUpload(HttpRequest request, String name, String filename, String contentType,
+                                       String contentTransferEncoding, Charset charset, long size) {
+      return uploadFactory.createFileUpload(request, name, filename, contentType, contentTransferEncoding, charset, size);
+    }
+
+    @Override
+    public void removeHttpDataFromClean(HttpRequest request, InterfaceHttpData data) {
+      if (data instanceof FileUpload) {
+        uploadFactory.removeHttpDataFromClean(request, data);
+      } else if (data instanceof FormAttribute) {
+        attributes.remove(data);
+      } else {
+        super.removeHttpDataFromClean(request, data);
+      }
+    }
+
+    @Override
+    public void cleanRequestHttpData(HttpRequest request) {
+      releaseAttributes();
+      super.cleanRequestHttpData(request);
+      uploadFactory.cleanRequestHttpData(request);
+    }
+
+    @Override
+    public void cleanAllHttpData() {
+      releaseAttributes();
+      super.cleanAllHttpData();
+      uploadFactory.cleanAllHttpData();
+    }
+
+    private void releaseAttributes() {
+      for (FormAttribute attribute : attributes) {
+        if (attribute.refCnt() > 0) {
+          attribute.release();
+        }
+      }
+      attributes.clear();
+    }
+  }
+
+  /**
+   * An attribute that is kept in memory until it grows larger than the disk threshold, then moves to a temporary file.
+   * <p>
+   * Unlike the Netty mixed attribute, the temporary file is not registered with {@link File#deleteOnExit()} (which keeps the
+   * path in memory until the JVM exits): it is deleted when the attribute is released.
+   */
+  private static class FormAttribute implements Attribute {
+
+    private final long diskThreshold;
+    private Attribute attribute;
+
+    FormAttribute(String name, long definedSize, long diskThreshold) {
+      this.diskThreshold = diskThreshold;
+      this.attribute = definedSize > diskThreshold ? new TempFileAttribute(name, definedSize) : new MemoryAttribute(name, definedSize);
+    }
+
+    private FormAttribute(Attribute attribute, long diskThreshold) {
+      this.diskThreshold = diskThreshold;
+      this.attribute = attribute;
+    }
+
+    private void spill(long size) throws IOException {
+      if (attribute instanceof MemoryAttribute && size > diskThreshold) {
+        TempFileAttribute spilled = new TempFileAttribute(attribute.getName(), attribute.definedLength());
+        spilled.setMaxSize(attribute.getMaxSize());
+        ByteBuf content = attribute.getByteBuf();
+        if (content != null && content.isReadable()) {
+          spilled.addContent(content.retain(), false);
+        }
+        attribute.release();
+        attribute = spilled;
+      }
+    }
+
+    @Override
+    public String getValue() throws IOException {
+      return attribute.getValue();
+    }
+
+    @Override
+    public void setValue(String value) throws IOException {
+      if (value != null) {
+        spill(value.getBytes(attribute.getCharset()).length);
+      }
+      attribute.setValue(value);
+    }
+
+    @Override
+    public long getMaxSize() {
+      return attribute.getMaxSize();
+    }
+
+    @Override
+    public void setMaxSize(long maxSize) {
+      attribute.setMaxSize(maxSize);
+    }
+
+    @Override
+    public void checkSize(long newSize) throws IOException {
+      attribute.checkSize(newSize);
+    }
+
+    @Override
+    public void setContent(ByteBuf buffer) throws IOException {
+      spill(buffer.readableBytes());
+      attribute.setContent(buffer);
+    }
+
+    @Override
+    public void addContent(ByteBuf buffer, boolean last) throws IOException {
+      spill(attribute.length() + buffer.readableBytes());
+      attribute.addContent(buffer, last);
+    }
+
+    @Override
+    public void setContent(File file) throws IOException {
+      spill(file.length());
+      attribute.setContent(file);
+    }
+
+    @Override
+    public void setContent(InputStream inputStream) throws IOException {
+      spill(Long.MAX_VALUE);
+      attribute.setContent(inputStream);
+    }
+
+    @Override
+    public boolean isCompleted() {
+      return attribute.isCompleted();
+    }
+
+    @Override
+    public long length() {
+      return attribute.length();
+    }
+
+    @Override
+    public long definedLength() {
+      return attribute.definedLength();
+    }
+
+    @Override
+    public void delete() {
+      attribute.delete();
+    }
+
+    @Override
+    public byte[] get() throws IOException {
+      return attribute.get();
+    }
+
+    @Override
+    public ByteBuf getByteBuf() throws IOException {
+      return attribute.getByteBuf();
+    }
+
+    @Override
+    public ByteBuf getChunk(int length) throws IOException {
+      return attribute.getChunk(length);
+    }
+
+    @Override
+    public String getString() throws IOException {
+      return attribute.getString();
+    }
+
+    @Override
+    public String getString(Charset encoding) throws IOException {
+      return attribute.getString(encoding);
+    }
+
+    @Override
+    public void setCharset(Charset charset) {
+      attribute.setCharset(charset);
+    }
+
+    @Override
+    public Charset getCharset() {
+      return attribute.getCharset();
+    }
+
+    @Override
+    public boolean renameTo(File dest) throws IOException {
+      return attribute.renameTo(dest);
+    }
+
+    @Override
+    public boolean isInMemory() {
+      return attribute.isInMemory();
+    }
+
+    @Override
+    public File getFile() throws IOException {
+      return attribute.getFile();
+    }
+
+    @Override
+    public String getName() {
+      return attribute.getName();
+    }
+
+    @Override
+    public HttpDataType getHttpDataType() {
+      return attribute.getHttpDataType();
+    }
+
+    @Override
+    public int compareTo(InterfaceHttpData o) {
+      return attribute.compareTo(o);
+    }
+
+    @Override
+    public ByteBuf content() {
+      return attribute.content();
+    }
+
+    @Override
+    public Attribute copy() {
+      return new FormAttribute(attribute.copy(), diskThreshold);
+    }
+
+    @Override
+    public Attribute duplicate() {
+      return new FormAttribute(attribute.duplicate(), diskThreshold);
+    }
+
+    @Override
+    public Attribute retainedDuplicate() {
+      return new FormAttribute(attribute.retainedDuplicate(), diskThreshold);
+    }
+
+    @Override
+    public Attribute replace(ByteBuf content) {
+      return new FormAttribute(attribute.replace(content), diskThreshold);
+    }
+
+    @Override
+    public int refCnt() {
+      return attribute.refCnt();
+    }
+
+    @Override
+    public Attribute retain() {
+      attribute.retain();
+      return this;
+    }
+
+    @Override
+    public Attribute retain(int increment) {
+      attribute.retain(increment);
+      return this;
+    }
+
+    @Override
+    public Attribute touch() {
+      attribute.touch();
+      return this;
+    }
+
+    @Override
+    public Attribute touch(Object hint) {
+      attribute.touch(hint);
+      return this;
+    }
+
+    @Override
+    public boolean release() {
+      return attribute.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+      return attribute.release(decrement);
+    }
+
+    @Override
+    public String toString() {
+      return attribute.toString();
+    }
+  }
+
+  /**
+   * A disk attribute whose temporary file is deleted when it is released rather than when the JVM exits.
+   */
+  private static class TempFileAttribute extends DiskAttribute {
+
+    TempFileAttribute(String name, long definedSize) {
+      super(name, definedSize);
+    }
+
+    @Override
+    protected boolean deleteOnExit() {
+      return false;
+    }
+  }
+}
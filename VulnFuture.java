@@ -101,6 +101,8 @@ public interface Future<T> extends AsyncResult<T> {
    * <p>
    * If the future has already been completed it will be called immediately. Otherwise it will be called when the
    * future is completed.
+   * <p>
+   * The handler replaces the handlers that were set or added before, a {@code null} handler removes them.
    *
    * @param handler  the Handler that will be called with the result
    * @return a reference to this, so it can be used fluently
@@ -109,6 +111,25 @@ public interface Future<T> extends AsyncResult<T> {
   @Fluent
   Future<T> setHandler(Handler<AsyncResult<T>> handler);
 
+  /**
+   * Add a handler for the result.
+   * <p>
+   * If the future has already been completed it will be called immediately. Otherwise it will be called when the
+   * future is completed, after the handlers that were added before.
+   * <p>
+   * The default implementation throws an {@link UnsupportedOperationException}, so the implementations that only support
+   * {@link #setHandler(Handler) a single handler} keep compiling, the futures created by {@link #future()} support it.
+   *
+   * @param handler  the Handler that will be called with the result
+   * @return a reference to this, so it can be used fluently
+   * @throws NullPointerException when the handler is {@code null}
+   * @throws UnsupportedOperationException when the implementation does not support several handlers
+   */
+  @Fluent
+  default Future<T> addHandler(Handler<AsyncResult<T>> handler) {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support several handlers");
+  }
+
   /**
    * Set the result. Any handler will be called, if there is one, and the future will be marked as completed.
    *
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.impl;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Composes a chain of futures, as a request handler does, with the {@link FutureImpl} and with the previous implementation
+ * that kept a single handler and was not thread safe.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FutureBenchmark {
+
+  @Param({"1", "10", "20"})
+  public int depth;
+
+  @Benchmark
+  public void composeFutureImpl(Blackhole blackhole) {
+    compose(FutureImpl::new, blackhole);
+  }
+
+  @Benchmark
+  public void composeLegacyFuture(Blackhole blackhole) {
+    compose(LegacyFuture::new, blackhole);
+  }
+
+  @Benchmark
+  public void handlersFutureImpl(Blackhole blackhole) {
+    handlers(new FutureImpl<>(), blackhole);
+  }
+
+  @Benchmark
+  public void handlersLegacyFuture(Blackhole blackhole) {
+    handlers(new LegacyFuture<>(), blackhole);
+  }
+
+  private void compose(Supplier<Future<Integer>> factory, Blackhole blackhole) {
+    Future<Integer> first = factory.get();
+    Future<Integer> last = first;
+    for (int i = 0; i < depth; i++) {
+      Future<Integer> next = factory.get();
+      last.setHandler(ar -> next.complete(ar.result() + 1));
+      last = next;
+    }
+    last.setHandler(ar -> blackhole.consume(ar.result()));
+    first.complete(0);
+  }
+
+  private void handlers(Future<Integer> future, Blackhole blackhole) {
+    Handler<AsyncResult<Integer>> handler = ar -> blackhole.consume(ar.result());
+    for (int i = 0; i < depth; i++) {
+      future.addHandler(handler);
+    }
+    future.complete(0);
+  }
+
+  /**
+   * The previous implementation, a new handler replaces the handler that was set before. Several handlers are kept by
+   * wrapping them, as the callers had to.
+   */
+  static class LegacyFuture<T> implements Future<T> {
+
+    private boolean failed;
+    private boolean succeeded;
+    private Handler<AsyncResult<T>> handler;
+    private T result;
+    private Throwable throwable;
+
+    public T result() {
+      return result;
+    }
+
+    public Throwable cause() {
+      return throwable;
+    }
+
+    public boolean succeeded() {
+      return succeeded;
+    }
+
+    public boolean failed() {
+      return failed;
+    }
+
+    public boolean isComplete() {
+      return failed || succeeded;
+    }
+
+    public Future<T> setHandler(Handler<AsyncResult<T>> handler) {
+      this.handler = handler;
+      checkCallHandler();
+      return this;
+    }
+
+    public Future<T> addHandler(Handler<AsyncResult<T>> handler) {
+      Handler<AsyncResult<T>> previous = this.handler;
+      return setHandler(previous == null ? handler : ar -> {
+        previous.handle(ar);
+        handler.handle(ar);
+      });
+    }
+
+    public void complete(T result) {
+      checkComplete();
+      this.result = result;
+      succeeded = true;
+      checkCallHandler();
+    }
+
+    public void complete() {
+      complete(null);
+    }
+
+    public void fail(Throwable throwable) {
+      checkComplete();
+      this.throwable = throwable;
+      failed = true;
+      checkCallHandler();
+    }
+
+    public void fail(String failureMessage) {
+      fail(new NoStackTraceThrowable(failureMessage));
+    }
+
+    private void checkCallHandler() {
+      if (handler != null && isComplete()) {
+        handler.handle(this);
+      }
+    }
+
+    private void checkComplete() {
+      if (succeeded || failed) {
+        throw new IllegalStateException("Result is already complete: " + (succeeded ? "succeeded" : "failed"));
+      }
+    }
+  }
+}
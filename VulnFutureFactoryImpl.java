@@ -24,15 +24,17 @@ import io.vertx.core.spi.FutureFactory;
  */
 public class FutureFactoryImpl implements FutureFactory {
 
+  // A completed future is immutable, the handlers set on it are called right away and are not kept
+  private static final FutureImpl<?> SUCCEEDED_VOID = new FutureImpl<>((Object) null);
+
   @Override
   public <T> Future<T> future() {
     return new FutureImpl<>();
   }
 
-  // TODO - for completed futures with null values we could maybe reuse a static instance to save allocation
   @Override
   public <T> Future<T> completedFuture() {
-    return new FutureImpl<>((T)null);
+    return (Future<T>) SUCCEEDED_VOID;
   }
 
   @Override
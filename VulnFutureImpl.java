@@ -20,10 +20,33 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * The future is completed with a CAS on its state, which is {@code null} or the handlers until it completes, then one of
+ * the {@link #SUCCEEDED} and {@link #FAILED} markers. A single handler is stored as is and several handlers as an array,
+ * so adding the handlers of a composition does not allocate any wrapper. The handlers are called on the completing thread,
+ * in the order they were added.
+ */
 class FutureImpl<T> implements Future<T>, Handler<AsyncResult<T>> {
-  private boolean failed;
-  private boolean succeeded;
-  private Handler<AsyncResult<T>> handler;
+
+  private static final Object SUCCEEDED = new Object();
+  private static final Object FAILED = new Object();
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<FutureImpl, Object> STATE_UPDATER =
+      AtomicReferenceFieldUpdater.newUpdater(FutureImpl.class, Object.class, "state");
+
+  // Guards the result and the throwable, which are only written by the thread that won the completion
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<FutureImpl> COMPLETING_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(FutureImpl.class, "completing");
+
+  private volatile Object state;
+  private volatile int completing;
   private T result;
   private Throwable throwable;
 
@@ -61,44 +84,82 @@ class FutureImpl<T> implements Future<T>, Handler<AsyncResult<T>> {
    * The result of the operation. This will be null if the operation failed.
    */
   public T result() {
-    return result;
+    return state == SUCCEEDED ? result : null;
   }
 
   /**
    * An exception describing failure. This will be null if the operation succeeded.
    */
   public Throwable cause() {
-    return throwable;
+    return state == FAILED ? throwable : null;
   }
 
   /**
    * Did it succeeed?
    */
   public boolean succeeded() {
-    return succeeded;
+    return state == SUCCEEDED;
   }
 
   /**
    * Did it fail?
    */
   public boolean failed() {
-    return failed;
+    return state == FAILED;
   }
 
   /**
    * Has it completed?
    */
   public boolean isComplete() {
-    return failed || succeeded;
+    Object s = state;
+    return s == SUCCEEDED || s == FAILED;
   }
 
   /**
-   * Set a handler for the result. It will get called when it's complete
+   * Set a handler for the result, replacing the handlers set before. It will get called when it's complete
    */
   public Future<T> setHandler(Handler<AsyncResult<T>> handler) {
-    this.handler = handler;
-    checkCallHandler();
-    return this;
+    while (true) {
+      Object s = state;
+      if (s == SUCCEEDED || s == FAILED) {
+        if (handler != null) {
+          handler.handle(this);
+        }
+        return this;
+      }
+      if (STATE_UPDATER.compareAndSet(this, s, handler)) {
+        return this;
+      }
+    }
+  }
+
+  /**
+   * Add a handler for the result. It will get called when it's complete, after the handlers that were added before
+   */
+  public Future<T> addHandler(Handler<AsyncResult<T>> handler) {
+    Objects.requireNonNull(handler, "No null handler accepted");
+    while (true) {
+      Object s = state;
+      if (s == SUCCEEDED || s == FAILED) {
+        handler.handle(this);
+        return this;
+      }
+      Object handlers;
+      if (s == null) {
+        handlers = handler;
+      } else if (s instanceof Handler) {
+        handlers = new Handler[] { (Handler) s, handler };
+      } else {
+        Handler[] array = (Handler[]) s;
+        Handler[] copy = Arrays.copyOf(array, array.length + 1);
+        copy[array.length] = handler;
+        handlers = copy;
+      }
+      if (STATE_UPDATER.compareAndSet(this, s, handlers)) {
+        return this;
+      }
+    }
   }
 
   /**
@@ -107,8 +168,7 @@ class FutureImpl<T> implements Future<T>, Handler<AsyncResult<T>> {
   public void complete(T result) {
     checkComplete();
     this.result = result;
-    succeeded = true;
-    checkCallHandler();
+    callHandlers(STATE_UPDATER.getAndSet(this, SUCCEEDED));
   }
 
   @Override
@@ -144,8 +204,7 @@ class FutureImpl<T> implements Future<T>, Handler<AsyncResult<T>> {
   public void fail(Throwable throwable) {
     checkComplete();
     this.throwable = throwable;
-    failed = true;
-    checkCallHandler();
+    callHandlers(STATE_UPDATER.getAndSet(this, FAILED));
   }
 
   @Override
@@ -153,16 +212,39 @@ class FutureImpl<T> implements Future<T>, Handler<AsyncResult<T>> {
     fail(new NoStackTraceThrowable(failureMessage));
   }
 
-  private void checkCallHandler() {
-    if (handler != null && isComplete()) {
-      handler.handle(this);
+  @SuppressWarnings("unchecked")
+  private void callHandlers(Object handlers) {
+    if (handlers instanceof Handler) {
+      ((Handler<AsyncResult<T>>) handlers).handle(this);
+    } else if (handlers != null) {
+      RuntimeException failure = null;
+      for (Handler<AsyncResult<T>> handler : (Handler<AsyncResult<T>>[]) handlers) {
+        try {
+          handler.handle(this);
+        } catch (RuntimeException e) {
+          // Call the other handlers before reporting it
+          if (failure == null) {
+            failure = e;
+          } else {
+            failure.addSuppressed(e);
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
     }
   }
 
   private void checkComplete() {
-    if (succeeded || failed) {
-      throw new IllegalStateException("Result is already complete: " + (succeeded ? "succeeded" : "failed"));
+    if (!COMPLETING_UPDATER.compareAndSet(this, 0, 1)) {
+      // Wait for the state of a concurrent completion to report it
+      Object s;
+      while ((s = state) != SUCCEEDED && s != FAILED) {
+        Thread.yield();
+      }
+      throw new IllegalStateException("Result is already complete: " + (s == SUCCEEDED ? "succeeded" : "failed"));
     }
   }
 
-}
\ No newline at end of file
+}
@@ -160,6 +160,94 @@ public class FutureTest extends VertxTestBase {
     assertTrue(called.get());
   }
 
+  @Test
+  public void testCallSeveralHandlers() {
+    List<Integer> calls = new ArrayList<>();
+    Future<String> future = Future.future();
+    future.addHandler(ar -> calls.add(1));
+    future.addHandler(ar -> calls.add(2));
+    future.addHandler(ar -> calls.add(3));
+    assertEquals(Collections.emptyList(), calls);
+    future.complete("foo");
+    assertEquals(Arrays.asList(1, 2, 3), calls);
+    future.addHandler(ar -> calls.add(4));
+    assertEquals(Arrays.asList(1, 2, 3, 4), calls);
+  }
+
+  @Test
+  public void testSetHandlerReplacesHandlers() {
+    List<Integer> calls = new ArrayList<>();
+    Future<String> future = Future.future();
+    future.addHandler(ar -> calls.add(1));
+    future.addHandler(ar -> calls.add(2));
+    future.setHandler(ar -> calls.add(3));
+    future.setHandler(ar -> calls.add(4));
+    future.complete("foo");
+    assertEquals(Collections.singletonList(4), calls);
+  }
+
+  @Test
+  public void testSetNullHandler() {
+    AtomicBoolean called = new AtomicBoolean();
+    Future<String> future = Future.future();
+    future.setHandler(ar -> called.set(true));
+    future.setHandler(null);
+    future.complete("foo");
+    assertFalse(called.get());
+    future.setHandler(null);
+    try {
+      future.addHandler(null);
+      fail();
+    } catch (NullPointerException ignore) {
+    }
+  }
+
+  @Test
+  public void testHandlerFailureDoesNotPreventOtherHandlers() {
+    AtomicBoolean called = new AtomicBoolean();
+    RuntimeException failure = new RuntimeException();
+    Future<String> future = Future.future();
+    future.addHandler(ar -> {
+      throw failure;
+    });
+    future.addHandler(ar -> called.set(true));
+    try {
+      future.complete("foo");
+      fail();
+    } catch (RuntimeException e) {
+      assertSame(failure, e);
+    }
+    assertTrue(called.get());
+  }
+
+  @Test
+  public void testConcurrentCompletion() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      Future<Integer> future = Future.future();
+      AtomicInteger calls = new AtomicInteger();
+      AtomicInteger completions = new AtomicInteger();
+      future.setHandler(ar -> calls.incrementAndGet());
+      Thread[] threads = new Thread[4];
+      for (int j = 0; j < threads.length; j++) {
+        int value = j;
+        threads[j] = new Thread(() -> {
+          try {
+            future.complete(value);
+            completions.incrementAndGet();
+          } catch (IllegalStateException ignore) {
+          }
+        });
+        threads[j].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      assertEquals(1, completions.get());
+      assertEquals(1, calls.get());
+      assertTrue(future.succeeded());
+    }
+  }
+
   @Test
   public void testResolveFutureToHandler() {
     Consumer<Handler<AsyncResult<String>>> consumer = handler -> {
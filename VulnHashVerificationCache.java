@@ -0,0 +1,168 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.core.security.authc.support;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.CharArrays;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.hash.MessageDigests;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.metrics.MeanMetric;
+import org.elasticsearch.common.settings.SecureString;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
+import org.elasticsearch.xpack.core.XPackField;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Verifies passwords against their stored hashes, remembering the passwords that were recently verified successfully. A cached
+ * password is only kept as a digest of the (fast) {@code cacheHasher} so that a hit costs a single salted hash instead of the full
+ * BCRYPT or PBKDF2 computation. The entries are keyed by the SHA-256 of the stored hash, so the stored hashes are not retained.
+ * Cache misses are computed on the given executor, which is expected to be the bounded {@link #THREAD_POOL_NAME} pool, so that the
+ * expensive hashes never run on a network thread.
+ */
+public final class HashVerificationCache {
+
+    public static final String THREAD_POOL_NAME = XPackField.SECURITY + "-crypto";
+
+    private final String name;
+    private final Hasher cacheHasher;
+    private final ExecutorService executor;
+    @Nullable
+    private final Cache<String, char[]> cache;
+    private final CounterMetric cacheHits = new CounterMetric();
+    private final CounterMetric cacheMisses = new CounterMetric();
+    private final MeanMetric hashingTime = new MeanMetric();
+
+    /**
+     * @param name        the name of the realm that owns this cache, used for stats
+     * @param ttl         how long a successful verification is remembered, {@code 0} disables the cache
+     * @param maxEntries  the maximum number of stored hashes to remember
+     * @param cacheHasher the hasher used for the cached digests, typically {@link Hasher#SSHA256}
+     * @param executor    the executor on which the stored hashes are verified
+     */
+    public HashVerificationCache(String name, TimeValue ttl, int maxEntries, Hasher cacheHasher, ExecutorService executor) {
+        this.name = name;
+        this.cacheHasher = cacheHasher;
+        this.executor = executor;
+        if (ttl.getNanos() > 0 && maxEntries > 0) {
+            this.cache = CacheBuilder.<String, char[]>builder()
+                    .setExpireAfterWrite(ttl)
+                    .setMaximumWeight(maxEntries)
+                    .build();
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * The executor for the {@link #THREAD_POOL_NAME} pool. It is sized to half of the processors so that a burst of authentications
+     * can not starve the node of cpu, and has a bounded queue so that excess requests are rejected instead of piling up.
+     */
+    public static FixedExecutorBuilder executorBuilder(Settings settings) {
+        final int size = Math.max(1, EsExecutors.numberOfProcessors(settings) / 2);
+        return new FixedExecutorBuilder(settings, THREAD_POOL_NAME, size, 1000, "xpack.security.crypto.thread_pool");
+    }
+
+    /**
+     * Verifies that {@code password} corresponds to the stored {@code hash}. The listener is notified on the calling thread for cache
+     * hits and on the hashing executor otherwise. Neither the password nor the hash are retained by this method.
+     */
+    public void verify(SecureString password, char[] hash, ActionListener<Boolean> listener) {
+        final String key = cacheKey(hash);
+        if (cache != null) {
+            final char[] cachedDigest = cache.get(key);
+            if (cachedDigest != null && cacheHasher.verify(password, cachedDigest)) {
+                cacheHits.inc();
+                listener.onResponse(true);
+                return;
+            }
+        }
+        cacheMisses.inc();
+        final SecureString passwordCopy = password.clone();
+        final char[] storedHash = hash.clone();
+        try {
+            executor.execute(new AbstractRunnable() {
+                @Override
+                protected void doRun() {
+                    final long start = System.nanoTime();
+                    final boolean verified = Hasher.verifyHash(passwordCopy, storedHash);
+                    hashingTime.inc(System.nanoTime() - start);
+                    if (verified && cache != null) {
+                        cache.put(key, cacheHasher.hash(passwordCopy));
+                    }
+                    listener.onResponse(verified);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    listener.onFailure(e);
+                }
+
+                @Override
+                public void onAfter() {
+                    passwordCopy.close();
+                    Arrays.fill(storedHash, '\u0000');
+                }
+            });
+        } catch (EsRejectedExecutionException e) {
+            passwordCopy.close();
+            Arrays.fill(storedHash, '\u0000');
+            listener.onFailure(e);
+        }
+    }
+
+    /**
+     * Forgets the verification of the given stored hash, e.g. because the password was changed
+     */
+    public void invalidate(char[] hash) {
+        if (cache != null) {
+            cache.invalidate(cacheKey(hash));
+        }
+    }
+
+    private static String cacheKey(char[] hash) {
+        final byte[] hashBytes = CharArrays.toUtf8Bytes(hash);
+        try {
+            return MessageDigests.toHexString(MessageDigests.sha256().digest(hashBytes));
+        } finally {
+            Arrays.fill(hashBytes, (byte) 0);
+        }
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long getCacheHits() {
+        return cacheHits.count();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.count();
+    }
+
+    /**
+     * The time spent computing the stored hashes, i.e. the cost of the cache misses
+     */
+    public MeanMetric getHashingTime() {
+        return hashingTime;
+    }
+}
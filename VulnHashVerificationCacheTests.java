@@ -0,0 +1,78 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.core.security.authc.support;
+
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.common.settings.SecureString;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.concurrent.ExecutorService;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+public class HashVerificationCacheTests extends ESTestCase {
+
+    public void testCachedVerification() throws Exception {
+        final Hasher hasher = randomFrom(Hasher.BCRYPT4, Hasher.PBKDF2_1000);
+        final char[] hash = hasher.hash(new SecureString("passw0rd".toCharArray()));
+        final HashVerificationCache cache = new HashVerificationCache("file", TimeValue.timeValueMinutes(5), 100, Hasher.SSHA256,
+                EsExecutors.newDirectExecutorService());
+
+        assertThat(verify(cache, "passw0rd", hash), equalTo(true));
+        assertThat(cache.getCacheHits(), equalTo(0L));
+        assertThat(cache.getCacheMisses(), equalTo(1L));
+        assertThat(cache.getHashingTime().count(), equalTo(1L));
+
+        assertThat(verify(cache, "passw0rd", hash), equalTo(true));
+        assertThat(cache.getCacheHits(), equalTo(1L));
+        assertThat(cache.getHashingTime().count(), equalTo(1L));
+
+        // a wrong password is never served from the cache
+        assertThat(verify(cache, "password", hash), equalTo(false));
+        assertThat(cache.getCacheHits(), equalTo(1L));
+        assertThat(cache.getCacheMisses(), equalTo(2L));
+
+        cache.invalidate(hash);
+        assertThat(verify(cache, "passw0rd", hash), equalTo(true));
+        assertThat(cache.getCacheMisses(), equalTo(3L));
+    }
+
+    public void testDisabledCache() throws Exception {
+        final char[] hash = Hasher.BCRYPT4.hash(new SecureString("passw0rd".toCharArray()));
+        final HashVerificationCache cache = new HashVerificationCache("file", TimeValue.ZERO, 100, Hasher.SSHA256,
+                EsExecutors.newDirectExecutorService());
+        for (int i = 0; i < 3; i++) {
+            assertThat(verify(cache, "passw0rd", hash), equalTo(true));
+        }
+        assertThat(cache.getCacheHits(), equalTo(0L));
+        assertThat(cache.getCacheMisses(), equalTo(3L));
+    }
+
+    public void testRejectedVerification() throws Exception {
+        final char[] hash = Hasher.BCRYPT4.hash(new SecureString("passw0rd".toCharArray()));
+        final ExecutorService executor = mock(ExecutorService.class);
+        doThrow(new EsRejectedExecutionException("rejected")).when(executor).execute(any(Runnable.class));
+        final HashVerificationCache cache = new HashVerificationCache("file", TimeValue.timeValueMinutes(5), 100, Hasher.SSHA256,
+                executor);
+        expectThrows(EsRejectedExecutionException.class, () -> verify(cache, "passw0rd", hash));
+        assertThat(cache.getCacheMisses(), equalTo(1L));
+        assertThat(cache.getHashingTime().count(), equalTo(0L));
+    }
+
+    private static boolean verify(HashVerificationCache cache, String password, char[] hash) {
+        final PlainActionFuture<Boolean> future = new PlainActionFuture<>();
+        try (SecureString secureString = new SecureString(password.toCharArray())) {
+            cache.verify(secureString, hash, future);
+        }
+        return future.actionGet();
+    }
+}
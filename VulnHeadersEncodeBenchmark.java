@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.http.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.AsciiString;
+import io.vertx.core.MultiMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes the head of a small JSON response as the server does: with the values set as strings through the {@link MultiMap}
+ * of the response, versus set directly with the pre-encoded values of {@link HttpHeaderCache}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HeadersEncodeBenchmark {
+
+  private static final AsciiString APPLICATION_JSON = AsciiString.of("application/json");
+  private static final AsciiString SERVER = AsciiString.of("vert.x");
+
+  private EmbeddedChannel channel;
+  private SimpleDateFormat dateFormat;
+  private int contentLength;
+
+  @Setup
+  public void setup() {
+    channel = new EmbeddedChannel(new HttpResponseEncoder());
+    dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+    dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+    contentLength = 27;
+  }
+
+  @TearDown
+  public void tearDown() {
+    channel.finishAndReleaseAll();
+  }
+
+  @Benchmark
+  public int stringHeaders() {
+    HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, false);
+    MultiMap headers = new HeadersAdaptor(response.headers());
+    headers.set("Content-Type", "application/json");
+    headers.set("Server", "vert.x");
+    headers.set("Date", dateFormat.format(new Date()));
+    headers.set("Content-Length", String.valueOf(contentLength));
+    return encode(response);
+  }
+
+  @Benchmark
+  public int cachedHeaders() {
+    HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, false);
+    response.headers().set(HttpHeaderNames.CONTENT_TYPE, APPLICATION_JSON);
+    response.headers().set(HttpHeaderNames.SERVER, SERVER);
+    response.headers().set(HttpHeaderNames.DATE, HttpHeaderCache.date());
+    response.headers().set(HttpHeaderNames.CONTENT_LENGTH, HttpHeaderCache.contentLength(contentLength));
+    return encode(response);
+  }
+
+  private int encode(HttpResponse response) {
+    channel.writeOutbound(response);
+    ByteBuf buf = channel.readOutbound();
+    try {
+      return buf.readableBytes();
+    } finally {
+      buf.release();
+    }
+  }
+}
@@ -25,6 +25,7 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.dns.HostnameResolverOptions;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.impl.HostnameResolver;
 import io.vertx.core.impl.VertxImpl;
 import io.vertx.core.impl.VertxInternal;
 import io.vertx.core.impl.VertxThreadFactory;
@@ -163,6 +164,9 @@ public class HostnameResolutionTest extends VertxTestBase {
     assertEquals(HostnameResolverOptions.DEFAULT_QUERY_TIMEOUT, options.getQueryTimeout());
     assertEquals(HostnameResolverOptions.DEFAULT_MAX_QUERIES, options.getMaxQueries());
     assertEquals(HostnameResolverOptions.DEFAULT_RD_FLAG, options.getRdFlag());
+    assertEquals(HostnameResolverOptions.DEFAULT_ADDRESS_CACHE_TIME_TO_LIVE, options.getAddressCacheTimeToLive());
+    assertEquals(HostnameResolverOptions.DEFAULT_ADDRESS_CACHE_STALE_TIME_TO_LIVE, options.getAddressCacheStaleTimeToLive());
+    assertEquals(HostnameResolverOptions.DEFAULT_ROUND_ROBIN_INET_ADDRESS, options.isRoundRobinInetAddress());
 
     boolean optResourceEnabled = TestUtils.randomBoolean();
     List<String> servers = Arrays.asList("1.2.3.4", "5.6.7.8");
@@ -172,6 +176,9 @@ public class HostnameResolutionTest extends VertxTestBase {
     int queryTimeout = 1 + TestUtils.randomPositiveInt();
     int maxQueries = 1 + TestUtils.randomPositiveInt();
     boolean rdFlag = TestUtils.randomBoolean();
+    int addressTTL = TestUtils.randomPositiveInt();
+    int staleTTL = TestUtils.randomPositiveInt();
+    boolean roundRobin = TestUtils.randomBoolean();
 
     assertSame(options, options.setOptResourceEnabled(optResourceEnabled));
     assertSame(options, options.setServers(new ArrayList<>(servers)));
@@ -181,6 +188,11 @@ public class HostnameResolutionTest extends VertxTestBase {
     assertSame(options, options.setQueryTimeout(queryTimeout));
     assertSame(options, options.setMaxQueries(maxQueries));
     assertSame(options, options.setRdFlag(rdFlag));
+    assertSame(options, options.setAddressCacheTimeToLive(addressTTL));
+    assertSame(options, options.setAddressCacheStaleTimeToLive(staleTTL));
+    assertSame(options, options.setRoundRobinInetAddress(roundRobin));
+    TestUtils.assertIllegalArgumentException(() -> options.setAddressCacheTimeToLive(-1));
+    TestUtils.assertIllegalArgumentException(() -> options.setAddressCacheStaleTimeToLive(-1));
 
     assertEquals(optResourceEnabled, options.isOptResourceEnabled());
     assertEquals(servers, options.getServers());
@@ -190,6 +202,9 @@ public class HostnameResolutionTest extends VertxTestBase {
     assertEquals(queryTimeout, options.getQueryTimeout());
     assertEquals(maxQueries, options.getMaxQueries());
     assertEquals(rdFlag, options.getRdFlag());
+    assertEquals(addressTTL, options.getAddressCacheTimeToLive());
+    assertEquals(staleTTL, options.getAddressCacheStaleTimeToLive());
+    assertEquals(roundRobin, options.isRoundRobinInetAddress());
 
     // Test copy and json copy
     HostnameResolverOptions copy = new HostnameResolverOptions(options);
@@ -203,6 +218,9 @@ public class HostnameResolutionTest extends VertxTestBase {
     options.setQueryTimeout(HostnameResolverOptions.DEFAULT_QUERY_TIMEOUT);
     options.setMaxQueries(HostnameResolverOptions.DEFAULT_MAX_QUERIES);
     options.setRdFlag(HostnameResolverOptions.DEFAULT_RD_FLAG);
+    options.setAddressCacheTimeToLive(HostnameResolverOptions.DEFAULT_ADDRESS_CACHE_TIME_TO_LIVE);
+    options.setAddressCacheStaleTimeToLive(HostnameResolverOptions.DEFAULT_ADDRESS_CACHE_STALE_TIME_TO_LIVE);
+    options.setRoundRobinInetAddress(HostnameResolverOptions.DEFAULT_ROUND_ROBIN_INET_ADDRESS);
 
     assertEquals(optResourceEnabled, copy.isOptResourceEnabled());
     assertEquals(servers, copy.getServers());
@@ -212,6 +230,9 @@ public class HostnameResolutionTest extends VertxTestBase {
     assertEquals(queryTimeout, copy.getQueryTimeout());
     assertEquals(maxQueries, copy.getMaxQueries());
     assertEquals(rdFlag, copy.getRdFlag());
+    assertEquals(addressTTL, copy.getAddressCacheTimeToLive());
+    assertEquals(staleTTL, copy.getAddressCacheStaleTimeToLive());
+    assertEquals(roundRobin, copy.isRoundRobinInetAddress());
 
     assertEquals(optResourceEnabled, jsonCopy.isOptResourceEnabled());
     assertEquals(servers, jsonCopy.getServers());
@@ -221,6 +242,9 @@ public class HostnameResolutionTest extends VertxTestBase {
     assertEquals(queryTimeout, jsonCopy.getQueryTimeout());
     assertEquals(maxQueries, jsonCopy.getMaxQueries());
     assertEquals(rdFlag, jsonCopy.getRdFlag());
+    assertEquals(addressTTL, jsonCopy.getAddressCacheTimeToLive());
+    assertEquals(staleTTL, jsonCopy.getAddressCacheStaleTimeToLive());
+    assertEquals(roundRobin, jsonCopy.isRoundRobinInetAddress());
   }
 
   @Test
@@ -234,6 +258,87 @@ public class HostnameResolutionTest extends VertxTestBase {
     assertEquals(HostnameResolverOptions.DEFAULT_QUERY_TIMEOUT, options.getQueryTimeout());
     assertEquals(HostnameResolverOptions.DEFAULT_MAX_QUERIES, options.getMaxQueries());
     assertEquals(HostnameResolverOptions.DEFAULT_RD_FLAG, options.getRdFlag());
+    assertEquals(HostnameResolverOptions.DEFAULT_ADDRESS_CACHE_TIME_TO_LIVE, options.getAddressCacheTimeToLive());
+    assertEquals(HostnameResolverOptions.DEFAULT_ADDRESS_CACHE_STALE_TIME_TO_LIVE, options.getAddressCacheStaleTimeToLive());
+    assertEquals(HostnameResolverOptions.DEFAULT_ROUND_ROBIN_INET_ADDRESS, options.isRoundRobinInetAddress());
+  }
+
+  @Test
+  public void testAddressCache() throws Exception {
+    HostnameResolver resolver = new HostnameResolver((VertxImpl) vertx, resolverOptions().setAddressCacheTimeToLive(10));
+    try {
+      CountDownLatch latch = new CountDownLatch(1);
+      resolver.resolveHostname("vertx.io", onSuccess(resolved -> {
+        assertEquals("127.0.0.1", resolved.getHostAddress());
+        latch.countDown();
+      }));
+      awaitLatch(latch);
+      resolver.resolveHostname("vertx.io", onSuccess(resolved -> {
+        assertEquals("127.0.0.1", resolved.getHostAddress());
+        assertEquals(1, resolver.cacheHits());
+        assertEquals(1, resolver.cacheMisses());
+        testComplete();
+      }));
+      await();
+    } finally {
+      resolver.close();
+    }
+  }
+
+  @Test
+  public void testStaleAddressOnFailure() throws Exception {
+    HostnameResolver resolver = new HostnameResolver((VertxImpl) vertx, resolverOptions()
+        .setAddressCacheTimeToLive(1)
+        .setAddressCacheStaleTimeToLive(60));
+    try {
+      CountDownLatch latch = new CountDownLatch(1);
+      resolver.resolveHostname("vertx.io", onSuccess(resolved -> latch.countDown()));
+      awaitLatch(latch);
+      dnsServer.stop();
+      // Wait for the entry to expire
+      Thread.sleep(1100);
+      resolver.resolveHostname("vertx.io", onSuccess(resolved -> {
+        assertEquals("127.0.0.1", resolved.getHostAddress());
+        assertEquals(1, resolver.cacheStaleHits());
+        testComplete();
+      }));
+      await();
+    } finally {
+      resolver.close();
+    }
+  }
+
+  @Test
+  public void testStaleAddressIsServedWhileRefreshing() throws Exception {
+    HostnameResolver resolver = new HostnameResolver((VertxImpl) vertx, resolverOptions()
+        .setAddressCacheTimeToLive(1)
+        .setAddressCacheStaleTimeToLive(60));
+    try {
+      CountDownLatch latch = new CountDownLatch(1);
+      resolver.resolveHostname("vertx.io", onSuccess(resolved -> latch.countDown()));
+      awaitLatch(latch);
+      // Wait for the entry to expire
+      Thread.sleep(1100);
+      resolver.resolveHostname("vertx.io", onSuccess(resolved -> {
+        assertEquals("127.0.0.1", resolved.getHostAddress());
+        assertEquals(1, resolver.cacheMisses());
+        assertEquals(1, resolver.cacheStaleHits());
+        assertEquals(1, resolver.cacheRefreshes());
+        testComplete();
+      }));
+      await();
+    } finally {
+      resolver.close();
+    }
+  }
+
+  private HostnameResolverOptions resolverOptions() {
+    return new HostnameResolverOptions()
+        .addServer(dnsServerAddress.getAddress().getHostAddress() + ":" + dnsServerAddress.getPort())
+        .setOptResourceEnabled(false)
+        .setCacheMaxTimeToLive(0)
+        .setQueryTimeout(500)
+        .setMaxQueries(1);
   }
 
   @Test
@@ -35,14 +35,40 @@ import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Resolves hostnames with the Netty DNS resolver.
+ * <p>
+ * Concurrent lookups of the same hostname share the same DNS resolution. When the
+ * {@link HostnameResolverOptions#getAddressCacheTimeToLive() address cache} is enabled, the resolved addresses are
+ * cached and a hostname that is used during the last fifth of its time to live is resolved again in the background,
+ * so the lookups don't wait for the DNS when the entry expires. An expired entry keeps being used for
+ * {@link HostnameResolverOptions#getAddressCacheStaleTimeToLive()} more seconds while the hostname is resolved again in
+ * the background, also when that resolution fails. The entries that can't be used anymore are swept from the cache at
+ * most once per time to live, when a hostname is resolved.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class HostnameResolver {
 
+  private static final long REFRESH_RETRY_DELAY = 1000;
+
   private final Vertx vertx;
   private final InetNameResolver resolver;
+  private final long cacheTimeToLive;
+  private final long staleTimeToLive;
+  private final boolean roundRobin;
+  private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Lookup> lookups = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong refreshes = new AtomicLong();
+  private final AtomicLong staleHits = new AtomicLong();
+  private final AtomicLong nextSweep = new AtomicLong();
 
   public HostnameResolver(VertxImpl vertx, HostnameResolverOptions options) {
     DnsNameResolverBuilder builder = new DnsNameResolverBuilder(vertx.createEventLoopContext(null, null, new JsonObject(), Thread.currentThread().getContextClassLoader()).nettyEventLoop());
@@ -80,24 +106,198 @@ public class HostnameResolver {
     }
     this.resolver = builder.build();
     this.vertx = vertx;
+    this.cacheTimeToLive = options != null ? options.getAddressCacheTimeToLive() * 1000L : 0;
+    this.staleTimeToLive = options != null ? options.getAddressCacheStaleTimeToLive() * 1000L : 0;
+    this.roundRobin = options != null && options.isRoundRobinInetAddress();
   }
 
   public void resolveHostname(String hostname, Handler<AsyncResult<InetAddress>> resultHandler) {
     Context callback = vertx.getOrCreateContext();
-    io.netty.util.concurrent.Future<InetAddress> fut = resolver.resolve(hostname);
-    fut.addListener(a -> {
-      callback.runOnContext(v -> {
-        if (a.isSuccess()) {
-          InetAddress address = fut.getNow();
-          resultHandler.handle(Future.succeededFuture(address));
-        } else {
-          resultHandler.handle(Future.failedFuture(a.cause()));
-        }
-      });
-    });
+    long now = System.currentTimeMillis();
+    CacheEntry entry = cache.get(hostname);
+    if (entry != null && now < entry.expiresAt + staleTimeToLive) {
+      if (now < entry.expiresAt) {
+        hits.incrementAndGet();
+      } else {
+        staleHits.incrementAndGet();
+      }
+      if (now >= entry.refreshAt) {
+        // Resolve it again before it expires
+        entry.refreshAt = Long.MAX_VALUE;
+        refreshes.incrementAndGet();
+        lookup(hostname);
+      }
+      InetAddress address = entry.next();
+      callback.runOnContext(v -> resultHandler.handle(Future.succeededFuture(address)));
+    } else {
+      misses.incrementAndGet();
+      lookup(hostname).addHandler(callback, resultHandler);
+    }
+  }
+
+  private Lookup lookup(String hostname) {
+    Lookup lookup = lookups.get(hostname);
+    if (lookup == null) {
+      Lookup created = new Lookup();
+      lookup = lookups.putIfAbsent(hostname, created);
+      if (lookup == null) {
+        lookup = created;
+        io.netty.util.concurrent.Future<List<InetAddress>> fut = resolver.resolveAll(hostname);
+        fut.addListener(a -> {
+          lookups.remove(hostname, created);
+          if (a.isSuccess()) {
+            created.complete(resolved(hostname, fut.getNow()), null);
+          } else {
+            created.complete(stale(hostname), a.cause());
+          }
+        });
+      }
+    }
+    return lookup;
+  }
+
+  private CacheEntry resolved(String hostname, List<InetAddress> addresses) {
+    long now = System.currentTimeMillis();
+    CacheEntry entry = new CacheEntry(addresses, now + cacheTimeToLive * 4 / 5, now + cacheTimeToLive);
+    if (cacheTimeToLive > 0) {
+      cache.put(hostname, entry);
+      long sweepAt = nextSweep.get();
+      if (now >= sweepAt && nextSweep.compareAndSet(sweepAt, now + cacheTimeToLive)) {
+        sweep(now);
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Removes the entries that have expired for longer than the stale time to live.
+   */
+  private void sweep(long now) {
+    cache.values().removeIf(entry -> now >= entry.expiresAt + staleTimeToLive);
+  }
+
+  /**
+   * @return the entry of the hostname when it can still be used after a failed resolution, otherwise {@code null}
+   */
+  private CacheEntry stale(String hostname) {
+    CacheEntry entry = cache.get(hostname);
+    if (entry == null) {
+      return null;
+    }
+    long now = System.currentTimeMillis();
+    if (now < entry.expiresAt + staleTimeToLive) {
+      // A background refresh failed, retry it later
+      entry.refreshAt = now + REFRESH_RETRY_DELAY;
+      return entry;
+    }
+    cache.remove(hostname, entry);
+    return null;
+  }
+
+  /**
+   * @return the number of lookups served by the address cache
+   */
+  public long cacheHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return the number of lookups that waited for a DNS resolution
+   */
+  public long cacheMisses() {
+    return misses.get();
+  }
+
+  /**
+   * @return the number of background resolutions of cached hostnames
+   */
+  public long cacheRefreshes() {
+    return refreshes.get();
+  }
+
+  /**
+   * @return the number of lookups served by an expired entry
+   */
+  public long cacheStaleHits() {
+    return staleHits.get();
   }
 
   public void close() {
+    cache.clear();
     resolver.close();
   }
+
+  private class CacheEntry {
+
+    private final List<InetAddress> addresses;
+    private final long expiresAt;
+    private final AtomicInteger index = new AtomicInteger();
+    private volatile long refreshAt;
+
+    CacheEntry(List<InetAddress> addresses, long refreshAt, long expiresAt) {
+      this.addresses = addresses;
+      this.refreshAt = refreshAt;
+      this.expiresAt = expiresAt;
+    }
+
+    InetAddress next() {
+      if (roundRobin && addresses.size() > 1) {
+        return addresses.get((index.getAndIncrement() & Integer.MAX_VALUE) % addresses.size());
+      }
+      return addresses.get(0);
+    }
+  }
+
+  /**
+   * A DNS resolution shared by the concurrent lookups of a hostname.
+   */
+  private static class Lookup {
+
+    private List<Waiter> waiters = new ArrayList<>();
+    private CacheEntry entry;
+    private Throwable failure;
+
+    void addHandler(Context context, Handler<AsyncResult<InetAddress>> handler) {
+      synchronized (this) {
+        if (waiters != null) {
+          waiters.add(new Waiter(context, handler));
+          return;
+        }
+      }
+      deliver(context, handler);
+    }
+
+    void complete(CacheEntry entry, Throwable failure) {
+      List<Waiter> completed;
+      synchronized (this) {
+        this.entry = entry;
+        this.failure = failure;
+        completed = waiters;
+        waiters = null;
+      }
+      for (Waiter waiter : completed) {
+        deliver(waiter.context, waiter.handler);
+      }
+    }
+
+    private void deliver(Context context, Handler<AsyncResult<InetAddress>> handler) {
+      if (entry != null) {
+        InetAddress address = entry.next();
+        context.runOnContext(v -> handler.handle(Future.succeededFuture(address)));
+      } else {
+        context.runOnContext(v -> handler.handle(Future.failedFuture(failure)));
+      }
+    }
+  }
+
+  private static class Waiter {
+
+    private final Context context;
+    private final Handler<AsyncResult<InetAddress>> handler;
+
+    Waiter(Context context, Handler<AsyncResult<InetAddress>> handler) {
+      this.context = context;
+      this.handler = handler;
+    }
+  }
 }
\ No newline at end of file
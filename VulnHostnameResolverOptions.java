@@ -48,6 +48,21 @@ public class HostnameResolverOptions {
   public static final int DEFAULT_MAX_QUERIES = 3;
   public static final boolean DEFAULT_RD_FLAG = true;
 
+  /**
+   * The default value for {@link #setAddressCacheTimeToLive} = 0 (the resolved addresses are only cached by the DNS cache)
+   */
+  public static final int DEFAULT_ADDRESS_CACHE_TIME_TO_LIVE = 0;
+
+  /**
+   * The default value for {@link #setAddressCacheStaleTimeToLive} = 0
+   */
+  public static final int DEFAULT_ADDRESS_CACHE_STALE_TIME_TO_LIVE = 0;
+
+  /**
+   * The default value for {@link #setRoundRobinInetAddress} = false
+   */
+  public static final boolean DEFAULT_ROUND_ROBIN_INET_ADDRESS = false;
+
   private List<String> servers;
   private boolean optResourceEnabled;
   private int cacheMinTimeToLive;
@@ -56,6 +71,9 @@ public class HostnameResolverOptions {
   private long queryTimeout;
   private int maxQueries;
   private boolean rdFlag;
+  private int addressCacheTimeToLive;
+  private int addressCacheStaleTimeToLive;
+  private boolean roundRobinInetAddress;
 
   public HostnameResolverOptions() {
     servers = DEFAULT_SERVERS;
@@ -66,6 +84,9 @@ public class HostnameResolverOptions {
     queryTimeout = DEFAULT_QUERY_TIMEOUT;
     maxQueries = DEFAULT_MAX_QUERIES;
     rdFlag = DEFAULT_RD_FLAG;
+    addressCacheTimeToLive = DEFAULT_ADDRESS_CACHE_TIME_TO_LIVE;
+    addressCacheStaleTimeToLive = DEFAULT_ADDRESS_CACHE_STALE_TIME_TO_LIVE;
+    roundRobinInetAddress = DEFAULT_ROUND_ROBIN_INET_ADDRESS;
   }
 
   public HostnameResolverOptions(HostnameResolverOptions other) {
@@ -77,6 +98,9 @@ public class HostnameResolverOptions {
     this.queryTimeout = other.queryTimeout;
     this.maxQueries = other.maxQueries;
     this.rdFlag = other.rdFlag;
+    this.addressCacheTimeToLive = other.addressCacheTimeToLive;
+    this.addressCacheStaleTimeToLive = other.addressCacheStaleTimeToLive;
+    this.roundRobinInetAddress = other.roundRobinInetAddress;
   }
 
   public HostnameResolverOptions(JsonObject json) {
@@ -250,6 +274,71 @@ public class HostnameResolverOptions {
     return this;
   }
 
+  /**
+   * @return the address cache TTL in seconds
+   */
+  public int getAddressCacheTimeToLive() {
+    return addressCacheTimeToLive;
+  }
+
+  /**
+   * Set the address cache TTL value in seconds. The addresses of a resolved hostname are kept for this period of time,
+   * and are resolved again in the background when the hostname is used during the last fifth of the period, so that
+   * the lookups are not blocked when the period ends. Set to {@code 0} to disable the address cache, concurrent
+   * lookups of the same hostname are still merged.
+   *
+   * @param addressCacheTimeToLive the address cache TTL in seconds
+   * @return a reference to this, so the API can be used fluently
+   */
+  public HostnameResolverOptions setAddressCacheTimeToLive(int addressCacheTimeToLive) {
+    if (addressCacheTimeToLive < 0) {
+      throw new IllegalArgumentException("addressCacheTimeToLive must be >= 0");
+    }
+    this.addressCacheTimeToLive = addressCacheTimeToLive;
+    return this;
+  }
+
+  /**
+   * @return the address cache stale TTL in seconds
+   */
+  public int getAddressCacheStaleTimeToLive() {
+    return addressCacheStaleTimeToLive;
+  }
+
+  /**
+   * Set the address cache stale TTL value in seconds. The addresses of an expired cache entry keep being used for this
+   * period of time after the entry expired, while the hostname is resolved again in the background.
+   *
+   * @param addressCacheStaleTimeToLive the address cache stale TTL in seconds
+   * @return a reference to this, so the API can be used fluently
+   */
+  public HostnameResolverOptions setAddressCacheStaleTimeToLive(int addressCacheStaleTimeToLive) {
+    if (addressCacheStaleTimeToLive < 0) {
+      throw new IllegalArgumentException("addressCacheStaleTimeToLive must be >= 0");
+    }
+    this.addressCacheStaleTimeToLive = addressCacheStaleTimeToLive;
+    return this;
+  }
+
+  /**
+   * @return true if the resolved addresses of a hostname are returned in turn
+   */
+  public boolean isRoundRobinInetAddress() {
+    return roundRobinInetAddress;
+  }
+
+  /**
+   * Set to true to return the addresses of a hostname resolving to several addresses in turn, otherwise the first
+   * address is always returned.
+   *
+   * @param roundRobinInetAddress true to enable, false otherwise
+   * @return a reference to this, so the API can be used fluently
+   */
+  public HostnameResolverOptions setRoundRobinInetAddress(boolean roundRobinInetAddress) {
+    this.roundRobinInetAddress = roundRobinInetAddress;
+    return this;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -262,6 +351,9 @@ public class HostnameResolverOptions {
     if (queryTimeout != that.queryTimeout) return false;
     if (maxQueries != that.maxQueries) return false;
     if (rdFlag != that.rdFlag) return false;
+    if (addressCacheTimeToLive != that.addressCacheTimeToLive) return false;
+    if (addressCacheStaleTimeToLive != that.addressCacheStaleTimeToLive) return false;
+    if (roundRobinInetAddress != that.roundRobinInetAddress) return false;
     return servers != null ? servers.equals(that.servers) : that.servers == null;
   }
 
@@ -275,6 +367,9 @@ public class HostnameResolverOptions {
     result = 31 * result + Long.hashCode(queryTimeout);
     result = 31 * result + maxQueries;
     result = 31 * result + Boolean.hashCode(rdFlag);
+    result = 31 * result + addressCacheTimeToLive;
+    result = 31 * result + addressCacheStaleTimeToLive;
+    result = 31 * result + Boolean.hashCode(roundRobinInetAddress);
     return result;
   }
 
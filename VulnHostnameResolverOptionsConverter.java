@@ -27,6 +27,12 @@ import io.vertx.core.json.JsonArray;
 public class HostnameResolverOptionsConverter {
 
   public static void fromJson(JsonObject json, HostnameResolverOptions obj) {
+    if (json.getValue("addressCacheStaleTimeToLive") instanceof Number) {
+      obj.setAddressCacheStaleTimeToLive(((Number)json.getValue("addressCacheStaleTimeToLive")).intValue());
+    }
+    if (json.getValue("addressCacheTimeToLive") instanceof Number) {
+      obj.setAddressCacheTimeToLive(((Number)json.getValue("addressCacheTimeToLive")).intValue());
+    }
     if (json.getValue("cacheMaxTimeToLive") instanceof Number) {
       obj.setCacheMaxTimeToLive(((Number)json.getValue("cacheMaxTimeToLive")).intValue());
     }
@@ -48,6 +54,9 @@ public class HostnameResolverOptionsConverter {
     if (json.getValue("rdFlag") instanceof Boolean) {
       obj.setRdFlag((Boolean)json.getValue("rdFlag"));
     }
+    if (json.getValue("roundRobinInetAddress") instanceof Boolean) {
+      obj.setRoundRobinInetAddress((Boolean)json.getValue("roundRobinInetAddress"));
+    }
     if (json.getValue("servers") instanceof JsonArray) {
       json.getJsonArray("servers").forEach(item -> {
         if (item instanceof String)
@@ -57,6 +66,8 @@ public class HostnameResolverOptionsConverter {
   }
 
   public static void toJson(HostnameResolverOptions obj, JsonObject json) {
+    json.put("addressCacheStaleTimeToLive", obj.getAddressCacheStaleTimeToLive());
+    json.put("addressCacheTimeToLive", obj.getAddressCacheTimeToLive());
     json.put("cacheMaxTimeToLive", obj.getCacheMaxTimeToLive());
     json.put("cacheMinTimeToLive", obj.getCacheMinTimeToLive());
     json.put("cacheNegativeTimeToLive", obj.getCacheNegativeTimeToLive());
@@ -64,6 +75,7 @@ public class HostnameResolverOptionsConverter {
     json.put("optResourceEnabled", obj.isOptResourceEnabled());
     json.put("queryTimeout", obj.getQueryTimeout());
     json.put("rdFlag", obj.getRdFlag());
+    json.put("roundRobinInetAddress", obj.isRoundRobinInetAddress());
     if (obj.getServers() != null) {
       json.put("servers", new JsonArray(
           obj.getServers().
@@ -6,16 +6,29 @@
 package org.elasticsearch.xpack.watcher.notification.email;
 
 import org.elasticsearch.common.SuppressForbidden;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.hash.MessageDigests;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.metrics.MeanMetric;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.owasp.html.CssSchema;
 import org.owasp.html.ElementPolicy;
 import org.owasp.html.HtmlPolicyBuilder;
 import org.owasp.html.PolicyFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.Function;
 
 public class HtmlSanitizer {
 
@@ -33,22 +46,134 @@ public class HtmlSanitizer {
             "body", "head", "_tables", "_links", "_blocks", "_formatting", "img:embedded"
     );
 
+    private static final Setting<Boolean> SETTING_SANITIZATION_ENABLED =
+            Setting.boolSetting("xpack.notification.email.html.sanitization.enabled", true, Property.NodeScope);
+    private static final Setting<List<String>> SETTING_SANITIZATION_ALLOW =
+            Setting.listSetting("xpack.notification.email.html.sanitization.allow", DEFAULT_ALLOWED, Function.identity(),
+                    Property.NodeScope);
+    private static final Setting<List<String>> SETTING_SANITIZATION_DISALLOW =
+            Setting.listSetting("xpack.notification.email.html.sanitization.disallow", Collections.emptyList(), Function.identity(),
+                    Property.NodeScope);
+    // the total size of the recently sanitized bodies to keep, 0 disables the cache
+    static final Setting<ByteSizeValue> SETTING_SANITIZATION_CACHE_SIZE =
+            Setting.byteSizeSetting("xpack.notification.email.html.sanitization.cache.size", new ByteSizeValue(10, ByteSizeUnit.MB),
+                    Property.NodeScope);
+
+    /**
+     * Bodies that only consist of these characters come out of the sanitizer unchanged, whatever the policy
+     */
+    private static final boolean[] PLAIN_TEXT_CHARS = new boolean[128];
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            PLAIN_TEXT_CHARS[c] = true;
+            PLAIN_TEXT_CHARS[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            PLAIN_TEXT_CHARS[c] = true;
+        }
+        for (char c : " \t\n.,;:!?-_()[]/*#%$~^|\\".toCharArray()) {
+            PLAIN_TEXT_CHARS[c] = true;
+        }
+    }
+
+    // the policy compiled for the most recently used allow and disallow lists, only rebuilt when these change
+    private static volatile CompiledPolicy compiledPolicy;
+
     private final boolean enabled;
     @SuppressForbidden( reason = "PolicyFactory uses guava Function")
     private final PolicyFactory policy;
-    
+    // recently sanitized bodies by the SHA-256 of their content, null if disabled
+    private final Cache<String, String> cache;
+    private final CounterMetric cacheHits = new CounterMetric();
+    private final CounterMetric plainTextBodies = new CounterMetric();
+    private final MeanMetric sanitizationTime = new MeanMetric();
+
     public HtmlSanitizer(Settings settings) {
-        enabled = settings.getAsBoolean("xpack.notification.email.html.sanitization.enabled", true);
-        List<String> allow = settings.getAsList("xpack.notification.email.html.sanitization.allow", DEFAULT_ALLOWED);
-        List<String> disallow = settings.getAsList("xpack.notification.email.html.sanitization.disallow");
-        policy = createCommonPolicy(allow, disallow);
+        enabled = SETTING_SANITIZATION_ENABLED.get(settings);
+        List<String> allow = SETTING_SANITIZATION_ALLOW.get(settings);
+        List<String> disallow = SETTING_SANITIZATION_DISALLOW.get(settings);
+        policy = compiledPolicy(allow, disallow);
+        long cacheSize = SETTING_SANITIZATION_CACHE_SIZE.get(settings).getBytes();
+        if (cacheSize > 0) {
+            cache = CacheBuilder.<String, String>builder()
+                    .setMaximumWeight(cacheSize)
+                    .weigher((key, sanitized) -> 2L * (key.length() + sanitized.length()))
+                    .build();
+        } else {
+            cache = null;
+        }
     }
 
     public String sanitize(String html) {
         if (!enabled) {
             return html;
         }
-        return policy.sanitize(html);
+        if (isPlainText(html)) {
+            plainTextBodies.inc();
+            return html;
+        }
+        final long start = System.nanoTime();
+        try {
+            if (cache == null || html == null) {
+                return policy.sanitize(html);
+            }
+            // a cryptographic hash, as a collision would hand out the sanitized version of another body
+            String key = MessageDigests.toHexString(MessageDigests.sha256().digest(html.getBytes(StandardCharsets.UTF_8)));
+            String sanitized = cache.get(key);
+            if (sanitized != null) {
+                cacheHits.inc();
+                return sanitized;
+            }
+            sanitized = policy.sanitize(html);
+            cache.put(key, sanitized);
+            return sanitized;
+        } finally {
+            sanitizationTime.inc(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * The number of bodies that were served from the cache of recently sanitized bodies
+     */
+    public long getCacheHits() {
+        return cacheHits.count();
+    }
+
+    /**
+     * The number of bodies that skipped sanitization as they were plain text
+     */
+    public long getPlainTextBodies() {
+        return plainTextBodies.count();
+    }
+
+    /**
+     * The time, in nanoseconds, spent on bodies that needed sanitization, including the cache lookups
+     */
+    public MeanMetric getSanitizationTime() {
+        return sanitizationTime;
+    }
+
+    static boolean isPlainText(String text) {
+        if (text == null) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= PLAIN_TEXT_CHARS.length || PLAIN_TEXT_CHARS[c] == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressForbidden( reason = "PolicyFactory uses guava Function")
+    static PolicyFactory compiledPolicy(List<String> allow, List<String> disallow) {
+        CompiledPolicy current = compiledPolicy;
+        if (current == null || current.allow.equals(allow) == false || current.disallow.equals(disallow) == false) {
+            current = new CompiledPolicy(allow, disallow);
+            compiledPolicy = current;
+        }
+        return current.policy;
     }
 
     @SuppressForbidden( reason = "PolicyFactory uses guava Function")
@@ -185,6 +310,25 @@ public class HtmlSanitizer {
         }
     }
 
+    private static final class CompiledPolicy {
+
+        private final List<String> allow;
+        private final List<String> disallow;
+        @SuppressForbidden( reason = "PolicyFactory uses guava Function")
+        private final PolicyFactory policy;
+
+        private CompiledPolicy(List<String> allow, List<String> disallow) {
+            this.allow = Collections.unmodifiableList(new ArrayList<>(allow));
+            this.disallow = Collections.unmodifiableList(new ArrayList<>(disallow));
+            this.policy = createCommonPolicy(allow, disallow);
+        }
+    }
+
+    public static List<Setting<?>> getSettings() {
+        return Arrays.asList(SETTING_SANITIZATION_ENABLED, SETTING_SANITIZATION_ALLOW, SETTING_SANITIZATION_DISALLOW,
+                SETTING_SANITIZATION_CACHE_SIZE);
+    }
+
     enum Images {
         ALL,
         EMBEDDED
@@ -5,13 +5,22 @@
  */
 package org.elasticsearch.xpack.watcher.notification.email;
 
+import org.elasticsearch.common.SuppressForbidden;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.xpack.watcher.Watcher;
+import org.owasp.html.PolicyFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 
 
 public class HtmlSanitizerTests extends ESTestCase {
@@ -162,4 +171,56 @@ public class HtmlSanitizerTests extends ESTestCase {
             assertThat(watcher.getSettings(), hasItem(setting));
         }
     }
-}
\ No newline at end of file
+
+    @SuppressForbidden( reason = "PolicyFactory uses guava Function")
+    public void testPlainTextSkipsSanitization() {
+        String alphabet = "abcXYZ019 \t\n.,;:!?-_()[]/*#%$~^|\\";
+        StringBuilder text = new StringBuilder();
+        for (int i = randomIntBetween(0, 200); i > 0; i--) {
+            text.append(alphabet.charAt(randomIntBetween(0, alphabet.length() - 1)));
+        }
+        HtmlSanitizer sanitizer = new HtmlSanitizer(Settings.EMPTY);
+        String sanitized = sanitizer.sanitize(text.toString());
+        assertThat(sanitized, equalTo(text.toString()));
+        // the sanitizer itself must leave plain text alone as well
+        assertThat(HtmlSanitizer.createCommonPolicy(HtmlSanitizer.DEFAULT_ALLOWED, Collections.emptyList()).sanitize(text.toString()),
+                equalTo(sanitized));
+        assertThat(sanitizer.getPlainTextBodies(), equalTo(1L));
+        assertThat(sanitizer.getSanitizationTime().count(), equalTo(0L));
+
+        assertThat(HtmlSanitizer.isPlainText("a < b"), equalTo(false));
+        assertThat(HtmlSanitizer.isPlainText("a & b"), equalTo(false));
+        assertThat(HtmlSanitizer.isPlainText("a=\"b\""), equalTo(false));
+        assertThat(HtmlSanitizer.isPlainText("caf\u00e9"), equalTo(false));
+    }
+
+    public void testSanitizedBodiesAreCached() {
+        String html = "<script>doSomethingNefarious()</script>This was a dangerous script";
+        HtmlSanitizer sanitizer = new HtmlSanitizer(Settings.EMPTY);
+        assertThat(sanitizer.sanitize(html), equalTo("This was a dangerous script"));
+        assertThat(sanitizer.getCacheHits(), equalTo(0L));
+        assertThat(sanitizer.sanitize(html), equalTo("This was a dangerous script"));
+        assertThat(sanitizer.getCacheHits(), equalTo(1L));
+        assertThat(sanitizer.sanitize(html + "!"), equalTo("This was a dangerous script!"));
+        assertThat(sanitizer.getCacheHits(), equalTo(1L));
+        assertThat(sanitizer.getSanitizationTime().count(), equalTo(3L));
+    }
+
+    public void testCacheDisabled() {
+        String html = "<script>doSomethingNefarious()</script>This was a dangerous script";
+        HtmlSanitizer sanitizer = new HtmlSanitizer(Settings.builder()
+                .put("xpack.notification.email.html.sanitization.cache.size", "0b")
+                .build());
+        assertThat(sanitizer.sanitize(html), equalTo("This was a dangerous script"));
+        assertThat(sanitizer.sanitize(html), equalTo("This was a dangerous script"));
+        assertThat(sanitizer.getCacheHits(), equalTo(0L));
+    }
+
+    @SuppressForbidden( reason = "PolicyFactory uses guava Function")
+    public void testCompiledPolicyIsOnlyRebuiltWhenSettingsChange() {
+        List<String> allow = Arrays.asList("_tables", "_styles");
+        PolicyFactory policy = HtmlSanitizer.compiledPolicy(allow, Collections.emptyList());
+        assertThat(HtmlSanitizer.compiledPolicy(new ArrayList<>(allow), Collections.emptyList()), sameInstance(policy));
+        assertThat(HtmlSanitizer.compiledPolicy(allow, Collections.singletonList("_styles")), not(sameInstance(policy)));
+    }
+}
@@ -17,18 +17,24 @@
 package io.vertx.core.http.impl;
 
 import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
 import io.vertx.core.Context;
 import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.HttpVersion;
 import io.vertx.core.impl.ContextImpl;
 
-import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 /**
+ * The idle connections are partitioned by event loop: a waiter first takes a connection of its own event loop, so that the request
+ * runs on the thread that owns the channel, and only steals from the other partitions when its own is empty, which is reported
+ * to the pool metrics. None of the operations takes a lock, the partitions are concurrent deques.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class Http1xPool extends ConnectionManager.Pool<ClientConnection> {
@@ -39,8 +45,8 @@ public class Http1xPool extends ConnectionManager.Pool<ClientConnection> {
   private final boolean keepAlive;
   private final boolean ssl;
   private final HttpVersion version;
-  private final Set<ClientConnection> allConnections = new HashSet<>();
-  private final Queue<ClientConnection> availableConnections = new ArrayDeque<>();
+  private final Set<ClientConnection> allConnections = ConcurrentHashMap.newKeySet();
+  private final Map<EventLoop, Deque<ClientConnection>> availableConnections = new ConcurrentHashMap<>();
 
   public Http1xPool(HttpClientImpl client, HttpClientOptions options, ConnectionManager.ConnQueue queue, Map<Channel, HttpClientConnection> connectionMap, HttpVersion version) {
     super(queue, client.getOptions().getMaxPoolSize());
@@ -59,21 +65,83 @@ public class Http1xPool extends ConnectionManager.Pool<ClientConnection> {
   }
 
   public boolean getConnection(Waiter waiter) {
-    ClientConnection conn = availableConnections.poll();
-    if (conn != null && conn.isValid()) {
-      ContextImpl context = waiter.context;
-      if (context == null) {
-        context = conn.getContext();
-      } else if (context != conn.getContext()) {
-        ConnectionManager.log.warn("Reusing a connection with a different context: an HttpClient is probably shared between different Verticles");
-      }
-      context.runOnContext(v -> deliverStream(conn, waiter));
+    ContextImpl context = waiter.context;
+    ClientConnection conn = pollAvailable(context != null ? context.nettyEventLoop() : null);
+    if (conn != null) {
+      deliver(conn, waiter);
       return true;
     } else {
       return false;
     }
   }
 
+  @Override
+  void checkPending() {
+    // A connection may have been made available after the waiter found none and before it was queued
+    ClientConnection conn;
+    while (queue.hasWaiters() && (conn = pollAvailable(null)) != null) {
+      Waiter waiter = queue.getNextWaiter();
+      if (waiter == null) {
+        // The waiters were served concurrently, a waiter queued while we held the connection did not see it: give it
+        // back and check the queue again
+        addAvailable(conn);
+      } else {
+        deliver(conn, waiter);
+      }
+    }
+  }
+
+  private void deliver(ClientConnection conn, Waiter waiter) {
+    ContextImpl context = waiter.context;
+    if (context == null) {
+      context = conn.getContext();
+    } else if (context != conn.getContext()) {
+      ConnectionManager.log.warn("Reusing a connection with a different context: an HttpClient is probably shared between different Verticles");
+    }
+    context.runOnContext(v -> deliverStream(conn, waiter));
+  }
+
+  /**
+   * @return an idle connection of the partition of the event loop, or of another partition if that one is empty
+   */
+  private ClientConnection pollAvailable(EventLoop eventLoop) {
+    if (eventLoop != null) {
+      ClientConnection conn = pollValid(availableConnections.get(eventLoop));
+      if (conn != null) {
+        return conn;
+      }
+    }
+    for (Map.Entry<EventLoop, Deque<ClientConnection>> partition : availableConnections.entrySet()) {
+      if (partition.getKey() != eventLoop) {
+        ClientConnection conn = pollValid(partition.getValue());
+        if (conn != null) {
+          if (eventLoop != null && queue.metrics != null) {
+            queue.metrics.resourceStolen();
+          }
+          return conn;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static ClientConnection pollValid(Deque<ClientConnection> partition) {
+    if (partition != null) {
+      ClientConnection conn;
+      // Most recently used first, closed connections are dropped, the pool is told about them by the close handler
+      while ((conn = partition.pollLast()) != null) {
+        if (conn.isValid()) {
+          return conn;
+        }
+      }
+    }
+    return null;
+  }
+
+  private void addAvailable(ClientConnection conn) {
+    availableConnections.computeIfAbsent(conn.getContext().nettyEventLoop(), eventLoop -> new ConcurrentLinkedDeque<>()).addLast(conn);
+  }
+
   @Override
   HttpClientStream createStream(ClientConnection conn) {
     return conn;
@@ -81,24 +149,20 @@ public class Http1xPool extends ConnectionManager.Pool<ClientConnection> {
 
   // Called when the request has ended
   void recycle(ClientConnection conn) {
-    synchronized (queue) {
-      if (pipelining) {
-        doRecycle(conn);
-      }
+    if (pipelining) {
+      doRecycle(conn);
     }
   }
 
   // Called when the response has ended
-  public synchronized void responseEnded(ClientConnection conn, boolean close) {
-    synchronized (queue) {
-      if ((pipelining || keepAlive) && !close) {
-        if (conn.getCurrentRequest() == null) {
-          doRecycle(conn);
-        }
-      } else {
-        // Close it now
-        conn.close();
+  public void responseEnded(ClientConnection conn, boolean close) {
+    if ((pipelining || keepAlive) && !close) {
+      if (conn.getCurrentRequest() == null) {
+        doRecycle(conn);
       }
+    } else {
+      // Close it now
+      conn.close();
     }
   }
 
@@ -112,7 +176,9 @@ public class Http1xPool extends ConnectionManager.Pool<ClientConnection> {
       context.runOnContext(v -> deliverStream(conn, waiter));
     } else if (conn.getOutstandingRequestCount() == 0) {
       // Return to set of available from here to not return it several times
-      availableConnections.add(conn);
+      addAvailable(conn);
+      // A waiter may have been queued after we checked
+      checkPending();
     }
   }
 
@@ -127,30 +193,25 @@ public class Http1xPool extends ConnectionManager.Pool<ClientConnection> {
     });
     ClientHandler handler = ch.pipeline().get(ClientHandler.class);
     handler.conn = conn;
-    synchronized (queue) {
-      allConnections.add(conn);
-    }
+    allConnections.add(conn);
     connectionMap.put(ch, conn);
     deliverStream(conn, waiter);
   }
 
   // Called if the connection is actually closed, OR the connection attempt failed - in the latter case
   // conn will be null
-  public synchronized void connectionClosed(ClientConnection conn) {
-    synchronized (queue) {
-      allConnections.remove(conn);
-      availableConnections.remove(conn);
-      queue.connectionClosed();
+  public void connectionClosed(ClientConnection conn) {
+    allConnections.remove(conn);
+    Deque<ClientConnection> partition = availableConnections.get(conn.getContext().nettyEventLoop());
+    if (partition != null) {
+      partition.remove(conn);
     }
+    queue.connectionClosed();
   }
 
   void closeAllConnections() {
-    Set<ClientConnection> copy;
-    synchronized (this) {
-      copy = new HashSet<>(allConnections);
-      allConnections.clear();
-    }
-    // Close outside sync block to avoid deadlock
+    Set<ClientConnection> copy = new HashSet<>(allConnections);
+    allConnections.removeAll(copy);
     for (ClientConnection conn : copy) {
       try {
         conn.close();
@@ -138,6 +138,19 @@ public class Http1xTest extends HttpTest {
     assertIllegalArgumentException(() -> options.setMaxPoolSize(0));
     assertIllegalArgumentException(() -> options.setMaxPoolSize(-1));
 
+    assertEquals(1, options.getHttp2MaxPoolSize());
+    rand = TestUtils.randomPositiveInt();
+    assertEquals(options, options.setHttp2MaxPoolSize(rand));
+    assertEquals(rand, options.getHttp2MaxPoolSize());
+    assertIllegalArgumentException(() -> options.setHttp2MaxPoolSize(0));
+    assertIllegalArgumentException(() -> options.setHttp2MaxPoolSize(-1));
+
+    assertEquals(0, options.getHttp2MinPoolSize());
+    rand = TestUtils.randomPositiveInt();
+    assertEquals(options, options.setHttp2MinPoolSize(rand));
+    assertEquals(rand, options.getHttp2MinPoolSize());
+    assertIllegalArgumentException(() -> options.setHttp2MinPoolSize(-1));
+
     assertTrue(options.isKeepAlive());
     assertEquals(options, options.setKeepAlive(false));
     assertFalse(options.isKeepAlive());
@@ -84,6 +84,14 @@ class Http2ClientConnection extends Http2ConnectionBase implements HttpClientCon
     http2Pool.recycle(Http2ClientConnection.this);
   }
 
+  /**
+   * @return the number of bytes that can be written before the channel becomes unwritable, a lower value means more bytes
+   *         are waiting to be written
+   */
+  long bytesBeforeUnwritable() {
+    return channel.bytesBeforeUnwritable();
+  }
+
   synchronized HttpClientStream createStream() throws Http2Exception {
     Http2Connection conn = handler.connection();
     Http2Stream stream = conn.local().createStream(conn.local().incrementAndGetNextStreamId(), false);
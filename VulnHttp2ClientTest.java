@@ -55,6 +55,7 @@ import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpConnection;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.http.HttpVersion;
 import io.vertx.core.http.StreamResetException;
@@ -69,7 +70,11 @@ import org.junit.Test;
 import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -612,6 +617,102 @@ public class Http2ClientTest extends Http2TestBase {
     await();
   }
 
+  @Test
+  public void testStreamsAreSpreadOverPooledConnections() throws Exception {
+    int poolSize = 3;
+    int numReq = 2 * poolSize;
+    waitFor(numReq);
+    List<HttpServerRequest> requests = Collections.synchronizedList(new ArrayList<>());
+    AtomicReference<Context> serverContext = new AtomicReference<>();
+    server.requestHandler(req -> {
+      serverContext.set(Vertx.currentContext());
+      requests.add(req);
+    });
+    startServer();
+    client.close();
+    client = vertx.createHttpClient(clientOptions.setHttp2MaxPoolSize(poolSize));
+    for (int i = 0; i < numReq; i++) {
+      client.get(DEFAULT_HTTPS_PORT, DEFAULT_HTTPS_HOST, "/somepath", resp -> {
+        resp.endHandler(v -> complete());
+      }).exceptionHandler(this::fail).end();
+      int expected = i + 1;
+      waitUntil(() -> requests.size() == expected);
+    }
+    // A busy connection is not shared while the pool can grow, then each stream goes to the least loaded connection
+    Map<HttpConnection, Integer> streams = new HashMap<>();
+    for (HttpServerRequest req : requests) {
+      streams.merge(req.connection(), 1, Integer::sum);
+    }
+    assertEquals(poolSize, streams.size());
+    for (int count : streams.values()) {
+      assertEquals(2, count);
+    }
+    serverContext.get().runOnContext(v -> requests.forEach(req -> req.response().end()));
+    await();
+  }
+
+  @Test
+  public void testHttp2MinPoolSizeOpensConnections() throws Exception {
+    List<HttpConnection> connections = Collections.synchronizedList(new ArrayList<>());
+    server.requestHandler(req -> {
+      connections.add(req.connection());
+      req.response().end();
+    });
+    startServer();
+    client.close();
+    client = vertx.createHttpClient(clientOptions.setHttp2MaxPoolSize(3).setHttp2MinPoolSize(2));
+    for (int i = 0; i < 3; i++) {
+      CountDownLatch latch = new CountDownLatch(1);
+      client.get(DEFAULT_HTTPS_PORT, DEFAULT_HTTPS_HOST, "/somepath", resp -> {
+        resp.endHandler(v -> latch.countDown());
+      }).exceptionHandler(this::fail).end();
+      awaitLatch(latch);
+      // Let the stream be closed, so that the connection is idle
+      Thread.sleep(100);
+    }
+    // The second request opens a connection although the first one is idle, the third one reuses an idle connection
+    assertEquals(3, connections.size());
+    assertEquals(2, new HashSet<>(connections).size());
+  }
+
+  @Test
+  public void testDiscardedConnectionReassignsWaiters() throws Exception {
+    server.close();
+    server = vertx.createHttpServer(serverOptions.setInitialSettings(new io.vertx.core.http.Http2Settings().setMaxConcurrentStreams(1L)));
+    List<HttpServerRequest> held = Collections.synchronizedList(new ArrayList<>());
+    AtomicReference<Context> serverContext = new AtomicReference<>();
+    server.requestHandler(req -> {
+      if (req.path().equals("/held")) {
+        serverContext.set(Vertx.currentContext());
+        held.add(req);
+      } else {
+        req.response().end();
+      }
+    });
+    startServer();
+    client.close();
+    client = vertx.createHttpClient(clientOptions.setHttp2MaxPoolSize(2));
+    // Saturate the two connections of the pool
+    for (int i = 0; i < 2; i++) {
+      CountDownLatch settings = new CountDownLatch(1);
+      client.get(DEFAULT_HTTPS_PORT, DEFAULT_HTTPS_HOST, "/held", resp -> {
+      }).connectionHandler(conn -> {
+        conn.remoteSettingsHandler(s -> settings.countDown());
+      }).exceptionHandler(err -> {
+      }).end();
+      awaitLatch(settings);
+      int expected = i + 1;
+      waitUntil(() -> held.size() == expected);
+    }
+    // This request waits in the queue until the server sends a GOAWAY on the first connection
+    client.get(DEFAULT_HTTPS_PORT, DEFAULT_HTTPS_HOST, "/somepath", resp -> {
+      assertEquals(200, resp.statusCode());
+      testComplete();
+    }).exceptionHandler(this::fail).end();
+    serverContext.get().runOnContext(v -> held.get(0).connection().goAway(0));
+    await();
+  }
+
   @Test
   public void testConnectionFailed() throws Exception {
     client.get(4044, DEFAULT_HTTPS_HOST, "/somepath", resp -> {
@@ -23,21 +23,32 @@ import io.netty.handler.timeout.IdleStateHandler;
 import io.vertx.core.http.HttpVersion;
 import io.vertx.core.impl.ContextImpl;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
+ * Pools up to {@link io.vertx.core.http.HttpClientOptions#getHttp2MaxPoolSize()} connections, each new stream is placed on
+ * the connection with the fewest active streams, and with the fewest bytes waiting to be written when they carry the same number
+ * of streams. A new connection is opened while the pool has less than
+ * {@link io.vertx.core.http.HttpClientOptions#getHttp2MinPoolSize()} connections, and as long as the pool is not full when all
+ * the connections carry streams already, so that concurrent streams are spread before any connection is saturated.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 class Http2Pool extends ConnectionManager.Pool<Http2ClientConnection> {
 
-  private Http2ClientConnection connection;
+  // Guarded by the queue
+  private final List<Http2ClientConnection> connections = new ArrayList<>();
   private final Map<Channel, ? super Http2ClientConnection> connectionMap;
+  private final int minSize;
   final HttpClientImpl client;
 
   public Http2Pool(ConnectionManager.ConnQueue queue, HttpClientImpl client, Map<Channel, ? super Http2ClientConnection> connectionMap) {
-    super(queue, 1);
+    super(queue, client.getOptions().getHttp2MaxPoolSize());
     this.client = client;
     this.connectionMap = connectionMap;
+    this.minSize = Math.min(client.getOptions().getHttp2MinPoolSize(), maxSockets);
   }
 
   @Override
@@ -45,23 +56,55 @@ class Http2Pool extends ConnectionManager.Pool<Http2ClientConnection> {
     return HttpVersion.HTTP_2;
   }
 
-  // Under sync when called
   public boolean getConnection(Waiter waiter) {
-    Http2ClientConnection conn = this.connection;
-    if (conn != null && canReserveStream(conn)) {
-      conn.streamCount++;
-      ContextImpl context = waiter.context;
-      if (context == null) {
-        context = conn.getContext();
-      } else if (context != conn.getContext()) {
-        ConnectionManager.log.warn("Reusing a connection with a different context: an HttpClient is probably shared between different Verticles");
+    synchronized (queue) {
+      if (queue.connectionCount() < minSize) {
+        // Let the queue open a new connection for this waiter
+        return false;
+      }
+      Http2ClientConnection conn = leastLoaded();
+      if (conn != null && conn.streamCount > 0 && queue.connectionCount() < maxSockets) {
+        // Let the queue open another connection rather than sharing a busy one
+        return false;
+      }
+      if (conn != null) {
+        reserveStream(conn);
+        ContextImpl context = waiter.context;
+        if (context == null) {
+          context = conn.getContext();
+        } else if (context != conn.getContext()) {
+          ConnectionManager.log.warn("Reusing a connection with a different context: an HttpClient is probably shared between different Verticles");
+        }
+        context.runOnContext(v -> {
+          deliverStream(conn, waiter);
+        });
+        return true;
+      } else {
+        return false;
       }
-      context.runOnContext(v -> {
-        deliverStream(conn, waiter);
-      });
-      return true;
-    } else {
-      return false;
+    }
+  }
+
+  /**
+   * @return the connection with the least outstanding work that can still open a stream, or {@code null} if there is none
+   */
+  private Http2ClientConnection leastLoaded() {
+    Http2ClientConnection best = null;
+    for (Http2ClientConnection conn : connections) {
+      if (conn.isValid() && canReserveStream(conn)) {
+        if (best == null || conn.streamCount < best.streamCount ||
+            (conn.streamCount == best.streamCount && conn.bytesBeforeUnwritable() > best.bytesBeforeUnwritable())) {
+          best = conn;
+        }
+      }
+    }
+    return best;
+  }
+
+  private void reserveStream(Http2ClientConnection conn) {
+    conn.streamCount++;
+    if (queue.metrics != null) {
+      queue.metrics.resourceUsage(conn, conn.streamCount);
     }
   }
 
@@ -79,16 +122,16 @@ class Http2Pool extends ConnectionManager.Pool<Http2ClientConnection> {
         handler.onHttpClientUpgrade();
       }
       Http2ClientConnection conn = handler.connection;
-      connection = conn;
+      connections.add(conn);
       int idleTimeout = client.getOptions().getIdleTimeout();
       if (idleTimeout > 0) {
         p.addLast("idle", new IdleStateHandler(0, 0, idleTimeout));
       }
       p.addLast(handler);
-      conn.streamCount++;
+      reserveStream(conn);
       waiter.handleConnection(conn); // Should make same tests than in deliverRequest
       deliverStream(conn, waiter);
-      checkPending(conn);
+      checkPending();
     }
   }
 
@@ -97,20 +140,29 @@ class Http2Pool extends ConnectionManager.Pool<Http2ClientConnection> {
     return handler.streamCount < maxConcurrentStreams;
   }
 
-  void checkPending(Http2ClientConnection handler) {
+  @Override
+  void checkPending() {
     synchronized (queue) {
-      Waiter waiter;
-      while (canReserveStream(handler) && (waiter = queue.getNextWaiter()) != null) {
-        handler.streamCount++;
-        deliverStream(handler, waiter);
+      Http2ClientConnection conn;
+      while (queue.hasWaiters() && (conn = leastLoaded()) != null) {
+        Waiter waiter = queue.getNextWaiter();
+        if (waiter == null) {
+          break;
+        }
+        reserveStream(conn);
+        deliverStream(conn, waiter);
       }
     }
   }
 
   void discard(Http2ClientConnection conn) {
     synchronized (queue) {
-      if (connection == conn) {
-        connection = null;
+      if (connections.remove(conn)) {
+        if (queue.metrics != null) {
+          queue.metrics.resourceRemoved(conn);
+        }
+        // The waiters go to the remaining connections first, the queue opens new connections for the others
+        checkPending();
         queue.connectionClosed();
       }
     }
@@ -120,7 +172,11 @@ class Http2Pool extends ConnectionManager.Pool<Http2ClientConnection> {
   void recycle(Http2ClientConnection conn) {
     synchronized (queue) {
       conn.streamCount--;
-      checkPending(conn);
+      // A discarded connection was removed from the metrics already
+      if (queue.metrics != null && connections.contains(conn)) {
+        queue.metrics.resourceUsage(conn, conn.streamCount);
+      }
+      checkPending();
     }
   }
 
@@ -131,13 +187,13 @@ class Http2Pool extends ConnectionManager.Pool<Http2ClientConnection> {
 
   @Override
   void closeAllConnections() {
-    Http2ClientConnection conn;
+    List<Http2ClientConnection> copy;
     synchronized (queue) {
-      conn = this.connection;
+      copy = new ArrayList<>(connections);
     }
     // Close outside sync block to avoid deadlock
-    if (conn != null) {
+    for (Http2ClientConnection conn : copy) {
       conn.close();
     }
   }
-}
\ No newline at end of file
+}
@@ -16,15 +16,10 @@
 
 package io.vertx.core.http.impl;
 
-import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpRequest;
-import io.netty.handler.codec.http.LastHttpContent;
-import io.netty.handler.codec.http.multipart.Attribute;
-import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
-import io.netty.handler.codec.http.multipart.InterfaceHttpData;
 import io.netty.handler.codec.http2.Http2Headers;
 import io.netty.handler.codec.http2.Http2Stream;
 import io.vertx.codegen.annotations.Nullable;
@@ -77,7 +72,7 @@ public class Http2ServerRequestImpl extends VertxHttp2Stream<Http2ServerConnecti
   private long bytesRead;
 
   private Handler<HttpServerFileUpload> uploadHandler;
-  private HttpPostRequestDecoder postRequestDecoder;
+  private FormDecoder postRequestDecoder;
 
   private Handler<Throwable> exceptionHandler;
   private Handler<HttpFrame> unknownFrameHandler;
@@ -135,7 +130,7 @@ public class Http2ServerRequestImpl extends VertxHttp2Stream<Http2ServerConnecti
     bytesRead += data.length();
     if (postRequestDecoder != null) {
       try {
-        postRequestDecoder.offer(new DefaultHttpContent(data.getByteBuf()));
+        postRequestDecoder.offer(data.getByteBuf());
       } catch (Exception e) {
         handleException(e);
       }
@@ -150,25 +145,9 @@ public class Http2ServerRequestImpl extends VertxHttp2Stream<Http2ServerConnecti
     conn.reportBytesRead(bytesRead);
     if (postRequestDecoder != null) {
       try {
-        postRequestDecoder.offer(LastHttpContent.EMPTY_LAST_CONTENT);
-        while (postRequestDecoder.hasNext()) {
-          InterfaceHttpData data = postRequestDecoder.next();
-          if (data instanceof Attribute) {
-            Attribute attr = (Attribute) data;
-            try {
-              formAttributes().add(attr.getName(), attr.getValue());
-            } catch (Exception e) {
-              // Will never happen, anyway handle it somehow just in case
-              handleException(e);
-            }
-          }
-        }
-      } catch (HttpPostRequestDecoder.EndOfDataDecoderException e) {
-        // ignore this as it is expected
+        postRequestDecoder.end();
       } catch (Exception e) {
         handleException(e);
-      } finally {
-        postRequestDecoder.destroy();
       }
     }
     if (endHandler != null) {
@@ -423,7 +402,7 @@ public class Http2ServerRequestImpl extends VertxHttp2Stream<Http2ServerConnecti
                   method,
                   headers.path().toString());
               req.headers().add(HttpHeaderNames.CONTENT_TYPE, contentType);
-              postRequestDecoder = new HttpPostRequestDecoder(new NettyFileUploadDataFactory(vertx, this, () -> uploadHandler), req);
+              postRequestDecoder = new FormDecoder(req, new NettyFileUploadDataFactory(vertx, this, () -> uploadHandler), formAttributes());
             }
           }
         }
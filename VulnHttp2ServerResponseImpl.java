@@ -35,6 +35,7 @@ import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.http.StreamResetException;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.net.impl.FileCache;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -355,7 +356,7 @@ public class Http2ServerResponseImpl implements HttpServerResponse {
   private void end(ByteBuf chunk) {
     synchronized (conn) {
       if (chunk != null && !headers.contains(HttpHeaderNames.CONTENT_LENGTH)) {
-        headers().set(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(chunk.readableBytes()));
+        headers.set(HttpHeaderNames.CONTENT_LENGTH, HttpHeaderCache.contentLength(chunk.readableBytes()));
       }
       write(chunk, true);
     }
@@ -367,7 +368,10 @@ public class Http2ServerResponseImpl implements HttpServerResponse {
         headersEndHandler.handle(null);
       }
       headWritten = true;
-      headers.status(Integer.toString(statusCode));
+      headers.status(HttpResponseStatus.valueOf(statusCode).codeAsText());
+      if (HttpHeaderCache.SEND_DATE_HEADER && !headers.contains(HttpHeaderNames.DATE)) {
+        headers.set(HttpHeaderNames.DATE, HttpHeaderCache.date());
+      }
       stream.writeHeaders(headers, end);
       if (end) {
         ctx.flush();
@@ -491,6 +495,47 @@ public class Http2ServerResponseImpl implements HttpServerResponse {
         return this;
       }
 
+      long contentLength = Math.min(length, file.length() - offset);
+      if (headers.get(HttpHeaderNames.CONTENT_LENGTH) == null) {
+        headers.set(HttpHeaderNames.CONTENT_LENGTH, HttpHeaderCache.contentLength(contentLength));
+      }
+      if (headers.get(HttpHeaderNames.CONTENT_TYPE) == null) {
+        String contentType = MimeMapping.getMimeTypeForFilename(filename);
+        if (contentType != null) {
+          headers.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderCache.contentType(contentType));
+        }
+      }
+
+      ByteBuf content = null;
+      FileCache fileCache = stream.vertx.fileCache();
+      // Larger files are streamed below, don't open them in the cache only to open them again
+      if (fileCache.isCacheable(file.length())) {
+        try {
+          FileCache.Entry entry = fileCache.acquire(file);
+          try {
+            content = entry.content(Math.min(offset, entry.length()), contentLength);
+          } finally {
+            entry.release();
+          }
+        } catch (IOException e) {
+          if (resultHandler != null) {
+            resultCtx.runOnContext((v) -> resultHandler.handle(Future.failedFuture(e)));
+          } else {
+            log.error("Failed to send file", e);
+          }
+          return this;
+        }
+      }
+      if (content != null) {
+        // Small files are cached, the flow controller of the connection splits the slice into frames within the
+        // stream window
+        write(content, true);
+        if (resultHandler != null) {
+          resultCtx.runOnContext(v -> resultHandler.handle(Future.succeededFuture()));
+        }
+        return this;
+      }
+
       RandomAccessFile raf;
       try {
         raf = new RandomAccessFile(file, "r");
@@ -502,17 +547,6 @@ public class Http2ServerResponseImpl implements HttpServerResponse {
         }
         return this;
       }
-
-      long contentLength = Math.min(length, file.length() - offset);
-      if (headers.get(HttpHeaderNames.CONTENT_LENGTH) == null) {
-        putHeader(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(contentLength));
-      }
-      if (headers.get(HttpHeaderNames.CONTENT_TYPE) == null) {
-        String contentType = MimeMapping.getMimeTypeForFilename(filename);
-        if (contentType != null) {
-          putHeader(HttpHeaderNames.CONTENT_TYPE, contentType);
-        }
-      }
       checkSendHeaders(false);
 
       FileStreamChannel fileChannel = new FileStreamChannel(ar -> {
@@ -44,6 +44,16 @@ public class HttpClientOptions extends ClientOptionsBase {
    */
   public static final int DEFAULT_MAX_POOL_SIZE = 5;
 
+  /**
+   * The default maximum number of HTTP/2 connections a client will pool = 1
+   */
+  public static final int DEFAULT_HTTP2_MAX_POOL_SIZE = 1;
+
+  /**
+   * The default minimum number of HTTP/2 connections a client will open before reusing connections = 0
+   */
+  public static final int DEFAULT_HTTP2_MIN_POOL_SIZE = 0;
+
   /**
    * Default value of whether keep-alive is enabled = true
    */
@@ -106,6 +116,8 @@ public class HttpClientOptions extends ClientOptionsBase {
 
   private boolean verifyHost = true;
   private int maxPoolSize;
+  private int http2MaxPoolSize;
+  private int http2MinPoolSize;
   private boolean keepAlive;
   private boolean pipelining;
   private boolean tryUseCompression;
@@ -141,6 +153,8 @@ public class HttpClientOptions extends ClientOptionsBase {
     super(other);
     this.verifyHost = other.isVerifyHost();
     this.maxPoolSize = other.getMaxPoolSize();
+    this.http2MaxPoolSize = other.getHttp2MaxPoolSize();
+    this.http2MinPoolSize = other.getHttp2MinPoolSize();
     this.keepAlive = other.isKeepAlive();
     this.pipelining = other.isPipelining();
     this.tryUseCompression = other.isTryUseCompression();
@@ -173,6 +187,8 @@ public class HttpClientOptions extends ClientOptionsBase {
   private void init() {
     verifyHost = DEFAULT_VERIFY_HOST;
     maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+    http2MaxPoolSize = DEFAULT_HTTP2_MAX_POOL_SIZE;
+    http2MinPoolSize = DEFAULT_HTTP2_MIN_POOL_SIZE;
     keepAlive = DEFAULT_KEEP_ALIVE;
     pipelining = DEFAULT_PIPELINING;
     tryUseCompression = DEFAULT_TRY_USE_COMPRESSION;
@@ -340,6 +356,54 @@ public class HttpClientOptions extends ClientOptionsBase {
     return this;
   }
 
+  /**
+   * Get the maximum pool size for HTTP/2 connections
+   *
+   * @return  the maximum pool size
+   */
+  public int getHttp2MaxPoolSize() {
+    return http2MaxPoolSize;
+  }
+
+  /**
+   * Set the maximum pool size for HTTP/2 connections, new streams are placed on the pooled connection with the fewest
+   * active streams
+   *
+   * @param http2MaxPoolSize  the maximum pool size
+   * @return a reference to this, so the API can be used fluently
+   */
+  public HttpClientOptions setHttp2MaxPoolSize(int http2MaxPoolSize) {
+    if (http2MaxPoolSize < 1) {
+      throw new IllegalArgumentException("http2MaxPoolSize must be > 0");
+    }
+    this.http2MaxPoolSize = http2MaxPoolSize;
+    return this;
+  }
+
+  /**
+   * Get the minimum pool size for HTTP/2 connections
+   *
+   * @return  the minimum pool size
+   */
+  public int getHttp2MinPoolSize() {
+    return http2MinPoolSize;
+  }
+
+  /**
+   * Set the minimum pool size for HTTP/2 connections, until it is reached each request opens a new connection instead of
+   * opening a stream on an existing one. It is capped by the maximum pool size.
+   *
+   * @param http2MinPoolSize  the minimum pool size
+   * @return a reference to this, so the API can be used fluently
+   */
+  public HttpClientOptions setHttp2MinPoolSize(int http2MinPoolSize) {
+    if (http2MinPoolSize < 0) {
+      throw new IllegalArgumentException("http2MinPoolSize must be >= 0");
+    }
+    this.http2MinPoolSize = http2MinPoolSize;
+    return this;
+  }
+
   /**
    * Is keep alive enabled on the client?
    *
@@ -705,6 +769,8 @@ public class HttpClientOptions extends ClientOptionsBase {
     if (defaultPort != that.defaultPort) return false;
     if (keepAlive != that.keepAlive) return false;
     if (maxPoolSize != that.maxPoolSize) return false;
+    if (http2MaxPoolSize != that.http2MaxPoolSize) return false;
+    if (http2MinPoolSize != that.http2MinPoolSize) return false;
     if (maxWebsocketFrameSize != that.maxWebsocketFrameSize) return false;
     if (pipelining != that.pipelining) return false;
     if (tryUseCompression != that.tryUseCompression) return false;
@@ -729,6 +795,8 @@ public class HttpClientOptions extends ClientOptionsBase {
     int result = super.hashCode();
     result = 31 * result + (verifyHost ? 1 : 0);
     result = 31 * result + maxPoolSize;
+    result = 31 * result + http2MaxPoolSize;
+    result = 31 * result + http2MinPoolSize;
     result = 31 * result + (keepAlive ? 1 : 0);
     result = 31 * result + (pipelining ? 1 : 0);
     result = 31 * result + (tryUseCompression ? 1 : 0);
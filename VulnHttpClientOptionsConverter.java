@@ -44,6 +44,12 @@ public class HttpClientOptionsConverter {
     if (json.getValue("h2cUpgrade") instanceof Boolean) {
       obj.setH2cUpgrade((Boolean)json.getValue("h2cUpgrade"));
     }
+    if (json.getValue("http2MaxPoolSize") instanceof Number) {
+      obj.setHttp2MaxPoolSize(((Number)json.getValue("http2MaxPoolSize")).intValue());
+    }
+    if (json.getValue("http2MinPoolSize") instanceof Number) {
+      obj.setHttp2MinPoolSize(((Number)json.getValue("http2MinPoolSize")).intValue());
+    }
     if (json.getValue("initialSettings") instanceof JsonObject) {
       obj.setInitialSettings(new io.vertx.core.http.Http2Settings((JsonObject)json.getValue("initialSettings")));
     }
@@ -101,6 +107,8 @@ public class HttpClientOptionsConverter {
     }
     json.put("defaultPort", obj.getDefaultPort());
     json.put("h2cUpgrade", obj.isH2cUpgrade());
+    json.put("http2MaxPoolSize", obj.getHttp2MaxPoolSize());
+    json.put("http2MinPoolSize", obj.getHttp2MinPoolSize());
     if (obj.getInitialSettings() != null) {
       json.put("initialSettings", obj.getInitialSettings().toJson());
     }
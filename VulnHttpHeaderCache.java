@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.http.impl;
+
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pre-encoded values of the headers the server sets on most responses.
+ * <p>
+ * The HTTP encoders copy the bytes of an {@link AsciiString} as is, whereas a {@code String} is encoded char by char for each
+ * response, so the values that are sent over and over are kept here as {@link AsciiString}: the small content lengths, the
+ * content types of {@link MimeMapping} and the {@code Date} header, which is formatted at most once per second and per event
+ * loop.
+ */
+final class HttpHeaderCache {
+
+  static final String SEND_DATE_HEADER_PROP_NAME = "vertx.sendDateHeader";
+  static final boolean SEND_DATE_HEADER = Boolean.getBoolean(SEND_DATE_HEADER_PROP_NAME);
+
+  static final AsciiString ZERO = AsciiString.of("0");
+
+  private static final int MAX_CACHED_CONTENT_LENGTH = 4096;
+
+  // Lazily filled, racing threads create equal values
+  private static final AsciiString[] CONTENT_LENGTHS = new AsciiString[MAX_CACHED_CONTENT_LENGTH];
+
+  // Bounded by the mime types of MimeMapping
+  private static final ConcurrentMap<String, AsciiString> CONTENT_TYPES = new ConcurrentHashMap<>();
+
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter
+      .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+      .withZone(ZoneOffset.UTC);
+
+  private static final FastThreadLocal<DateHeader> DATE = new FastThreadLocal<DateHeader>() {
+    @Override
+    protected DateHeader initialValue() {
+      return new DateHeader();
+    }
+  };
+
+  private HttpHeaderCache() {
+  }
+
+  /**
+   * @return the encoded {@code Content-Length} value
+   */
+  static CharSequence contentLength(long length) {
+    if (length < 0 || length >= MAX_CACHED_CONTENT_LENGTH) {
+      return AsciiString.of(Long.toString(length));
+    }
+    int index = (int) length;
+    AsciiString value = CONTENT_LENGTHS[index];
+    if (value == null) {
+      value = AsciiString.of(Integer.toString(index));
+      CONTENT_LENGTHS[index] = value;
+    }
+    return value;
+  }
+
+  /**
+   * @return the encoded {@code Content-Type} value of a mime type returned by {@link MimeMapping}
+   */
+  static CharSequence contentType(String mimeType) {
+    return CONTENT_TYPES.computeIfAbsent(mimeType, AsciiString::of);
+  }
+
+  /**
+   * @return the encoded {@code Date} value of the current second, cached by the calling thread
+   */
+  static CharSequence date() {
+    return DATE.get().value(System.currentTimeMillis());
+  }
+
+  private static final class DateHeader {
+
+    private long second = Long.MIN_VALUE;
+    private AsciiString value;
+
+    AsciiString value(long now) {
+      long current = now / 1000;
+      if (current != second) {
+        second = current;
+        value = AsciiString.of(DATE_FORMAT.format(Instant.ofEpochSecond(current)));
+      }
+      return value;
+    }
+  }
+}
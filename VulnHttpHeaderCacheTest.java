@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.http.impl;
+
+import io.netty.util.AsciiString;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.Assert.*;
+
+public class HttpHeaderCacheTest {
+
+  @Test
+  public void testContentLength() {
+    assertEquals("0", HttpHeaderCache.contentLength(0).toString());
+    assertEquals("4095", HttpHeaderCache.contentLength(4095).toString());
+    assertEquals("1048576", HttpHeaderCache.contentLength(1048576).toString());
+    assertSame(HttpHeaderCache.contentLength(27), HttpHeaderCache.contentLength(27));
+    assertTrue(HttpHeaderCache.contentLength(27) instanceof AsciiString);
+  }
+
+  @Test
+  public void testContentType() {
+    assertEquals("text/html", HttpHeaderCache.contentType("text/html").toString());
+    assertSame(HttpHeaderCache.contentType("text/html"), HttpHeaderCache.contentType("text/html"));
+  }
+
+  @Test
+  public void testDate() {
+    String date = HttpHeaderCache.date().toString();
+    ZonedDateTime parsed = ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME);
+    assertTrue(Math.abs(parsed.toEpochSecond() - System.currentTimeMillis() / 1000) <= 1);
+    assertTrue(date.endsWith(" GMT"));
+  }
+}
@@ -16,16 +16,12 @@
 
 package io.vertx.core.http.impl;
 
-import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpRequest;
-import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http.QueryStringDecoder;
-import io.netty.handler.codec.http.multipart.Attribute;
 import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
-import io.netty.handler.codec.http.multipart.InterfaceHttpData;
 import io.netty.util.CharsetUtil;
 import io.vertx.codegen.annotations.Nullable;
 import io.vertx.core.Handler;
@@ -86,7 +82,7 @@ public class HttpServerRequestImpl implements HttpServerRequest {
   private Handler<HttpServerFileUpload> uploadHandler;
   private Handler<Void> endHandler;
   private MultiMap attributes;
-  private HttpPostRequestDecoder decoder;
+  private FormDecoder decoder;
   private boolean ended;
 
 
@@ -320,7 +316,7 @@ public class HttpServerRequestImpl implements HttpServerRequest {
             if ((lowerCaseContentType.startsWith(HttpHeaders.Values.MULTIPART_FORM_DATA) || isURLEncoded) &&
               (method.equals(HttpMethod.POST) || method.equals(HttpMethod.PUT) || method.equals(HttpMethod.PATCH)
                 || method.equals(HttpMethod.DELETE))) {
-              decoder = new HttpPostRequestDecoder(new NettyFileUploadDataFactory(conn.vertx(), this, () -> uploadHandler), request);
+              decoder = new FormDecoder(request, new NettyFileUploadDataFactory(conn.vertx(), this, () -> uploadHandler), attributes());
             }
           }
         }
@@ -364,7 +360,7 @@ public class HttpServerRequestImpl implements HttpServerRequest {
     synchronized (conn) {
       if (decoder != null) {
         try {
-          decoder.offer(new DefaultHttpContent(data.getByteBuf()));
+          decoder.offer(data.getByteBuf());
         } catch (HttpPostRequestDecoder.ErrorDataDecoderException e) {
           handleException(e);
         }
@@ -380,25 +376,9 @@ public class HttpServerRequestImpl implements HttpServerRequest {
       ended = true;
       if (decoder != null) {
         try {
-          decoder.offer(LastHttpContent.EMPTY_LAST_CONTENT);
-          while (decoder.hasNext()) {
-            InterfaceHttpData data = decoder.next();
-            if (data instanceof Attribute) {
-              Attribute attr = (Attribute) data;
-              try {
-                attributes().add(attr.getName(), attr.getValue());
-              } catch (Exception e) {
-                // Will never happen, anyway handle it somehow just in case
-                handleException(e);
-              }
-            }
-          }
+          decoder.end();
         } catch (HttpPostRequestDecoder.ErrorDataDecoderException e) {
           handleException(e);
-        } catch (HttpPostRequestDecoder.EndOfDataDecoderException e) {
-          // ignore this as it is expected
-        } finally {
-          decoder.destroy();
         }
       }
       // If there have been uploads then we let the last one call the end handler once any fileuploads are complete
@@ -33,11 +33,11 @@ import io.vertx.core.impl.ContextImpl;
 import io.vertx.core.impl.VertxInternal;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.net.impl.FileCache;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 
 /**
  *
@@ -154,7 +154,7 @@ public class HttpServerResponseImpl implements HttpServerResponse {
   public HttpServerResponseImpl putHeader(String key, String value) {
     synchronized (conn) {
       checkWritten();
-      headers().set(key, value);
+      response.headers().set(key, value);
       return this;
     }
   }
@@ -163,7 +163,7 @@ public class HttpServerResponseImpl implements HttpServerResponse {
   public HttpServerResponseImpl putHeader(String key, Iterable<String> values) {
     synchronized (conn) {
       checkWritten();
-      headers().set(key, values);
+      response.headers().set(key, values);
       return this;
     }
   }
@@ -190,7 +190,7 @@ public class HttpServerResponseImpl implements HttpServerResponse {
   public HttpServerResponse putHeader(CharSequence name, CharSequence value) {
     synchronized (conn) {
       checkWritten();
-      headers().set(name, value);
+      response.headers().set(name, value);
       return this;
     }
   }
@@ -199,7 +199,7 @@ public class HttpServerResponseImpl implements HttpServerResponse {
   public HttpServerResponse putHeader(CharSequence name, Iterable<CharSequence> values) {
     synchronized (conn) {
       checkWritten();
-      headers().set(name, values);
+      response.headers().set(name, values);
       return this;
     }
   }
@@ -303,7 +303,7 @@ public class HttpServerResponseImpl implements HttpServerResponse {
   public void end(Buffer chunk) {
     synchronized (conn) {
       if (!chunked && !contentLengthSet()) {
-        headers().set(HttpHeaders.CONTENT_LENGTH, String.valueOf(chunk.length()));
+        response.headers().set(HttpHeaders.CONTENT_LENGTH, HttpHeaderCache.contentLength(chunk.length()));
       }
       ByteBuf buf = chunk.getByteBuf();
       end0(buf);
@@ -451,28 +451,27 @@ public class HttpServerResponseImpl implements HttpServerResponse {
       long contentLength = Math.min(length, file.length() - offset);
       bytesWritten = contentLength;
       if (!contentLengthSet()) {
-        putHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(contentLength));
+        response.headers().set(HttpHeaders.CONTENT_LENGTH, HttpHeaderCache.contentLength(contentLength));
       }
       if (!contentTypeSet()) {
         String contentType = MimeMapping.getMimeTypeForFilename(filename);
         if (contentType != null) {
-          putHeader(HttpHeaders.CONTENT_TYPE, contentType);
+          response.headers().set(HttpHeaders.CONTENT_TYPE, HttpHeaderCache.contentType(contentType));
         }
       }
       prepareHeaders();
 
-      RandomAccessFile raf = null;
+      FileCache.Entry entry = null;
+      ByteBuf content = null;
       try {
-        raf = new RandomAccessFile(file, "r");
+        entry = vertx.fileCache().acquire(file);
+        long start = Math.min(offset, entry.length());
+        content = entry.content(start, contentLength);
         conn.queueForWrite(response);
-        conn.sendFile(raf, Math.min(offset, file.length()), contentLength);
-      } catch (IOException e) {
-        try {
-          if (raf != null) {
-            raf.close();
-          }
-        } catch (IOException ignore) {
+        if (content == null) {
+          conn.sendFile(entry, start, contentLength);
         }
+      } catch (IOException e) {
         if (resultHandler != null) {
           ContextImpl ctx = vertx.getOrCreateContext();
           ctx.runOnContext((v) -> resultHandler.handle(Future.failedFuture(e)));
@@ -480,10 +479,19 @@ public class HttpServerResponseImpl implements HttpServerResponse {
           log.error("Failed to send file", e);
         }
         return;
+      } finally {
+        if (entry != null) {
+          entry.release();
+        }
       }
 
-      // write an empty last content to let the http encoder know the response is complete
-      channelFuture = conn.writeToChannel(LastHttpContent.EMPTY_LAST_CONTENT);
+      if (content != null) {
+        // small files are cached, the slice is shared by all the responses that send the file
+        channelFuture = conn.writeToChannel(new DefaultLastHttpContent(content));
+      } else {
+        // write an empty last content to let the http encoder know the response is complete
+        channelFuture = conn.writeToChannel(LastHttpContent.EMPTY_LAST_CONTENT);
+      }
       written = true;
 
       if (resultHandler != null) {
@@ -511,14 +519,14 @@ public class HttpServerResponseImpl implements HttpServerResponse {
   }
 
   private boolean contentLengthSet() {
-    if (headers == null) {
+    if (response.headers().isEmpty()) {
       return false;
     }
     return response.headers().contains(HttpHeaders.CONTENT_LENGTH);
   }
 
   private boolean contentTypeSet() {
-    if (headers == null) {
+    if (response.headers().isEmpty()) {
       return false;
     }
     return response.headers().contains(HttpHeaders.CONTENT_TYPE);
@@ -569,7 +577,10 @@ public class HttpServerResponseImpl implements HttpServerResponse {
     if (chunked) {
       response.headers().set(HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CHUNKED);
     } else if (keepAlive && !contentLengthSet()) {
-      response.headers().set(HttpHeaders.CONTENT_LENGTH, "0");
+      response.headers().set(HttpHeaders.CONTENT_LENGTH, HttpHeaderCache.ZERO);
+    }
+    if (HttpHeaderCache.SEND_DATE_HEADER && !response.headers().contains(HttpHeaderNames.DATE)) {
+      response.headers().set(HttpHeaderNames.DATE, HttpHeaderCache.date());
     }
     if (headersEndHandler != null) {
       headersEndHandler.handle(null);
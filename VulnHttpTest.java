@@ -2467,6 +2467,88 @@ public abstract class HttpTest extends HttpTestBase {
     await();
   }
 
+  @Test
+  public void testFormUploadAttributesSpilledToDisk() throws Exception {
+    System.setProperty("vertx.formAttributeDiskThreshold", "4");
+    try {
+      String value = TestUtils.randomAlphaString(1000);
+      server.requestHandler(req -> {
+        req.setExpectMultipart(true);
+        req.endHandler(v -> {
+          assertEquals(value, req.getFormAttribute("large"));
+          assertEquals("a", req.getFormAttribute("small"));
+          req.response().end();
+        });
+      });
+      server.listen(onSuccess(s -> {
+        HttpClientRequest req = client.request(HttpMethod.POST, DEFAULT_HTTP_PORT, DEFAULT_HTTP_HOST, "/form", resp -> {
+          assertEquals(200, resp.statusCode());
+          testComplete();
+        });
+        Buffer buffer = Buffer.buffer("small=a&large=" + value);
+        req.headers().set("content-length", String.valueOf(buffer.length()));
+        req.headers().set("content-type", "application/x-www-form-urlencoded");
+        req.write(buffer).end();
+      }));
+      await();
+    } finally {
+      System.clearProperty("vertx.formAttributeDiskThreshold");
+    }
+  }
+
+  @Test
+  public void testFormUploadAttributesSizeLimit() throws Exception {
+    System.setProperty("vertx.maxFormAttributesSize", "100");
+    try {
+      server.requestHandler(req -> {
+        req.setExpectMultipart(true);
+        req.exceptionHandler(err -> req.response().setStatusCode(413).end());
+        req.endHandler(v -> {
+          if (!req.response().ended()) {
+            req.response().end();
+          }
+        });
+      });
+      server.listen(onSuccess(s -> {
+        HttpClientRequest req = client.request(HttpMethod.POST, DEFAULT_HTTP_PORT, DEFAULT_HTTP_HOST, "/form", resp -> {
+          assertEquals(413, resp.statusCode());
+          testComplete();
+        });
+        Buffer buffer = Buffer.buffer("small=a&large=" + TestUtils.randomAlphaString(1000) + "&other=b");
+        req.headers().set("content-length", String.valueOf(buffer.length()));
+        req.headers().set("content-type", "application/x-www-form-urlencoded");
+        req.write(buffer).end();
+      }));
+      await();
+    } finally {
+      System.clearProperty("vertx.maxFormAttributesSize");
+    }
+  }
+
+  @Test
+  public void testFormUploadPartialAttributeSizeLimit() throws Exception {
+    System.setProperty("vertx.maxFormAttributesSize", "100");
+    try {
+      server.requestHandler(req -> {
+        req.setExpectMultipart(true);
+        req.exceptionHandler(err -> req.response().setStatusCode(413).end());
+      });
+      server.listen(onSuccess(s -> {
+        HttpClientRequest req = client.request(HttpMethod.POST, DEFAULT_HTTP_PORT, DEFAULT_HTTP_HOST, "/form", resp -> {
+          assertEquals(413, resp.statusCode());
+          testComplete();
+        });
+        // The request is rejected while the attribute is still being received
+        req.headers().set("content-length", "100000");
+        req.headers().set("content-type", "application/x-www-form-urlencoded");
+        req.write(Buffer.buffer("small=a&large=" + TestUtils.randomAlphaString(1000)));
+      }));
+      await();
+    } finally {
+      System.clearProperty("vertx.maxFormAttributesSize");
+    }
+  }
+
   @Test
   public void testHostHeaderOverridePossible() {
     server.requestHandler(req -> {
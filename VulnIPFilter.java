@@ -22,7 +22,6 @@ import org.elasticsearch.transport.TcpTransport;
 import org.elasticsearch.xpack.security.audit.AuditTrailService;
 
 import java.net.InetSocketAddress;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -102,7 +101,7 @@ public class IPFilter {
     private final XPackLicenseState licenseState;
     private final boolean alwaysAllowBoundAddresses;
 
-    private volatile Map<String, SecurityIpFilterRule[]> rules = Collections.emptyMap();
+    private volatile Map<String, CompiledIpFilterRules> rules = Collections.emptyMap();
     private volatile boolean isIpFilterEnabled;
     private volatile boolean isHttpFilterEnabled;
     private final Set<String> profiles;
@@ -202,21 +201,21 @@ public class IPFilter {
             return true;
         }
 
-        if (!rules.containsKey(profile)) {
+        final CompiledIpFilterRules profileRules = rules.get(profile);
+        if (profileRules == null) {
             // FIXME we need to audit here
             return true;
         }
 
-        for (SecurityIpFilterRule rule : rules.get(profile)) {
-            if (rule.matches(peerAddress)) {
-                boolean isAllowed = rule.ruleType() == IpFilterRuleType.ACCEPT;
-                if (isAllowed) {
-                    auditTrail.connectionGranted(peerAddress.getAddress(), profile, rule);
-                } else {
-                    auditTrail.connectionDenied(peerAddress.getAddress(), profile, rule);
-                }
-                return isAllowed;
+        final SecurityIpFilterRule rule = profileRules.match(peerAddress);
+        if (rule != null) {
+            boolean isAllowed = rule.ruleType() == IpFilterRuleType.ACCEPT;
+            if (isAllowed) {
+                auditTrail.connectionGranted(peerAddress.getAddress(), profile, rule);
+            } else {
+                auditTrail.connectionDenied(peerAddress.getAddress(), profile, rule);
             }
+            return isAllowed;
         }
 
         auditTrail.connectionGranted(peerAddress.getAddress(), profile, DEFAULT_PROFILE_ACCEPT_ALL);
@@ -227,9 +226,9 @@ public class IPFilter {
         this.rules = parseSettings();
     }
 
-    private Map<String, SecurityIpFilterRule[]> parseSettings() {
+    private Map<String, CompiledIpFilterRules> parseSettings() {
         if (isIpFilterEnabled || isHttpFilterEnabled) {
-            Map<String, SecurityIpFilterRule[]> profileRules = new HashMap<>();
+            Map<String, CompiledIpFilterRules> profileRules = new HashMap<>();
             if (isHttpFilterEnabled && boundHttpTransportAddress.get() != null) {
                 TransportAddress[] localAddresses = boundHttpTransportAddress.get().boundAddresses();
                 profileRules.put(HTTP_PROFILE_NAME, createRules(httpAllowFilter, httpDenyFilter, localAddresses));
@@ -259,23 +258,23 @@ public class IPFilter {
 
     }
 
-    private SecurityIpFilterRule[] createRules(List<String> allow, List<String> deny, TransportAddress[] boundAddresses) {
-        List<SecurityIpFilterRule> rules = new ArrayList<>();
+    private CompiledIpFilterRules createRules(List<String> allow, List<String> deny, TransportAddress[] boundAddresses) {
+        CompiledIpFilterRules.Builder rules = new CompiledIpFilterRules.Builder();
         // if we are always going to allow the bound addresses, then the rule for them should be the first rule in the list
         if (alwaysAllowBoundAddresses) {
             assert boundAddresses != null && boundAddresses.length > 0;
-            rules.add(new SecurityIpFilterRule(true, boundAddresses));
+            rules.addAddressRule(new SecurityIpFilterRule(true, boundAddresses));
         }
 
         // add all rules to the same list. Allow takes precedence so they must come first!
         for (String value : allow) {
-            rules.add(new SecurityIpFilterRule(true, value));
+            rules.addRule(new SecurityIpFilterRule(true, value), value);
         }
         for (String value : deny) {
-            rules.add(new SecurityIpFilterRule(false, value));
+            rules.addRule(new SecurityIpFilterRule(false, value), value);
         }
 
-        return rules.toArray(new SecurityIpFilterRule[rules.size()]);
+        return rules.build();
     }
 
     public void setBoundTransportAddress(BoundTransportAddress boundTransportAddress,
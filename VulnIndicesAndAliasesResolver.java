@@ -20,9 +20,15 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.regex.Regex;
 import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.IndexNotFoundException;
@@ -37,10 +43,12 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static org.elasticsearch.xpack.core.security.authz.IndicesAndAliasesResolverField.NO_INDEX_PLACEHOLDER;
@@ -51,12 +59,25 @@ class IndicesAndAliasesResolver {
     static final String[] NO_INDICES_OR_ALIASES_ARRAY = new String[] { "*", "-*" };
     static final List<String> NO_INDICES_OR_ALIASES_LIST = Arrays.asList(NO_INDICES_OR_ALIASES_ARRAY);
 
+    /**
+     * The total number of index names that are kept in the cache of resolved wildcard expressions, including the authorized names each
+     * entry is keyed by, {@code 0} disables the cache
+     */
+    static final Setting<Integer> CACHE_SIZE_SETTING = Setting.intSetting("xpack.security.authz.resolved_indices.cache.size",
+            100_000, 0, Property.NodeScope);
+
     private final IndexNameExpressionResolver nameExpressionResolver;
     private final RemoteClusterResolver remoteClusterResolver;
+    private final int cacheSize;
+    private volatile ResolutionCache resolutionCache;
+    private final CounterMetric cacheHits = new CounterMetric();
+    private final CounterMetric cacheMisses = new CounterMetric();
+    private final MeanMetric resolutionTime = new MeanMetric();
 
     IndicesAndAliasesResolver(Settings settings, ClusterService clusterService) {
         this.nameExpressionResolver = new IndexNameExpressionResolver();
         this.remoteClusterResolver = new RemoteClusterResolver(settings, clusterService.getClusterSettings());
+        this.cacheSize = CACHE_SIZE_SETTING.get(settings);
     }
 
     /**
@@ -89,26 +110,44 @@ class IndicesAndAliasesResolver {
      */
 
     ResolvedIndices resolve(TransportRequest request, MetaData metaData, List<String> authorizedIndices) {
-        if (request instanceof IndicesAliasesRequest) {
-            ResolvedIndices.Builder resolvedIndicesBuilder = new ResolvedIndices.Builder();
-            IndicesAliasesRequest indicesAliasesRequest = (IndicesAliasesRequest) request;
-            for (IndicesRequest indicesRequest : indicesAliasesRequest.getAliasActions()) {
-                final ResolvedIndices resolved = resolveIndicesAndAliases(indicesRequest, metaData, authorizedIndices);
-                resolvedIndicesBuilder.addLocal(resolved.getLocal());
-                resolvedIndicesBuilder.addRemote(resolved.getRemote());
+        return resolve(request, metaData, new AuthorizedIndexNames(authorizedIndices));
+    }
+
+    /**
+     * Same as {@link #resolve(TransportRequest, MetaData, List)} with authorized index names. The resolutions are only cached when the
+     * names were obtained from {@link #authorizedIndexNames}, names built for a single request are resolved without the cache.
+     */
+    ResolvedIndices resolve(TransportRequest request, MetaData metaData, AuthorizedIndexNames authorized) {
+        final long startTime = System.nanoTime();
+        try {
+            if (request instanceof IndicesAliasesRequest) {
+                ResolvedIndices.Builder resolvedIndicesBuilder = new ResolvedIndices.Builder();
+                IndicesAliasesRequest indicesAliasesRequest = (IndicesAliasesRequest) request;
+                for (IndicesRequest indicesRequest : indicesAliasesRequest.getAliasActions()) {
+                    final ResolvedIndices resolved = resolveIndicesAndAliases(indicesRequest, metaData, authorized);
+                    resolvedIndicesBuilder.addLocal(resolved.getLocal());
+                    resolvedIndicesBuilder.addRemote(resolved.getRemote());
+                }
+                return resolvedIndicesBuilder.build();
             }
-            return resolvedIndicesBuilder.build();
-        }
 
-        // if for some reason we are missing an action... just for safety we'll reject
-        if (request instanceof IndicesRequest == false) {
-            throw new IllegalStateException("Request [" + request + "] is not an Indices request, but should be.");
+            // if for some reason we are missing an action... just for safety we'll reject
+            if (request instanceof IndicesRequest == false) {
+                throw new IllegalStateException("Request [" + request + "] is not an Indices request, but should be.");
+            }
+            return resolveIndicesAndAliases((IndicesRequest) request, metaData, authorized);
+        } finally {
+            resolutionTime.inc(System.nanoTime() - startTime);
         }
-        return resolveIndicesAndAliases((IndicesRequest) request, metaData, authorizedIndices);
     }
 
 
     ResolvedIndices resolveIndicesAndAliases(IndicesRequest indicesRequest, MetaData metaData, List<String> authorizedIndices) {
+        return resolveIndicesAndAliases(indicesRequest, metaData, new AuthorizedIndexNames(authorizedIndices));
+    }
+
+    private ResolvedIndices resolveIndicesAndAliases(IndicesRequest indicesRequest, MetaData metaData, AuthorizedIndexNames authorized) {
+        final List<String> authorizedIndices = authorized.asList();
         final ResolvedIndices.Builder resolvedIndicesBuilder = new ResolvedIndices.Builder();
         boolean indicesReplacedWithNoIndices = false;
         if (indicesRequest instanceof PutMappingRequest && ((PutMappingRequest) indicesRequest).getConcreteIndex() != null) {
@@ -135,11 +174,7 @@ class IndicesAndAliasesResolver {
             // check for all and return list of authorized indices
             if (IndexNameExpressionResolver.isAllIndices(indicesList(indicesRequest.indices()))) {
                 if (replaceWildcards) {
-                    for (String authorizedIndex : authorizedIndices) {
-                        if (isIndexVisible(authorizedIndex, indicesOptions, metaData)) {
-                            resolvedIndicesBuilder.addLocal(authorizedIndex);
-                        }
-                    }
+                    resolvedIndicesBuilder.addLocal(resolveWildcard(MetaData.ALL, indicesOptions, metaData, authorized));
                 }
                 // if we cannot replace wildcards the indices list stays empty. Same if there are no authorized indices.
                 // we honour allow_no_indices like es core does.
@@ -151,11 +186,11 @@ class IndicesAndAliasesResolver {
                     split = new ResolvedIndices(Arrays.asList(indicesRequest.indices()), Collections.emptyList());
                 }
                 List<String> replaced = replaceWildcardsWithAuthorizedIndices(split.getLocal(), indicesOptions, metaData,
-                        authorizedIndices, replaceWildcards);
+                        authorized, replaceWildcards);
                 if (indicesOptions.ignoreUnavailable()) {
                     //out of all the explicit names (expanded from wildcards and original ones that were left untouched)
                     //remove all the ones that the current user is not authorized for and ignore them
-                    replaced = replaced.stream().filter(authorizedIndices::contains).collect(Collectors.toList());
+                    replaced = replaced.stream().filter(authorized::contains).collect(Collectors.toList());
                 }
                 resolvedIndicesBuilder.addLocal(replaced);
                 resolvedIndicesBuilder.addRemote(split.getRemote());
@@ -196,7 +231,7 @@ class IndicesAndAliasesResolver {
             AliasesRequest aliasesRequest = (AliasesRequest) indicesRequest;
             if (aliasesRequest.expandAliasesWildcards()) {
                 List<String> aliases = replaceWildcardsWithAuthorizedAliases(aliasesRequest.aliases(),
-                        loadAuthorizedAliases(authorizedIndices, metaData));
+                        loadAuthorizedAliases(authorized, metaData));
                 aliasesRequest.replaceAliases(aliases.toArray(new String[aliases.size()]));
             }
             if (indicesReplacedWithNoIndices) {
@@ -265,18 +300,127 @@ class IndicesAndAliasesResolver {
                 || request instanceof GraphExploreRequest;
     }
 
-    private List<String> loadAuthorizedAliases(List<String> authorizedIndices, MetaData metaData) {
+    private List<String> loadAuthorizedAliases(AuthorizedIndexNames authorized, MetaData metaData) {
+        final ResolutionCache cache = resolutionCache(metaData, authorized);
+        if (cache != null) {
+            final List<String> cached = cache.authorizedAliases.get(authorized);
+            if (cached != null) {
+                cacheHits.inc();
+                return cached;
+            }
+            cacheMisses.inc();
+        }
         List<String> authorizedAliases = new ArrayList<>();
         SortedMap<String, AliasOrIndex> existingAliases = metaData.getAliasAndIndexLookup();
-        for (String authorizedIndex : authorizedIndices) {
+        for (String authorizedIndex : authorized.asList()) {
             AliasOrIndex aliasOrIndex = existingAliases.get(authorizedIndex);
             if (aliasOrIndex != null && aliasOrIndex.isAlias()) {
                 authorizedAliases.add(authorizedIndex);
             }
         }
+        authorizedAliases = Collections.unmodifiableList(authorizedAliases);
+        if (cache != null) {
+            cache.authorizedAliases.put(authorized, authorizedAliases);
+        }
         return authorizedAliases;
     }
 
+    /**
+     * Expands a wildcard expression against the authorized indices that are visible according to the indices options. The result only
+     * depends on the cluster metadata, the authorized indices, the expression and the options so it is memoized until the metadata
+     * changes, if the authorized indices are interned.
+     */
+    private List<String> resolveWildcard(String expression, IndicesOptions indicesOptions, MetaData metaData,
+                                         AuthorizedIndexNames authorized) {
+        final ResolutionCache cache = resolutionCache(metaData, authorized);
+        final ResolutionKey key = cache == null ? null : new ResolutionKey(authorized, expression, indicesOptions);
+        if (cache != null) {
+            final List<String> cached = cache.resolvedWildcards.get(key);
+            if (cached != null) {
+                cacheHits.inc();
+                return cached;
+            }
+            cacheMisses.inc();
+        }
+        final List<String> resolved = new ArrayList<>();
+        if (MetaData.ALL.equals(expression)) {
+            for (String authorizedIndex : authorized.asList()) {
+                if (isIndexVisible(authorizedIndex, indicesOptions, metaData)) {
+                    resolved.add(authorizedIndex);
+                }
+            }
+        } else {
+            authorized.forEachMatch(expression, authorizedIndex -> {
+                if (isIndexVisible(authorizedIndex, indicesOptions, metaData)) {
+                    resolved.add(authorizedIndex);
+                }
+            });
+        }
+        final List<String> result = Collections.unmodifiableList(resolved);
+        if (cache != null) {
+            cache.resolvedWildcards.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the authorized index names of a role set, only building them the first time they are requested for a given version of the
+     * cluster metadata. The same instance is returned for as long as the metadata does not change, which makes the lookups of the
+     * resolutions done on behalf of the role set an identity comparison.
+     *
+     * @param roleKey           identifies the role set, it must not be equal to the key of the role set before a role changed, such as
+     *                          the role instance that is rebuilt when one of its roles is updated
+     * @param authorizedIndices computes the authorized indices of the role set when they are not cached
+     */
+    AuthorizedIndexNames authorizedIndexNames(Object roleKey, MetaData metaData, Supplier<List<String>> authorizedIndices) {
+        final ResolutionCache cache = resolutionCache(metaData);
+        if (cache == null) {
+            return new AuthorizedIndexNames(authorizedIndices.get());
+        }
+        AuthorizedIndexNames authorized = cache.authorizedNames.get(roleKey);
+        if (authorized == null) {
+            authorized = new AuthorizedIndexNames(authorizedIndices.get(), true);
+            cache.authorizedNames.put(roleKey, authorized);
+        }
+        return authorized;
+    }
+
+    private ResolutionCache resolutionCache(MetaData metaData, AuthorizedIndexNames authorized) {
+        // names that were not interned are never looked up again, caching their resolutions would only evict useful entries
+        return authorized.isInterned() ? resolutionCache(metaData) : null;
+    }
+
+    private ResolutionCache resolutionCache(MetaData metaData) {
+        if (cacheSize == 0) {
+            return null;
+        }
+        ResolutionCache current = resolutionCache;
+        // a new metadata instance is only created when the metadata changes so the cache is valid for as long as the instance
+        if (current == null || current.metaData != metaData) {
+            current = new ResolutionCache(metaData, cacheSize);
+            resolutionCache = current;
+        }
+        return current;
+    }
+
+    /**
+     * The number of wildcard expansions that were served from the cache
+     */
+    long getCacheHits() {
+        return cacheHits.count();
+    }
+
+    long getCacheMisses() {
+        return cacheMisses.count();
+    }
+
+    /**
+     * The time spent resolving the indices of requests, to be reported with the security stats
+     */
+    MeanMetric getResolutionTime() {
+        return resolutionTime;
+    }
+
     private List<String> replaceWildcardsWithAuthorizedAliases(String[] aliases, List<String> authorizedAliases) {
         final List<String> finalAliases = new ArrayList<>();
 
@@ -328,7 +472,7 @@ class IndicesAndAliasesResolver {
 
     //TODO Investigate reusing code from vanilla es to resolve index names and wildcards
     private List<String> replaceWildcardsWithAuthorizedIndices(Iterable<String> indices, IndicesOptions indicesOptions, MetaData metaData,
-                                                               List<String> authorizedIndices, boolean replaceWildcards) {
+                                                               AuthorizedIndexNames authorized, boolean replaceWildcards) {
         //the order matters when it comes to exclusions
         List<String> finalIndices = new ArrayList<>();
         boolean wildcardSeen = false;
@@ -349,7 +493,7 @@ class IndicesAndAliasesResolver {
                 if (replaceWildcards && Regex.isSimpleMatchPattern(dateMathName)) {
                     // continue
                     aliasOrIndex = dateMathName;
-                } else if (authorizedIndices.contains(dateMathName) && isIndexVisible(dateMathName, indicesOptions, metaData, true)) {
+                } else if (authorized.contains(dateMathName) && isIndexVisible(dateMathName, indicesOptions, metaData, true)) {
                     if (minus) {
                         finalIndices.remove(dateMathName);
                     } else {
@@ -364,12 +508,7 @@ class IndicesAndAliasesResolver {
 
             if (replaceWildcards && Regex.isSimpleMatchPattern(aliasOrIndex)) {
                 wildcardSeen = true;
-                Set<String> resolvedIndices = new HashSet<>();
-                for (String authorizedIndex : authorizedIndices) {
-                    if (Regex.simpleMatch(aliasOrIndex, authorizedIndex) && isIndexVisible(authorizedIndex, indicesOptions, metaData)) {
-                        resolvedIndices.add(authorizedIndex);
-                    }
-                }
+                final List<String> resolvedIndices = resolveWildcard(aliasOrIndex, indicesOptions, metaData, authorized);
                 if (resolvedIndices.isEmpty()) {
                     //es core honours allow_no_indices for each wildcard expression, we do the same here by throwing index not found.
                     if (indicesOptions.allowNoIndices() == false) {
@@ -377,7 +516,7 @@ class IndicesAndAliasesResolver {
                     }
                 } else {
                     if (minus) {
-                        finalIndices.removeAll(resolvedIndices);
+                        finalIndices.removeAll(new HashSet<>(resolvedIndices));
                     } else {
                         finalIndices.addAll(resolvedIndices);
                     }
@@ -428,6 +567,65 @@ class IndicesAndAliasesResolver {
         return (list == null) ? null : Arrays.asList(list);
     }
 
+    /**
+     * The resolutions done against a single version of the cluster metadata
+     */
+    private static final class ResolutionCache {
+
+        private final MetaData metaData;
+        private final Cache<ResolutionKey, List<String>> resolvedWildcards;
+        private final Cache<AuthorizedIndexNames, List<String>> authorizedAliases;
+        private final Cache<Object, AuthorizedIndexNames> authorizedNames;
+
+        private ResolutionCache(MetaData metaData, int size) {
+            this.metaData = metaData;
+            this.resolvedWildcards = CacheBuilder.<ResolutionKey, List<String>>builder()
+                    .setMaximumWeight(size)
+                    .weigher((key, resolved) -> key.authorized.size() + resolved.size() + 1)
+                    .build();
+            this.authorizedAliases = CacheBuilder.<AuthorizedIndexNames, List<String>>builder()
+                    .setMaximumWeight(size)
+                    .weigher((key, aliases) -> key.size() + aliases.size() + 1)
+                    .build();
+            this.authorizedNames = CacheBuilder.<Object, AuthorizedIndexNames>builder()
+                    .setMaximumWeight(size)
+                    .weigher((key, names) -> names.size() + 1)
+                    .build();
+        }
+    }
+
+    private static final class ResolutionKey {
+
+        private final AuthorizedIndexNames authorized;
+        private final String expression;
+        private final IndicesOptions indicesOptions;
+        private final int hashCode;
+
+        private ResolutionKey(AuthorizedIndexNames authorized, String expression, IndicesOptions indicesOptions) {
+            this.authorized = authorized;
+            this.expression = expression;
+            this.indicesOptions = indicesOptions;
+            this.hashCode = Objects.hash(authorized, expression, indicesOptions);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ResolutionKey that = (ResolutionKey) o;
+            return authorized == that.authorized && expression.equals(that.expression) && indicesOptions.equals(that.indicesOptions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     private static class RemoteClusterResolver extends RemoteClusterAware {
 
         private final CopyOnWriteArraySet<String> clusters;
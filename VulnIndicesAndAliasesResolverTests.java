@@ -71,12 +71,14 @@ import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormat;
 import org.junit.Before;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.elasticsearch.xpack.security.support.SecurityIndexManager.SECURITY_INDEX_NAME;
 import static org.hamcrest.Matchers.arrayContaining;
@@ -409,6 +411,79 @@ public class IndicesAndAliasesResolverTests extends ESTestCase {
         assertThat(request.indices(), arrayContainingInAnyOrder(replacedIndices));
     }
 
+    public void testAuthorizedIndexNamesAreInternedPerRoleSet() {
+        final List<String> authorizedIndices = buildAuthorizedIndices(user, SearchAction.NAME);
+        final Object roleKey = new Object();
+        final AtomicInteger loads = new AtomicInteger();
+        final AuthorizedIndexNames first = defaultIndicesResolver.authorizedIndexNames(roleKey, metaData, () -> {
+            loads.incrementAndGet();
+            return authorizedIndices;
+        });
+        final AuthorizedIndexNames second = defaultIndicesResolver.authorizedIndexNames(roleKey, metaData, () -> {
+            loads.incrementAndGet();
+            return authorizedIndices;
+        });
+        assertSame(first, second);
+        assertThat(loads.get(), equalTo(1));
+        assertThat(first.size(), equalTo(authorizedIndices.size()));
+
+        final long hits = defaultIndicesResolver.getCacheHits();
+        SearchRequest request = new SearchRequest("*");
+        final List<String> resolved = defaultIndicesResolver.resolve(request, metaData, first).getLocal();
+        request = new SearchRequest("*");
+        assertThat(defaultIndicesResolver.resolve(request, metaData, second).getLocal(), containsInAnyOrder(resolved.toArray()));
+        assertThat(defaultIndicesResolver.getCacheHits(), equalTo(hits + 1));
+
+        // another role set or new metadata loads the names again
+        assertNotSame(first, defaultIndicesResolver.authorizedIndexNames(new Object(), metaData, () -> authorizedIndices));
+        final MetaData newMetaData = MetaData.builder(metaData).build();
+        assertNotSame(first, defaultIndicesResolver.authorizedIndexNames(roleKey, newMetaData, () -> {
+            loads.incrementAndGet();
+            return authorizedIndices;
+        }));
+        assertThat(loads.get(), equalTo(2));
+    }
+
+    public void testResolvedWildcardsAreCached() {
+        final List<String> authorizedIndices = buildAuthorizedIndices(user, SearchAction.NAME);
+        final Object roleKey = new Object();
+        final long hits = defaultIndicesResolver.getCacheHits();
+        SearchRequest request = new SearchRequest("*", "-foofoo*");
+        request.indicesOptions(IndicesOptions.fromOptions(false, false, true, false));
+        final List<String> first = defaultIndicesResolver.resolve(request, metaData,
+                defaultIndicesResolver.authorizedIndexNames(roleKey, metaData, () -> authorizedIndices)).getLocal();
+        assertThat(defaultIndicesResolver.getCacheHits(), equalTo(hits));
+
+        // a new request on behalf of the same role set is served from the cache
+        request = new SearchRequest("*", "-foofoo*");
+        request.indicesOptions(IndicesOptions.fromOptions(false, false, true, false));
+        final List<String> second = defaultIndicesResolver.resolve(request, metaData,
+                defaultIndicesResolver.authorizedIndexNames(roleKey, metaData, () -> authorizedIndices)).getLocal();
+        assertThat(second, containsInAnyOrder(first.toArray()));
+        assertThat(defaultIndicesResolver.getCacheHits(), equalTo(hits + 2));
+        assertThat(defaultIndicesResolver.getResolutionTime().count(), equalTo(2L));
+
+        // other options are resolved again
+        request = new SearchRequest("*", "-foofoo*");
+        request.indicesOptions(IndicesOptions.fromOptions(false, false, true, true));
+        defaultIndicesResolver.resolve(request, metaData, defaultIndicesResolver.authorizedIndexNames(roleKey, metaData,
+                () -> authorizedIndices));
+        assertThat(defaultIndicesResolver.getCacheHits(), equalTo(hits + 2));
+    }
+
+    public void testAuthorizedIndicesOfASingleRequestAreNotCached() {
+        final List<String> authorizedIndices = buildAuthorizedIndices(user, SearchAction.NAME);
+        final long hits = defaultIndicesResolver.getCacheHits();
+        final long misses = defaultIndicesResolver.getCacheMisses();
+        for (int i = 0; i < 2; i++) {
+            SearchRequest request = new SearchRequest("*", "-foofoo*");
+            request.indicesOptions(IndicesOptions.fromOptions(false, false, true, false));
+            resolveIndices(request, new ArrayList<>(authorizedIndices));
+        }
+        assertThat(defaultIndicesResolver.getCacheHits(), equalTo(hits));
+        assertThat(defaultIndicesResolver.getCacheMisses(), equalTo(misses));
+    }
+
     public void testResolveWildcardsMinusExpandWilcardsOpenAndClosed() {
         SearchRequest request = new SearchRequest("*", "-foofoo*");
         request.indicesOptions(IndicesOptions.fromOptions(randomBoolean(), randomBoolean(), true, true));
@@ -21,6 +21,7 @@ package org.elasticsearch.search.aggregations.bucket.histogram;
 import com.carrotsearch.hppc.LongObjectOpenHashMap;
 import com.google.common.collect.Lists;
 import org.apache.lucene.util.CollectionUtil;
+import org.apache.lucene.util.PriorityQueue;
 import org.elasticsearch.Version;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -29,7 +30,6 @@ import org.elasticsearch.common.rounding.Rounding;
 import org.elasticsearch.common.text.StringText;
 import org.elasticsearch.common.text.Text;
 import org.elasticsearch.common.util.BigArrays;
-import org.elasticsearch.common.util.LongObjectPagedHashMap;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.search.aggregations.AggregationStreams;
 import org.elasticsearch.search.aggregations.Aggregations;
@@ -41,6 +41,8 @@ import org.elasticsearch.search.aggregations.support.format.ValueFormatterStream
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -254,36 +256,108 @@ public class InternalHistogram<B extends InternalHistogram.Bucket> extends Inter
         return FACTORY;
     }
 
-    @Override
-    public InternalAggregation reduce(ReduceContext reduceContext) {
+    private static class IteratorAndCurrent<B> {
+
+        private final Iterator<B> iterator;
+        private B current;
+
+        IteratorAndCurrent(Iterator<B> iterator) {
+            this.iterator = iterator;
+            current = iterator.next();
+        }
+
+    }
+
+    /**
+     * Shards return buckets sorted by key in ascending order, this only sorts a copy
+     * of the buckets if that is not the case.
+     */
+    private static <B extends Bucket> List<B> sortedByKey(List<B> buckets) {
+        for (int i = 1; i < buckets.size(); i++) {
+            if (buckets.get(i - 1).key > buckets.get(i).key) {
+                List<B> sorted = new ArrayList<>(buckets);
+                CollectionUtil.introSort(sorted, InternalOrder.KEY_ASC.comparator());
+                return sorted;
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Merges the buckets of all shards with a k-way merge over the per-shard bucket lists. Buckets
+     * that share the same key are reduced as soon as the merge moves past that key, so unlike
+     * grouping all buckets by key first, only the buckets for the current key are retained.
+     * The returned buckets are sorted by key in ascending order.
+     */
+    private List<B> reduceBuckets(ReduceContext reduceContext) {
         List<InternalAggregation> aggregations = reduceContext.aggregations();
 
-        LongObjectPagedHashMap<List<B>> bucketsByKey = new LongObjectPagedHashMap<>(reduceContext.bigArrays());
+        final PriorityQueue<IteratorAndCurrent<B>> pq = new PriorityQueue<IteratorAndCurrent<B>>(aggregations.size()) {
+            @Override
+            protected boolean lessThan(IteratorAndCurrent<B> a, IteratorAndCurrent<B> b) {
+                return a.current.key < b.current.key;
+            }
+        };
         for (InternalAggregation aggregation : aggregations) {
             InternalHistogram<B> histogram = (InternalHistogram) aggregation;
-            for (B bucket : histogram.buckets) {
-                List<B> bucketList = bucketsByKey.get(bucket.key);
-                if (bucketList == null) {
-                    bucketList = new ArrayList<>(aggregations.size());
-                    bucketsByKey.put(bucket.key, bucketList);
-                }
-                bucketList.add(bucket);
+            if (histogram.buckets.isEmpty() == false) {
+                pq.add(new IteratorAndCurrent<>(sortedByKey(histogram.buckets).iterator()));
             }
         }
 
-        List<B> reducedBuckets = new ArrayList<>((int) bucketsByKey.size());
-        for (LongObjectPagedHashMap.Cursor<List<B>> cursor : bucketsByKey) {
-            List<B> sameTermBuckets = cursor.value;
-            B bucket = sameTermBuckets.get(0).reduce(sameTermBuckets, reduceContext.bigArrays());
-            if (bucket.getDocCount() >= minDocCount) {
-                reducedBuckets.add(bucket);
+        List<B> reducedBuckets = new ArrayList<>();
+        if (pq.size() > 0) {
+            // list of buckets coming from different shards that have the same key
+            List<B> currentBuckets = new ArrayList<>();
+            long key = pq.top().current.key;
+
+            do {
+                final IteratorAndCurrent<B> top = pq.top();
+
+                if (top.current.key != key) {
+                    // the key changes, reduce what we already buffered and reset the buffer for current buckets
+                    final B reduced = currentBuckets.get(0).reduce(currentBuckets, reduceContext.bigArrays());
+                    if (reduced.getDocCount() >= minDocCount) {
+                        reducedBuckets.add(reduced);
+                    }
+                    currentBuckets.clear();
+                    key = top.current.key;
+                }
+
+                currentBuckets.add(top.current);
+
+                if (top.iterator.hasNext()) {
+                    final B next = top.iterator.next();
+                    assert next.key > top.current.key : "shards must return data sorted by key";
+                    top.current = next;
+                    pq.updateTop();
+                } else {
+                    // this shard is exhausted, drop it so that its buckets can be released
+                    pq.pop();
+                }
+            } while (pq.size() > 0);
+
+            if (currentBuckets.isEmpty() == false) {
+                final B reduced = currentBuckets.get(0).reduce(currentBuckets, reduceContext.bigArrays());
+                if (reduced.getDocCount() >= minDocCount) {
+                    reducedBuckets.add(reduced);
+                }
             }
         }
-        bucketsByKey.close();
+
+        return reducedBuckets;
+    }
+
+    @Override
+    public InternalAggregation reduce(ReduceContext reduceContext) {
+        List<B> reducedBuckets = reduceBuckets(reduceContext);
 
         // adding empty buckets in needed
         if (minDocCount == 0) {
-            CollectionUtil.introSort(reducedBuckets, order.asc ? InternalOrder.KEY_ASC.comparator() : InternalOrder.KEY_DESC.comparator());
+            // reduced buckets are sorted by key in ascending order
+            if (order.asc == false) {
+                Collections.reverse(reducedBuckets);
+            }
             List<B> list = order.asc ? reducedBuckets : Lists.reverse(reducedBuckets);
             B lastBucket = null;
             ExtendedBounds bounds = emptyBucketInfo.bounds;
@@ -0,0 +1,161 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.histogram;
+
+import org.elasticsearch.common.rounding.Rounding;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class InternalHistogramTests extends ElasticsearchTestCase {
+
+    private static final long INTERVAL = 10;
+
+    @Test
+    public void testReduceUnsortedShardBuckets() {
+        List<InternalAggregation> shards = new ArrayList<>();
+        shards.add(histogram(InternalOrder.KEY_ASC, 1, 30, 1, 10, 2, 20, 1));
+        shards.add(histogram(InternalOrder.KEY_ASC, 1, 40, 1, 20, 3));
+        assertBuckets(reduce(shards), 10, 2, 20, 4, 30, 1, 40, 1);
+    }
+
+    @Test
+    public void testReduceWithMinDocCount() {
+        List<InternalAggregation> shards = new ArrayList<>();
+        shards.add(histogram(InternalOrder.KEY_ASC, 2, 10, 1, 20, 1, 30, 1));
+        shards.add(histogram(InternalOrder.KEY_ASC, 2, 10, 1, 40, 3));
+        assertBuckets(reduce(shards), 10, 2, 40, 3);
+    }
+
+    @Test
+    public void testReduceAddsEmptyBuckets() {
+        List<InternalAggregation> shards = new ArrayList<>();
+        shards.add(histogram(InternalOrder.KEY_ASC, 0, 40, 1));
+        shards.add(histogram(InternalOrder.KEY_ASC, 0, 10, 2));
+        assertBuckets(reduce(shards), 10, 2, 20, 0, 30, 0, 40, 1);
+    }
+
+    @Test
+    public void testReduceDescendingOrder() {
+        List<InternalAggregation> shards = new ArrayList<>();
+        shards.add(histogram(InternalOrder.KEY_DESC, 0, 40, 1, 10, 1));
+        shards.add(histogram(InternalOrder.KEY_DESC, 0, 10, 2));
+        assertBuckets(reduce(shards), 40, 1, 30, 0, 20, 0, 10, 3);
+
+        shards = new ArrayList<>();
+        shards.add(histogram(InternalOrder.KEY_DESC, 1, 40, 1, 10, 1));
+        shards.add(histogram(InternalOrder.KEY_DESC, 1, 20, 2));
+        assertBuckets(reduce(shards), 40, 1, 20, 2, 10, 1);
+    }
+
+    @Test
+    public void testReduceRandomShards() {
+        boolean asc = randomBoolean();
+        InternalOrder order = asc ? InternalOrder.KEY_ASC : InternalOrder.KEY_DESC;
+        long minDocCount = randomIntBetween(0, 3);
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        List<InternalAggregation> shards = new ArrayList<>();
+        int numShards = randomIntBetween(1, 10);
+        for (int i = 0; i < numShards; i++) {
+            List<Long> keys = new ArrayList<>();
+            int numBuckets = randomIntBetween(0, 20);
+            for (int j = 0; j < numBuckets; j++) {
+                long key = randomIntBetween(0, 50) * INTERVAL;
+                if (keys.contains(key) == false) {
+                    keys.add(key);
+                }
+            }
+            // shard buckets may come in any order
+            Collections.shuffle(keys, getRandom());
+            long[] keysAndCounts = new long[keys.size() * 2];
+            for (int j = 0; j < keys.size(); j++) {
+                long docCount = randomIntBetween(1, 5);
+                keysAndCounts[2 * j] = keys.get(j);
+                keysAndCounts[2 * j + 1] = docCount;
+                Long previous = expected.get(keys.get(j));
+                expected.put(keys.get(j), previous == null ? docCount : previous + docCount);
+            }
+            shards.add(histogram(order, minDocCount, keysAndCounts));
+        }
+        if (minDocCount == 0 && expected.isEmpty() == false) {
+            long last = expected.lastKey();
+            for (long key = expected.firstKey(); key < last; key += INTERVAL) {
+                if (expected.containsKey(key) == false) {
+                    expected.put(key, 0L);
+                }
+            }
+        }
+        List<Long> expectedKeysAndCounts = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            if (entry.getValue() >= minDocCount) {
+                expectedKeysAndCounts.add(entry.getKey());
+                expectedKeysAndCounts.add(entry.getValue());
+            }
+        }
+        List<InternalHistogram.Bucket> buckets = reduce(shards);
+        List<Long> actualKeysAndCounts = new ArrayList<>();
+        List<InternalHistogram.Bucket> ascending = new ArrayList<>(buckets);
+        if (asc == false) {
+            Collections.reverse(ascending);
+        }
+        for (InternalHistogram.Bucket bucket : ascending) {
+            actualKeysAndCounts.add(bucket.getKeyAsNumber().longValue());
+            actualKeysAndCounts.add(bucket.getDocCount());
+        }
+        assertThat(actualKeysAndCounts, equalTo(expectedKeysAndCounts));
+    }
+
+    private static InternalHistogram<InternalHistogram.Bucket> histogram(InternalOrder order, long minDocCount, long... keysAndCounts) {
+        List<InternalHistogram.Bucket> buckets = new ArrayList<>();
+        for (int i = 0; i < keysAndCounts.length; i += 2) {
+            buckets.add(new InternalHistogram.Bucket(keysAndCounts[i], keysAndCounts[i + 1], null, InternalAggregations.EMPTY));
+        }
+        InternalHistogram.EmptyBucketInfo emptyBucketInfo = null;
+        if (minDocCount == 0) {
+            emptyBucketInfo = new InternalHistogram.EmptyBucketInfo(new Rounding.Interval(INTERVAL), InternalAggregations.EMPTY);
+        }
+        return new InternalHistogram<>("histo", buckets, order, minDocCount, emptyBucketInfo, null, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<InternalHistogram.Bucket> reduce(List<InternalAggregation> shards) {
+        InternalAggregation.ReduceContext context = new InternalAggregation.ReduceContext(shards, BigArrays.NON_RECYCLING_INSTANCE);
+        InternalHistogram<InternalHistogram.Bucket> reduced = (InternalHistogram<InternalHistogram.Bucket>) shards.get(0).reduce(context);
+        return new ArrayList<>(reduced.getBuckets());
+    }
+
+    private static void assertBuckets(List<InternalHistogram.Bucket> buckets, long... keysAndCounts) {
+        assertThat(buckets.size(), equalTo(keysAndCounts.length / 2));
+        for (int i = 0; i < buckets.size(); i++) {
+            assertThat(buckets.get(i).getKeyAsNumber().longValue(), equalTo(keysAndCounts[2 * i]));
+            assertThat(buckets.get(i).getDocCount(), equalTo(keysAndCounts[2 * i + 1]));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.impl;
+
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs tasks on a shared pool, the tasks submitted with the same key run one after the other in submission order.
+ * <p>
+ * Each key has its own lane that only exists while it has pending tasks. A lane goes back to the end of the pool queue
+ * after each task, so a long lane does not starve the other lanes.
+ */
+class LaneExecutor implements Executor {
+
+  private static final Logger log = LoggerFactory.getLogger(LaneExecutor.class);
+
+  private final Executor pool;
+  private final ConcurrentMap<Object, Lane> lanes = new ConcurrentHashMap<>();
+
+  LaneExecutor(Executor pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Runs the task without ordering.
+   */
+  @Override
+  public void execute(Runnable task) {
+    pool.execute(task);
+  }
+
+  /**
+   * Runs the task after the tasks submitted before with the same key, a {@code null} key runs it without ordering.
+   */
+  public void execute(Object key, Runnable task) {
+    if (key == null) {
+      execute(task);
+      return;
+    }
+    while (true) {
+      Lane lane = lanes.computeIfAbsent(key, Lane::new);
+      synchronized (lane) {
+        if (lane.removed) {
+          // The lane was drained concurrently
+          continue;
+        }
+        lane.tasks.add(task);
+        if (!lane.scheduled) {
+          lane.scheduled = true;
+          lane.schedule();
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return the number of lanes with pending tasks
+   */
+  int lanes() {
+    return lanes.size();
+  }
+
+  private class Lane implements Runnable {
+
+    private final Object key;
+    private final LinkedList<Runnable> tasks = new LinkedList<>();
+    private boolean scheduled;
+    private boolean removed;
+
+    Lane(Object key) {
+      this.key = key;
+    }
+
+    /**
+     * Submits the lane to the pool, a lane that could not be scheduled drops its pending tasks, so the next task of the key
+     * creates a new lane.
+     */
+    void schedule() {
+      try {
+        pool.execute(this);
+      } catch (RejectedExecutionException ignore) {
+        // Pool is already shut down
+        discard();
+      }
+    }
+
+    private synchronized void discard() {
+      tasks.clear();
+      scheduled = false;
+      removed = true;
+      lanes.remove(key, this);
+    }
+
+    @Override
+    public void run() {
+      Runnable task;
+      synchronized (this) {
+        task = tasks.poll();
+      }
+      try {
+        task.run();
+      } catch (Throwable t) {
+        log.error("Caught unexpected Throwable", t);
+      }
+      synchronized (this) {
+        if (tasks.isEmpty()) {
+          scheduled = false;
+          removed = true;
+          lanes.remove(key, this);
+        } else {
+          // Go back to the end of the queue
+          schedule();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.impl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LaneExecutorTest {
+
+  private final ExecutorService pool = Executors.newFixedThreadPool(8);
+
+  @After
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void testOrderedPerKey() throws Exception {
+    LaneExecutor executor = new LaneExecutor(pool);
+    int num = 1000;
+    List<List<Integer>> results = new ArrayList<>();
+    CountDownLatch latch = new CountDownLatch(num * 4);
+    for (int key = 0; key < 4; key++) {
+      results.add(Collections.synchronizedList(new ArrayList<>()));
+    }
+    for (int i = 0; i < num; i++) {
+      for (int key = 0; key < 4; key++) {
+        List<Integer> result = results.get(key);
+        int value = i;
+        executor.execute("key-" + key, () -> {
+          result.add(value);
+          latch.countDown();
+        });
+      }
+    }
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    for (List<Integer> result : results) {
+      assertEquals(num, result.size());
+      for (int i = 0; i < num; i++) {
+        assertEquals(i, (int) result.get(i));
+      }
+    }
+    waitUntil(() -> executor.lanes() == 0);
+  }
+
+  @Test
+  public void testRejectedLaneIsDiscarded() throws Exception {
+    AtomicInteger rejections = new AtomicInteger(1);
+    LaneExecutor executor = new LaneExecutor(task -> {
+      if (rejections.getAndDecrement() > 0) {
+        throw new RejectedExecutionException();
+      }
+      pool.execute(task);
+    });
+    executor.execute("a", () -> fail());
+    assertEquals(0, executor.lanes());
+    CountDownLatch latch = new CountDownLatch(1);
+    executor.execute("a", latch::countDown);
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+  }
+
+  private void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(1);
+    }
+  }
+}
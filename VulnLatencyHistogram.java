@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2011-2016 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.core.metrics.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A histogram of durations in nanoseconds with log-linear buckets, in the manner of HdrHistogram: each power of two is
+ * split in {@code 16} buckets so a value is reported with less than {@code 6.25%} of error, up to {@link #MAX_VALUE}.
+ * <p>
+ * The values are recorded in a fixed number of stripes of buckets picked by the recording thread, so the threads rarely
+ * contend on the same buckets and a histogram does not hold state for every thread that ever recorded in it. A stripe is
+ * allocated the first time a thread records in it, the stripes are merged when a {@link #snapshot()} is taken.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_HALF_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+
+  /**
+   * The largest recorded value, about 68 seconds, larger values are recorded as this value.
+   */
+  static final long MAX_VALUE = (1L << 36) - 1;
+
+  private static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+  /**
+   * The number of stripes, the smallest power of two that is at least twice the number of processors, at most {@code 64}.
+   */
+  private static final int STRIPE_COUNT = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1));
+
+  private final AtomicReferenceArray<Recorder> recorders = new AtomicReferenceArray<>(STRIPE_COUNT);
+
+  /**
+   * Records a value, negative values are recorded as {@code 0}.
+   *
+   * @param value the value in nanoseconds
+   */
+  void record(long value) {
+    recorder().record(Math.min(Math.max(value, 0), MAX_VALUE));
+  }
+
+  private Recorder recorder() {
+    // Spread the sequential thread ids over the stripes
+    int index = (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 32) & (STRIPE_COUNT - 1);
+    Recorder r = recorders.get(index);
+    if (r == null) {
+      Recorder created = new Recorder();
+      r = recorders.compareAndSet(index, null, created) ? created : recorders.get(index);
+    }
+    return r;
+  }
+
+  /**
+   * @return the merged values recorded so far by all the threads
+   */
+  Snapshot snapshot() {
+    long[] counts = new long[BUCKET_COUNT];
+    long sum = 0;
+    for (int j = 0; j < STRIPE_COUNT; j++) {
+      Recorder r = recorders.get(j);
+      if (r == null) {
+        continue;
+      }
+      // Read the sum first, so the sum does not account for values missing from the counts
+      sum += r.sum.get();
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        counts[i] += r.counts.get(i);
+      }
+    }
+    return new Snapshot(counts, sum);
+  }
+
+  static int bucketIndex(long value) {
+    if (value < (SUB_BUCKET_HALF_COUNT << 1)) {
+      return (int) value;
+    }
+    int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+  }
+
+  /**
+   * @return the largest value that is recorded in the bucket
+   */
+  static long highestEquivalentValue(int index) {
+    if (index < (SUB_BUCKET_HALF_COUNT << 1)) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+    return ((long) (index - shift * SUB_BUCKET_HALF_COUNT + 1) << shift) - 1;
+  }
+
+  /**
+   * The buckets of a stripe, shared by the threads that map to it.
+   */
+  private static final class Recorder {
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong sum = new AtomicLong();
+
+    void record(long value) {
+      // Increment the count first, so a snapshot does not see the value in the sum before the counts
+      counts.incrementAndGet(bucketIndex(value));
+      sum.addAndGet(value);
+    }
+  }
+
+  static final class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+
+    private Snapshot(long[] counts, long sum) {
+      long count = 0;
+      for (long c : counts) {
+        count += c;
+      }
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+    }
+
+    long count() {
+      return count;
+    }
+
+    long sum() {
+      return sum;
+    }
+
+    /**
+     * @return the value below which the {@code quantile} of the values fall, or {@code 0} when the histogram is empty
+     */
+    long valueAtQuantile(double quantile) {
+      long rank = Math.max(1, (long) Math.ceil(quantile * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return highestEquivalentValue(i);
+        }
+      }
+      return 0;
+    }
+
+    /**
+     * @return the largest recorded value, or {@code 0} when the histogram is empty
+     */
+    long max() {
+      for (int i = counts.length - 1; i >= 0; i--) {
+        if (counts[i] > 0) {
+          return highestEquivalentValue(i);
+        }
+      }
+      return 0;
+    }
+  }
+}
@@ -34,7 +34,7 @@ import org.apache.lucene.search.Filter;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ElasticsearchGenerationException;
 import org.elasticsearch.common.Nullable;
-import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.collect.CopyOnWriteHashMap;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.compress.CompressedString;
 import org.elasticsearch.common.inject.Inject;
@@ -99,8 +99,8 @@ public class MapperService extends AbstractIndexComponent implements Iterable<Do
     private final Object typeMutex = new Object();
     private final Object mappersMutex = new Object();
 
-    private final FieldMappersLookup fieldMappers = new FieldMappersLookup();
-    private volatile ImmutableOpenMap<String, ObjectMappers> fullPathObjectMappers = ImmutableOpenMap.of();
+    private volatile FieldMappersLookup fieldMappers = new FieldMappersLookup();
+    private volatile CopyOnWriteHashMap<String, ObjectMappers> fullPathObjectMappers = new CopyOnWriteHashMap<>();
     private boolean hasNested = false; // updated dynamically to true when a nested object is added
 
     private final DocumentMapperParser documentParser;
@@ -312,7 +312,7 @@ public class MapperService extends AbstractIndexComponent implements Iterable<Do
 
     private void addObjectMappers(ObjectMapper[] objectMappers) {
         synchronized (mappersMutex) {
-            ImmutableOpenMap.Builder<String, ObjectMappers> fullPathObjectMappers = ImmutableOpenMap.builder(this.fullPathObjectMappers);
+            CopyOnWriteHashMap<String, ObjectMappers> fullPathObjectMappers = this.fullPathObjectMappers;
             for (ObjectMapper objectMapper : objectMappers) {
                 ObjectMappers mappers = fullPathObjectMappers.get(objectMapper.fullPath());
                 if (mappers == null) {
@@ -320,19 +320,19 @@ public class MapperService extends AbstractIndexComponent implements Iterable<Do
                 } else {
                     mappers = mappers.concat(objectMapper);
                 }
-                fullPathObjectMappers.put(objectMapper.fullPath(), mappers);
+                fullPathObjectMappers = fullPathObjectMappers.copyAndPut(objectMapper.fullPath(), mappers);
                 // update the hasNested flag
                 if (objectMapper.nested().isNested()) {
                     hasNested = true;
                 }
             }
-            this.fullPathObjectMappers = fullPathObjectMappers.build();
+            this.fullPathObjectMappers = fullPathObjectMappers;
         }
     }
 
     private void addFieldMappers(Iterable<FieldMapper>  fieldMappers) {
         synchronized (mappersMutex) {
-            this.fieldMappers.addNewMappers(fieldMappers);
+            this.fieldMappers = this.fieldMappers.copyAndAddAll(fieldMappers);
         }
     }
 
@@ -353,22 +353,22 @@ public class MapperService extends AbstractIndexComponent implements Iterable<Do
 
     private void removeObjectAndFieldMappers(DocumentMapper docMapper) {
         synchronized (mappersMutex) {
-            fieldMappers.removeMappers(docMapper.mappers());
+            this.fieldMappers = this.fieldMappers.copyAndRemoveAll(docMapper.mappers());
 
-            ImmutableOpenMap.Builder<String, ObjectMappers> fullPathObjectMappers = ImmutableOpenMap.builder(this.fullPathObjectMappers);
+            CopyOnWriteHashMap<String, ObjectMappers> fullPathObjectMappers = this.fullPathObjectMappers;
             for (ObjectMapper mapper : docMapper.objectMappers().values()) {
                 ObjectMappers mappers = fullPathObjectMappers.get(mapper.fullPath());
                 if (mappers != null) {
                     mappers = mappers.remove(mapper);
                     if (mappers.isEmpty()) {
-                        fullPathObjectMappers.remove(mapper.fullPath());
+                        fullPathObjectMappers = fullPathObjectMappers.copyAndRemove(mapper.fullPath());
                     } else {
-                        fullPathObjectMappers.put(mapper.fullPath(), mappers);
+                        fullPathObjectMappers = fullPathObjectMappers.copyAndPut(mapper.fullPath(), mappers);
                     }
                 }
             }
 
-            this.fullPathObjectMappers = fullPathObjectMappers.build();
+            this.fullPathObjectMappers = fullPathObjectMappers;
         }
     }
 
@@ -25,6 +25,7 @@ import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.eventbus.ReplyFailure;
 import io.vertx.core.file.FileSystem;
 import io.vertx.core.http.*;
+import io.vertx.core.impl.ContextImpl;
 import io.vertx.core.metrics.MetricsOptions;
 import io.vertx.core.net.NetSocket;
 import io.vertx.core.spi.metrics.PoolMetrics;
@@ -34,8 +35,10 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
@@ -52,6 +55,7 @@ import static org.hamcrest.core.Is.is;
 public class MetricsTest extends VertxTestBase {
 
   private static final String ADDRESS1 = "some-address1";
+  private static final String HTTP_CLIENT_POOL = "vert.x-http-client-pool-localhost:8080";
 
   @BeforeClass
   public static void setFactory() {
@@ -682,6 +686,169 @@ public class MetricsTest extends VertxTestBase {
     await();
   }
 
+  @Test
+  public void testHttpClientPoolWaits() throws Exception {
+    startHttpServer(req -> req.response().end());
+    HttpClient client = vertx.createHttpClient(new HttpClientOptions().setMaxPoolSize(1));
+    int numRequests = 5;
+    CountDownLatch latch = new CountDownLatch(numRequests);
+    vertx.runOnContext(v -> {
+      for (int i = 0; i < numRequests; i++) {
+        client.getNow(8080, "localhost", "/", resp -> resp.endHandler(v2 -> latch.countDown()));
+      }
+    });
+    awaitLatch(latch);
+    FakeThreadPoolMetrics metrics = (FakeThreadPoolMetrics) FakeThreadPoolMetrics.getThreadPoolMetrics().get(HTTP_CLIENT_POOL);
+    // The first request connects, the others wait for the connection to be recycled
+    assertEquals(numRequests - 1, metrics.submitted());
+    assertEquals(numRequests - 1, metrics.numberOfWaitedTasks());
+    assertTrue(metrics.totalWaitTime() > 0);
+    assertEquals(0, metrics.numberOfWaitingTasks());
+    assertEquals(0, metrics.numberOfStolenResources());
+  }
+
+  @Test
+  public void testHttpClientPoolSteal() throws Exception {
+    startHttpServer(req -> req.response().end());
+    HttpClient client = vertx.createHttpClient(new HttpClientOptions().setMaxPoolSize(1));
+    ContextImpl ctx1 = (ContextImpl) vertx.getOrCreateContext();
+    ContextImpl other = (ContextImpl) vertx.getOrCreateContext();
+    while (other.nettyEventLoop() == ctx1.nettyEventLoop()) {
+      other = (ContextImpl) vertx.getOrCreateContext();
+    }
+    ContextImpl ctx2 = other;
+    ctx1.runOnContext(v1 -> {
+      client.getNow(8080, "localhost", "/", resp1 -> resp1.endHandler(v2 -> {
+        // Let the connection be recycled in the partition of the first event loop
+        ctx2.runOnContext(v3 -> vertx.setTimer(100, id -> {
+          client.getNow(8080, "localhost", "/", resp2 -> resp2.endHandler(v4 -> testComplete()));
+        }));
+      }));
+    });
+    await();
+    FakeThreadPoolMetrics metrics = (FakeThreadPoolMetrics) FakeThreadPoolMetrics.getThreadPoolMetrics().get(HTTP_CLIENT_POOL);
+    assertEquals(1, metrics.numberOfStolenResources());
+    assertEquals(0, metrics.submitted());
+  }
+
+  @Test
+  public void testHttpClientPoolConcurrentRecycleAndEnqueue() throws Exception {
+    startHttpServer(req -> req.response().end());
+    testHttpClientPoolConcurrentRequests(new HttpClientOptions().setMaxPoolSize(2));
+  }
+
+  @Test
+  public void testHttpClientPoolConcurrentCloseAndEnqueue() throws Exception {
+    // Every connection is closed after its response, the waiters are served by new connections
+    startHttpServer(req -> req.response().putHeader("Connection", "close").end());
+    testHttpClientPoolConcurrentRequests(new HttpClientOptions().setMaxPoolSize(2));
+  }
+
+  private void testHttpClientPoolConcurrentRequests(HttpClientOptions options) throws Exception {
+    HttpClient client = vertx.createHttpClient(options);
+    int numContexts = 4;
+    int numRequests = 100;
+    CountDownLatch latch = new CountDownLatch(numContexts * numRequests);
+    AtomicReference<FakeThreadPoolMetrics> metrics = new AtomicReference<>();
+    for (int i = 0; i < numContexts; i++) {
+      AtomicInteger remaining = new AtomicInteger(numRequests);
+      vertx.getOrCreateContext().runOnContext(v -> {
+        // Two requests in flight per event loop, so connections are recycled while other event loops queue waiters
+        sendRequests(client, remaining, latch, metrics);
+        sendRequests(client, remaining, latch, metrics);
+      });
+    }
+    // A waiter that misses a recycled or closed connection is never served
+    awaitLatch(latch);
+    assertEquals(0, metrics.get().numberOfWaitingTasks());
+    assertEquals(metrics.get().submitted(), metrics.get().numberOfWaitedTasks());
+  }
+
+  private void sendRequests(HttpClient client, AtomicInteger remaining, CountDownLatch latch, AtomicReference<FakeThreadPoolMetrics> metrics) {
+    if (remaining.decrementAndGet() >= 0) {
+      client.getNow(8080, "localhost", "/", resp -> resp.endHandler(v -> {
+        metrics.compareAndSet(null, (FakeThreadPoolMetrics) FakeThreadPoolMetrics.getThreadPoolMetrics().get(HTTP_CLIENT_POOL));
+        latch.countDown();
+        sendRequests(client, remaining, latch, metrics);
+      }));
+    }
+  }
+
+  @Test
+  public void testHttpClientPoolMaxWaitQueueSize() throws Exception {
+    List<HttpServerRequest> pending = new ArrayList<>();
+    AtomicBoolean released = new AtomicBoolean();
+    startHttpServer(req -> {
+      synchronized (pending) {
+        if (!released.get()) {
+          pending.add(req);
+          return;
+        }
+      }
+      req.response().end();
+    });
+    int maxWaitQueueSize = 3;
+    HttpClient client = vertx.createHttpClient(new HttpClientOptions().setMaxPoolSize(1).setMaxWaitQueueSize(maxWaitQueueSize));
+    int numContexts = 4;
+    int numRequests = 5;
+    int total = numContexts * numRequests;
+    AtomicInteger rejected = new AtomicInteger();
+    CountDownLatch latch = new CountDownLatch(total);
+    for (int i = 0; i < numContexts; i++) {
+      vertx.getOrCreateContext().runOnContext(v -> {
+        for (int j = 0; j < numRequests; j++) {
+          HttpClientRequest req = client.get(8080, "localhost", "/", resp -> resp.endHandler(v2 -> latch.countDown()));
+          req.exceptionHandler(err -> {
+            assertTrue(err instanceof ConnectionPoolTooBusyException);
+            rejected.incrementAndGet();
+            latch.countDown();
+          });
+          req.end();
+        }
+      });
+    }
+    // The request that connects is held by the server, only the queue size of the others may wait
+    waitUntil(() -> rejected.get() == total - 1 - maxWaitQueueSize);
+    FakeThreadPoolMetrics metrics = (FakeThreadPoolMetrics) FakeThreadPoolMetrics.getThreadPoolMetrics().get(HTTP_CLIENT_POOL);
+    assertEquals(maxWaitQueueSize, metrics.numberOfWaitingTasks());
+    List<HttpServerRequest> requests;
+    synchronized (pending) {
+      released.set(true);
+      requests = new ArrayList<>(pending);
+    }
+    requests.forEach(req -> req.response().end());
+    awaitLatch(latch);
+    assertEquals(total - 1 - maxWaitQueueSize, rejected.get());
+    assertEquals(maxWaitQueueSize, metrics.submitted());
+    assertEquals(maxWaitQueueSize, metrics.numberOfWaitedTasks());
+    assertEquals(0, metrics.numberOfWaitingTasks());
+  }
+
+  @Test
+  public void testHttp2ClientPoolResourceUsage() throws Exception {
+    startHttpServer(req -> req.response().end());
+    HttpClient client = vertx.createHttpClient(new HttpClientOptions().setProtocolVersion(HttpVersion.HTTP_2));
+    AtomicReference<HttpConnection> connection = new AtomicReference<>();
+    AtomicReference<FakeThreadPoolMetrics> metrics = new AtomicReference<>();
+    HttpClientRequest req = client.get(8080, "localhost", "/", resp -> {
+      assertEquals(HttpVersion.HTTP_2, resp.version());
+      FakeThreadPoolMetrics poolMetrics = (FakeThreadPoolMetrics) FakeThreadPoolMetrics.getThreadPoolMetrics().get(HTTP_CLIENT_POOL);
+      assertEquals(1, poolMetrics.resourceUsage().size());
+      metrics.set(poolMetrics);
+      resp.endHandler(v -> connection.get().close());
+    });
+    req.connectionHandler(connection::set);
+    req.end();
+    // The discarded connection is not referenced by the metrics anymore
+    waitUntil(() -> metrics.get() != null && metrics.get().resourceUsage().isEmpty());
+  }
+
+  private void startHttpServer(Handler<HttpServerRequest> handler) throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    vertx.createHttpServer().requestHandler(handler).listen(8080, "localhost", onSuccess(s -> latch.countDown()));
+    awaitLatch(latch);
+  }
+
   @Test
   public void testThreadPoolMetricsWithExecuteBlocking() {
     Map<String, PoolMetrics> all = FakeThreadPoolMetrics.getThreadPoolMetrics();
@@ -22,8 +22,11 @@ import io.vertx.core.DeploymentOptions;
 import io.vertx.core.WorkerExecutor;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
@@ -125,6 +128,38 @@ public class NamedWorkerPoolTest extends VertxTestBase {
     await();
   }
 
+  @Test
+  public void testOrderedByKey() throws Exception {
+    String poolName = "vert.x-" + TestUtils.randomAlphaString(10);
+    waitFor(3);
+    WorkerExecutor worker = vertx.createWorkerExecutor(poolName);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch otherKeyRan = new CountDownLatch(1);
+    worker.executeBlocking("a", fut -> {
+      try {
+        // Executions with another key are not blocked by this one
+        awaitLatch(otherKeyRan);
+      } catch (InterruptedException e) {
+        fail(e);
+        return;
+      }
+      order.add("a1");
+      fut.complete();
+    }, ar -> complete());
+    worker.executeBlocking("a", fut -> {
+      order.add("a2");
+      fut.complete();
+    }, ar -> complete());
+    worker.executeBlocking("b", fut -> {
+      assertTrue(Thread.currentThread().getName().startsWith(poolName + "-"));
+      order.add("b1");
+      otherKeyRan.countDown();
+      fut.complete();
+    }, ar -> complete());
+    await();
+    assertEquals(Arrays.asList("b1", "a1", "a2"), order);
+  }
+
   @Test
   public void testPoolSize() throws Exception {
     String poolName = "vert.x-" + TestUtils.randomAlphaString(10);
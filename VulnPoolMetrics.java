@@ -48,4 +48,39 @@ public interface PoolMetrics<T> extends Metrics {
    */
   void taskEnd(T task, boolean succeeded);
 
+  /**
+   * The submitted task waited for the resource, this is called before {@link #taskBegin} for tasks that could not use the
+   * resource right away. Implementations can aggregate the wait times in a histogram.
+   *
+   * @param waitTimeNanos the time the task waited, in nanoseconds
+   */
+  default void taskWaited(T task, long waitTimeNanos) {
+  }
+
+  /**
+   * For partitioned pools, a resource was taken from another partition than the one of the submitter because its own
+   * partition had none available.
+   */
+  default void resourceStolen() {
+  }
+
+  /**
+   * For pools which resources are shared by several tasks at once, such as HTTP/2 connections carrying several streams, the
+   * number of tasks using a resource changed.
+   *
+   * @param resource the resource
+   * @param usage the number of tasks using the resource
+   */
+  default void resourceUsage(Object resource, long usage) {
+  }
+
+  /**
+   * A resource which usage was reported with {@link #resourceUsage(Object, long)} was removed from the pool, the metrics
+   * should not keep any reference to it.
+   *
+   * @param resource the resource
+   */
+  default void resourceRemoved(Object resource) {
+  }
+
 }
\ No newline at end of file
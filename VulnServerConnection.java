@@ -25,6 +25,7 @@ import io.netty.handler.codec.http.websocketx.WebSocketHandshakeException;
 import io.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
 import io.netty.handler.codec.http.websocketx.WebSocketVersion;
 import io.netty.handler.stream.ChunkedFile;
+import io.netty.handler.stream.ChunkedNioFile;
 import io.netty.util.ReferenceCountUtil;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
@@ -470,6 +471,9 @@ class ServerConnection extends ConnectionBase {
     } else if (obj instanceof ChunkedFile) {
       ChunkedFile file = (ChunkedFile) obj;
       return file.endOffset() - file.startOffset();
+    } else if (obj instanceof ChunkedNioFile) {
+      ChunkedNioFile file = (ChunkedNioFile) obj;
+      return file.endOffset() - file.startOffset();
     } else {
       return -1;
     }
@@ -0,0 +1,225 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.watcher.actions.email.service;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.support.clock.Clock;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Keeps the connected SMTP transports of an account around after a send, so that the next message sent with the same credentials
+ * doesn't have to go through the tcp/tls handshake and the authentication again. Idle transports are dropped after the keep alive
+ * expired. Transports that were idle for longer than {@code validateAfterMillis} are checked to still be connected (which issues a
+ * {@code NOOP}) before they are handed out again, more recently used ones are handed out as they are.
+ * <p>
+ * While there are idle transports, a reaper task is scheduled on the generic thread pool to close them once their keep alive
+ * expired, so that the connections of an account that is not used (or not closed) anymore don't stay open. The task is not
+ * scheduled again once no transport is idle.
+ */
+class SmtpTransportPool {
+
+    private final String accountName;
+    private final Session session;
+    private final String host;
+    private final int port;
+    private final int maxIdle;
+    private final long keepAliveMillis;
+    private final long validateAfterMillis;
+    private final Clock clock;
+    private final ThreadPool threadPool;
+    private final ESLogger logger;
+
+    // most recently used first, guarded by this
+    private final Deque<PooledTransport> idle = new ArrayDeque<>();
+    private boolean closed;
+    // guarded by this
+    private ScheduledFuture<?> reaper;
+
+    private final CounterMetric connectionsOpened = new CounterMetric();
+    private final CounterMetric connectionsReused = new CounterMetric();
+
+    SmtpTransportPool(String accountName, Session session, String host, int port, int maxIdle, long keepAliveMillis,
+                      long validateAfterMillis, Clock clock, ThreadPool threadPool, ESLogger logger) {
+        this.accountName = accountName;
+        this.session = session;
+        this.host = host;
+        this.port = port;
+        this.maxIdle = maxIdle;
+        this.keepAliveMillis = keepAliveMillis;
+        this.validateAfterMillis = validateAfterMillis;
+        this.clock = clock;
+        this.threadPool = threadPool;
+        this.logger = logger;
+    }
+
+    /**
+     * Returns a connected transport for the given credentials, either an idle one or a newly connected one. The transport must
+     * be handed back with {@link #release(PooledTransport, boolean)}.
+     */
+    PooledTransport borrow(String user, String password) throws MessagingException {
+        while (true) {
+            PooledTransport candidate = null;
+            List<PooledTransport> expired = new ArrayList<>();
+            long now = clock.millis();
+            synchronized (this) {
+                for (Iterator<PooledTransport> iterator = idle.iterator(); iterator.hasNext(); ) {
+                    PooledTransport transport = iterator.next();
+                    if (now - transport.lastUsed > keepAliveMillis) {
+                        iterator.remove();
+                        expired.add(transport);
+                    } else if (candidate == null && transport.matches(user, password)) {
+                        iterator.remove();
+                        candidate = transport;
+                    }
+                }
+            }
+            for (PooledTransport transport : expired) {
+                close(transport);
+            }
+            if (candidate == null) {
+                break;
+            }
+            // the server may have dropped the connection while it was idle, only worth checking if it was idle for a while
+            if (now - candidate.lastUsed <= validateAfterMillis || candidate.transport.isConnected()) {
+                connectionsReused.inc();
+                return candidate;
+            }
+            close(candidate);
+        }
+
+        Transport transport = session.getTransport(Account.SMTP_PROTOCOL);
+        transport.connect(host, port, user, password);
+        connectionsOpened.inc();
+        return new PooledTransport(transport, user, password);
+    }
+
+    /**
+     * Hands back a borrowed transport. Transports that are not {@code reusable} (e.g. because sending failed on the connection
+     * level) or that don't fit in the pool anymore are closed.
+     */
+    void release(PooledTransport transport, boolean reusable) {
+        if (reusable && maxIdle > 0) {
+            transport.lastUsed = clock.millis();
+            synchronized (this) {
+                if (closed == false && idle.size() < maxIdle) {
+                    idle.addFirst(transport);
+                    if (reaper == null) {
+                        scheduleReaper(keepAliveMillis + 1);
+                    }
+                    return;
+                }
+            }
+        }
+        close(transport);
+    }
+
+    /**
+     * Closes all the idle transports, transports that are released afterwards are closed right away
+     */
+    void close() {
+        List<PooledTransport> transports;
+        synchronized (this) {
+            closed = true;
+            transports = new ArrayList<>(idle);
+            idle.clear();
+            if (reaper != null) {
+                reaper.cancel(false);
+                reaper = null;
+            }
+        }
+        for (PooledTransport transport : transports) {
+            close(transport);
+        }
+    }
+
+    synchronized int idleConnections() {
+        return idle.size();
+    }
+
+    long connectionsOpened() {
+        return connectionsOpened.count();
+    }
+
+    long connectionsReused() {
+        return connectionsReused.count();
+    }
+
+    // must be called while holding the lock of the pool
+    private void scheduleReaper(long delayMillis) {
+        assert Thread.holdsLock(this);
+        reaper = threadPool.schedule(TimeValue.timeValueMillis(delayMillis), ThreadPool.Names.GENERIC, new Reaper());
+    }
+
+    /**
+     * Closes the idle transports whose keep alive expired, and schedules itself again for when the keep alive of the least recently
+     * used one expires
+     */
+    private class Reaper implements Runnable {
+
+        @Override
+        public void run() {
+            List<PooledTransport> expired = new ArrayList<>();
+            synchronized (SmtpTransportPool.this) {
+                long now = clock.millis();
+                while (idle.isEmpty() == false && now - idle.peekLast().lastUsed > keepAliveMillis) {
+                    expired.add(idle.pollLast());
+                }
+                if (closed || idle.isEmpty()) {
+                    reaper = null;
+                } else {
+                    scheduleReaper(idle.peekLast().lastUsed + keepAliveMillis - now + 1);
+                }
+            }
+            for (PooledTransport transport : expired) {
+                close(transport);
+            }
+        }
+    }
+
+    private void close(PooledTransport transport) {
+        try {
+            transport.transport.close();
+        } catch (MessagingException me) {
+            logger.error("failed to close email transport for account [" + accountName + "]");
+        }
+    }
+
+    static class PooledTransport {
+
+        private final Transport transport;
+        private final String user;
+        private final String password;
+        private volatile long lastUsed;
+
+        private PooledTransport(Transport transport, String user, String password) {
+            this.transport = transport;
+            this.user = user;
+            this.password = password;
+        }
+
+        boolean matches(String user, String password) {
+            return Objects.equals(this.user, user) && Objects.equals(this.password, password);
+        }
+
+        void send(MimeMessage message) throws MessagingException {
+            transport.sendMessage(message, message.getAllRecipients());
+        }
+    }
+}
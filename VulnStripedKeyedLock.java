@@ -0,0 +1,225 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.watcher.support.concurrent;
+
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.metrics.MeanMetric;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A keyed lock that, unlike {@link FairKeyedLock}, does not allocate a lock per acquisition. It comes in two modes:
+ * <ul>
+ * <li>{@link #striped(int) striped}: keys are hashed onto a fixed array of fair locks. Two keys that share a stripe exclude each
+ * other, which is harmless as long as there are many more stripes than threads acquiring locks.</li>
+ * <li>{@link #exactKeys(int) exact keys}: every key gets its own fair lock, as with {@link FairKeyedLock}, but the lock objects are
+ * taken from and returned to a bounded pool.</li>
+ * </ul>
+ * In both modes a thread can hold a single key at a time, and locks are handed out in arrival order.
+ */
+public abstract class StripedKeyedLock<T> {
+
+    private final ThreadLocal<ReentrantLock> held = new ThreadLocal<>();
+    private final AtomicInteger activeAcquisitions = new AtomicInteger();
+    private final CounterMetric acquisitions = new CounterMetric();
+    private final CounterMetric contendedAcquisitions = new CounterMetric();
+    private final MeanMetric contendedWaitTime = new MeanMetric();
+
+    private StripedKeyedLock() {
+    }
+
+    /**
+     * Creates a lock that maps the keys onto {@code stripes} locks, rounded up to the next power of two
+     */
+    public static <T> StripedKeyedLock<T> striped(int stripes) {
+        return new Striped<>(stripes);
+    }
+
+    /**
+     * Creates a lock that locks every key individually, keeping up to {@code poolSize} unused lock objects around for reuse
+     */
+    public static <T> StripedKeyedLock<T> exactKeys(int poolSize) {
+        return new ExactKeys<>(poolSize);
+    }
+
+    public void acquire(T key) {
+        if (held.get() != null) {
+            // if we are here, the thread already has the lock
+            throw new ElasticsearchIllegalStateException("Lock already acquired in Thread" + Thread.currentThread().getId()
+                    + " for key " + key);
+        }
+        activeAcquisitions.incrementAndGet();
+        final ReentrantLock lock = lockFor(key);
+        final boolean contended = lock.isLocked() || lock.hasQueuedThreads();
+        if (contended) {
+            final long start = System.nanoTime();
+            lock.lock();
+            contendedWaitTime.inc(System.nanoTime() - start);
+            contendedAcquisitions.inc();
+        } else {
+            lock.lock();
+        }
+        acquisitions.inc();
+        held.set(lock);
+    }
+
+    public void release(T key) {
+        final ReentrantLock lock = held.get();
+        if (lock == null) {
+            throw new ElasticsearchIllegalStateException("Lock not acquired");
+        }
+        assert lock.isHeldByCurrentThread();
+        lock.unlock();
+        held.set(null);
+        released(key, lock);
+        activeAcquisitions.decrementAndGet();
+    }
+
+    /**
+     * Whether any key is currently locked or waited for
+     */
+    public boolean hasLockedKeys() {
+        return activeAcquisitions.get() > 0;
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.count();
+    }
+
+    /**
+     * The number of acquisitions that found the lock held or waited for by another thread
+     */
+    public long getContendedAcquisitions() {
+        return contendedAcquisitions.count();
+    }
+
+    /**
+     * The time, in nanoseconds, that contended acquisitions waited for the lock
+     */
+    public MeanMetric getContendedWaitTime() {
+        return contendedWaitTime;
+    }
+
+    /**
+     * Returns the lock to acquire for the given key, registering the current thread as a user of the lock if needed
+     */
+    abstract ReentrantLock lockFor(T key);
+
+    /**
+     * Called after the given lock for the key was unlocked by the current thread
+     */
+    abstract void released(T key, ReentrantLock lock);
+
+    private static final class Striped<T> extends StripedKeyedLock<T> {
+
+        private final ReentrantLock[] stripes;
+
+        private Striped(int stripes) {
+            if (stripes <= 0) {
+                throw new ElasticsearchIllegalArgumentException("stripes must be greater than 0 but was [" + stripes + "]");
+            }
+            int size = Integer.highestOneBit(stripes);
+            if (size < stripes) {
+                size <<= 1;
+            }
+            this.stripes = new ReentrantLock[size];
+            for (int i = 0; i < size; i++) {
+                this.stripes[i] = new ReentrantLock(true);
+            }
+        }
+
+        @Override
+        ReentrantLock lockFor(T key) {
+            int hash = key.hashCode();
+            // spread the higher bits as string hashes of keys with a common prefix tend to differ in the lower bits only
+            hash ^= (hash >>> 16);
+            return stripes[hash & (stripes.length - 1)];
+        }
+
+        @Override
+        void released(T key, ReentrantLock lock) {
+            assert lock == lockFor(key);
+        }
+    }
+
+    private static final class ExactKeys<T> extends StripedKeyedLock<T> {
+
+        private final ConcurrentMap<T, KeyLock> map = ConcurrentCollections.newConcurrentMap();
+        private final BlockingQueue<KeyLock> pool;
+
+        private ExactKeys(int poolSize) {
+            if (poolSize <= 0) {
+                throw new ElasticsearchIllegalArgumentException("pool size must be greater than 0 but was [" + poolSize + "]");
+            }
+            this.pool = new ArrayBlockingQueue<>(poolSize);
+        }
+
+        @Override
+        ReentrantLock lockFor(T key) {
+            while (true) {
+                KeyLock perKeyLock = map.get(key);
+                if (perKeyLock == null) {
+                    KeyLock newLock = pool.poll();
+                    if (newLock == null) {
+                        newLock = new KeyLock();
+                    }
+                    // the key must be set before the count so that whoever releases the last count can unmap the lock
+                    newLock.key = key;
+                    newLock.count.set(1);
+                    perKeyLock = map.putIfAbsent(key, newLock);
+                    if (perKeyLock == null) {
+                        return newLock;
+                    }
+                    // a thread that still references the lock from a previous use may have bumped the count, so give it back
+                    // the same way a release would
+                    decrement(newLock);
+                }
+                int i = perKeyLock.count.get();
+                if (i > 0 && perKeyLock.count.compareAndSet(i, i + 1)) {
+                    // the lock may have been released, pooled and reused since we looked it up. Once we hold a count the lock
+                    // can not be unmapped anymore, so it is ours if it is still the one mapped to the key
+                    if (map.get(key) == perKeyLock) {
+                        return perKeyLock;
+                    }
+                    decrement(perKeyLock);
+                }
+            }
+        }
+
+        @Override
+        void released(T key, ReentrantLock lock) {
+            final KeyLock keyLock = (KeyLock) lock;
+            assert keyLock == map.get(key);
+            decrement(keyLock);
+        }
+
+        private void decrement(KeyLock lock) {
+            if (lock.count.decrementAndGet() == 0) {
+                final Object key = lock.key;
+                map.remove(key, lock);
+                lock.key = null;
+                pool.offer(lock);
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class KeyLock extends ReentrantLock {
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile Object key;
+
+        private KeyLock() {
+            super(true);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.watcher.support.concurrent;
+
+import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+/**
+ */
+public class StripedKeyedLockTests extends ElasticsearchTestCase {
+
+    @Test
+    public void checkNoLockedKeysAfterLotsOfAcquireAndReleases() throws InterruptedException {
+        final StripedKeyedLock<String> keyedLock = randomKeyedLock();
+        final String[] names = new String[randomIntBetween(1, 40)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = randomRealisticUnicodeOfLengthBetween(10, 20);
+        }
+        final ConcurrentMap<String, Integer> counter = ConcurrentCollections.newConcurrentMap();
+        final ConcurrentMap<String, AtomicInteger> safeCounter = ConcurrentCollections.newConcurrentMap();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final int numRuns = scaledRandomIntBetween(5000, 50000);
+        Thread[] threads = new Thread[randomIntBetween(3, 10)];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    for (int i = 0; i < numRuns; i++) {
+                        String name = names[randomInt(names.length - 1)];
+                        keyedLock.acquire(name);
+                        try {
+                            // the read and the write only add up if the lock guarantees exclusive access per key
+                            Integer count = counter.get(name);
+                            counter.put(name, count == null ? 1 : count + 1);
+                        } finally {
+                            keyedLock.release(name);
+                        }
+                        AtomicInteger newCount = new AtomicInteger();
+                        AtomicInteger count = safeCounter.putIfAbsent(name, newCount);
+                        (count == null ? newCount : count).incrementAndGet();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(keyedLock.hasLockedKeys(), is(false));
+        assertThat(keyedLock.getAcquisitions(), equalTo((long) numRuns * threads.length));
+        assertThat(counter.size(), equalTo(safeCounter.size()));
+        for (Map.Entry<String, Integer> entry : counter.entrySet()) {
+            assertThat(safeCounter.get(entry.getKey()).get(), equalTo(entry.getValue()));
+        }
+    }
+
+    @Test
+    public void checkExclusiveAccessPerKey() throws InterruptedException {
+        final StripedKeyedLock<String> keyedLock = randomKeyedLock();
+        final String[] names = new String[randomIntBetween(1, 10)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = randomAsciiOfLength(10);
+        }
+        final ConcurrentMap<String, AtomicInteger> holders = ConcurrentCollections.newConcurrentMap();
+        for (String name : names) {
+            holders.put(name, new AtomicInteger());
+        }
+        final AtomicInteger violations = new AtomicInteger();
+        final int numRuns = scaledRandomIntBetween(1000, 10000);
+        Thread[] threads = new Thread[randomIntBetween(3, 10)];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < numRuns; i++) {
+                        String name = names[randomInt(names.length - 1)];
+                        keyedLock.acquire(name);
+                        try {
+                            if (holders.get(name).incrementAndGet() != 1) {
+                                violations.incrementAndGet();
+                            }
+                            holders.get(name).decrementAndGet();
+                        } finally {
+                            keyedLock.release(name);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(violations.get(), equalTo(0));
+        assertThat(keyedLock.hasLockedKeys(), is(false));
+    }
+
+    @Test
+    public void checkContentionIsCounted() throws InterruptedException {
+        final StripedKeyedLock<String> keyedLock = randomKeyedLock();
+        keyedLock.acquire("_name");
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                keyedLock.acquire("_name");
+                keyedLock.release("_name");
+            }
+        };
+        thread.start();
+        // wait for the thread to queue up on the lock
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        keyedLock.release("_name");
+        thread.join();
+        assertThat(keyedLock.getContendedAcquisitions(), equalTo(1L));
+        assertThat(keyedLock.getContendedWaitTime().count(), equalTo(1L));
+        assertThat(keyedLock.getContendedWaitTime().sum(), greaterThan(0L));
+    }
+
+    @Test(expected = ElasticsearchIllegalStateException.class)
+    public void checkCannotAcquireTwoLocks() {
+        StripedKeyedLock<String> keyedLock = randomKeyedLock();
+        String name = randomRealisticUnicodeOfLength(scaledRandomIntBetween(10, 50));
+        keyedLock.acquire(name);
+        keyedLock.acquire(name);
+    }
+
+    @Test(expected = ElasticsearchIllegalStateException.class)
+    public void checkCannotReleaseUnacquiredLock() {
+        StripedKeyedLock<String> keyedLock = randomKeyedLock();
+        String name = randomRealisticUnicodeOfLength(scaledRandomIntBetween(10, 50));
+        keyedLock.release(name);
+    }
+
+    private static StripedKeyedLock<String> randomKeyedLock() {
+        // small sizes so that keys share stripes and pooled locks get reused
+        return randomBoolean() ? StripedKeyedLock.<String>striped(randomIntBetween(1, 16))
+                : StripedKeyedLock.<String>exactKeys(randomIntBetween(1, 16));
+    }
+}
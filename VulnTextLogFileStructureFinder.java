@@ -10,7 +10,11 @@ import org.elasticsearch.xpack.core.ml.filestructurefinder.FieldStats;
 import org.elasticsearch.xpack.core.ml.filestructurefinder.FileStructure;
 import org.elasticsearch.xpack.ml.filestructurefinder.TimestampFormatFinder.TimestampMatch;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -24,6 +28,28 @@ import java.util.regex.Pattern;
 
 public class TextLogFileStructureFinder implements FileStructureFinder {
 
+    /**
+     * When the sample is streamed, the maximum number of lines that are searched for timestamps
+     */
+    static final int MAX_TIMESTAMP_SEARCH_LINES = 1000;
+    /**
+     * When the sample is streamed, the maximum number of messages that are kept to create the Grok pattern from
+     */
+    static final int MAX_SAMPLE_MESSAGES = 1000;
+    /**
+     * When the sample is streamed, the maximum number of distinct prefaces that are kept per timestamp format
+     */
+    static final int MAX_PREFACES_PER_TIMESTAMP = 100;
+    /**
+     * When the sample is streamed, the maximum number of characters that are kept per line, the rest of a longer line is skipped
+     */
+    static final int MAX_LINE_LENGTH = 10000;
+    /**
+     * When the sample is streamed, the maximum number of characters that are kept per message and for the sample start, the
+     * lines that follow are still counted but not kept
+     */
+    static final int MAX_MESSAGE_LENGTH = 100000;
+
     private final List<String> sampleMessages;
     private final FileStructure structure;
 
@@ -33,54 +59,101 @@ public class TextLogFileStructureFinder implements FileStructureFinder {
         String[] sampleLines = sample.split("\n");
         Tuple<TimestampMatch, Set<String>> bestTimestamp = mostLikelyTimestamp(sampleLines, overrides);
         if (bestTimestamp == null) {
-            // Is it appropriate to treat a file that is neither structured nor has
-            // a regular pattern of timestamps as a log file?  Probably not...
-            throw new IllegalArgumentException("Could not find " +
-                ((overrides.getTimestampFormat() == null) ? "a timestamp" : "the specified timestamp format") + " in the sample provided");
+            throw noTimestampFound(overrides);
         }
 
-        explanation.add(((overrides.getTimestampFormat() == null) ? "Most likely timestamp" : "Timestamp") + " format is [" +
-            bestTimestamp.v1() + "]");
-
-        List<String> sampleMessages = new ArrayList<>();
-        StringBuilder preamble = new StringBuilder();
-        int linesConsumed = 0;
-        StringBuilder message = null;
-        int linesInMessage = 0;
-        String multiLineRegex = createMultiLineMessageStartRegex(bestTimestamp.v2(), bestTimestamp.v1().simplePattern.pattern());
-        Pattern multiLinePattern = Pattern.compile(multiLineRegex);
+        MessageCollector messages = new MessageCollector(bestTimestamp, Integer.MAX_VALUE, Integer.MAX_VALUE);
         for (String sampleLine : sampleLines) {
-            if (multiLinePattern.matcher(sampleLine).find()) {
-                if (message != null) {
-                    sampleMessages.add(message.toString());
-                    linesConsumed += linesInMessage;
-                }
-                message = new StringBuilder(sampleLine);
-                linesInMessage = 1;
-            } else {
-                // If message is null here then the sample probably began with the incomplete ending of a previous message
-                if (message == null) {
-                    // We count lines before the first message as consumed (just like we would
-                    // for the CSV header or lines before the first XML document starts)
-                    ++linesConsumed;
-                } else {
-                    message.append('\n').append(sampleLine);
-                    ++linesInMessage;
+            messages.accept(sampleLine);
+        }
+
+        return makeTextLogFileStructureFinder(explanation, charsetName, hasByteOrderMarker, overrides, bestTimestamp, messages);
+    }
+
+    /**
+     * Like {@link #makeTextLogFileStructureFinder(List, String, String, Boolean, FileStructureOverrides)}, but reads the sample
+     * incrementally in a single pass. Only the lines searched for the timestamp format and a bounded number of messages are
+     * held in memory, so this can be used on samples that are too big to be analyzed as a single string.
+     */
+    static TextLogFileStructureFinder makeTextLogFileStructureFinder(List<String> explanation, Reader sample, String charsetName,
+                                                                     Boolean hasByteOrderMarker, FileStructureOverrides overrides)
+        throws IOException {
+
+        BufferedReader reader = (sample instanceof BufferedReader) ? (BufferedReader) sample : new BufferedReader(sample);
+        List<String> searchedLines = new ArrayList<>();
+        Tuple<TimestampMatch, Set<String>> bestTimestamp = mostLikelyTimestamp(reader, overrides, searchedLines);
+        if (bestTimestamp == null) {
+            throw noTimestampFound(overrides);
+        }
+
+        MessageCollector messages = new MessageCollector(bestTimestamp, MAX_SAMPLE_MESSAGES, MAX_MESSAGE_LENGTH);
+        for (String sampleLine : searchedLines) {
+            if (messages.isFull()) {
+                break;
+            }
+            messages.accept(sampleLine);
+        }
+        String sampleLine;
+        while (messages.isFull() == false && (sampleLine = readLine(reader)) != null) {
+            messages.accept(sampleLine);
+        }
+
+        return makeTextLogFileStructureFinder(explanation, charsetName, hasByteOrderMarker, overrides, bestTimestamp, messages);
+    }
+
+    /**
+     * Like {@link BufferedReader#readLine()}, but keeps at most {@link #MAX_LINE_LENGTH} characters of the line, so that a sample
+     * without line breaks cannot be buffered as a whole.
+     * @return The line, truncated if needed, or <code>null</code> at the end of the sample.
+     */
+    static String readLine(BufferedReader reader) throws IOException {
+        StringBuilder line = null;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (line == null) {
+                line = new StringBuilder();
+            }
+            if (c == '\n') {
+                break;
+            }
+            if (c == '\r') {
+                reader.mark(1);
+                if (reader.read() != '\n') {
+                    reader.reset();
                 }
+                break;
             }
-            if (sampleMessages.size() < 2) {
-                preamble.append(sampleLine).append('\n');
+            if (line.length() < MAX_LINE_LENGTH) {
+                line.append((char) c);
             }
         }
-        // Don't add the last message, as it might be partial and mess up subsequent pattern finding
+        return (line == null) ? null : line.toString();
+    }
+
+    private static IllegalArgumentException noTimestampFound(FileStructureOverrides overrides) {
+        // Is it appropriate to treat a file that is neither structured nor has
+        // a regular pattern of timestamps as a log file?  Probably not...
+        return new IllegalArgumentException("Could not find " +
+            ((overrides.getTimestampFormat() == null) ? "a timestamp" : "the specified timestamp format") + " in the sample provided");
+    }
+
+    private static TextLogFileStructureFinder makeTextLogFileStructureFinder(List<String> explanation, String charsetName,
+                                                                             Boolean hasByteOrderMarker, FileStructureOverrides overrides,
+                                                                             Tuple<TimestampMatch, Set<String>> bestTimestamp,
+                                                                             MessageCollector messages) {
+
+        explanation.add(((overrides.getTimestampFormat() == null) ? "Most likely timestamp" : "Timestamp") + " format is [" +
+            bestTimestamp.v1() + "]");
+
+        List<String> sampleMessages = messages.sampleMessages;
 
         FileStructure.Builder structureBuilder = new FileStructure.Builder(FileStructure.Format.SEMI_STRUCTURED_TEXT)
             .setCharset(charsetName)
             .setHasByteOrderMarker(hasByteOrderMarker)
-            .setSampleStart(preamble.toString())
-            .setNumLinesAnalyzed(linesConsumed)
+            .setSampleStart(messages.preamble.toString())
+            .setNumLinesAnalyzed(messages.linesConsumed)
             .setNumMessagesAnalyzed(sampleMessages.size())
-            .setMultilineStartPattern(multiLineRegex);
+            .setMultilineStartPattern(messages.multiLineRegex);
 
         SortedMap<String, Object> mappings = new TreeMap<>();
         mappings.put("message", Collections.singletonMap(FileStructureUtils.MAPPING_TYPE_SETTING, "text"));
@@ -147,16 +220,7 @@ public class TextLogFileStructureFinder implements FileStructureFinder {
         for (String sampleLine : sampleLines) {
             TimestampMatch match = TimestampFormatFinder.findFirstMatch(sampleLine, overrides.getTimestampFormat());
             if (match != null) {
-                TimestampMatch pureMatch = new TimestampMatch(match.candidateIndex, "", match.dateFormats, match.simplePattern,
-                    match.grokPatternName, "");
-                timestampMatches.compute(pureMatch, (k, v) -> {
-                    if (v == null) {
-                        return new Tuple<>(weightForMatch(match.preface), new HashSet<>(Collections.singletonList(match.preface)));
-                    } else {
-                        v.v2().add(match.preface);
-                        return new Tuple<>(v.v1() + weightForMatch(match.preface), v.v2());
-                    }
-                });
+                addTimestampMatch(timestampMatches, match, Integer.MAX_VALUE);
                 differenceBetweenTwoHighestWeights = findDifferenceBetweenTwoHighestWeights(timestampMatches.values());
             }
             // The highest possible weight is 1, so if the difference between the two highest weights
@@ -166,6 +230,85 @@ public class TextLogFileStructureFinder implements FileStructureFinder {
             }
         }
 
+        return findHighestWeightMatch(timestampMatches);
+    }
+
+    /**
+     * Streaming version of {@link #mostLikelyTimestamp(String[], FileStructureOverrides)}. Reads up to
+     * {@link #MAX_TIMESTAMP_SEARCH_LINES} lines, stopping early once the leader cannot be overtaken in the
+     * lines that are left.  Candidate formats that can no longer overtake the leader are eliminated from
+     * the search of subsequent lines, and the number of prefaces kept per format is bounded.
+     * @param reader The sample to read lines from.
+     * @param overrides Overrides for the structure of the sample.
+     * @param searchedLines The lines that have been read from the sample are added to this list.
+     */
+    static Tuple<TimestampMatch, Set<String>> mostLikelyTimestamp(BufferedReader reader, FileStructureOverrides overrides,
+                                                                  List<String> searchedLines) throws IOException {
+
+        Map<TimestampMatch, Tuple<Double, Set<String>>> timestampMatches = new LinkedHashMap<>();
+        BitSet eliminatedCandidates = new BitSet(TimestampFormatFinder.ORDERED_CANDIDATE_FORMATS.size());
+
+        String sampleLine;
+        while (searchedLines.size() < MAX_TIMESTAMP_SEARCH_LINES && (sampleLine = readLine(reader)) != null) {
+            searchedLines.add(sampleLine);
+            TimestampMatch match = TimestampFormatFinder.findFirstMatch(sampleLine, overrides.getTimestampFormat(), eliminatedCandidates);
+            if (match == null) {
+                continue;
+            }
+            addTimestampMatch(timestampMatches, match, MAX_PREFACES_PER_TIMESTAMP);
+            int remainingLines = MAX_TIMESTAMP_SEARCH_LINES - searchedLines.size();
+            if (findDifferenceBetweenTwoHighestWeights(timestampMatches.values()) > remainingLines) {
+                break;
+            }
+            eliminateCandidates(timestampMatches, remainingLines, eliminatedCandidates);
+        }
+
+        return findHighestWeightMatch(timestampMatches);
+    }
+
+    /**
+     * Eliminates the candidate formats whose weight is so far behind the leader's that they cannot overtake it,
+     * as every remaining line can add at most 1 to their weight.
+     */
+    private static void eliminateCandidates(Map<TimestampMatch, Tuple<Double, Set<String>>> timestampMatches, int remainingLines,
+                                            BitSet eliminatedCandidates) {
+        double[] candidateWeights = new double[TimestampFormatFinder.ORDERED_CANDIDATE_FORMATS.size()];
+        double highestWeight = 0.0;
+        for (Map.Entry<TimestampMatch, Tuple<Double, Set<String>>> entry : timestampMatches.entrySet()) {
+            int candidateIndex = entry.getKey().candidateIndex;
+            double weight = entry.getValue().v1();
+            candidateWeights[candidateIndex] = Math.max(candidateWeights[candidateIndex], weight);
+            highestWeight = Math.max(highestWeight, weight);
+        }
+        if (highestWeight <= remainingLines) {
+            return;
+        }
+        for (int candidateIndex = 0; candidateIndex < candidateWeights.length; ++candidateIndex) {
+            if (highestWeight - candidateWeights[candidateIndex] > remainingLines) {
+                eliminatedCandidates.set(candidateIndex);
+            }
+        }
+    }
+
+    private static void addTimestampMatch(Map<TimestampMatch, Tuple<Double, Set<String>>> timestampMatches, TimestampMatch match,
+                                          int maxPrefaces) {
+        TimestampMatch pureMatch = new TimestampMatch(match.candidateIndex, "", match.dateFormats, match.simplePattern,
+            match.grokPatternName, "");
+        timestampMatches.compute(pureMatch, (k, v) -> {
+            if (v == null) {
+                return new Tuple<>(weightForMatch(match.preface), new HashSet<>(Collections.singletonList(match.preface)));
+            } else {
+                if (v.v2().size() < maxPrefaces) {
+                    v.v2().add(match.preface);
+                }
+                return new Tuple<>(v.v1() + weightForMatch(match.preface), v.v2());
+            }
+        });
+    }
+
+    private static Tuple<TimestampMatch, Set<String>> findHighestWeightMatch(
+        Map<TimestampMatch, Tuple<Double, Set<String>>> timestampMatches) {
+
         double highestWeight = 0.0;
         Tuple<TimestampMatch, Set<String>> highestWeightMatch = null;
         for (Map.Entry<TimestampMatch, Tuple<Double, Set<String>>> entry : timestampMatches.entrySet()) {
@@ -214,4 +357,60 @@ public class TextLogFileStructureFinder implements FileStructureFinder {
         }
         return builder.toString();
     }
+
+    /**
+     * Groups sample lines into messages, each starting with a line that matches the multi-line start pattern
+     * derived from the chosen timestamp format.  The last message is never added, as it might be partial and
+     * mess up subsequent pattern finding.
+     */
+    private static final class MessageCollector {
+
+        private final String multiLineRegex;
+        private final Pattern multiLinePattern;
+        private final int maxMessages;
+        private final int maxMessageLength;
+        private final List<String> sampleMessages = new ArrayList<>();
+        private final StringBuilder preamble = new StringBuilder();
+        private int linesConsumed;
+        private StringBuilder message;
+        private int linesInMessage;
+
+        private MessageCollector(Tuple<TimestampMatch, Set<String>> bestTimestamp, int maxMessages, int maxMessageLength) {
+            this.multiLineRegex = createMultiLineMessageStartRegex(bestTimestamp.v2(), bestTimestamp.v1().simplePattern.pattern());
+            this.multiLinePattern = Pattern.compile(multiLineRegex);
+            this.maxMessages = maxMessages;
+            this.maxMessageLength = maxMessageLength;
+        }
+
+        private boolean isFull() {
+            return sampleMessages.size() >= maxMessages;
+        }
+
+        private void accept(String sampleLine) {
+            if (multiLinePattern.matcher(sampleLine).find()) {
+                if (message != null) {
+                    sampleMessages.add(message.toString());
+                    linesConsumed += linesInMessage;
+                }
+                message = new StringBuilder(sampleLine);
+                linesInMessage = 1;
+            } else {
+                // If message is null here then the sample probably began with the incomplete ending of a previous message
+                if (message == null) {
+                    // We count lines before the first message as consumed (just like we would
+                    // for the CSV header or lines before the first XML document starts)
+                    ++linesConsumed;
+                } else {
+                    // Lines that don't fit are still part of the message, they are just not kept
+                    if (message.length() < maxMessageLength) {
+                        message.append('\n').append(sampleLine);
+                    }
+                    ++linesInMessage;
+                }
+            }
+            if (sampleMessages.size() < 2 && preamble.length() < maxMessageLength) {
+                preamble.append(sampleLine).append('\n');
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -10,7 +10,11 @@ import org.elasticsearch.common.util.set.Sets;
 import org.elasticsearch.xpack.core.ml.filestructurefinder.FileStructure;
 import org.elasticsearch.xpack.ml.filestructurefinder.TimestampFormatFinder.TimestampMatch;
 
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 public class TextLogFileStructureFinderTests extends FileStructureTestCase {
@@ -350,4 +354,82 @@ public class TextLogFileStructureFinderTests extends FileStructureTestCase {
             TextLogFileStructureFinder.mostLikelyTimestamp(EXCEPTION_TRACE_SAMPLE.split("\n"), overrides);
         assertNull(mostLikelyMatch);
     }
-}
\ No newline at end of file
+
+    public void testStreamedMostLikelyTimestampGivenExceptionTrace() throws Exception {
+
+        List<String> searchedLines = new ArrayList<>();
+        Tuple<TimestampMatch, Set<String>> mostLikelyMatch = TextLogFileStructureFinder.mostLikelyTimestamp(
+            new BufferedReader(new StringReader(EXCEPTION_TRACE_SAMPLE)), FileStructureOverrides.EMPTY_OVERRIDES, searchedLines);
+        assertNotNull(mostLikelyMatch);
+        assertEquals(new TimestampMatch(7, "", "ISO8601", "\\b\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}", "TIMESTAMP_ISO8601", ""),
+            mostLikelyMatch.v1());
+        assertEquals(EXCEPTION_TRACE_SAMPLE.split("\n").length, searchedLines.size());
+    }
+
+    public void testStreamedMostLikelyTimestampGivenExceptionTraceAndImpossibleTimestampFormatOverride() throws Exception {
+
+        FileStructureOverrides overrides = FileStructureOverrides.builder().setTimestampFormat("MMM dd HH:mm:ss").build();
+
+        Tuple<TimestampMatch, Set<String>> mostLikelyMatch = TextLogFileStructureFinder.mostLikelyTimestamp(
+            new BufferedReader(new StringReader(EXCEPTION_TRACE_SAMPLE)), overrides, new ArrayList<>());
+        assertNull(mostLikelyMatch);
+    }
+
+    public void testCreateConfigsGivenStreamedElasticsearchLog() throws Exception {
+
+        FileStructure expected = TextLogFileStructureFinder.makeTextLogFileStructureFinder(new ArrayList<>(), TEXT_SAMPLE,
+            "UTF-8", null, FileStructureOverrides.EMPTY_OVERRIDES).getStructure();
+
+        TextLogFileStructureFinder structureFinder = TextLogFileStructureFinder.makeTextLogFileStructureFinder(explanation,
+            new StringReader(TEXT_SAMPLE), "UTF-8", null, FileStructureOverrides.EMPTY_OVERRIDES);
+
+        FileStructure structure = structureFinder.getStructure();
+        assertEquals(expected.getMultilineStartPattern(), structure.getMultilineStartPattern());
+        assertEquals(expected.getGrokPattern(), structure.getGrokPattern());
+        assertEquals(expected.getTimestampField(), structure.getTimestampField());
+        assertEquals(expected.getTimestampFormats(), structure.getTimestampFormats());
+        assertEquals(expected.getNumLinesAnalyzed(), structure.getNumLinesAnalyzed());
+        assertEquals(expected.getNumMessagesAnalyzed(), structure.getNumMessagesAnalyzed());
+    }
+
+    public void testReadLineTruncatesLongLines() throws Exception {
+
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < TextLogFileStructureFinder.MAX_LINE_LENGTH * 3; ++i) {
+            longLine.append('a');
+        }
+        BufferedReader reader = new BufferedReader(new StringReader(longLine + "\r\nb\rc\n\nd"));
+
+        assertEquals(longLine.substring(0, TextLogFileStructureFinder.MAX_LINE_LENGTH), TextLogFileStructureFinder.readLine(reader));
+        assertEquals("b", TextLogFileStructureFinder.readLine(reader));
+        assertEquals("c", TextLogFileStructureFinder.readLine(reader));
+        assertEquals("", TextLogFileStructureFinder.readLine(reader));
+        assertEquals("d", TextLogFileStructureFinder.readLine(reader));
+        assertNull(TextLogFileStructureFinder.readLine(reader));
+    }
+
+    public void testStreamedSampleWithHugeMessageIsBounded() throws Exception {
+
+        StringBuilder continuationLine = new StringBuilder("\tat");
+        while (continuationLine.length() < 1000) {
+            continuationLine.append(" org.elasticsearch.Foo.bar");
+        }
+        StringBuilder sample = new StringBuilder("[2018-05-11T17:07:29,461][INFO ][o.e.n.Node               ] [node-0] starting ...\n");
+        int continuationLines = 2 * TextLogFileStructureFinder.MAX_MESSAGE_LENGTH / continuationLine.length();
+        for (int i = 0; i < continuationLines; ++i) {
+            sample.append(continuationLine).append('\n');
+        }
+        sample.append("[2018-05-11T17:07:30,461][INFO ][o.e.n.Node               ] [node-0] started\n");
+        sample.append("[2018-05-11T17:07:31,461][INFO ][o.e.n.Node               ] [node-0] stopping ...\n");
+
+        TextLogFileStructureFinder structureFinder = TextLogFileStructureFinder.makeTextLogFileStructureFinder(explanation,
+            new StringReader(sample.toString()), "UTF-8", null, FileStructureOverrides.EMPTY_OVERRIDES);
+
+        // The lines that are not kept are still analyzed
+        assertEquals(continuationLines + 2, structureFinder.getStructure().getNumLinesAnalyzed());
+        assertEquals(2, structureFinder.getSampleMessages().size());
+        int maxLength = TextLogFileStructureFinder.MAX_MESSAGE_LENGTH + continuationLine.length() + 1;
+        assertTrue(structureFinder.getSampleMessages().get(0).length() <= maxLength);
+        assertTrue(structureFinder.getStructure().getSampleStart().length() <= maxLength);
+    }
+}
@@ -54,6 +54,9 @@ public abstract class TimeZoneRounding extends Rounding {
 
         private boolean preZoneAdjustLargeInterval = false;
 
+        private long minUtcMillis = Long.MAX_VALUE;
+        private long maxUtcMillis = Long.MIN_VALUE;
+
         public Builder(DateTimeUnit unit) {
             this.unit = unit;
             this.interval = -1;
@@ -89,6 +92,18 @@ public abstract class TimeZoneRounding extends Rounding {
             return this;
         }
 
+        /**
+         * Sets the range of the values that are going to be rounded, if known. Zone offsets
+         * are then precomputed for that range instead of being resolved for every value.
+         * This is opt-in: if the range is not set, the rounding resolves offsets through
+         * the time zone for every value, as it always did.
+         */
+        public Builder timeRange(long minUtcMillis, long maxUtcMillis) {
+            this.minUtcMillis = minUtcMillis;
+            this.maxUtcMillis = maxUtcMillis;
+            return this;
+        }
+
         public Builder factor(float factor) {
             this.factor = factor;
             return this;
@@ -100,17 +115,17 @@ public abstract class TimeZoneRounding extends Rounding {
                 if (preTz.equals(DateTimeZone.UTC) && postTz.equals(DateTimeZone.UTC)) {
                     timeZoneRounding = new UTCTimeZoneRoundingFloor(unit);
                 } else if (preZoneAdjustLargeInterval || unit.field().getDurationField().getUnitMillis() < DateTimeConstants.MILLIS_PER_HOUR * 12) {
-                    timeZoneRounding = new TimeTimeZoneRoundingFloor(unit, preTz, postTz);
+                    timeZoneRounding = new TimeTimeZoneRoundingFloor(unit, preOffsets(), postOffsets());
                 } else {
-                    timeZoneRounding = new DayTimeZoneRoundingFloor(unit, preTz, postTz);
+                    timeZoneRounding = new DayTimeZoneRoundingFloor(unit, preOffsets(), postOffsets());
                 }
             } else {
                 if (preTz.equals(DateTimeZone.UTC) && postTz.equals(DateTimeZone.UTC)) {
                     timeZoneRounding = new UTCIntervalTimeZoneRounding(interval);
                 } else if (preZoneAdjustLargeInterval || interval < DateTimeConstants.MILLIS_PER_HOUR * 12) {
-                    timeZoneRounding = new TimeIntervalTimeZoneRounding(interval, preTz, postTz);
+                    timeZoneRounding = new TimeIntervalTimeZoneRounding(interval, preOffsets(), postOffsets());
                 } else {
-                    timeZoneRounding = new DayIntervalTimeZoneRounding(interval, preTz, postTz);
+                    timeZoneRounding = new DayIntervalTimeZoneRounding(interval, preOffsets(), postOffsets());
                 }
             }
             if (preOffset != 0 || postOffset != 0) {
@@ -121,6 +136,15 @@ public abstract class TimeZoneRounding extends Rounding {
             }
             return timeZoneRounding;
         }
+
+        private ZoneOffsetLookup preOffsets() {
+            return ZoneOffsetLookup.build(preTz, minUtcMillis, maxUtcMillis);
+        }
+
+        private ZoneOffsetLookup postOffsets() {
+            // post zone offsets are looked up on rounded values, which are not in UTC, but the lookup is padded for that
+            return ZoneOffsetLookup.build(postTz, minUtcMillis, maxUtcMillis);
+        }
     }
 
     static class TimeTimeZoneRoundingFloor extends TimeZoneRounding {
@@ -128,13 +152,13 @@ public abstract class TimeZoneRounding extends Rounding {
         static final byte ID = 1;
 
         private DateTimeUnit unit;
-        private DateTimeZone preTz;
-        private DateTimeZone postTz;
+        private ZoneOffsetLookup preTz;
+        private ZoneOffsetLookup postTz;
 
         TimeTimeZoneRoundingFloor() { // for serialization
         }
 
-        TimeTimeZoneRoundingFloor(DateTimeUnit unit, DateTimeZone preTz, DateTimeZone postTz) {
+        TimeTimeZoneRoundingFloor(DateTimeUnit unit, ZoneOffsetLookup preTz, ZoneOffsetLookup postTz) {
             this.unit = unit;
             this.preTz = preTz;
             this.postTz = postTz;
@@ -168,15 +192,15 @@ public abstract class TimeZoneRounding extends Rounding {
         @Override
         public void readFrom(StreamInput in) throws IOException {
             unit = DateTimeUnit.resolve(in.readByte());
-            preTz = DateTimeZone.forID(in.readSharedString());
-            postTz = DateTimeZone.forID(in.readSharedString());
+            preTz = ZoneOffsetLookup.unbounded(DateTimeZone.forID(in.readSharedString()));
+            postTz = ZoneOffsetLookup.unbounded(DateTimeZone.forID(in.readSharedString()));
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
             out.writeByte(unit.id());
-            out.writeSharedString(preTz.getID());
-            out.writeSharedString(postTz.getID());
+            out.writeSharedString(preTz.zone().getID());
+            out.writeSharedString(postTz.zone().getID());
         }
     }
 
@@ -229,13 +253,13 @@ public abstract class TimeZoneRounding extends Rounding {
         final static byte ID = 3;
 
         private DateTimeUnit unit;
-        private DateTimeZone preTz;
-        private DateTimeZone postTz;
+        private ZoneOffsetLookup preTz;
+        private ZoneOffsetLookup postTz;
 
         DayTimeZoneRoundingFloor() { // for serialization
         }
 
-        DayTimeZoneRoundingFloor(DateTimeUnit unit, DateTimeZone preTz, DateTimeZone postTz) {
+        DayTimeZoneRoundingFloor(DateTimeUnit unit, ZoneOffsetLookup preTz, ZoneOffsetLookup postTz) {
             this.unit = unit;
             this.preTz = preTz;
             this.postTz = postTz;
@@ -268,15 +292,15 @@ public abstract class TimeZoneRounding extends Rounding {
         @Override
         public void readFrom(StreamInput in) throws IOException {
             unit = DateTimeUnit.resolve(in.readByte());
-            preTz = DateTimeZone.forID(in.readSharedString());
-            postTz = DateTimeZone.forID(in.readSharedString());
+            preTz = ZoneOffsetLookup.unbounded(DateTimeZone.forID(in.readSharedString()));
+            postTz = ZoneOffsetLookup.unbounded(DateTimeZone.forID(in.readSharedString()));
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
             out.writeByte(unit.id());
-            out.writeSharedString(preTz.getID());
-            out.writeSharedString(postTz.getID());
+            out.writeSharedString(preTz.zone().getID());
+            out.writeSharedString(postTz.zone().getID());
         }
     }
 
@@ -330,13 +354,13 @@ public abstract class TimeZoneRounding extends Rounding {
         final static byte ID = 5;
 
         private long interval;
-        private DateTimeZone preTz;
-        private DateTimeZone postTz;
+        private ZoneOffsetLookup preTz;
+        private ZoneOffsetLookup postTz;
 
         TimeIntervalTimeZoneRounding() { // for serialization
         }
 
-        TimeIntervalTimeZoneRounding(long interval, DateTimeZone preTz, DateTimeZone postTz) {
+        TimeIntervalTimeZoneRounding(long interval, ZoneOffsetLookup preTz, ZoneOffsetLookup postTz) {
             this.interval = interval;
             this.preTz = preTz;
             this.postTz = postTz;
@@ -371,15 +395,15 @@ public abstract class TimeZoneRounding extends Rounding {
         @Override
         public void readFrom(StreamInput in) throws IOException {
             interval = in.readVLong();
-            preTz = DateTimeZone.forID(in.readSharedString());
-            postTz = DateTimeZone.forID(in.readSharedString());
+            preTz = ZoneOffsetLookup.unbounded(DateTimeZone.forID(in.readSharedString()));
+            postTz = ZoneOffsetLookup.unbounded(DateTimeZone.forID(in.readSharedString()));
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
             out.writeVLong(interval);
-            out.writeSharedString(preTz.getID());
-            out.writeSharedString(postTz.getID());
+            out.writeSharedString(preTz.zone().getID());
+            out.writeSharedString(postTz.zone().getID());
         }
     }
 
@@ -388,13 +412,13 @@ public abstract class TimeZoneRounding extends Rounding {
         final static byte ID = 6;
 
         private long interval;
-        private DateTimeZone preTz;
-        private DateTimeZone postTz;
+        private ZoneOffsetLookup preTz;
+        private ZoneOffsetLookup postTz;
 
         DayIntervalTimeZoneRounding() { // for serialization
         }
 
-        DayIntervalTimeZoneRounding(long interval, DateTimeZone preTz, DateTimeZone postTz) {
+        DayIntervalTimeZoneRounding(long interval, ZoneOffsetLookup preTz, ZoneOffsetLookup postTz) {
             this.interval = interval;
             this.preTz = preTz;
             this.postTz = postTz;
@@ -428,15 +452,15 @@ public abstract class TimeZoneRounding extends Rounding {
         @Override
         public void readFrom(StreamInput in) throws IOException {
             interval = in.readVLong();
-            preTz = DateTimeZone.forID(in.readSharedString());
-            postTz = DateTimeZone.forID(in.readSharedString());
+            preTz = ZoneOffsetLookup.unbounded(DateTimeZone.forID(in.readSharedString()));
+            postTz = ZoneOffsetLookup.unbounded(DateTimeZone.forID(in.readSharedString()));
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
             out.writeVLong(interval);
-            out.writeSharedString(preTz.getID());
-            out.writeSharedString(postTz.getID());
+            out.writeSharedString(preTz.zone().getID());
+            out.writeSharedString(postTz.zone().getID());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.rounding;
+
+import org.elasticsearch.common.rounding.DateTimeUnit;
+import org.elasticsearch.common.rounding.Rounding;
+import org.elasticsearch.common.rounding.TimeZoneRounding;
+import org.elasticsearch.common.unit.TimeValue;
+import org.joda.time.DateTimeZone;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares time zone roundings that resolve zone offsets for every value with roundings
+ * that precompute zone transitions for the range of the values.
+ */
+public class TimeZoneRoundingBenchmark {
+
+    private static final int NUM_VALUES = 10000000;
+
+    public static void main(String[] args) {
+        DateTimeZone zone = DateTimeZone.forID("Europe/Paris");
+        // one year of data, starting from 2014-01-01
+        final long min = 1388534400000L;
+        final long max = min + TimeValue.timeValueHours(24 * 365).millis();
+
+        run("hour", TimeZoneRounding.builder(DateTimeUnit.HOUR_OF_DAY).preZone(zone).postZone(zone).build(), min, max);
+        run("hour_precomputed", TimeZoneRounding.builder(DateTimeUnit.HOUR_OF_DAY).preZone(zone).postZone(zone)
+                .timeRange(min, max).build(), min, max);
+        run("day", TimeZoneRounding.builder(DateTimeUnit.DAY_OF_MONTH).preZone(zone).postZone(zone).build(), min, max);
+        run("day_precomputed", TimeZoneRounding.builder(DateTimeUnit.DAY_OF_MONTH).preZone(zone).postZone(zone)
+                .timeRange(min, max).build(), min, max);
+        run("15m", TimeZoneRounding.builder(TimeValue.timeValueMinutes(15)).preZone(zone).postZone(zone).build(), min, max);
+        run("15m_precomputed", TimeZoneRounding.builder(TimeValue.timeValueMinutes(15)).preZone(zone).postZone(zone)
+                .timeRange(min, max).build(), min, max);
+        // a week without any transition takes the fixed offset path
+        final long weekMax = min + TimeValue.timeValueHours(24 * 7).millis();
+        run("15m_week", TimeZoneRounding.builder(TimeValue.timeValueMinutes(15)).preZone(zone).postZone(zone).build(), min, weekMax);
+        run("15m_week_precomputed", TimeZoneRounding.builder(TimeValue.timeValueMinutes(15)).preZone(zone).postZone(zone)
+                .timeRange(min, weekMax).build(), min, weekMax);
+    }
+
+    private static void run(String name, Rounding rounding, long min, long max) {
+        final long step = Math.max(1, (max - min) / NUM_VALUES);
+        long checksum = 0;
+        // warm up
+        for (long value = min; value < max; value += step) {
+            checksum += rounding.round(value);
+        }
+        long start = System.nanoTime();
+        for (long value = min; value < max; value += step) {
+            checksum += rounding.round(value);
+        }
+        long took = System.nanoTime() - start;
+        System.out.println("--> [" + name + "] took [" + new TimeValue(took, TimeUnit.NANOSECONDS) + "], "
+                + (took / NUM_VALUES) + "ns per value (checksum " + checksum + ")");
+    }
+}
@@ -9,6 +9,7 @@ import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.grok.Grok;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -51,6 +52,19 @@ public final class TimestampFormatFinder {
         Pattern.compile(" \\d{2}:\\d{2}:\\d{2} ")
     );
 
+    /**
+     * Character classes that a text must contain for a candidate format to possibly match anywhere within it.
+     * Finding out which classes a text contains takes a single pass over its characters, so this rules out
+     * candidates for lines like stack trace continuations before any of the (quick rule out or strict)
+     * patterns have to be run.
+     */
+    static final int DIGIT = 1;
+    static final int LETTER = 1 << 1;
+    static final int COLON = 1 << 2;
+    static final int DASH = 1 << 3;
+    static final int SLASH = 1 << 4;
+    private static final int ALL_CHARACTER_CLASSES = DIGIT | LETTER | COLON | DASH | SLASH;
+
     /**
      * The first match in this list will be chosen, so it needs to be ordered
      * such that more generic patterns come after more specific patterns.
@@ -178,10 +192,30 @@ public final class TimestampFormatFinder {
      * @return The timestamp format, or <code>null</code> if none matches.
      */
     public static TimestampMatch findFirstMatch(String text, int ignoreCandidates, String requiredFormat) {
+        return findFirstMatch(text, ignoreCandidates, requiredFormat, null);
+    }
+
+    /**
+     * Find the first timestamp format that matches part of the supplied value,
+     * excluding the candidate formats that have been eliminated already.
+     * @param text The value that the returned timestamp format must exist within.
+     * @param requiredFormat A date format that any returned match must support.
+     * @param eliminatedCandidates The indices of the candidate formats to exclude from the search.
+     *                             May be <code>null</code>.
+     * @return The timestamp format, or <code>null</code> if none matches.
+     */
+    static TimestampMatch findFirstMatch(String text, String requiredFormat, BitSet eliminatedCandidates) {
+        return findFirstMatch(text, 0, requiredFormat, eliminatedCandidates);
+    }
+
+    private static TimestampMatch findFirstMatch(String text, int ignoreCandidates, String requiredFormat, BitSet eliminatedCandidates) {
+        int characterClasses = characterClasses(text);
         Boolean[] quickRuleoutMatches = new Boolean[QUICK_RULE_OUT_PATTERNS.size()];
         int index = ignoreCandidates;
         for (CandidateTimestampFormat candidate : ORDERED_CANDIDATE_FORMATS.subList(ignoreCandidates, ORDERED_CANDIDATE_FORMATS.size())) {
-            if (requiredFormat == null || candidate.dateFormats.contains(requiredFormat)) {
+            if ((requiredFormat == null || candidate.dateFormats.contains(requiredFormat)) &&
+                (eliminatedCandidates == null || eliminatedCandidates.get(index) == false) &&
+                (candidate.requiredCharacterClasses & characterClasses) == candidate.requiredCharacterClasses) {
                 boolean quicklyRuledOut = false;
                 for (Integer quickRuleOutIndex : candidate.quickRuleOutIndices) {
                     if (quickRuleoutMatches[quickRuleOutIndex] == null) {
@@ -246,9 +280,11 @@ public final class TimestampFormatFinder {
      * @return The timestamp format, or <code>null</code> if none matches.
      */
     public static TimestampMatch findFirstFullMatch(String text, int ignoreCandidates, String requiredFormat) {
+        int characterClasses = characterClasses(text);
         int index = ignoreCandidates;
         for (CandidateTimestampFormat candidate : ORDERED_CANDIDATE_FORMATS.subList(ignoreCandidates, ORDERED_CANDIDATE_FORMATS.size())) {
-            if (requiredFormat == null || candidate.dateFormats.contains(requiredFormat)) {
+            if ((requiredFormat == null || candidate.dateFormats.contains(requiredFormat)) &&
+                (candidate.requiredCharacterClasses & characterClasses) == candidate.requiredCharacterClasses) {
                 Map<String, Object> captures = candidate.strictFullMatchGrok.captures(text);
                 if (captures != null) {
                     return makeTimestampMatch(candidate, index, "", text, "");
@@ -259,6 +295,65 @@ public final class TimestampFormatFinder {
         return null;
     }
 
+    /**
+     * Find out which of the character classes used to rule out candidate formats occur in the supplied text.
+     * @param text The text to scan.
+     * @return A bit mask of the character classes found in the text.
+     */
+    static int characterClasses(String text) {
+        int characterClasses = 0;
+        for (int i = 0; i < text.length() && characterClasses != ALL_CHARACTER_CLASSES; ++i) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                characterClasses |= DIGIT;
+            } else if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) {
+                characterClasses |= LETTER;
+            } else if (c == ':') {
+                characterClasses |= COLON;
+            } else if (c == '-') {
+                characterClasses |= DASH;
+            } else if (c == '/') {
+                characterClasses |= SLASH;
+            }
+        }
+        return characterClasses;
+    }
+
+    /**
+     * Work out the character classes that every timestamp in the supplied formats is guaranteed to contain.
+     * This must be conservative: a class may only be required if the strict Grok pattern of the candidate
+     * cannot match without it.
+     * @param dateFormats The date formats of a candidate.
+     * @return A bit mask of the character classes required by all the formats.
+     */
+    static int requiredCharacterClasses(List<String> dateFormats) {
+        int required = ALL_CHARACTER_CLASSES;
+        for (String dateFormat : dateFormats) {
+            int requiredByFormat = 0;
+            // TAI64N timestamps are hex numbers that could in theory consist of letters only
+            if (dateFormat.equals("TAI64N") == false) {
+                requiredByFormat |= DIGIT;
+            }
+            // Month and day names
+            if (dateFormat.contains("MMM") || dateFormat.contains("EEE")) {
+                requiredByFormat |= LETTER;
+            }
+            // The hours and minutes are separated by an optional colon in ISO8601 style formats, but they
+            // always have a colon before the seconds, and all the other formats have a colon after the hours
+            if (dateFormat.contains("HH:mm") || dateFormat.contains("K:mm")) {
+                requiredByFormat |= COLON;
+            }
+            if (dateFormat.equals("ISO8601") || dateFormat.startsWith("YYYY-MM-dd")) {
+                requiredByFormat |= DASH;
+            }
+            if (dateFormat.contains("/")) {
+                requiredByFormat |= SLASH;
+            }
+            required &= requiredByFormat;
+        }
+        return required;
+    }
+
     private static TimestampMatch makeTimestampMatch(CandidateTimestampFormat chosenTimestampFormat, int chosenIndex,
                                                      String preface, String matchedDate, String epilogue) {
         Tuple<Character, Integer> fractionalSecondsInterpretation = interpretFractionalSeconds(matchedDate);
@@ -444,6 +539,7 @@ public final class TimestampFormatFinder {
         final Grok strictFullMatchGrok;
         final String standardGrokPatternName;
         final List<Integer> quickRuleOutIndices;
+        final int requiredCharacterClasses;
 
         CandidateTimestampFormat(String dateFormat, String simpleRegex, String strictGrokPattern, String standardGrokPatternName) {
             this(Collections.singletonList(dateFormat), simpleRegex, strictGrokPattern, standardGrokPatternName);
@@ -470,6 +566,7 @@ public final class TimestampFormatFinder {
             assert quickRuleOutIndices.stream()
                 .noneMatch(quickRuleOutIndex -> quickRuleOutIndex < 0 || quickRuleOutIndex >= QUICK_RULE_OUT_PATTERNS.size());
             this.quickRuleOutIndices = quickRuleOutIndices;
+            this.requiredCharacterClasses = requiredCharacterClasses(dateFormats);
         }
     }
 }
\ No newline at end of file
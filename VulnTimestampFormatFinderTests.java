@@ -14,6 +14,7 @@ import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Locale;
 
 public class TimestampFormatFinderTests extends FileStructureTestCase {
@@ -26,6 +27,29 @@ public class TimestampFormatFinderTests extends FileStructureTestCase {
         assertNull(TimestampFormatFinder.findFirstMatch("/+"));
     }
 
+    public void testCharacterClasses() {
+
+        assertEquals(0, TimestampFormatFinder.characterClasses(""));
+        assertEquals(TimestampFormatFinder.LETTER, TimestampFormatFinder.characterClasses("no timestamps in here"));
+        assertEquals(TimestampFormatFinder.COLON, TimestampFormatFinder.characterClasses(":::"));
+        assertEquals(TimestampFormatFinder.SLASH, TimestampFormatFinder.characterClasses("/+"));
+        assertEquals(TimestampFormatFinder.DIGIT | TimestampFormatFinder.LETTER | TimestampFormatFinder.COLON |
+            TimestampFormatFinder.DASH, TimestampFormatFinder.characterClasses("2018-05-15T17:14:56"));
+    }
+
+    public void testRequiredCharacterClasses() {
+
+        assertEquals(TimestampFormatFinder.DIGIT | TimestampFormatFinder.DASH,
+            TimestampFormatFinder.requiredCharacterClasses(Collections.singletonList("ISO8601")));
+        assertEquals(TimestampFormatFinder.DIGIT | TimestampFormatFinder.LETTER | TimestampFormatFinder.COLON,
+            TimestampFormatFinder.requiredCharacterClasses(Arrays.asList("MMM dd HH:mm:ss", "MMM  d HH:mm:ss")));
+        assertEquals(TimestampFormatFinder.DIGIT | TimestampFormatFinder.LETTER | TimestampFormatFinder.COLON |
+            TimestampFormatFinder.SLASH,
+            TimestampFormatFinder.requiredCharacterClasses(Collections.singletonList("dd/MMM/YYYY:HH:mm:ss Z")));
+        assertEquals(TimestampFormatFinder.DIGIT, TimestampFormatFinder.requiredCharacterClasses(Collections.singletonList("UNIX_MS")));
+        assertEquals(0, TimestampFormatFinder.requiredCharacterClasses(Collections.singletonList("TAI64N")));
+    }
+
     public void testFindFirstMatchGivenOnlyIso8601() {
 
         TimestampMatch expected = new TimestampMatch(7, "", "ISO8601", "\\b\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}", "TIMESTAMP_ISO8601",
@@ -59,6 +59,7 @@ import org.elasticsearch.common.io.stream.InputStreamStreamInput;
 import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.settings.SecureString;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
@@ -177,6 +178,10 @@ public final class TokenService {
             TimeValue.timeValueMinutes(30L), Property.NodeScope);
     public static final Setting<TimeValue> DELETE_TIMEOUT = Setting.timeSetting("xpack.security.authc.token.delete.timeout",
             TimeValue.MINUS_ONE, Property.NodeScope);
+    public static final Setting<TimeValue> TOKEN_CACHE_TTL = Setting.timeSetting("xpack.security.authc.token.cache.ttl",
+            TimeValue.ZERO, TimeValue.ZERO, TimeValue.timeValueMinutes(5L), Property.NodeScope);
+    public static final Setting<Integer> TOKEN_CACHE_MAX_TOKENS = Setting.intSetting("xpack.security.authc.token.cache.max_tokens",
+            10000, 1, Property.NodeScope);
 
     static final String TOKEN_DOC_TYPE = "token";
     private static final String TOKEN_DOC_ID_PREFIX = TOKEN_DOC_TYPE + "_";
@@ -201,6 +206,12 @@ public final class TokenService {
     private final ExpiredTokenRemover expiredTokenRemover;
     private final boolean enabled;
     private final XPackLicenseState licenseState;
+    @Nullable
+    private final Cache<String, UserToken> validatedTokenCache;
+    private final CounterMetric tokenCacheHits = new CounterMetric();
+    private final CounterMetric tokenCacheMisses = new CounterMetric();
+    // incremented by every eviction, so that a validation which raced with an eviction does not cache its result
+    private final AtomicLong tokenCacheGeneration = new AtomicLong();
     private volatile TokenKeys keyCache;
     private volatile long lastExpirationRunMs;
     private final AtomicLong createdTimeStamps = new AtomicLong(-1);
@@ -224,6 +235,15 @@ public final class TokenService {
         this.lastExpirationRunMs = client.threadPool().relativeTimeInMillis();
         this.deleteInterval = DELETE_INTERVAL.get(settings);
         this.enabled = isTokenServiceEnabled(settings);
+        final TimeValue cacheTtl = TOKEN_CACHE_TTL.get(settings);
+        if (cacheTtl.getNanos() > 0) {
+            this.validatedTokenCache = CacheBuilder.<String, UserToken>builder()
+                    .setExpireAfterWrite(cacheTtl)
+                    .setMaximumWeight(TOKEN_CACHE_MAX_TOKENS.get(settings))
+                    .build();
+        } else {
+            this.validatedTokenCache = null;
+        }
         this.expiredTokenRemover = new ExpiredTokenRemover(settings, client, this.securityMainIndex, securityTokensIndex);
         ensureEncryptionCiphersSupported();
         KeyAndCache keyAndCache = new KeyAndCache(new KeyAndTimestamp(tokenPassphrase, createdTimeStamps.incrementAndGet()),
@@ -347,6 +367,15 @@ public final class TokenService {
      * token document.
      */
     private void getUserTokenFromId(String userTokenId, Version tokenVersion, ActionListener<UserToken> listener) {
+        if (validatedTokenCache != null) {
+            final UserToken cachedToken = validatedTokenCache.get(userTokenId);
+            if (cachedToken != null) {
+                tokenCacheHits.inc();
+                listener.onResponse(cachedToken);
+                return;
+            }
+            tokenCacheMisses.inc();
+        }
         final SecurityIndexManager tokensIndex = getTokensIndexForVersion(tokenVersion);
         if (tokensIndex.isAvailable() == false) {
             logger.warn("failed to get access token [{}] because index [{}] is not available", userTokenId, tokensIndex.aliasName());
@@ -624,6 +653,9 @@ public final class TokenService {
             logger.warn("No [{}] tokens provided for invalidation", srcPrefix);
             listener.onFailure(invalidGrantException("No tokens provided for invalidation"));
         } else {
+            // stop serving the tokens from the local cache right away; they are evicted again once the update is acknowledged
+            // so that a validation which raced with the invalidation cannot leave a stale entry behind
+            invalidateCachedTokens(tokenIds);
             BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
             for (String tokenId : tokenIds) {
                 UpdateRequest request = client
@@ -638,6 +670,7 @@ public final class TokenService {
                 ex -> listener.onFailure(traceLog("prepare index [" + tokensIndexManager.aliasName() + "]", ex)),
                 () -> executeAsyncWithOrigin(client.threadPool().getThreadContext(), SECURITY_ORIGIN, bulkRequestBuilder.request(),
                     ActionListener.<BulkResponse>wrap(bulkResponse -> {
+                        invalidateCachedTokens(tokenIds);
                         ArrayList<String> retryTokenDocIds = new ArrayList<>();
                         ArrayList<ElasticsearchException> failedRequestResponses = new ArrayList<>();
                         ArrayList<String> previouslyInvalidated = new ArrayList<>();
@@ -1401,6 +1434,12 @@ public final class TokenService {
             listener.onFailure(traceLog("validate token", userToken.getId(), expiredTokenException()));
             return;
         }
+        if (validatedTokenCache != null && validatedTokenCache.get(userToken.getId()) != null) {
+            // the token was validated against the index within the cache ttl and has not been invalidated on this node since
+            listener.onResponse(userToken);
+            return;
+        }
+        final long cacheGeneration = tokenCacheGeneration.get();
         final SecurityIndexManager tokensIndex = getTokensIndexForVersion(userToken.getVersion());
         if (tokensIndex.indexExists() == false) {
             // index doesn't exist so the token is considered invalid as we cannot verify its validity
@@ -1425,6 +1464,7 @@ public final class TokenService {
                                 } else if (invalidated) {
                                     onFailure.accept(expiredTokenException());
                                 } else {
+                                    cacheValidatedToken(userToken, cacheGeneration);
                                     listener.onResponse(userToken);
                                 }
                             }
@@ -1450,6 +1490,59 @@ public final class TokenService {
         return expirationDelay;
     }
 
+    /**
+     * Caches a token that was found valid in the tokens index, unless tokens were evicted from the cache since the token document was
+     * read. The document may have been read before the invalidation of the token was applied, so caching it would resurrect the token.
+     */
+    private void cacheValidatedToken(UserToken userToken, long generation) {
+        if (validatedTokenCache != null && tokenCacheGeneration.get() == generation) {
+            validatedTokenCache.put(userToken.getId(), userToken);
+            // an eviction that ran concurrently with the put may have missed the new entry
+            if (tokenCacheGeneration.get() != generation) {
+                validatedTokenCache.invalidate(userToken.getId());
+            }
+        }
+    }
+
+    /**
+     * Evicts the given token ids from the node local cache of validated tokens. Invalidations performed through this service evict
+     * their tokens automatically, this is the hook for invalidations that were performed on other nodes of the cluster. There is no
+     * broadcast of the invalidations to the other nodes, so tokens that are not evicted are trusted for at most
+     * {@link #TOKEN_CACHE_TTL}, which is why the cache is disabled by default.
+     */
+    public void invalidateCachedTokens(Collection<String> tokenIds) {
+        if (validatedTokenCache != null) {
+            tokenCacheGeneration.incrementAndGet();
+            for (String tokenId : tokenIds) {
+                validatedTokenCache.invalidate(tokenId);
+            }
+        }
+    }
+
+    /**
+     * Evicts all the tokens from the node local cache of validated tokens
+     */
+    public void clearTokenCache() {
+        if (validatedTokenCache != null) {
+            tokenCacheGeneration.incrementAndGet();
+            validatedTokenCache.invalidateAll();
+        }
+    }
+
+    /**
+     * The number of token lookups that were served from the node local cache of validated tokens
+     */
+    public long getTokenCacheHits() {
+        return tokenCacheHits.count();
+    }
+
+    /**
+     * The number of token lookups that had to fetch the token document because the token was not in the cache
+     */
+    public long getTokenCacheMisses() {
+        return tokenCacheMisses.count();
+    }
+
     private Instant getExpirationTime() {
         return clock.instant().plusSeconds(expirationDelay.getSeconds());
     }
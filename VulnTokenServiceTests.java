@@ -70,6 +70,7 @@ import java.security.GeneralSecurityException;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
@@ -429,6 +430,123 @@ public class TokenServiceTests extends ESTestCase {
         }
     }
 
+    public void testValidatedTokenCache() throws Exception {
+        when(securityMainIndex.indexExists()).thenReturn(true);
+        final boolean cacheEnabled = randomBoolean();
+        final Settings settings = cacheEnabled ? tokenCacheEnabledSettings() : tokenServiceEnabledSettings;
+        TokenService tokenService = createTokenService(settings, systemUTC());
+        Authentication authentication = new Authentication(new User("joe", "admin"), new RealmRef("native_realm", "native", "node1"), null);
+        PlainActionFuture<Tuple<UserToken, String>> tokenFuture = new PlainActionFuture<>();
+        tokenService.createOAuth2Tokens(authentication, authentication, Collections.emptyMap(), true, tokenFuture);
+        final UserToken token = tokenFuture.get().v1();
+        mockGetTokenFromId(token, false);
+
+        ThreadContext requestContext = new ThreadContext(Settings.EMPTY);
+        storeTokenHeader(requestContext, tokenService.getAccessTokenAsString(token));
+
+        try (ThreadContext.StoredContext ignore = requestContext.newStoredContext(true)) {
+            PlainActionFuture<UserToken> future = new PlainActionFuture<>();
+            tokenService.getAndValidateToken(requestContext, future);
+            assertAuthentication(authentication, future.get().getAuthentication());
+        }
+        assertThat(tokenService.getTokenCacheHits(), equalTo(0L));
+        assertThat(tokenService.getTokenCacheMisses(), equalTo(cacheEnabled ? 1L : 0L));
+
+        // the token is invalidated on another node, only the cache knows it was valid
+        mockGetTokenFromId(token, true);
+        try (ThreadContext.StoredContext ignore = requestContext.newStoredContext(true)) {
+            PlainActionFuture<UserToken> future = new PlainActionFuture<>();
+            tokenService.getAndValidateToken(requestContext, future);
+            if (cacheEnabled) {
+                assertAuthentication(authentication, future.get().getAuthentication());
+                assertThat(tokenService.getTokenCacheHits(), equalTo(1L));
+            } else {
+                expectThrows(ElasticsearchSecurityException.class, future::actionGet);
+            }
+        }
+
+        tokenService.invalidateCachedTokens(Collections.singleton(token.getId()));
+        try (ThreadContext.StoredContext ignore = requestContext.newStoredContext(true)) {
+            PlainActionFuture<UserToken> future = new PlainActionFuture<>();
+            tokenService.getAndValidateToken(requestContext, future);
+            ElasticsearchSecurityException e = expectThrows(ElasticsearchSecurityException.class, future::actionGet);
+            assertThat(e.getHeader("WWW-Authenticate").get(0), containsString("expired"));
+        }
+    }
+
+    public void testTokenInvalidatedOnAnotherNodeIsRejected() throws Exception {
+        when(securityMainIndex.indexExists()).thenReturn(true);
+        TokenService node1 = createTokenService(tokenServiceEnabledSettings, systemUTC());
+        TokenService node2 = createTokenService(tokenServiceEnabledSettings, systemUTC());
+        node2.refreshMetaData(node1.getTokenMetaData());
+        Authentication authentication = new Authentication(new User("joe", "admin"), new RealmRef("native_realm", "native", "node1"), null);
+        PlainActionFuture<Tuple<UserToken, String>> tokenFuture = new PlainActionFuture<>();
+        node1.createOAuth2Tokens(authentication, authentication, Collections.emptyMap(), true, tokenFuture);
+        final UserToken token = tokenFuture.get().v1();
+        mockGetTokenFromId(token, false);
+
+        ThreadContext requestContext = new ThreadContext(Settings.EMPTY);
+        storeTokenHeader(requestContext, node1.getAccessTokenAsString(token));
+        for (TokenService node : Arrays.asList(node1, node2)) {
+            try (ThreadContext.StoredContext ignore = requestContext.newStoredContext(true)) {
+                PlainActionFuture<UserToken> future = new PlainActionFuture<>();
+                node.getAndValidateToken(requestContext, future);
+                assertAuthentication(authentication, future.get().getAuthentication());
+            }
+        }
+
+        // the token document is updated by the invalidation on node1, node2 must not trust the validation it made before
+        mockGetTokenFromId(token, true);
+        for (TokenService node : Arrays.asList(node1, node2)) {
+            try (ThreadContext.StoredContext ignore = requestContext.newStoredContext(true)) {
+                PlainActionFuture<UserToken> future = new PlainActionFuture<>();
+                node.getAndValidateToken(requestContext, future);
+                ElasticsearchSecurityException e = expectThrows(ElasticsearchSecurityException.class, future::actionGet);
+                assertThat(e.getHeader("WWW-Authenticate").get(0), containsString("expired"));
+            }
+        }
+        assertThat(node2.getTokenCacheHits(), equalTo(0L));
+    }
+
+    public void testValidationRacingWithInvalidationIsNotCached() throws Exception {
+        when(securityMainIndex.indexExists()).thenReturn(true);
+        TokenService tokenService = createTokenService(tokenCacheEnabledSettings(), systemUTC());
+        Authentication authentication = new Authentication(new User("joe", "admin"), new RealmRef("native_realm", "native", "node1"), null);
+        PlainActionFuture<Tuple<UserToken, String>> tokenFuture = new PlainActionFuture<>();
+        tokenService.createOAuth2Tokens(authentication, authentication, Collections.emptyMap(), true, tokenFuture);
+        final UserToken token = tokenFuture.get().v1();
+        doAnswer(invocationOnMock -> {
+            GetRequest request = (GetRequest) invocationOnMock.getArguments()[0];
+            ActionListener<GetResponse> listener = (ActionListener<GetResponse>) invocationOnMock.getArguments()[1];
+            // the token is invalidated after its document was read but before the validation completes
+            GetResponse response = tokenDocument(request, token, false);
+            tokenService.invalidateCachedTokens(Collections.singleton(token.getId()));
+            listener.onResponse(response);
+            return Void.TYPE;
+        }).when(client).get(any(GetRequest.class), any(ActionListener.class));
+
+        ThreadContext requestContext = new ThreadContext(Settings.EMPTY);
+        storeTokenHeader(requestContext, tokenService.getAccessTokenAsString(token));
+        try (ThreadContext.StoredContext ignore = requestContext.newStoredContext(true)) {
+            PlainActionFuture<UserToken> future = new PlainActionFuture<>();
+            tokenService.getAndValidateToken(requestContext, future);
+            assertAuthentication(authentication, future.get().getAuthentication());
+        }
+
+        mockGetTokenFromId(token, true);
+        try (ThreadContext.StoredContext ignore = requestContext.newStoredContext(true)) {
+            PlainActionFuture<UserToken> future = new PlainActionFuture<>();
+            tokenService.getAndValidateToken(requestContext, future);
+            expectThrows(ElasticsearchSecurityException.class, future::actionGet);
+        }
+        assertThat(tokenService.getTokenCacheHits(), equalTo(0L));
+    }
+
+    private Settings tokenCacheEnabledSettings() {
+        return Settings.builder().put(tokenServiceEnabledSettings)
+            .put(TokenService.TOKEN_CACHE_TTL.getKey(), TimeValue.timeValueSeconds(20L)).build();
+    }
+
     private void storeTokenHeader(ThreadContext requestContext, String tokenString) throws IOException, GeneralSecurityException {
         requestContext.putHeader("Authorization", "Bearer " + tokenString);
     }
@@ -668,25 +786,29 @@ public class TokenServiceTests extends ESTestCase {
         doAnswer(invocationOnMock -> {
             GetRequest request = (GetRequest) invocationOnMock.getArguments()[0];
             ActionListener<GetResponse> listener = (ActionListener<GetResponse>) invocationOnMock.getArguments()[1];
-            GetResponse response = mock(GetResponse.class);
-            if (userToken.getId().equals(request.id().replace("token_", ""))) {
-                when(response.isExists()).thenReturn(true);
-                Map<String, Object> sourceMap = new HashMap<>();
-                try (XContentBuilder builder = XContentBuilder.builder(XContentType.JSON.xContent())) {
-                    userToken.toXContent(builder, ToXContent.EMPTY_PARAMS);
-                    Map<String, Object> accessTokenMap = new HashMap<>();
-                    accessTokenMap.put("user_token",
-                        XContentHelper.convertToMap(XContentType.JSON.xContent(), Strings.toString(builder), false));
-                    accessTokenMap.put("invalidated", isExpired);
-                    sourceMap.put("access_token", accessTokenMap);
-                }
-                when(response.getSource()).thenReturn(sourceMap);
-            }
-            listener.onResponse(response);
+            listener.onResponse(tokenDocument(request, userToken, isExpired));
             return Void.TYPE;
         }).when(client).get(any(GetRequest.class), any(ActionListener.class));
     }
 
+    private static GetResponse tokenDocument(GetRequest request, UserToken userToken, boolean isExpired) throws IOException {
+        GetResponse response = mock(GetResponse.class);
+        if (userToken.getId().equals(request.id().replace("token_", ""))) {
+            when(response.isExists()).thenReturn(true);
+            Map<String, Object> sourceMap = new HashMap<>();
+            try (XContentBuilder builder = XContentBuilder.builder(XContentType.JSON.xContent())) {
+                userToken.toXContent(builder, ToXContent.EMPTY_PARAMS);
+                Map<String, Object> accessTokenMap = new HashMap<>();
+                accessTokenMap.put("user_token",
+                    XContentHelper.convertToMap(XContentType.JSON.xContent(), Strings.toString(builder), false));
+                accessTokenMap.put("invalidated", isExpired);
+                sourceMap.put("access_token", accessTokenMap);
+            }
+            when(response.getSource()).thenReturn(sourceMap);
+        }
+        return response;
+    }
+
     public static void assertAuthentication(Authentication result, Authentication expected) {
         assertEquals(expected.getUser(), result.getUser());
         assertEquals(expected.getAuthenticatedBy(), result.getAuthenticatedBy());
@@ -43,11 +43,13 @@ import io.vertx.core.http.impl.HttpServerImpl;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.metrics.impl.BuiltinVertxMetrics;
 import io.vertx.core.metrics.impl.DummyVertxMetrics;
 import io.vertx.core.net.NetClient;
 import io.vertx.core.net.NetClientOptions;
 import io.vertx.core.net.NetServer;
 import io.vertx.core.net.NetServerOptions;
+import io.vertx.core.net.impl.FileCache;
 import io.vertx.core.net.impl.NetClientImpl;
 import io.vertx.core.net.impl.NetServerImpl;
 import io.vertx.core.net.impl.ServerID;
@@ -93,6 +95,7 @@ public class VertxImpl implements VertxInternal, MetricsProvider {
   private final ClusterManager clusterManager;
   private final DeploymentManager deploymentManager;
   private final FileResolver fileResolver;
+  private final FileCache fileCache = FileCache.create();
   private final Map<ServerID, HttpServerImpl> sharedHttpServers = new HashMap<>();
   private final Map<ServerID, NetServerImpl> sharedNetServers = new HashMap<>();
   private final WorkerPool workerPool;
@@ -370,7 +373,8 @@ public class VertxImpl implements VertxInternal, MetricsProvider {
         Objects.requireNonNull(metrics, "The metric instance created from " + factory + " cannot be null");
         return metrics;
       } else {
-        log.warn("Metrics has been set to enabled but no VertxMetricsFactory found on classpath");
+        log.info("Metrics has been set to enabled but no VertxMetricsFactory found on classpath, using the built-in metrics");
+        return new BuiltinVertxMetrics(eventLoopGroup);
       }
     }
     return new DummyVertxMetrics();
@@ -674,6 +678,11 @@ public class VertxImpl implements VertxInternal, MetricsProvider {
     return fileResolver.resolveFile(fileName);
   }
 
+  @Override
+  public FileCache fileCache() {
+    return fileCache;
+  }
+
   @Override
   public void resolveHostname(String hostname, Handler<AsyncResult<InetAddress>> resultHandler) {
     hostnameResolver.resolveHostname(hostname, resultHandler);
@@ -681,6 +690,8 @@ public class VertxImpl implements VertxInternal, MetricsProvider {
 
   @SuppressWarnings("unchecked")
   private void deleteCacheDirAndShutdown(Handler<AsyncResult<Void>> completionHandler) {
+    // The files still being sent are closed once they are sent
+    fileCache.clear();
     fileResolver.close(res -> {
 
       workerPool.close();
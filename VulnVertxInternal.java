@@ -24,6 +24,7 @@ import io.vertx.core.Vertx;
 import io.vertx.core.WorkerExecutor;
 import io.vertx.core.http.impl.HttpServerImpl;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.impl.FileCache;
 import io.vertx.core.net.impl.NetServerImpl;
 import io.vertx.core.net.impl.ServerID;
 import io.vertx.core.spi.cluster.ClusterManager;
@@ -97,6 +98,11 @@ public interface VertxInternal extends Vertx {
 
   File resolveFile(String fileName);
 
+  /**
+   * @return the cache of the files sent by the servers of this instance
+   */
+  FileCache fileCache();
+
   <T> void executeBlockingInternal(Action<T> action, Handler<AsyncResult<T>> resultHandler);
 
   ClusterManager getClusterManager();
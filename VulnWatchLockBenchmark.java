@@ -0,0 +1,132 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.watcher.test.bench;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.watcher.support.concurrent.FairKeyedLock;
+import org.elasticsearch.watcher.support.concurrent.StripedKeyedLock;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures the throughput of the watch locks when many threads lock watches at the same time, as happens when a large number of
+ * watches share a schedule: the {@link FairKeyedLock} that allocates a lock per acquisition, versus the striped and the pooled exact
+ * key variants of {@link StripedKeyedLock}.
+ */
+public class WatchLockBenchmark {
+
+    private static final int NUM_WATCHES = 100000;
+    private static final int NUM_THREADS = Runtime.getRuntime().availableProcessors() * 5;
+    private static final int ACQUISITIONS_PER_THREAD = 200000;
+
+    public static void main(String[] args) throws Exception {
+        final String[] watches = new String[NUM_WATCHES];
+        for (int i = 0; i < NUM_WATCHES; i++) {
+            watches[i] = "watch_" + i;
+        }
+        // warm up
+        for (int i = 0; i < 3; i++) {
+            run(fairKeyedLock(), watches, false, "fair_keyed_lock");
+            run(new StripedLocks(StripedKeyedLock.<String>striped(1024)), watches, false, "striped");
+            run(new StripedLocks(StripedKeyedLock.<String>exactKeys(1024)), watches, false, "exact_keys");
+        }
+        run(fairKeyedLock(), watches, true, "fair_keyed_lock");
+        for (int stripes : new int[] {64, 1024, 16384}) {
+            run(new StripedLocks(StripedKeyedLock.<String>striped(stripes)), watches, true, "striped_" + stripes);
+        }
+        run(new StripedLocks(StripedKeyedLock.<String>exactKeys(1024)), watches, true, "exact_keys");
+    }
+
+    private static void run(final Locks locks, final String[] watches, boolean print, String name) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    for (int i = 0; i < ACQUISITIONS_PER_THREAD; i++) {
+                        // all threads walk over the same watches, like executions triggered by the same tick
+                        String watch = watches[(i + offset) % watches.length];
+                        locks.acquire(watch);
+                        locks.release(watch);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long took = System.nanoTime() - startTime;
+        if (print) {
+            long acquisitions = (long) NUM_THREADS * ACQUISITIONS_PER_THREAD;
+            System.out.println(String.format(Locale.ROOT, "%-16s threads [%d] took [%s] acquisitions/s [%d] %s", name, NUM_THREADS,
+                    TimeValue.timeValueNanos(took), acquisitions * 1000000000L / took, locks.stats()));
+        }
+    }
+
+    private static Locks fairKeyedLock() {
+        final FairKeyedLock<String> lock = new FairKeyedLock<>();
+        return new Locks() {
+            @Override
+            public void acquire(String key) {
+                lock.acquire(key);
+            }
+
+            @Override
+            public void release(String key) {
+                lock.release(key);
+            }
+
+            @Override
+            public String stats() {
+                return "";
+            }
+        };
+    }
+
+    private interface Locks {
+        void acquire(String key);
+
+        void release(String key);
+
+        String stats();
+    }
+
+    private static class StripedLocks implements Locks {
+
+        private final StripedKeyedLock<String> lock;
+
+        StripedLocks(StripedKeyedLock<String> lock) {
+            this.lock = lock;
+        }
+
+        @Override
+        public void acquire(String key) {
+            lock.acquire(key);
+        }
+
+        @Override
+        public void release(String key) {
+            lock.release(key);
+        }
+
+        @Override
+        public String stats() {
+            return "contended [" + lock.getContendedAcquisitions() + "] mean wait [" +
+                    TimeValue.timeValueNanos((long) lock.getContendedWaitTime().mean()) + "]";
+        }
+    }
+}
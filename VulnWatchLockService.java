@@ -12,7 +12,7 @@ import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.watcher.WatcherException;
-import org.elasticsearch.watcher.support.concurrent.FairKeyedLock;
+import org.elasticsearch.watcher.support.concurrent.StripedKeyedLock;
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -22,22 +22,39 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class WatchLockService extends AbstractComponent {
 
-    private final FairKeyedLock<String> watchLocks = new FairKeyedLock<>();
     private final AtomicBoolean running = new AtomicBoolean(false);
     private static final TimeValue DEFAULT_MAX_STOP_TIMEOUT = new TimeValue(30, TimeUnit.SECONDS);
     private static final String DEFAULT_MAX_STOP_TIMEOUT_SETTING = "watcher.stop.timeout";
+    private static final int DEFAULT_LOCK_SIZE = 1024;
+    private static final String LOCK_SIZE_SETTING = "watcher.lock.size";
+    private static final String LOCK_EXACT_KEYS_SETTING = "watcher.lock.exact_keys";
 
     private final TimeValue maxStopTimeout;
+    private final StripedKeyedLock<String> watchLocks;
 
     @Inject
     public WatchLockService(Settings settings){
         super(settings);
         maxStopTimeout = settings.getAsTime(DEFAULT_MAX_STOP_TIMEOUT_SETTING, DEFAULT_MAX_STOP_TIMEOUT);
+        watchLocks = createWatchLocks(settings);
     }
 
     WatchLockService(TimeValue maxStopTimeout){
         super(ImmutableSettings.EMPTY);
         this.maxStopTimeout = maxStopTimeout;
+        this.watchLocks = createWatchLocks(ImmutableSettings.EMPTY);
+    }
+
+    /**
+     * By default the watch names are spread over a fixed number of striped locks. With {@code watcher.lock.exact_keys} every watch
+     * is locked individually and {@code watcher.lock.size} is the number of unused locks kept around for reuse instead.
+     */
+    private static StripedKeyedLock<String> createWatchLocks(Settings settings) {
+        int size = settings.getAsInt(LOCK_SIZE_SETTING, DEFAULT_LOCK_SIZE);
+        if (settings.getAsBoolean(LOCK_EXACT_KEYS_SETTING, false)) {
+            return StripedKeyedLock.exactKeys(size);
+        }
+        return StripedKeyedLock.striped(size);
     }
 
     public Lock acquire(String name) {
@@ -82,16 +99,16 @@ public class WatchLockService extends AbstractComponent {
         }
     }
 
-    FairKeyedLock<String> getWatchLocks() {
+    StripedKeyedLock<String> getWatchLocks() {
         return watchLocks;
     }
 
     public static class Lock {
 
         private final String name;
-        private final FairKeyedLock<String> watchLocks;
+        private final StripedKeyedLock<String> watchLocks;
 
-        private Lock(String name, FairKeyedLock<String> watchLocks) {
+        private Lock(String name, StripedKeyedLock<String> watchLocks) {
             this.name = name;
             this.watchLocks = watchLocks;
 
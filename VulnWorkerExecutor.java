@@ -60,6 +60,22 @@ public interface WorkerExecutor {
     executeBlocking(blockingCodeHandler, true, resultHandler);
   }
 
+  /**
+   * Like {@link #executeBlocking(Handler, boolean, Handler)} but the executions are ordered by {@code orderingKey}
+   * instead of by context: the executions with the same key are executed serially, the executions with different keys
+   * can be executed in parallel.
+   * <p>
+   * The default implementation orders all the executions of the context.
+   *
+   * @param orderingKey  the key of the executions to order
+   * @param blockingCodeHandler  handler representing the blocking code to run
+   * @param resultHandler  handler that will be called when the blocking code is complete
+   * @param <T> the type of the result
+   */
+  default <T> void executeBlocking(String orderingKey, Handler<Future<T>> blockingCodeHandler, Handler<AsyncResult<T>> resultHandler) {
+    executeBlocking(blockingCodeHandler, true, resultHandler);
+  }
+
   /**
    * Close the executor.
    */
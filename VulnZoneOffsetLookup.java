@@ -0,0 +1,145 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.rounding;
+
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeZone;
+
+import java.util.Arrays;
+
+/**
+ * Resolves the offset of a {@link DateTimeZone} at a given instant. When built for a bounded
+ * time range, the zone transitions that fall within that range are computed once so that
+ * looking up an offset is a binary search over an array, or a constant if the zone has no
+ * transition in the range. Instants outside of the range are resolved by the zone itself.
+ */
+final class ZoneOffsetLookup {
+
+    /**
+     * The range is padded on both sides so that local times, which are shifted by the offset
+     * of the zone, also fall within the precomputed range.
+     */
+    static final long PADDING = DateTimeConstants.MILLIS_PER_DAY;
+
+    /**
+     * Above this number of transitions, we don't precompute anything and let the zone resolve offsets.
+     */
+    static final int MAX_TRANSITIONS = 10000;
+
+    /**
+     * Build a lookup that precomputes the transitions of <code>zone</code> between
+     * <code>minUtcMillis</code> and <code>maxUtcMillis</code>.
+     */
+    static ZoneOffsetLookup build(DateTimeZone zone, long minUtcMillis, long maxUtcMillis) {
+        if (zone.isFixed()) {
+            final int offset = zone.getOffset(0L);
+            return new ZoneOffsetLookup(zone, Long.MIN_VALUE, Long.MAX_VALUE, new long[] {Long.MIN_VALUE}, new int[] {offset});
+        }
+        if (minUtcMillis > maxUtcMillis) {
+            return unbounded(zone);
+        }
+        final long min = minUtcMillis < Long.MIN_VALUE + PADDING ? Long.MIN_VALUE : minUtcMillis - PADDING;
+        final long max = maxUtcMillis > Long.MAX_VALUE - PADDING ? Long.MAX_VALUE : maxUtcMillis + PADDING;
+
+        long[] transitions = new long[8];
+        int[] offsets = new int[8];
+        int count = 0;
+        long instant = min;
+        while (true) {
+            if (count == MAX_TRANSITIONS) {
+                return unbounded(zone);
+            }
+            if (count == transitions.length) {
+                transitions = Arrays.copyOf(transitions, count << 1);
+                offsets = Arrays.copyOf(offsets, count << 1);
+            }
+            transitions[count] = instant;
+            offsets[count] = zone.getOffset(instant);
+            count++;
+            final long next = zone.nextTransition(instant);
+            if (next <= instant || next > max) {
+                break;
+            }
+            instant = next;
+        }
+        return new ZoneOffsetLookup(zone, min, max, Arrays.copyOf(transitions, count), Arrays.copyOf(offsets, count));
+    }
+
+    /**
+     * Build a lookup that does not precompute anything.
+     */
+    static ZoneOffsetLookup unbounded(DateTimeZone zone) {
+        if (zone.isFixed()) {
+            return build(zone, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        // an empty range: all lookups go to the zone
+        return new ZoneOffsetLookup(zone, Long.MAX_VALUE, Long.MIN_VALUE, new long[0], new int[0]);
+    }
+
+    private final DateTimeZone zone;
+    private final long min;
+    private final long max;
+    private final long[] transitions;
+    private final int[] offsets;
+    // fast path for ranges that don't contain any transition
+    private final boolean fixed;
+
+    private ZoneOffsetLookup(DateTimeZone zone, long min, long max, long[] transitions, int[] offsets) {
+        assert transitions.length == offsets.length;
+        this.zone = zone;
+        this.min = min;
+        this.max = max;
+        this.transitions = transitions;
+        this.offsets = offsets;
+        this.fixed = transitions.length == 1;
+    }
+
+    /**
+     * The zone whose offsets are looked up.
+     */
+    DateTimeZone zone() {
+        return zone;
+    }
+
+    /**
+     * Number of distinct offset periods that were precomputed, <tt>0</tt> if nothing was precomputed.
+     */
+    int periods() {
+        return transitions.length;
+    }
+
+    /**
+     * Returns the offset of the zone, in milliseconds, at the given instant.
+     */
+    int getOffset(long instant) {
+        if (instant < min || instant > max) {
+            return zone.getOffset(instant);
+        }
+        if (fixed) {
+            return offsets[0];
+        }
+        int index = Arrays.binarySearch(transitions, instant);
+        if (index < 0) {
+            // the period that contains the instant starts at the insertion point minus one
+            index = -index - 2;
+        }
+        return offsets[index];
+    }
+}
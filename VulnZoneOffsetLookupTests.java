@@ -0,0 +1,98 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.rounding;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ */
+public class ZoneOffsetLookupTests extends ElasticsearchTestCase {
+
+    private static final long YEAR = 365L * 24 * 60 * 60 * 1000;
+
+    private static long between(long min, long max) {
+        return min + (long) (randomDouble() * (max - min));
+    }
+
+    @Test
+    public void testSameOffsetsAsZone() {
+        DateTimeZone zone = DateTimeZone.forID(randomFrom("Europe/Paris", "America/New_York", "Australia/Sydney", "Asia/Kathmandu"));
+        long min = between(-50 * YEAR, 50 * YEAR);
+        long max = min + between(0, 5 * YEAR);
+        ZoneOffsetLookup lookup = ZoneOffsetLookup.build(zone, min, max);
+        for (int i = 0; i < 10000; i++) {
+            // also check values outside of the range
+            long instant = between(min - YEAR, max + YEAR);
+            assertThat(lookup.getOffset(instant), equalTo(zone.getOffset(instant)));
+        }
+        // check around transitions
+        for (long transition = zone.nextTransition(min); transition < max; transition = zone.nextTransition(transition)) {
+            for (long instant = transition - 1; instant <= transition + 1; instant++) {
+                assertThat(lookup.getOffset(instant), equalTo(zone.getOffset(instant)));
+            }
+        }
+    }
+
+    @Test
+    public void testNoTransitionInRange() {
+        DateTimeZone zone = DateTimeZone.forID("Europe/Paris");
+        // a week in January
+        long min = 1389571200000L;
+        long max = min + 7L * 24 * 60 * 60 * 1000;
+        ZoneOffsetLookup lookup = ZoneOffsetLookup.build(zone, min, max);
+        assertThat(lookup.periods(), equalTo(1));
+        assertThat(lookup.getOffset(min), equalTo(zone.getOffset(min)));
+        assertThat(lookup.getOffset(max), equalTo(zone.getOffset(max)));
+    }
+
+    @Test
+    public void testUnbounded() {
+        DateTimeZone zone = DateTimeZone.forID("Europe/Paris");
+        ZoneOffsetLookup lookup = ZoneOffsetLookup.unbounded(zone);
+        assertThat(lookup.periods(), equalTo(0));
+        long instant = randomLong();
+        assertThat(lookup.getOffset(instant), equalTo(zone.getOffset(instant)));
+
+        ZoneOffsetLookup fixed = ZoneOffsetLookup.unbounded(DateTimeZone.forOffsetHours(5));
+        assertThat(fixed.periods(), equalTo(1));
+        assertThat(fixed.getOffset(instant), equalTo(5 * 60 * 60 * 1000));
+    }
+
+    @Test
+    public void testRoundingWithTimeRange() {
+        DateTimeZone zone = DateTimeZone.forID("Europe/Paris");
+        long min = between(0, 40 * YEAR);
+        long max = min + between(0, 2 * YEAR);
+        TimeValue interval = TimeValue.timeValueMinutes(randomFrom(1, 15, 60));
+        Rounding rounding = TimeZoneRounding.builder(interval).preZone(zone).postZone(zone).build();
+        Rounding precomputed = TimeZoneRounding.builder(interval).preZone(zone).postZone(zone).timeRange(min, max).build();
+        for (int i = 0; i < 1000; i++) {
+            long value = between(min, max);
+            long key = rounding.roundKey(value);
+            assertThat(precomputed.roundKey(value), equalTo(key));
+            assertThat(precomputed.valueForKey(key), equalTo(rounding.valueForKey(key)));
+        }
+    }
+}